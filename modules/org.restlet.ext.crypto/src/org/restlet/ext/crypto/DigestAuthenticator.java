@@ -32,14 +32,19 @@ import org.restlet.data.ChallengeRequest;
 import org.restlet.data.ChallengeScheme;
 import org.restlet.data.Digest;
 import org.restlet.data.Reference;
-import org.restlet.ext.crypto.internal.CryptoUtils;
+import org.restlet.ext.crypto.internal.HttpDigestNonces;
 import org.restlet.security.ChallengeAuthenticator;
 import org.restlet.security.LocalVerifier;
 import org.restlet.security.Verifier;
 
 /**
  * Authenticator supporting the digest challenge authentication schemes. By
- * default, it only knows about the {@link ChallengeScheme#HTTP_DIGEST} scheme.
+ * default, it only knows about the {@link ChallengeScheme#HTTP_DIGEST} scheme.<br>
+ * <br>
+ * Server nonces are signed with the server key so they don't need to be
+ * stored. The nonce counts sent by clients are tracked in a fixed amount of
+ * memory in order to reject replayed requests, see
+ * {@link #setMaxTrackedServerNonces(int)}.
  * 
  * @see DigestVerifier
  * @see DigestAuthenticator
@@ -50,12 +55,21 @@ public class DigestAuthenticator extends ChallengeAuthenticator {
     /** Default lifespan for generated nonces (5 minutes). */
     private static final long DEFAULT_MAX_SERVER_NONCE_AGE = 5 * 60 * 1000L;
 
+    /** Default number of nonces whose counts are tracked. */
+    private static final int DEFAULT_MAX_TRACKED_SERVER_NONCES = 65536;
+
     /** The URI references that define the protection domains. */
     private volatile List<Reference> domainRefs;
 
     /** Lifespan of nonce in milliseconds */
     private volatile long maxServerNonceAge;
 
+    /** The number of nonces whose counts are tracked. */
+    private volatile int maxTrackedServerNonces;
+
+    /** The nonce generator and verifier. */
+    private volatile HttpDigestNonces nonces;
+
     /** The secret key known only to server. */
     private volatile String serverKey;
 
@@ -80,6 +94,7 @@ public class DigestAuthenticator extends ChallengeAuthenticator {
         super(context, optional, ChallengeScheme.HTTP_DIGEST, realm);
         this.domainRefs = domainRefs;
         this.maxServerNonceAge = DEFAULT_MAX_SERVER_NONCE_AGE;
+        this.maxTrackedServerNonces = DEFAULT_MAX_TRACKED_SERVER_NONCES;
         this.serverKey = serverKey;
         setVerifier(new org.restlet.ext.crypto.internal.HttpDigestVerifier(
                 this, null, null));
@@ -110,12 +125,13 @@ public class DigestAuthenticator extends ChallengeAuthenticator {
     }
 
     /**
-     * Generates a server nonce.
+     * Generates a server nonce. It contains a timestamp and a sequence number
+     * signed with HMAC/SHA256 using the server key.
      * 
      * @return A new server nonce.
      */
     public String generateServerNonce() {
-        return CryptoUtils.makeNonce(getServerKey());
+        return getNonces().generate();
     }
 
     /**
@@ -168,6 +184,36 @@ public class DigestAuthenticator extends ChallengeAuthenticator {
         return this.maxServerNonceAge;
     }
 
+    /**
+     * Returns the number of server nonces whose counts are tracked to detect
+     * replayed requests. Defaults to 65536.
+     * 
+     * @return The number of server nonces whose counts are tracked.
+     */
+    public int getMaxTrackedServerNonces() {
+        return this.maxTrackedServerNonces;
+    }
+
+    /**
+     * Returns the nonce generator and verifier, creating it if needed.
+     * 
+     * @return The nonce generator and verifier.
+     */
+    private HttpDigestNonces getNonces() {
+        // Lazy initialization with double-check.
+        HttpDigestNonces n = this.nonces;
+        if (n == null) {
+            synchronized (this) {
+                n = this.nonces;
+                if (n == null) {
+                    this.nonces = n = new HttpDigestNonces(getServerKey(),
+                            getMaxTrackedServerNonces());
+                }
+            }
+        }
+        return n;
+    }
+
     /**
      * Returns the secret key known only by server.
      * 
@@ -205,13 +251,33 @@ public class DigestAuthenticator extends ChallengeAuthenticator {
     }
 
     /**
-     * Sets the secret key known only by server.
+     * Sets the number of server nonces whose counts are tracked to detect
+     * replayed requests. Older nonces are considered stale. Previously
+     * generated nonces are still accepted, even with a random server key, but
+     * their counts are forgotten.
+     * 
+     * @param maxTrackedServerNonces
+     *            The number of server nonces whose counts are tracked.
+     */
+    public synchronized void setMaxTrackedServerNonces(
+            int maxTrackedServerNonces) {
+        this.maxTrackedServerNonces = maxTrackedServerNonces;
+
+        if (this.nonces != null) {
+            this.nonces = this.nonces.resize(maxTrackedServerNonces);
+        }
+    }
+
+    /**
+     * Sets the secret key known only by server. Previously generated nonces
+     * become invalid.
      * 
      * @param serverKey
      *            The server secret key.
      */
-    public void setServerKey(String serverKey) {
+    public synchronized void setServerKey(String serverKey) {
         this.serverKey = serverKey;
+        this.nonces = null;
     }
 
     /**
@@ -265,4 +331,33 @@ public class DigestAuthenticator extends ChallengeAuthenticator {
         getVerifier().setWrappedVerifier(localVerifier);
     }
 
+    /**
+     * Verifies that a server nonce was generated by this authenticator less
+     * than {@link #getMaxServerNonceAge()} milliseconds ago.
+     * 
+     * @param nonce
+     *            The server nonce.
+     * @return {@link Verifier#RESULT_VALID}, {@link Verifier#RESULT_STALE} if
+     *         the nonce expired or {@link Verifier#RESULT_INVALID}.
+     */
+    public int verifyServerNonce(String nonce) {
+        return getNonces().verify(nonce, getMaxServerNonceAge());
+    }
+
+    /**
+     * Records the count of a verified server nonce, detecting replayed
+     * requests. Requests using the same nonce may be received out of order.
+     * 
+     * @param nonce
+     *            The server nonce.
+     * @param nonceCount
+     *            The nonce count sent by the client.
+     * @return {@link Verifier#RESULT_VALID}, {@link Verifier#RESULT_INVALID}
+     *         if the nonce count was already received or
+     *         {@link Verifier#RESULT_STALE} if the nonce isn't tracked anymore.
+     */
+    public int verifyServerNonceCount(String nonce, int nonceCount) {
+        return getNonces().verifyCount(nonce, nonceCount);
+    }
+
 }
@@ -25,15 +25,14 @@
 package org.restlet.ext.crypto;
 
 import java.io.UnsupportedEncodingException;
+import java.nio.charset.Charset;
+import java.security.GeneralSecurityException;
 import java.security.InvalidKeyException;
-import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 
-import javax.crypto.Mac;
-import javax.crypto.spec.SecretKeySpec;
-
 import org.restlet.data.Digest;
 import org.restlet.engine.util.Base64;
+import org.restlet.ext.crypto.internal.CryptoPrimitives;
 
 /**
  * Security data manipulation utilities.
@@ -51,6 +50,9 @@ public class DigestUtils {
      */
     private static final char[] HEXDIGITS = "0123456789abcdef".toCharArray();
 
+    /** The UTF-8 character set. */
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
     /**
      * Returns the digest of the target string. Target is decoded to bytes using
      * the US-ASCII charset. Supports MD5 and SHA-1 algorithms.
@@ -86,38 +88,59 @@ public class DigestUtils {
     };
 
     /**
-     * Converts a source string to its HMAC/SHA-1 value.
+     * Converts a source byte array to its HMAC value.
      * 
+     * @param algorithm
+     *            The HMAC algorithm.
      * @param source
-     *            The source string to convert.
+     *            The source bytes to convert.
      * @param secretKey
      *            The secret key to use for conversion.
-     * @return The HMac value of the source string.
+     * @return The HMac value of the source bytes.
      */
-    public static byte[] toHMacSha1(String source, byte[] secretKey) {
-        byte[] result = null;
-
+    private static byte[] toHMac(String algorithm, byte[] source,
+            byte[] secretKey) {
         try {
-            // Create the HMAC/SHA1 key
-            SecretKeySpec signingKey = new SecretKeySpec(secretKey, "HmacSHA1");
-
-            // Create the message authentication code (MAC)
-            Mac mac = Mac.getInstance("HmacSHA1");
-            mac.init(signingKey);
-
-            // Compute the HMAC value
-            result = mac.doFinal(source.getBytes());
+            return CryptoPrimitives.mac(algorithm, secretKey, source);
         } catch (NoSuchAlgorithmException nsae) {
-            throw new RuntimeException(
-                    "Could not find the SHA-1 algorithm. HMac conversion failed.",
-                    nsae);
+            throw new RuntimeException("Could not find the " + algorithm
+                    + " algorithm. HMac conversion failed.", nsae);
         } catch (InvalidKeyException ike) {
             throw new RuntimeException(
                     "Invalid key exception detected. HMac conversion failed.",
                     ike);
+        } catch (GeneralSecurityException gse) {
+            throw new RuntimeException(
+                    "Security exception detected. HMac conversion failed.",
+                    gse);
         }
+    }
 
-        return result;
+    /**
+     * Converts a source byte array to its HMAC/SHA-1 value.
+     * 
+     * @param source
+     *            The source bytes to convert.
+     * @param secretKey
+     *            The secret key to use for conversion.
+     * @return The HMac value of the source bytes.
+     */
+    public static byte[] toHMacSha1(byte[] source, byte[] secretKey) {
+        return toHMac("HmacSHA1", source, secretKey);
+    }
+
+    /**
+     * Converts a source string to its HMAC/SHA-1 value. The source string is
+     * encoded using the default character set.
+     * 
+     * @param source
+     *            The source string to convert.
+     * @param secretKey
+     *            The secret key to use for conversion.
+     * @return The HMac value of the source string.
+     */
+    public static byte[] toHMacSha1(String source, byte[] secretKey) {
+        return toHMacSha1(source.getBytes(), secretKey);
     }
 
     /**
@@ -134,7 +157,21 @@ public class DigestUtils {
     }
 
     /**
-     * Converts a source string to its HMAC/SHA256 value.
+     * Converts a source byte array to its HMAC/SHA256 value.
+     * 
+     * @param source
+     *            The source bytes to convert.
+     * @param secretKey
+     *            The secret key to use for conversion.
+     * @return The HMac value of the source bytes.
+     */
+    public static byte[] toHMacSha256(byte[] source, byte[] secretKey) {
+        return toHMac("HmacSHA256", source, secretKey);
+    }
+
+    /**
+     * Converts a source string to its HMAC/SHA256 value. The source string is
+     * encoded using UTF-8.
      * 
      * @param source
      *            The source string to convert.
@@ -143,37 +180,7 @@ public class DigestUtils {
      * @return The HMac value of the source string.
      */
     public static byte[] toHMacSha256(String source, byte[] secretKey) {
-        byte[] result = null;
-
-        try {
-            // Create the HMAC/SHA256 key
-            SecretKeySpec signingKey = new SecretKeySpec(secretKey,
-                    "HmacSHA256");
-
-            // Create the message authentication code (MAC)
-            Mac mac = Mac.getInstance("HmacSHA256");
-            mac.init(signingKey);
-
-            // Compute the HMAC value
-            result = mac.doFinal(source.getBytes("UTF-8"));
-        } catch (NoSuchAlgorithmException nsae) {
-            throw new RuntimeException(
-                    "Could not find the SHA256 algorithm. HMac conversion failed.",
-                    nsae);
-        } catch (InvalidKeyException ike) {
-            throw new RuntimeException(
-                    "Invalid key exception detected. HMac conversion failed.",
-                    ike);
-        } catch (IllegalStateException ise) {
-            throw new RuntimeException(
-                    "IIllegal state exception detected. HMac conversion failed.",
-                    ise);
-        } catch (UnsupportedEncodingException uee) {
-            throw new RuntimeException(
-                    "Unsuported encoding UTF-8. HMac conversion failed.", uee);
-        }
-
-        return result;
+        return toHMacSha256(source.getBytes(UTF_8), secretKey);
     }
 
     /**
@@ -249,7 +256,7 @@ public class DigestUtils {
     public static String toMd5(String target, String charsetName)
             throws UnsupportedEncodingException {
         try {
-            final byte[] md5 = MessageDigest.getInstance("MD5").digest(
+            final byte[] md5 = CryptoPrimitives.digest("MD5",
                     target.getBytes(charsetName));
             final char[] md5Chars = new char[32];
             int i = 0;
@@ -298,7 +305,7 @@ public class DigestUtils {
             throws UnsupportedEncodingException {
         try {
             return Base64.encode(
-                    MessageDigest.getInstance("SHA1").digest(
+                    CryptoPrimitives.digest("SHA1",
                             target.getBytes(charsetName)), false);
         } catch (NoSuchAlgorithmException nsae) {
             throw new RuntimeException(
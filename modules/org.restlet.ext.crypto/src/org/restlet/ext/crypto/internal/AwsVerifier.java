@@ -24,11 +24,16 @@
 
 package org.restlet.ext.crypto.internal;
 
+import java.security.MessageDigest;
+
 import org.restlet.Request;
 import org.restlet.Response;
 import org.restlet.data.Header;
 import org.restlet.engine.header.HeaderConstants;
+import org.restlet.engine.io.IoUtils;
+import org.restlet.engine.util.Base64;
 import org.restlet.engine.util.DateUtils;
+import org.restlet.ext.crypto.DigestUtils;
 import org.restlet.security.LocalVerifier;
 import org.restlet.security.SecretVerifier;
 import org.restlet.security.User;
@@ -223,9 +228,23 @@ public class AwsVerifier extends SecretVerifier {
 
         char[] userSecret = getLocalSecret(userId);
         char[] signature = getSecret(request, response);
-        String sigToCompare = AwsUtils.getS3Signature(request, userSecret);
 
-        if (!compare(signature, sigToCompare.toCharArray()))
+        if (userSecret == null || signature == null)
+            return RESULT_INVALID;
+
+        // Compare the raw HMAC values rather than their Base64 encodings
+        byte[] provided;
+        try {
+            provided = Base64.decode(signature);
+        } catch (IllegalArgumentException iae) {
+            return RESULT_INVALID;
+        }
+
+        byte[] expected = DigestUtils.toHMacSha1(
+                AwsUtils.getS3StringToSign(request, headers),
+                IoUtils.toByteArray(userSecret));
+
+        if (!MessageDigest.isEqual(provided, expected))
             return RESULT_INVALID;
 
         request.getClientInfo().setUser(new User(userId));
@@ -0,0 +1,282 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or or EPL 1.0 (the "Licenses"). You can
+ * select the license that you prefer but you may not use this file except in
+ * compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+
+package org.restlet.ext.crypto.internal;
+
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.crypto.Cipher;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Provider of reusable cryptographic primitives. Looking up a
+ * {@link MessageDigest}, {@link Mac} or {@link Cipher} implementation and
+ * initializing it with a key are costly operations, so the initialized
+ * instances are cached per thread, and per key for the keyed ones. The number
+ * of keyed instances cached by each thread is bounded.<br>
+ * <br>
+ * The returned instances are reset and must only be used by the calling
+ * thread, without being kept beyond the current computation.
+ * 
+ * @author Jerome Louvel
+ */
+public final class CryptoPrimitives {
+
+    /**
+     * Cache key combining an algorithm, a mode and a secret key.
+     */
+    private static final class KeyedAlgorithm {
+
+        /** The algorithm name. */
+        private final String algorithm;
+
+        /** The hash code. */
+        private final int hashCode;
+
+        /** The secret key. */
+        private final byte[] key;
+
+        /** The cipher mode or zero for MACs. */
+        private final int mode;
+
+        /**
+         * Constructor.
+         * 
+         * @param algorithm
+         *            The algorithm name.
+         * @param mode
+         *            The cipher mode or zero for MACs.
+         * @param key
+         *            The secret key.
+         */
+        private KeyedAlgorithm(String algorithm, int mode, byte[] key) {
+            this.algorithm = algorithm;
+            this.key = key;
+            this.mode = mode;
+            this.hashCode = (31 * ((31 * algorithm.hashCode()) + mode))
+                    + Arrays.hashCode(key);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof KeyedAlgorithm)) {
+                return false;
+            }
+
+            KeyedAlgorithm other = (KeyedAlgorithm) obj;
+            return (this.mode == other.mode)
+                    && this.algorithm.equals(other.algorithm)
+                    && Arrays.equals(this.key, other.key);
+        }
+
+        @Override
+        public int hashCode() {
+            return this.hashCode;
+        }
+    }
+
+    /** The ciphers of the current thread. */
+    private static final ThreadLocal<Map<KeyedAlgorithm, Cipher>> CIPHERS = new ThreadLocal<Map<KeyedAlgorithm, Cipher>>() {
+        @Override
+        protected Map<KeyedAlgorithm, Cipher> initialValue() {
+            return createKeyedMap();
+        }
+    };
+
+    /** The message digests of the current thread. */
+    private static final ThreadLocal<Map<String, MessageDigest>> DIGESTS = new ThreadLocal<Map<String, MessageDigest>>() {
+        @Override
+        protected Map<String, MessageDigest> initialValue() {
+            return new HashMap<String, MessageDigest>();
+        }
+    };
+
+    /** The message authentication codes of the current thread. */
+    private static final ThreadLocal<Map<KeyedAlgorithm, Mac>> MACS = new ThreadLocal<Map<KeyedAlgorithm, Mac>>() {
+        @Override
+        protected Map<KeyedAlgorithm, Mac> initialValue() {
+            return createKeyedMap();
+        }
+    };
+
+    /** The maximum number of keyed instances cached per thread. */
+    private static final int MAX_KEYED_INSTANCES = 32;
+
+    /**
+     * Creates a map of keyed instances, evicting the least recently used ones
+     * beyond {@link #MAX_KEYED_INSTANCES}.
+     * 
+     * @return The new map.
+     */
+    private static <V> Map<KeyedAlgorithm, V> createKeyedMap() {
+        return new LinkedHashMap<KeyedAlgorithm, V>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(
+                    Map.Entry<KeyedAlgorithm, V> eldest) {
+                return size() > MAX_KEYED_INSTANCES;
+            }
+        };
+    }
+
+    /**
+     * Digests a byte array.
+     * 
+     * @param algorithm
+     *            The digest algorithm.
+     * @param data
+     *            The bytes to digest.
+     * @return The digest.
+     * @throws NoSuchAlgorithmException
+     */
+    public static byte[] digest(String algorithm, byte[] data)
+            throws NoSuchAlgorithmException {
+        return getDigest(algorithm).digest(data);
+    }
+
+    /**
+     * Encrypts or decrypts a byte array in a single operation.
+     * 
+     * @param algorithm
+     *            The cipher algorithm.
+     * @param key
+     *            The secret key.
+     * @param mode
+     *            The cipher mode, either {@link Cipher#ENCRYPT_MODE} or
+     *            {@link Cipher#DECRYPT_MODE}.
+     * @param data
+     *            The bytes to process.
+     * @return The processed bytes.
+     * @throws GeneralSecurityException
+     */
+    public static byte[] doFinal(String algorithm, byte[] key, int mode,
+            byte[] data) throws GeneralSecurityException {
+        KeyedAlgorithm cacheKey = new KeyedAlgorithm(algorithm, mode, key);
+        Map<KeyedAlgorithm, Cipher> ciphers = CIPHERS.get();
+        Cipher cipher = ciphers.get(cacheKey);
+
+        if (cipher == null) {
+            cipher = Cipher.getInstance(algorithm);
+            cipher.init(mode, new SecretKeySpec(key, algorithm));
+            ciphers.put(new KeyedAlgorithm(algorithm, mode, key.clone()),
+                    cipher);
+        }
+
+        try {
+            return cipher.doFinal(data);
+        } catch (GeneralSecurityException gse) {
+            // Don't reuse a cipher left in an unknown state
+            ciphers.remove(cacheKey);
+            throw gse;
+        } catch (RuntimeException re) {
+            ciphers.remove(cacheKey);
+            throw re;
+        }
+    }
+
+    /**
+     * Returns the reset message digest of the current thread for a given
+     * algorithm.
+     * 
+     * @param algorithm
+     *            The digest algorithm.
+     * @return The message digest.
+     * @throws NoSuchAlgorithmException
+     */
+    public static MessageDigest getDigest(String algorithm)
+            throws NoSuchAlgorithmException {
+        Map<String, MessageDigest> digests = DIGESTS.get();
+        MessageDigest result = digests.get(algorithm);
+
+        if (result == null) {
+            result = MessageDigest.getInstance(algorithm);
+            digests.put(algorithm, result);
+        } else {
+            result.reset();
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns the reset message authentication code of the current thread for
+     * a given algorithm and secret key.
+     * 
+     * @param algorithm
+     *            The MAC algorithm.
+     * @param key
+     *            The secret key.
+     * @return The initialized message authentication code.
+     * @throws GeneralSecurityException
+     */
+    public static Mac getMac(String algorithm, byte[] key)
+            throws GeneralSecurityException {
+        KeyedAlgorithm cacheKey = new KeyedAlgorithm(algorithm, 0, key);
+        Map<KeyedAlgorithm, Mac> macs = MACS.get();
+        Mac result = macs.get(cacheKey);
+
+        if (result == null) {
+            result = Mac.getInstance(algorithm);
+            result.init(new SecretKeySpec(key, algorithm));
+            macs.put(new KeyedAlgorithm(algorithm, 0, key.clone()), result);
+        } else {
+            result.reset();
+        }
+
+        return result;
+    }
+
+    /**
+     * Computes the message authentication code of a byte array.
+     * 
+     * @param algorithm
+     *            The MAC algorithm.
+     * @param key
+     *            The secret key.
+     * @param data
+     *            The bytes to authenticate.
+     * @return The message authentication code.
+     * @throws GeneralSecurityException
+     */
+    public static byte[] mac(String algorithm, byte[] key, byte[] data)
+            throws GeneralSecurityException {
+        return getMac(algorithm, key).doFinal(data);
+    }
+
+    /**
+     * Private constructor to ensure that the class acts as a true utility class
+     * i.e. it isn't instantiable and extensible.
+     */
+    private CryptoPrimitives() {
+    }
+}
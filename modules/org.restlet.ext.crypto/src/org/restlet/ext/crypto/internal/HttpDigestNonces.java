@@ -0,0 +1,362 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or or EPL 1.0 (the "Licenses"). You can
+ * select the license that you prefer but you may not use this file except in
+ * compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+
+package org.restlet.ext.crypto.internal;
+
+import java.nio.charset.Charset;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.crypto.Mac;
+
+import org.restlet.engine.util.Base64;
+import org.restlet.security.Verifier;
+
+/**
+ * Stateless generator and verifier of HTTP DIGEST server nonces, with bounded
+ * replay protection.<br>
+ * <br>
+ * Each nonce is the Base64 encoding of a timestamp, a sequence number and a
+ * truncated HMAC/SHA256 of both computed with the server key, so nonces can be
+ * checked without being stored.<br>
+ * <br>
+ * Nonce counts are tracked in fixed size arrays indexed by the nonce sequence
+ * number, like a ring. Each slot keeps the highest nonce count received and a
+ * sliding window of the 64 previous ones, so requests sent concurrently with
+ * the same nonce can arrive out of order. Once a slot has been reused by a more
+ * recent nonce, the older nonce is reported stale and the client is challenged
+ * again.
+ * 
+ * @author Jerome Louvel
+ */
+public class HttpDigestNonces {
+
+    /** The HMAC algorithm. */
+    private static final String ALGORITHM = "HmacSHA256";
+
+    /** The number of bytes of the truncated HMAC. */
+    private static final int MAC_LENGTH = 16;
+
+    /** The number of bytes of a decoded nonce. */
+    private static final int NONCE_LENGTH = 16 + MAC_LENGTH;
+
+    /** The number of lock stripes protecting the slots. */
+    private static final int STRIPES = 64;
+
+    /**
+     * Reads a big-endian long from a byte array.
+     * 
+     * @param bytes
+     *            The byte array.
+     * @param offset
+     *            The offset of the first byte.
+     * @return The long value.
+     */
+    private static long readLong(byte[] bytes, int offset) {
+        long result = 0;
+
+        for (int i = 0; i < 8; i++) {
+            result = (result << 8) | (bytes[offset + i] & 0xFF);
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns the HMAC key derived from a server key.
+     * 
+     * @param serverKey
+     *            The secret key known only to the server. If null, a random
+     *            key is generated.
+     * @return The HMAC key.
+     */
+    private static byte[] toKey(String serverKey) {
+        byte[] result;
+
+        if ((serverKey == null) || (serverKey.length() == 0)) {
+            result = new byte[32];
+            new SecureRandom().nextBytes(result);
+        } else {
+            result = serverKey.getBytes(Charset.forName("UTF-8"));
+        }
+
+        return result;
+    }
+
+    /**
+     * Writes a big-endian long into a byte array.
+     * 
+     * @param value
+     *            The long value.
+     * @param bytes
+     *            The byte array.
+     * @param offset
+     *            The offset of the first byte.
+     */
+    private static void writeLong(long value, byte[] bytes, int offset) {
+        for (int i = 7; i >= 0; i--) {
+            bytes[offset + i] = (byte) value;
+            value >>>= 8;
+        }
+    }
+
+    /** The highest nonce count received per slot. */
+    private final long[] highestCounts;
+
+    /** The HMAC key. */
+    private final byte[] key;
+
+    /** The lock stripes. */
+    private final Object[] locks;
+
+    /** The slot index mask. */
+    private final int mask;
+
+    /** The sequence number of the nonce owning each slot. */
+    private final long[] owners;
+
+    /** The last sequence number generated. */
+    private final AtomicLong sequence;
+
+    /** The bitmap of the nonce counts received below the highest per slot. */
+    private final long[] windows;
+
+    /**
+     * Constructor.
+     * 
+     * @param serverKey
+     *            The secret key known only to the server. If null, a random
+     *            key is generated.
+     * @param capacity
+     *            The number of nonces whose counts are tracked, rounded up to
+     *            a power of two.
+     */
+    public HttpDigestNonces(String serverKey, int capacity) {
+        this(toKey(serverKey), capacity);
+    }
+
+    /**
+     * Constructor.
+     * 
+     * @param key
+     *            The HMAC key.
+     * @param capacity
+     *            The number of nonces whose counts are tracked, rounded up to
+     *            a power of two.
+     */
+    private HttpDigestNonces(byte[] key, int capacity) {
+        this.key = key;
+        int size = Integer.highestOneBit(Math.max(capacity, 1));
+
+        if (size < capacity) {
+            size <<= 1;
+        }
+
+        this.highestCounts = new long[size];
+        this.mask = size - 1;
+        this.owners = new long[size];
+        this.windows = new long[size];
+        this.locks = new Object[STRIPES];
+
+        for (int i = 0; i < STRIPES; i++) {
+            this.locks[i] = new Object();
+        }
+
+        // Sequence numbers keep growing across restarts
+        this.sequence = new AtomicLong(System.currentTimeMillis() * 1000L);
+    }
+
+    /**
+     * Decodes a nonce and checks its HMAC.
+     * 
+     * @param nonce
+     *            The nonce to decode.
+     * @return The decoded bytes or null if the nonce is invalid.
+     */
+    private byte[] decode(String nonce) {
+        if ((nonce == null) || (nonce.length() != 44)) {
+            return null;
+        }
+
+        byte[] result;
+
+        try {
+            result = Base64.decode(nonce);
+        } catch (IllegalArgumentException iae) {
+            return null;
+        }
+
+        if (result.length != NONCE_LENGTH) {
+            return null;
+        }
+
+        byte[] mac = sign(result);
+        int diff = 0;
+
+        for (int i = 0; i < MAC_LENGTH; i++) {
+            diff |= mac[i] ^ result[16 + i];
+        }
+
+        return (diff == 0) ? result : null;
+    }
+
+    /**
+     * Generates a new nonce.
+     * 
+     * @return The new nonce.
+     */
+    public String generate() {
+        byte[] bytes = new byte[NONCE_LENGTH];
+        writeLong(System.currentTimeMillis(), bytes, 0);
+        writeLong(this.sequence.incrementAndGet(), bytes, 8);
+        System.arraycopy(sign(bytes), 0, bytes, 16, MAC_LENGTH);
+        return Base64.encode(bytes, false);
+    }
+
+    /**
+     * Returns the number of nonces whose counts are tracked.
+     * 
+     * @return The number of nonces whose counts are tracked.
+     */
+    public int getCapacity() {
+        return this.mask + 1;
+    }
+
+    /**
+     * Returns a copy of this instance tracking the counts of a different
+     * number of nonces. The copy shares the key, so the previously generated
+     * nonces remain valid, but their counts are forgotten.
+     * 
+     * @param capacity
+     *            The number of nonces whose counts are tracked, rounded up to
+     *            a power of two.
+     * @return The resized copy.
+     */
+    public HttpDigestNonces resize(int capacity) {
+        HttpDigestNonces result = new HttpDigestNonces(this.key, capacity);
+
+        // Never reuse the sequence numbers of the previous nonces
+        result.sequence.set(Math.max(result.sequence.get(),
+                this.sequence.get()));
+        return result;
+    }
+
+    /**
+     * Computes the HMAC of the timestamp and sequence number of a nonce.
+     * 
+     * @param bytes
+     *            The nonce bytes.
+     * @return The HMAC.
+     */
+    private byte[] sign(byte[] bytes) {
+        try {
+            Mac mac = CryptoPrimitives.getMac(ALGORITHM, this.key);
+            mac.update(bytes, 0, 16);
+            return mac.doFinal();
+        } catch (GeneralSecurityException gse) {
+            throw new IllegalStateException("Unable to sign the nonce", gse);
+        }
+    }
+
+    /**
+     * Verifies that a nonce was generated with the server key, less than a
+     * given number of milliseconds ago.
+     * 
+     * @param nonce
+     *            The nonce to verify.
+     * @param maxAge
+     *            The nonce lifespan in milliseconds.
+     * @return {@link Verifier#RESULT_VALID}, {@link Verifier#RESULT_STALE} if
+     *         the nonce expired or {@link Verifier#RESULT_INVALID}.
+     */
+    public int verify(String nonce, long maxAge) {
+        byte[] bytes = decode(nonce);
+
+        if (bytes == null) {
+            return Verifier.RESULT_INVALID;
+        }
+
+        long age = System.currentTimeMillis() - readLong(bytes, 0);
+        return (age < maxAge) ? Verifier.RESULT_VALID : Verifier.RESULT_STALE;
+    }
+
+    /**
+     * Records the count of a previously verified nonce, detecting replays.
+     * 
+     * @param nonce
+     *            The nonce.
+     * @param nonceCount
+     *            The nonce count sent by the client.
+     * @return {@link Verifier#RESULT_VALID},
+     *         {@link Verifier#RESULT_INVALID} if the nonce count was already
+     *         received or {@link Verifier#RESULT_STALE} if the nonce isn't
+     *         tracked anymore.
+     */
+    public int verifyCount(String nonce, int nonceCount) {
+        byte[] bytes = decode(nonce);
+
+        if (bytes == null) {
+            return Verifier.RESULT_INVALID;
+        }
+
+        long owner = readLong(bytes, 8);
+        int slot = (int) (owner & this.mask);
+
+        synchronized (this.locks[slot & (STRIPES - 1)]) {
+            if (this.owners[slot] != owner) {
+                if (this.owners[slot] > owner) {
+                    // The slot was taken by a more recent nonce
+                    return Verifier.RESULT_STALE;
+                }
+
+                this.owners[slot] = owner;
+                this.highestCounts[slot] = nonceCount;
+                this.windows[slot] = 1L;
+                return Verifier.RESULT_VALID;
+            }
+
+            long highest = this.highestCounts[slot];
+
+            if (nonceCount > highest) {
+                long shift = nonceCount - highest;
+                this.windows[slot] = (shift >= 64) ? 1L
+                        : (this.windows[slot] << shift) | 1L;
+                this.highestCounts[slot] = nonceCount;
+                return Verifier.RESULT_VALID;
+            }
+
+            long distance = highest - nonceCount;
+
+            if ((distance >= 64)
+                    || ((this.windows[slot] & (1L << distance)) != 0)) {
+                return Verifier.RESULT_INVALID;
+            }
+
+            this.windows[slot] |= 1L << distance;
+            return Verifier.RESULT_VALID;
+        }
+    }
+}
@@ -128,16 +128,12 @@ public class HttpDigestVerifier extends
                 result = RESULT_INVALID;
             }
 
-            try {
-                if (!HttpDigestHelper.isNonceValid(nonce,
-                        getDigestAuthenticator().getServerKey(),
-                        getDigestAuthenticator().getMaxServerNonceAge())) {
-                    // Nonce expired, send challenge request with stale=true
-                    result = RESULT_STALE;
-                }
-            } catch (Exception ce) {
-                // Invalid nonce, probably doesn't match serverKey
-                result = RESULT_INVALID;
+            // Send a challenge request with stale=true if the nonce expired
+            int nonceResult = getDigestAuthenticator().verifyServerNonce(
+                    nonce);
+
+            if (nonceResult != RESULT_VALID) {
+                result = nonceResult;
             }
 
             if (result == RESULT_VALID) {
@@ -176,6 +172,10 @@ public class HttpDigestVerifier extends
                             if (!DigestUtils.toMd5(expectedResponse.toString())
                                     .equals(cresponse)) {
                                 result = RESULT_INVALID;
+                            } else if (!AuthenticatorUtils.anyNull(qop, cnonce)) {
+                                // Reject replayed requests
+                                result = getDigestAuthenticator()
+                                        .verifyServerNonceCount(nonce, nc);
                             }
                         } else {
                             // The HA1 is null
@@ -32,7 +32,11 @@ import org.eclipse.jetty.server.HttpConfiguration;
 import org.eclipse.jetty.util.ssl.SslContextFactory;
 import org.restlet.Server;
 import org.restlet.data.Protocol;
+import org.restlet.engine.adapter.ServerCall;
+import org.restlet.engine.ssl.DefaultSslContext;
 import org.restlet.engine.ssl.DefaultSslContextFactory;
+import org.restlet.engine.ssl.HandshakeStatistics;
+import org.restlet.ext.jetty.internal.JettyServerCall;
 import org.restlet.ext.jetty.internal.RestletSslContextFactory;
 
 /**
@@ -56,7 +60,9 @@ import org.restlet.ext.jetty.internal.RestletSslContextFactory;
  * </tr>
  * </table>
  * For the default SSL parameters see the Javadocs of the
- * {@link DefaultSslContextFactory} class.
+ * {@link DefaultSslContextFactory} class. When the SSL context is created by
+ * this factory, its {@link HandshakeStatistics} are exposed by the
+ * "handshakeStatistics" helper attribute.
  * 
  * @see <a href="http://www.eclipse.org/jetty/">Jetty home page</a>
  * @see <a href="http://wiki.eclipse.org/Jetty/Howto/Configure_SSL">How to
@@ -91,6 +97,14 @@ public class HttpsServerHelper extends JettyServerHelper {
         try {
             org.eclipse.jetty.util.ssl.SslContextFactory sslContextFactory = new RestletSslContextFactory(
                     org.restlet.engine.ssl.SslUtils.getSslContextFactory(this));
+
+            if (sslContextFactory.getSslContext() instanceof DefaultSslContext) {
+                getAttributes().put(
+                        "handshakeStatistics",
+                        ((DefaultSslContext) sslContextFactory.getSslContext())
+                                .getHandshakeStatistics());
+            }
+
             result = AbstractConnectionFactory.getFactories(sslContextFactory,
                     super.createConnectionFactories(configuration));
         } catch (Exception e) {
@@ -101,4 +115,25 @@ public class HttpsServerHelper extends JettyServerHelper {
 
         return result;
     }
+
+    /**
+     * Records the handshake latency of the new SSL sessions before handling
+     * the call.
+     * 
+     * @param httpCall
+     *            The HTTP server call.
+     */
+    @Override
+    public void handle(ServerCall httpCall) {
+        Object statistics = getAttributes().get("handshakeStatistics");
+
+        if ((statistics instanceof HandshakeStatistics)
+                && (httpCall instanceof JettyServerCall)) {
+            ((HandshakeStatistics) statistics)
+                    .recordSession(((JettyServerCall) httpCall)
+                            .getSslSession());
+        }
+
+        super.handle(httpCall);
+    }
 }
@@ -34,7 +34,11 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.logging.Level;
 
+import javax.net.ssl.SSLSession;
+
+import org.eclipse.jetty.io.EndPoint;
 import org.eclipse.jetty.io.EofException;
+import org.eclipse.jetty.io.ssl.SslConnection;
 import org.eclipse.jetty.server.HttpChannel;
 import org.restlet.Response;
 import org.restlet.Server;
@@ -238,6 +242,18 @@ public class JettyServerCall extends ServerCall {
         return keySize;
     }
 
+    /**
+     * Returns the SSL session of the connection, if the request was received
+     * over SSL.
+     * 
+     * @return The SSL session or null.
+     */
+    public SSLSession getSslSession() {
+        EndPoint endPoint = getChannel().getEndPoint();
+        return (endPoint instanceof SslConnection.DecryptedEndPoint) ? ((SslConnection.DecryptedEndPoint) endPoint)
+                .getSslConnection().getSSLEngine().getSession() : null;
+    }
+
     @Override
     public String getSslSessionId() {
         final Object sessionId = getChannel().getRequest().getAttribute(
@@ -24,6 +24,14 @@
 
 package org.restlet.ext.oauth;
 
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -39,6 +47,8 @@ import org.restlet.data.Form;
 import org.restlet.data.MediaType;
 import org.restlet.data.Method;
 import org.restlet.data.Reference;
+import org.restlet.engine.io.IoUtils;
+import org.restlet.engine.util.LruCache;
 import org.restlet.ext.json.JsonRepresentation;
 import org.restlet.ext.oauth.internal.Scopes;
 import org.restlet.representation.Representation;
@@ -49,7 +59,17 @@ import org.restlet.security.Verifier;
 /**
  * Verifier for OAuth 2.0 Protected Resources. Typically use with
  * ChallengeAuthenticator. "Bearer" and "MAC" challenge schemes are may
- * supported.
+ * supported.<br>
+ * <br>
+ * The validations made by the authorization server can be cached, keyed by a
+ * hash of the token, by setting a positive time to live with
+ * {@link #setCacheTimeToLive(int)}. The invalid tokens can be cached as well
+ * with {@link #setNegativeCacheTimeToLive(int)}, in a separate and smaller
+ * cache so that a flood of forged tokens can't evict the valid ones.
+ * Concurrent validations of the same token are coalesced into a single request
+ * to the authorization server. Self-contained tokens, such as signed ones, can
+ * be validated without contacting the authorization server by overriding
+ * {@link #validateLocally(String)}.
  * 
  * @author Shotaro Uchida <fantom@xmaker.mx>
  * @see <a href="http://tools.ietf.org/html/draft-ietf-oauth-v2-bearer-22">
@@ -59,6 +79,47 @@ import org.restlet.security.Verifier;
  */
 public class TokenVerifier implements Verifier {
 
+    /**
+     * Result of the validation of a token.
+     */
+    private static class Validation {
+
+        /** The expiration time in milliseconds. */
+        private volatile long expiration;
+
+        /** The granted scope. */
+        private final String scope;
+
+        /** The user name or null if the token is invalid. */
+        private final String username;
+
+        /**
+         * Constructor.
+         * 
+         * @param username
+         *            The user name or null if the token is invalid.
+         * @param scope
+         *            The granted scope.
+         */
+        private Validation(String username, String scope) {
+            this.expiration = Long.MAX_VALUE;
+            this.scope = scope;
+            this.username = username;
+        }
+
+        /**
+         * Indicates if the token is valid.
+         * 
+         * @return True if the token is valid.
+         */
+        private boolean isValid() {
+            return username != null;
+        }
+    }
+
+    /** The invalid token validation. */
+    private static final Validation INVALID = new Validation(null, null);
+
     // public static final ChallengeScheme HTTP_BEARER =
     // new ChallengeScheme("HTTP_BEARER", "Bearer",
     // "The OAuth 2.0 Authorization Framework: Bearer Token Usage");
@@ -84,8 +145,36 @@ public class TokenVerifier implements Verifier {
 
     private Reference authReference;
 
+    /** The cached valid tokens, per token hash. */
+    private final LruCache<String, Validation> cache;
+
+    /** The time to live of the cached valid tokens in seconds. */
+    private volatile int cacheTimeToLive;
+
+    /** The cached invalid tokens, per token hash. */
+    private final LruCache<String, Validation> negativeCache;
+
+    /** The time to live of the cached invalid tokens in seconds. */
+    private volatile int negativeCacheTimeToLive;
+
+    /** The validations in progress, per token hash. */
+    private final ConcurrentMap<String, FutureTask<Validation>> pending;
+
     public TokenVerifier(Reference authReference) {
         this.authReference = authReference;
+        this.cache = new LruCache<String, Validation>(10000L);
+        this.cacheTimeToLive = 0;
+        this.negativeCache = new LruCache<String, Validation>(1000L);
+        this.negativeCacheTimeToLive = 0;
+        this.pending = new ConcurrentHashMap<String, FutureTask<Validation>>();
+    }
+
+    /**
+     * Removes all the cached validations.
+     */
+    public void clearCache() {
+        this.cache.clear();
+        this.negativeCache.clear();
     }
 
     private String getAccessTokenFromBody(Request request) {
@@ -124,6 +213,101 @@ public class TokenVerifier implements Verifier {
         return null;
     }
 
+    /**
+     * Returns the maximum number of cached valid tokens. Defaults to 10000.
+     * 
+     * @return The maximum number of cached valid tokens.
+     */
+    public long getCacheMaxSize() {
+        return this.cache.getMaxWeight();
+    }
+
+    /**
+     * Returns the time to live of the cached valid tokens in seconds. Defaults
+     * to 0, disabling the cache.
+     * 
+     * @return The time to live of the cached valid tokens in seconds.
+     */
+    public int getCacheTimeToLive() {
+        return cacheTimeToLive;
+    }
+
+    /**
+     * Returns the hash of a token, used as cache key.
+     * 
+     * @param token
+     *            The token.
+     * @return The hash of the token.
+     */
+    private String getKey(String token) {
+        try {
+            return IoUtils.toHexString(MessageDigest.getInstance("SHA-256")
+                    .digest(token.getBytes(Charset.forName("UTF-8"))));
+        } catch (NoSuchAlgorithmException e) {
+            return token;
+        }
+    }
+
+    /**
+     * Returns the maximum number of cached invalid tokens. Defaults to 1000.
+     * 
+     * @return The maximum number of cached invalid tokens.
+     */
+    public long getNegativeCacheMaxSize() {
+        return this.negativeCache.getMaxWeight();
+    }
+
+    /**
+     * Returns the time to live of the cached invalid tokens in seconds.
+     * Defaults to 0, disabling the negative cache.
+     * 
+     * @return The time to live of the cached invalid tokens in seconds.
+     */
+    public int getNegativeCacheTimeToLive() {
+        return negativeCacheTimeToLive;
+    }
+
+    /**
+     * Validates a token against the authorization server.
+     * 
+     * @param authRequest
+     *            The JSON validation request.
+     * @return The validation or null if the authorization server couldn't be
+     *         reached.
+     */
+    private Validation introspect(JSONObject authRequest) {
+        ClientResource authResource = new ClientResource(authReference);
+        JsonRepresentation jsonRepresentation;
+        JSONObject jsonResponse;
+
+        try {
+            logger.fine("Post auth request to auth resource...");
+            Representation resp = authResource.post(new JsonRepresentation(
+                    authRequest));
+            jsonRepresentation = new JsonRepresentation(resp);
+            jsonResponse = jsonRepresentation.getJsonObject();
+        } catch (Exception ex) {
+            logger.log(Level.SEVERE, null, ex);
+            return null;
+        }
+
+        if (jsonResponse.has(OAuthServerResource.ERROR)) {
+            try {
+                String error = jsonResponse
+                        .getString(OAuthServerResource.ERROR);
+                logger.warning(error);
+                logger.warning(jsonResponse
+                        .getString(OAuthServerResource.ERROR_DESC));
+            } catch (JSONException ex) {
+                logger.log(Level.SEVERE, null, ex);
+            }
+            // TODO: Configure challenge request
+            return INVALID;
+        }
+
+        return toValidation(jsonResponse);
+    }
+
     /**
      * @return the acceptBodyMethod
      */
@@ -154,7 +338,172 @@ public class TokenVerifier implements Verifier {
         this.acceptQueryMethod = acceptQueryMethod;
     }
 
+    /**
+     * Sets the maximum number of cached valid tokens.
+     * 
+     * @param cacheMaxSize
+     *            The maximum number of cached valid tokens.
+     */
+    public void setCacheMaxSize(long cacheMaxSize) {
+        this.cache.setMaxWeight(cacheMaxSize);
+    }
+
+    /**
+     * Sets the time to live of the cached valid tokens in seconds. Revoked
+     * tokens might still be accepted during this time. Zero disables the
+     * cache.
+     * 
+     * @param cacheTimeToLive
+     *            The time to live of the cached valid tokens in seconds.
+     */
+    public void setCacheTimeToLive(int cacheTimeToLive) {
+        this.cacheTimeToLive = cacheTimeToLive;
+    }
+
+    /**
+     * Sets the maximum number of cached invalid tokens.
+     * 
+     * @param negativeCacheMaxSize
+     *            The maximum number of cached invalid tokens.
+     */
+    public void setNegativeCacheMaxSize(long negativeCacheMaxSize) {
+        this.negativeCache.setMaxWeight(negativeCacheMaxSize);
+    }
+
+    /**
+     * Sets the time to live of the cached invalid tokens in seconds. Zero
+     * disables the negative cache.
+     * 
+     * @param negativeCacheTimeToLive
+     *            The time to live of the cached invalid tokens in seconds.
+     */
+    public void setNegativeCacheTimeToLive(int negativeCacheTimeToLive) {
+        this.negativeCacheTimeToLive = negativeCacheTimeToLive;
+    }
+
+    /**
+     * Converts a JSON validation response into a validation.
+     * 
+     * @param jsonResponse
+     *            The JSON validation response.
+     * @return The validation.
+     */
+    private Validation toValidation(JSONObject jsonResponse) {
+        try {
+            Validation result = new Validation(
+                    jsonResponse.getString(OAuthServerResource.USERNAME),
+                    jsonResponse.getString(OAuthServerResource.SCOPE));
+
+            if (jsonResponse.has(OAuthServerResource.EXPIRES_IN)) {
+                long expiresIn = jsonResponse
+                        .getLong(OAuthServerResource.EXPIRES_IN);
+                result.expiration = System.currentTimeMillis()
+                        + (expiresIn * 1000L);
+            }
+
+            return result;
+        } catch (JSONException ex) {
+            return INVALID;
+        }
+    }
+
+    /**
+     * Validates a token, either locally, from the cache or against the
+     * authorization server. Concurrent validations of the same token are
+     * coalesced.
+     * 
+     * @param token
+     *            The token.
+     * @param authRequest
+     *            The JSON validation request.
+     * @return The validation or null if the authorization server couldn't be
+     *         reached.
+     */
+    private Validation validate(String token, final JSONObject authRequest) {
+        JSONObject local = validateLocally(token);
+
+        if (local != null) {
+            return toValidation(local);
+        }
+
+        final String key = getKey(token);
+        Validation result = this.cache.get(key);
+
+        if (result == null) {
+            result = this.negativeCache.get(key);
+        }
+
+        if ((result != null)
+                && (result.expiration > System.currentTimeMillis())) {
+            return result;
+        }
+
+        FutureTask<Validation> task = new FutureTask<Validation>(
+                new Callable<Validation>() {
+                    public Validation call() throws Exception {
+                        Validation validation = introspect(authRequest);
+                        int ttl = (validation == null) ? 0 : validation
+                                .isValid() ? getCacheTimeToLive()
+                                : getNegativeCacheTimeToLive();
+
+                        if (ttl > 0) {
+                            if (validation == INVALID) {
+                                validation = new Validation(null, null);
+                            }
+
+                            validation.expiration = Math.min(
+                                    validation.expiration,
+                                    System.currentTimeMillis() + (ttl * 1000L));
+                            (validation.isValid() ? cache : negativeCache)
+                                    .put(key, validation);
+                        }
+
+                        return validation;
+                    }
+                });
+        FutureTask<Validation> current = this.pending.putIfAbsent(key, task);
+
+        if (current == null) {
+            current = task;
+
+            try {
+                task.run();
+            } finally {
+                this.pending.remove(key, task);
+            }
+        }
+
+        try {
+            result = current.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            result = null;
+        } catch (ExecutionException e) {
+            logger.log(Level.SEVERE, null, e.getCause());
+            result = null;
+        }
+
+        return result;
+    }
+
+    /**
+     * Validates a self-contained token, such as a signed one, without
+     * contacting the authorization server. Returns null by default so that
+     * all tokens are validated remotely.
+     * 
+     * @param token
+     *            The token.
+     * @return A JSON object with the same content as the response of the
+     *         authorization server, including the user name, the scope, an
+     *         optional lifetime in seconds or an error, or null to validate
+     *         the token remotely.
+     */
+    protected JSONObject validateLocally(String token) {
+        return null;
+    }
+
     public int verify(Request request, Response response) {
+        final String token;
         final JSONObject authRequest;
 
         try {
@@ -176,6 +525,7 @@ public class TokenVerifier implements Verifier {
                     return RESULT_MISSING;
                 }
                 logger.config("Verify: Bearer (Alternative)");
+                token = bearer;
                 authRequest = createBearerAuthRequest(bearer);
             } else if (ChallengeScheme.HTTP_OAUTH_BEARER.equals(cr.getScheme())) {
                 logger.config("Verify: Bearer");
@@ -183,6 +533,7 @@ public class TokenVerifier implements Verifier {
                 if (bearer == null || bearer.isEmpty()) {
                     return RESULT_MISSING;
                 }
+                token = bearer;
                 authRequest = createBearerAuthRequest(bearer);
             }/*
               * else if (cr.getScheme().equals(HTTP_MAC)) { // TODO }
@@ -193,45 +544,15 @@ public class TokenVerifier implements Verifier {
             return RESULT_INVALID;
         }
 
-        ClientResource authResource = new ClientResource(authReference);
-        JsonRepresentation jsonRepresentation;
-        JSONObject jsonResponse;
-
-        try {
-            logger.fine("Post auth request to auth resource...");
-            Representation resp = authResource.post(new JsonRepresentation(
-                    authRequest));
-            jsonRepresentation = new JsonRepresentation(resp);
-            jsonResponse = jsonRepresentation.getJsonObject();
-        } catch (Exception ex) {
-            logger.log(Level.SEVERE, null, ex);
-            return RESULT_INVALID;
-        }
-
-        if (jsonResponse.has(OAuthServerResource.ERROR)) {
-            try {
-                String error = jsonResponse
-                        .getString(OAuthServerResource.ERROR);
-                logger.warning(error);
-                logger.warning(jsonResponse
-                        .getString(OAuthServerResource.ERROR_DESC));
-            } catch (JSONException ex) {
-                logger.log(Level.SEVERE, null, ex);
-            }
-            // TODO: Configure challenge request
-            return RESULT_INVALID;
-        }
+        Validation validation = validate(token, authRequest);
 
-        try {
-            ClientInfo clientInfo = request.getClientInfo();
-            clientInfo.setUser(new User(jsonResponse
-                    .getString(OAuthServerResource.USERNAME)));
-            clientInfo.setRoles(Scopes.toRoles(jsonResponse
-                    .getString(OAuthServerResource.SCOPE)));
-        } catch (JSONException ex) {
+        if ((validation == null) || !validation.isValid()) {
             return RESULT_INVALID;
         }
 
+        ClientInfo clientInfo = request.getClientInfo();
+        clientInfo.setUser(new User(validation.username));
+        clientInfo.setRoles(Scopes.toRoles(validation.scope));
         return RESULT_VALID;
     }
 }
@@ -38,7 +38,8 @@ import org.restlet.ext.oauth.ResponseType;
  * Helper class to establish an authentication session. The session is created
  * in the AuthorizationResource on initial OAuth request.
  * 
- * At the moment it is not being cleaned up on the server side.
+ * Timed out sessions can be evicted on the server side, see
+ * {@link #isExpired()}.
  * 
  * The cookie that is set will get removed when the browser closes the window.
  * 
@@ -203,6 +204,23 @@ public class AuthSession {
         return (String) getAttribute(STATE);
     }
 
+    /**
+     * Indicates if the session has timed out, without updating its activity.
+     * 
+     * @return True if the session has timed out.
+     */
+    public boolean isExpired() {
+        Number lastActivity = (Number) getAttribute(LAST_ACTIVITY);
+        Number timeout = (Number) getAttribute(TIMEOUT_SEC);
+
+        if ((lastActivity == null) || (timeout == null)) {
+            return false;
+        }
+
+        long delta = System.currentTimeMillis() - lastActivity.longValue();
+        return (delta / 1000) >= timeout.intValue();
+    }
+
     private Object removeAttribute(String name) {
         return attribs.remove(name);
     }
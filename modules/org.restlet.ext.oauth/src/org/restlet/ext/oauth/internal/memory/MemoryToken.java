@@ -67,6 +67,15 @@ public class MemoryToken implements ServerToken {
         return clientId;
     }
 
+    /**
+     * Returns the time when the token expires, in milliseconds.
+     * 
+     * @return The expiration time in milliseconds.
+     */
+    long getExpirationTime() {
+        return timestamp + (expirePeriod * 1000L);
+    }
+
     /**
      * @return the expirePeriod
      */
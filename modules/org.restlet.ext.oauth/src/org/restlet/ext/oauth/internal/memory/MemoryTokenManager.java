@@ -24,10 +24,16 @@
 
 package org.restlet.ext.oauth.internal.memory;
 
-import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 
 import org.restlet.ext.oauth.OAuthError;
 import org.restlet.ext.oauth.OAuthException;
@@ -38,56 +44,122 @@ import org.restlet.ext.oauth.internal.Client;
 import org.restlet.ext.oauth.internal.Token;
 
 /**
- * Memory implementation of TokenManager interface.
+ * Memory implementation of TokenManager interface. The tokens are indexed by
+ * access token, refresh token, client and user name so that lookups don't
+ * depend on the number of live tokens.<br>
+ * <br>
+ * The expired tokens and authorization sessions can be evicted periodically by
+ * passing a scheduler such as the application's TaskService to
+ * {@link #startSweeping(ScheduledExecutorService, long)}. Expired tokens are
+ * kept during a grace period so that they can still be refreshed.
  * 
  * @author Shotaro Uchida <fantom@xmaker.mx>
  */
 public class MemoryTokenManager extends AbstractTokenManager {
 
+    /**
+     * Adds a token to a multi-valued index. The updates of an index are
+     * serialized while the lookups aren't blocked.
+     * 
+     * @param index
+     *            The index.
+     * @param key
+     *            The index key.
+     * @param token
+     *            The token to add.
+     */
+    private static void index(ConcurrentMap<String, Set<MemoryToken>> index,
+            String key, MemoryToken token) {
+        synchronized (index) {
+            Set<MemoryToken> set = index.get(key);
+
+            if (set == null) {
+                set = Collections
+                        .newSetFromMap(new ConcurrentHashMap<MemoryToken, Boolean>());
+                index.put(key, set);
+            }
+
+            set.add(token);
+        }
+    }
+
+    /**
+     * Removes a token from a multi-valued index. The key is removed with its
+     * last token so that the index doesn't grow with the past clients and
+     * users.
+     * 
+     * @param index
+     *            The index.
+     * @param key
+     *            The index key.
+     * @param token
+     *            The token to remove.
+     */
+    private static void unindex(ConcurrentMap<String, Set<MemoryToken>> index,
+            String key, MemoryToken token) {
+        synchronized (index) {
+            Set<MemoryToken> set = index.get(key);
+
+            if ((set != null) && set.remove(token) && set.isEmpty()) {
+                index.remove(key);
+            }
+        }
+    }
+
+    /** The tokens indexed by client identifier. */
+    private final ConcurrentMap<String, Set<MemoryToken>> byClient = new ConcurrentHashMap<String, Set<MemoryToken>>();
+
+    /** The tokens indexed by client identifier and user name. */
+    private final ConcurrentMap<String, MemoryToken> byClientUser = new ConcurrentHashMap<String, MemoryToken>();
+
+    /** The tokens indexed by refresh token. */
+    private final ConcurrentMap<String, MemoryToken> byRefreshToken = new ConcurrentHashMap<String, MemoryToken>();
+
+    /** The tokens indexed by user name. */
+    private final ConcurrentMap<String, Set<MemoryToken>> byUsername = new ConcurrentHashMap<String, Set<MemoryToken>>();
+
     private final Map<String, AuthSession> sessions = new ConcurrentHashMap<String, AuthSession>();
 
+    /** The period in seconds during which expired tokens are kept. */
+    private volatile int sweepGracePeriod = 86400;
+
+    /** The scheduled sweeping task. */
+    private volatile ScheduledFuture<?> sweeper;
+
     private final Map<String, MemoryToken> tokens = new ConcurrentHashMap<String, MemoryToken>();
 
-    public Token findToken(Client client, String username) {
-        for (MemoryToken token : tokens.values()) {
-            if (token.getClientId().equals(client.getClientId())
-                    && ((username == null && token.getUsername() == null) || (username != null && username
-                            .equals(token.getUsername())))) {
-                return token;
-            }
+    /**
+     * Adds a token to the store and its indexes.
+     * 
+     * @param token
+     *            The token to add.
+     */
+    private void add(MemoryToken token) {
+        tokens.put(token.getAccessToken(), token);
+        byClientUser.put(getClientUserKey(token.getClientId(),
+                token.getUsername()), token);
+        index(byClient, token.getClientId(), token);
+
+        if (token.getUsername() != null) {
+            index(byUsername, token.getUsername(), token);
         }
-        return null;
+    }
+
+    public Token findToken(Client client, String username) {
+        return byClientUser.get(getClientUserKey(client.getClientId(),
+                username));
     }
 
     protected MemoryToken findTokenByRefreshToken(String refreshToken) {
-        for (MemoryToken token : tokens.values()) {
-            if (token.getRefreshToken().equals(refreshToken)) {
-                return token;
-            }
-        }
-        return null;
+        return byRefreshToken.get(refreshToken);
     }
 
     public Token[] findTokens(Client client) {
-        ArrayList<Token> list = new ArrayList<Token>();
-        for (MemoryToken token : tokens.values()) {
-            if (/* !token.isExpired() && */
-            token.getClientId().equals(client.getClientId())) {
-                list.add(token);
-            }
-        }
-        return list.toArray(new Token[list.size()]);
+        return toArray(byClient.get(client.getClientId()));
     }
 
     public Token[] findTokens(String username) {
-        ArrayList<Token> list = new ArrayList<Token>();
-        for (MemoryToken token : tokens.values()) {
-            if (/* !token.isExpired() && */
-            token.getUsername() != null && token.getUsername().equals(username)) {
-                list.add(token);
-            }
-        }
-        return list.toArray(new Token[list.size()]);
+        return toArray(byUsername.get(username));
     }
 
     public Token generateToken(Client client, String username, String[] scope)
@@ -101,10 +173,35 @@ public class MemoryTokenManager extends AbstractTokenManager {
         token.setTokenType(OAuthResourceDefs.TOKEN_TYPE_BEARER);
         token.setAccessToken(generateRawToken());
         token.setRefreshToken(generateRawToken());
-        tokens.put(token.getAccessToken(), token);
+        byRefreshToken.put(token.getRefreshToken(), token);
+        add(token);
         return token;
     }
 
+    /**
+     * Returns the key of the client and user name index.
+     * 
+     * @param clientId
+     *            The client identifier.
+     * @param username
+     *            The user name or null.
+     * @return The index key.
+     */
+    private String getClientUserKey(String clientId, String username) {
+        // The client identifier can't contain a line feed
+        return (username == null) ? clientId : clientId + '\n' + username;
+    }
+
+    /**
+     * Returns the period in seconds during which expired tokens are kept by
+     * the sweeper, so that they can still be refreshed. Defaults to one day.
+     * 
+     * @return The grace period in seconds.
+     */
+    public int getSweepGracePeriod() {
+        return sweepGracePeriod;
+    }
+
     public Token refreshToken(Client client, String refreshToken, String[] scope)
             throws OAuthException {
         MemoryToken token = findTokenByRefreshToken(refreshToken);
@@ -152,14 +249,44 @@ public class MemoryTokenManager extends AbstractTokenManager {
             newToken.setRefreshToken(token.getRefreshToken());
         }
 
-        synchronized (this) {
-            if (tokens.remove(token.getAccessToken()) != null) {
-                tokens.put(newToken.getAccessToken(), newToken);
-                return newToken;
+        // Atomically claim the refresh token, only one concurrent refresh wins
+        boolean claimed;
+        if (newToken.getRefreshToken().equals(refreshToken)) {
+            claimed = byRefreshToken.replace(refreshToken, token, newToken);
+        } else {
+            claimed = byRefreshToken.remove(refreshToken, token);
+            if (claimed) {
+                byRefreshToken.put(newToken.getRefreshToken(), newToken);
             }
         }
 
-        return null; // FIXME
+        if (!claimed) {
+            throw new OAuthException(OAuthError.invalid_grant,
+                    "The refresh token was already used.", null);
+        }
+
+        remove(token);
+        add(newToken);
+        return newToken;
+    }
+
+    /**
+     * Removes a token from the store and its indexes, except the refresh token
+     * one.
+     * 
+     * @param token
+     *            The token to remove.
+     */
+    private void remove(MemoryToken token) {
+        tokens.remove(token.getAccessToken());
+        byClientUser.remove(
+                getClientUserKey(token.getClientId(), token.getUsername()),
+                token);
+        unindex(byClient, token.getClientId(), token);
+
+        if (token.getUsername() != null) {
+            unindex(byUsername, token.getUsername(), token);
+        }
     }
 
     public AuthSession restoreSession(String code) throws OAuthException {
@@ -171,22 +298,74 @@ public class MemoryTokenManager extends AbstractTokenManager {
         return session;
     }
 
+    /**
+     * Removes a token from the store and all its indexes.
+     * 
+     * @param token
+     *            The token to revoke.
+     */
+    private void revoke(Token token) {
+        MemoryToken memoryToken = (MemoryToken) token;
+        byRefreshToken.remove(memoryToken.getRefreshToken(), memoryToken);
+        remove(memoryToken);
+    }
+
     public void revokeAllTokens(Client client) {
         for (Token token : findTokens(client)) {
-            tokens.remove(token.getAccessToken());
+            revoke(token);
         }
     }
 
     public void revokeAllTokens(String username) {
         for (Token token : findTokens(username)) {
-            tokens.remove(token.getAccessToken());
+            revoke(token);
         }
     }
 
     public void revokeToken(Client client, String username) {
         Token token = findToken(client, username);
         if (token != null) {
-            tokens.remove(token.getAccessToken());
+            revoke(token);
+        }
+    }
+
+    /**
+     * Sets the period in seconds during which expired tokens are kept by the
+     * sweeper.
+     * 
+     * @param sweepGracePeriod
+     *            The grace period in seconds.
+     */
+    public void setSweepGracePeriod(int sweepGracePeriod) {
+        this.sweepGracePeriod = sweepGracePeriod;
+    }
+
+    /**
+     * Periodically sweeps the expired tokens and sessions, stopping the
+     * previous sweeping task if any.
+     * 
+     * @param scheduler
+     *            The scheduler such as the application's TaskService.
+     * @param period
+     *            The sweeping period in seconds.
+     */
+    public synchronized void startSweeping(ScheduledExecutorService scheduler,
+            long period) {
+        stopSweeping();
+        this.sweeper = scheduler.scheduleWithFixedDelay(new Runnable() {
+            public void run() {
+                sweep();
+            }
+        }, period, period, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Stops the periodic sweeping task if any.
+     */
+    public synchronized void stopSweeping() {
+        if (this.sweeper != null) {
+            this.sweeper.cancel(false);
+            this.sweeper = null;
         }
     }
 
@@ -196,6 +375,39 @@ public class MemoryTokenManager extends AbstractTokenManager {
         return code;
     }
 
+    /**
+     * Evicts the tokens expired for longer than the grace period and the
+     * timed out authorization sessions.
+     */
+    public void sweep() {
+        long now = System.currentTimeMillis();
+        long grace = getSweepGracePeriod() * 1000L;
+
+        for (MemoryToken token : tokens.values()) {
+            if (token.getExpirationTime() + grace < now) {
+                revoke(token);
+            }
+        }
+
+        for (Iterator<AuthSession> iter = sessions.values().iterator(); iter
+                .hasNext();) {
+            if (iter.next().isExpired()) {
+                iter.remove();
+            }
+        }
+    }
+
+    /**
+     * Copies a set of tokens into an array.
+     * 
+     * @param set
+     *            The set of tokens or null.
+     * @return The array of tokens.
+     */
+    private Token[] toArray(Set<MemoryToken> set) {
+        return (set == null) ? new Token[0] : set.toArray(new Token[0]);
+    }
+
     public Token validateToken(String accessToken) throws OAuthException {
         MemoryToken token = tokens.get(accessToken);
         if (token == null) {
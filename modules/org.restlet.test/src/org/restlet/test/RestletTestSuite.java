@@ -67,12 +67,16 @@ import org.restlet.test.representation.AppendableRepresentationTestCase;
 import org.restlet.test.representation.DigesterRepresentationTestCase;
 import org.restlet.test.representation.RangeRepresentationTestCase;
 import org.restlet.test.routing.FilterTestCase;
+import org.restlet.test.routing.LoadBalancingRedirectorTestCase;
 import org.restlet.test.routing.RedirectTestCase;
 import org.restlet.test.routing.RouteListTestCase;
+import org.restlet.test.routing.ScatterGatherTestCase;
 import org.restlet.test.routing.ValidatorTestCase;
 import org.restlet.test.security.HttpBasicTestCase;
+import org.restlet.test.security.MemoryRealmTestCase;
 import org.restlet.test.security.RoleTestCase;
 import org.restlet.test.security.SecurityTestCase;
+import org.restlet.test.security.VerificationCacheTestCase;
 import org.restlet.test.service.ServiceTestSuite;
 import org.restlet.test.util.TemplateTestCase;
 
@@ -112,7 +116,9 @@ public class RestletTestSuite extends TestSuite {
         addTestSuite(JaxbBasicConverterTestCase.class);
         addTestSuite(JaxbIntegrationConverterTestCase.class);
         addTestSuite(LanguageTestCase.class);
+        addTestSuite(LoadBalancingRedirectorTestCase.class);
         addTestSuite(MediaTypeTestCase.class);
+        addTestSuite(MemoryRealmTestCase.class);
         addTestSuite(ProductTokenTestCase.class);
         addTestSuite(ReferenceTestCase.class);
         addTestSuite(RestartTestCase.class);
@@ -121,9 +127,11 @@ public class RestletTestSuite extends TestSuite {
         addTestSuite(DigestVerifierTestCase.class);
         addTestSuite(RecipientInfoTestCase.class);
         addTestSuite(RoleTestCase.class);
+        addTestSuite(ScatterGatherTestCase.class);
         addTestSuite(StatusTestCase.class);
         addTestSuite(TemplateTestCase.class);
         addTestSuite(ValidatorTestCase.class);
+        addTestSuite(VerificationCacheTestCase.class);
         addTestSuite(VelocityTestCase.class);
         addTest(RegressionTestSuite.suite());
         addTest(CryptoTestSuite.suite());
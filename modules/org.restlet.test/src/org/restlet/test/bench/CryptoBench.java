@@ -0,0 +1,121 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or or EPL 1.0 (the "Licenses"). You can
+ * select the license that you prefer but you may not use this file except in
+ * compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+
+package org.restlet.test.bench;
+
+import java.security.MessageDigest;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.restlet.ext.crypto.internal.CryptoPrimitives;
+
+/**
+ * Compares the cost of creating the cryptographic primitives for each call
+ * with reusing the ones cached per thread by {@link CryptoPrimitives}.
+ * 
+ * @author Jerome Louvel
+ */
+public class CryptoBench {
+
+    private static final int ITERATIONS = 200000;
+
+    private static final byte[] KEY = "uV3F3YluFJax1cknvbcGwgjvx4QpvB+leU8dUj2o"
+            .getBytes();
+
+    private static final byte[] MESSAGE = ("GET\n\n\nTue, 27 Mar 2007 19:36:42 +0000\n"
+            + "/johnsmith/photos/puppy.jpg").getBytes();
+
+    private static long cachedDigest() throws Exception {
+        long result = 0;
+
+        for (int i = 0; i < ITERATIONS; i++) {
+            result += CryptoPrimitives.digest("MD5", MESSAGE)[0];
+        }
+
+        return result;
+    }
+
+    private static long cachedMac() throws Exception {
+        long result = 0;
+
+        for (int i = 0; i < ITERATIONS; i++) {
+            result += CryptoPrimitives.mac("HmacSHA256", KEY, MESSAGE)[0];
+        }
+
+        return result;
+    }
+
+    public static void main(String[] args) throws Exception {
+        // Warm up
+        for (int i = 0; i < 3; i++) {
+            newDigest();
+            cachedDigest();
+            newMac();
+            cachedMac();
+        }
+
+        long start = System.nanoTime();
+        newDigest();
+        print("MessageDigest, new instance", start);
+        start = System.nanoTime();
+        cachedDigest();
+        print("MessageDigest, cached instance", start);
+        start = System.nanoTime();
+        newMac();
+        print("HmacSHA256, new instance", start);
+        start = System.nanoTime();
+        cachedMac();
+        print("HmacSHA256, cached instance", start);
+    }
+
+    private static long newDigest() throws Exception {
+        long result = 0;
+
+        for (int i = 0; i < ITERATIONS; i++) {
+            result += MessageDigest.getInstance("MD5").digest(MESSAGE)[0];
+        }
+
+        return result;
+    }
+
+    private static long newMac() throws Exception {
+        long result = 0;
+
+        for (int i = 0; i < ITERATIONS; i++) {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(KEY, "HmacSHA256"));
+            result += mac.doFinal(MESSAGE)[0];
+        }
+
+        return result;
+    }
+
+    private static void print(String name, long start) {
+        long duration = System.nanoTime() - start;
+        System.out.println(name + ": " + (duration / ITERATIONS) + " ns/op");
+    }
+
+}
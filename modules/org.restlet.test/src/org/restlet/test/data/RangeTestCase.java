@@ -25,6 +25,7 @@
 package org.restlet.test.data;
 
 import java.io.File;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 
@@ -443,14 +444,86 @@ public class RangeTestCase extends RestletTestCase {
         assertTrue(response.getStatus().isSuccess());
         response.getEntity().exhaust();
 
-        // Multiple ranges are not supported yet.
-        // request = new Request(Method.GET, "http://localhost:" + TEST_PORT
-        // + "/test?range=500-1000&range=500-");
-        // request.setRanges(Arrays.asList(new Range(500, 500), new Range(500,
-        // Range.SIZE_MAX)));
-        // assertTrue(client.handle(request).getStatus().isSuccess());
+        // Overlapping ranges are coalesced.
+        request = new Request(Method.GET, "http://localhost:" + TEST_PORT
+                + "/test?range=500-1000&range=500-");
+        request.setRanges(Arrays.asList(new Range(500, 500), new Range(500,
+                Range.SIZE_MAX)));
+        response = client.handle(request);
+        assertEquals(Status.SUCCESS_PARTIAL_CONTENT, response.getStatus());
+        assertEquals(500, response.getEntity().getText().length());
+
+        client.stop();
+    }
+
+    /**
+     * Tests multiple ranges requests.
+     * 
+     * @throws Exception
+     */
+    public void testMultipleRanges() throws Exception {
+        Client client = new Client(Protocol.HTTP);
+        Request request = new Request(Method.GET, "http://localhost:"
+                + TEST_PORT + "/testGet");
+        request.setRanges(Arrays.asList(new Range(0, 2), new Range(5, 2),
+                new Range(Range.INDEX_LAST, 1)));
+        Response response = client.handle(request);
+        assertEquals(Status.SUCCESS_PARTIAL_CONTENT, response.getStatus());
+        assertTrue(MediaType.MULTIPART_BYTERANGES.equals(response.getEntity()
+                .getMediaType(), true));
+        String boundary = response.getEntity().getMediaType().getParameters()
+                .getFirstValue("boundary");
+        assertNotNull(boundary);
+
+        String text = response.getEntity().getText();
+        assertEquals("\r\n--" + boundary + "\r\n"
+                + "Content-Type: text/plain; charset=UTF-8\r\n"
+                + "Content-Range: bytes 0-1/10\r\n\r\n12\r\n--" + boundary
+                + "\r\nContent-Type: text/plain; charset=UTF-8\r\n"
+                + "Content-Range: bytes 5-6/10\r\n\r\n67\r\n--" + boundary
+                + "\r\nContent-Type: text/plain; charset=UTF-8\r\n"
+                + "Content-Range: bytes 9-9/10\r\n\r\n0\r\n--" + boundary
+                + "--\r\n", text);
+
+        // Unsatisfiable ranges
+        request = new Request(Method.GET, "http://localhost:" + TEST_PORT
+                + "/testGet");
+        request.setRanges(Arrays.asList(new Range(20, 2), new Range(30, 2)));
+        response = client.handle(request);
+        assertEquals(Status.CLIENT_ERROR_REQUESTED_RANGE_NOT_SATISFIABLE,
+                response.getStatus());
+
+        // Unordered ranges of an entity that can't be positioned
+        request = new Request(Method.GET, "http://localhost:" + TEST_PORT
+                + "/testGet");
+        request.setRanges(Arrays.asList(new Range(5, 2), new Range(0, 2)));
+        response = client.handle(request);
+        assertEquals(Status.SUCCESS_OK, response.getStatus());
+        assertEquals("1234567890", response.getEntity().getText());
+
+        // Too many ranges
+        List<Range> ranges = new ArrayList<Range>();
+
+        for (int i = 0; i < 17; i += 2) {
+            ranges.add(new Range(i % 10, 1));
+        }
+
+        request = new Request(Method.GET, "http://localhost:" + TEST_PORT
+                + "/testGet");
+        request.setRanges(ranges);
+        response = client.handle(request);
+        assertEquals(Status.SUCCESS_PARTIAL_CONTENT, response.getStatus());
 
-        // client.stop();
+        for (int i = 0; i < 16; i++) {
+            ranges.add(new Range(i % 10, 1));
+        }
 
+        request = new Request(Method.GET, "http://localhost:" + TEST_PORT
+                + "/testGet");
+        request.setRanges(ranges);
+        response = client.handle(request);
+        assertEquals(Status.SUCCESS_OK, response.getStatus());
+        assertEquals("1234567890", response.getEntity().getText());
+        client.stop();
     }
 }
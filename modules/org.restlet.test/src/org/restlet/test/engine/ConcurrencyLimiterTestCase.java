@@ -0,0 +1,94 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or or EPL 1.0 (the "Licenses"). You can
+ * select the license that you prefer but you may not use this file except in
+ * compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+package org.restlet.test.engine;
+
+import org.restlet.engine.adapter.ConcurrencyLimiter;
+import org.restlet.test.RestletTestCase;
+
+/**
+ * Test case for the {@link ConcurrencyLimiter} of the server connectors.
+ * 
+ * @author Jerome Louvel
+ */
+public class ConcurrencyLimiterTestCase extends RestletTestCase {
+
+    /**
+     * Handles a number of concurrent calls with the same latency.
+     */
+    private void saturate(ConcurrencyLimiter limiter, long latency, int rounds) {
+        for (int round = 0; round < rounds; round++) {
+            int admitted = 0;
+
+            while (limiter.acquire("GET", "/")) {
+                admitted++;
+            }
+
+            for (int i = 0; i < admitted; i++) {
+                limiter.release(latency, false);
+            }
+        }
+    }
+
+    public void testAdmission() {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(4, 1, 10,
+                "DELETE, /reports", 0.5);
+
+        assertTrue(limiter.acquire("DELETE", "/items/1"));
+        assertTrue(limiter.acquire("GET", "http://host/reports/1"));
+        assertFalse(limiter.acquire("delete", "/items/2"));
+        assertTrue(limiter.acquire("GET", "/items"));
+        assertTrue(limiter.acquire("GET", "/items"));
+        assertFalse(limiter.acquire("GET", "/items"));
+        assertEquals(4, limiter.getInFlight());
+        assertEquals(2, limiter.getRejected());
+
+        limiter.release(1000000L, false);
+        assertEquals(3, limiter.getInFlight());
+        assertTrue(limiter.acquire("GET", "/items"));
+    }
+
+    public void testAdaptation() {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(20, 4, 200, null,
+                1);
+
+        // Steady latency, the limit grows
+        saturate(limiter, 1000000L, 50);
+        int grown = limiter.getLimit();
+        assertTrue(grown > 20);
+
+        // Latency rising, the limit shrinks
+        saturate(limiter, 10000000L, 20);
+        assertTrue(limiter.getLimit() < grown);
+
+        // Overloads shrink the limit down to the minimum
+        for (int i = 0; i < 1000; i++) {
+            limiter.acquire("GET", "/");
+            limiter.release(0L, true);
+        }
+
+        assertEquals(4, limiter.getLimit());
+    }
+
+}
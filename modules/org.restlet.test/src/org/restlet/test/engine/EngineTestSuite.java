@@ -30,6 +30,8 @@ import junit.framework.TestSuite;
 import org.restlet.test.engine.connector.ConnectorsTestSuite;
 import org.restlet.test.engine.io.BioUtilsTestCase;
 import org.restlet.test.engine.io.ReaderInputStreamTestCase;
+import org.restlet.test.engine.io.RelayRepresentationTestCase;
+import org.restlet.test.engine.ssl.DefaultSslContextFactoryTestCase;
 import org.restlet.test.engine.util.Base64TestCase;
 
 /**
@@ -57,6 +59,7 @@ public class EngineTestSuite extends TestSuite {
         addTestSuite(BioUtilsTestCase.class);
         addTestSuite(CookiesTestCase.class);
         addTestSuite(ContentTypeTestCase.class);
+        addTestSuite(ConcurrencyLimiterTestCase.class);
         addTestSuite(HeaderTestCase.class);
         addTestSuite(HttpCallTestCase.class);
         addTestSuite(ImmutableDateTestCase.class);
@@ -64,6 +67,7 @@ public class EngineTestSuite extends TestSuite {
         addTestSuite(UnclosableOutputStreamTestCase.class);
         addTestSuite(PreferencesTestCase.class);
         addTestSuite(ReaderInputStreamTestCase.class);
+        addTestSuite(RelayRepresentationTestCase.class);
 
         // Tests based on HTTP client connectors are not supported by the GAE
         // edition.
@@ -75,6 +79,7 @@ public class EngineTestSuite extends TestSuite {
 
         // [ifdef jse]
         addTest(ConnectorsTestSuite.suite());
+        addTestSuite(DefaultSslContextFactoryTestCase.class);
         // [enddef]
     }
 }
@@ -456,4 +456,52 @@ public class TunnelFilterTestCase extends RestletTestCase {
         assertMediaTypes(MediaType.TEXT_PLAIN);
     }
 
+    public void testQueryTunnelingFastPath() {
+        tunnelFilter.getTunnelService().setExtensionsTunnel(false);
+        tunnelFilter.getTunnelService().setPreferencesTunnel(true);
+        tunnelFilter.getTunnelService().setQueryTunnel(true);
+        tunnelFilter.getTunnelService().setUserAgentTunnel(false);
+
+        // Queries without tunnel parameters are left untouched
+        String query = "http://example.org/?a=b+c&mediatype=txt&x";
+        createGet(query);
+        filter();
+        assertEquals(query, this.request.getResourceRef().toString());
+        assertMediaTypes();
+
+        // Escapes and separators of the values aren't part of the names
+        query = "http://example.org/?x&a=b%20c=d&q=media";
+        createGet(query);
+        filter();
+        assertEquals(query, this.request.getResourceRef().toString());
+        assertMediaTypes();
+
+        // Encoded parameter names are still tunneled
+        createGet("http://example.org/?a=b&%6Dedia=txt");
+        filter();
+        assertEquals("http://example.org/?a=b", this.request.getResourceRef()
+                .toString());
+        assertMediaTypes(MediaType.TEXT_PLAIN);
+    }
+
+    public void testUserAgentTunnelingCache() {
+        tunnelFilter.getTunnelService().setExtensionsTunnel(false);
+        tunnelFilter.getTunnelService().setQueryTunnel(false);
+        tunnelFilter.getTunnelService().setUserAgentTunnel(true);
+        this.userAgent = "Mozilla/4.0 (compatible; MSIE 8.0; Windows NT 6.1; Trident/4.0)";
+
+        for (int i = 0; i < 2; i++) {
+            createGet(UNEFFECTED);
+            filter();
+            assertMediaTypes(MediaType.TEXT_HTML, MediaType.APPLICATION_XHTML,
+                    MediaType.APPLICATION_XML, MediaType.ALL);
+        }
+
+        // Other user agents don't reuse the cached rules
+        this.userAgent = "curl/7.35.0";
+        createGet(UNEFFECTED);
+        filter();
+        assertMediaTypes();
+    }
+
 }
@@ -0,0 +1,142 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or or EPL 1.0 (the "Licenses"). You can
+ * select the license that you prefer but you may not use this file except in
+ * compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+package org.restlet.test.engine.io;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+
+import org.restlet.Context;
+import org.restlet.Request;
+import org.restlet.Response;
+import org.restlet.Restlet;
+import org.restlet.data.Method;
+import org.restlet.engine.io.RelayRepresentation;
+import org.restlet.representation.StringRepresentation;
+import org.restlet.routing.Redirector;
+import org.restlet.test.RestletTestCase;
+
+/**
+ * Test case for the {@link RelayRepresentation} class and the streaming mode
+ * of the {@link Redirector}.
+ * 
+ * @author Jerome Louvel
+ */
+public class RelayRepresentationTestCase extends RestletTestCase {
+
+    /** Output stream counting the flushes. */
+    private static class FlushCountingOutputStream extends
+            ByteArrayOutputStream {
+        int flushes;
+
+        @Override
+        public void flush() throws IOException {
+            flushes++;
+        }
+    }
+
+    public void testRedirectorStreaming() throws IOException {
+        Context context = new Context();
+        context.setClientDispatcher(new Restlet() {
+            @Override
+            public void handle(Request request, Response response) {
+                response.setEntity(new StringRepresentation("0123456789"));
+            }
+        });
+
+        Redirector redirector = new Redirector(context, "http://target/{rr}");
+        redirector.setStreaming(true);
+        redirector.setStreamingBufferSize(4);
+
+        Request request = new Request(Method.POST, "http://proxy/path",
+                new StringRepresentation("abcdef"));
+        Response response = new Response(request);
+        redirector.handle(request, response);
+
+        assertTrue(response.getEntity() instanceof RelayRepresentation);
+        FlushCountingOutputStream out = new FlushCountingOutputStream();
+        response.getEntity().write(out);
+
+        assertEquals("0123456789", out.toString());
+        assertEquals(1, redirector.getServerCalls());
+        assertEquals(10, redirector.getStreamedResponseBytes());
+        assertEquals(0, redirector.getStreamedRequestBytes());
+    }
+
+    public void testRead() throws IOException {
+        final long[] relayed = new long[] { -1L };
+        RelayRepresentation relay = new RelayRepresentation(
+                new StringRepresentation("0123456789")) {
+            @Override
+            protected void afterRelay(long bytes, long duration) {
+                relayed[0] = bytes;
+            }
+        };
+
+        // The relaying ends when the stream is closed
+        InputStream stream = relay.getStream();
+        assertEquals('0', stream.read());
+        assertEquals(4, stream.read(new byte[4]));
+        assertEquals(-1L, relayed[0]);
+        stream.close();
+        stream.close();
+        assertEquals(5, relayed[0]);
+        assertFalse(relay.isAvailable());
+
+        relay = new RelayRepresentation(
+                new StringRepresentation("0123456789")) {
+            @Override
+            protected void afterRelay(long bytes, long duration) {
+                relayed[0] = bytes;
+            }
+        };
+        Reader reader = relay.getReader();
+        char[] chars = new char[16];
+        assertEquals(10, reader.read(chars));
+        reader.close();
+        assertEquals(10, relayed[0]);
+    }
+
+    public void testRelay() throws IOException {
+        final long[] relayed = new long[1];
+        RelayRepresentation relay = new RelayRepresentation(
+                new StringRepresentation("0123456789"), 4) {
+            @Override
+            protected void afterRelay(long bytes, long duration) {
+                relayed[0] = bytes;
+            }
+        };
+
+        assertEquals(10, relay.getSize());
+        FlushCountingOutputStream out = new FlushCountingOutputStream();
+        relay.write(out);
+
+        assertEquals("0123456789", out.toString());
+        assertEquals(10, relayed[0]);
+        assertTrue(out.flushes >= 3);
+    }
+
+}
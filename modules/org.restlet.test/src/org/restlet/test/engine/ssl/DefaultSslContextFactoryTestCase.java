@@ -0,0 +1,260 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or or EPL 1.0 (the "Licenses"). You can
+ * select the license that you prefer but you may not use this file except in
+ * compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+package org.restlet.test.engine.ssl;
+
+import java.io.File;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+
+import javax.net.ssl.HttpsURLConnection;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLServerSocket;
+import javax.net.ssl.SSLSocket;
+
+import org.restlet.Client;
+import org.restlet.Context;
+import org.restlet.data.Parameter;
+import org.restlet.data.Protocol;
+import org.restlet.engine.connector.HttpClientHelper;
+import org.restlet.engine.connector.HttpUrlConnectionCall;
+import org.restlet.engine.ssl.DefaultSslContext;
+import org.restlet.engine.ssl.DefaultSslContextFactory;
+import org.restlet.engine.ssl.HandshakeStatistics;
+import org.restlet.engine.ssl.SslContextFactory;
+import org.restlet.engine.ssl.SslUtils;
+import org.restlet.test.RestletTestCase;
+import org.restlet.util.Series;
+
+/**
+ * Unit tests for the reuse, session settings and reloading of the SSL contexts
+ * created by the {@link DefaultSslContextFactory}.
+ * 
+ * @author Jerome Louvel
+ */
+public class DefaultSslContextFactoryTestCase extends RestletTestCase {
+
+    /** The temporary copy of the test keystore. */
+    private File keyStoreFile;
+
+    private DefaultSslContextFactory createClientFactory() {
+        DefaultSslContextFactory result = new DefaultSslContextFactory();
+        result.setKeyStorePath("NONE");
+        result.setKeyStoreType("JKS");
+        result.setTrustStorePath(this.keyStoreFile.getPath());
+        result.setTrustStorePassword("testtest");
+        result.setTrustStoreType("JKS");
+        return result;
+    }
+
+    private DefaultSslContextFactory createServerFactory() {
+        DefaultSslContextFactory result = new DefaultSslContextFactory();
+        result.setKeyStorePath(this.keyStoreFile.getPath());
+        result.setKeyStorePassword("testtest");
+        result.setKeyStoreKeyPassword("testtest");
+        result.setKeyStoreType("JKS");
+        result.setTrustStorePath(null);
+        result.setTrustStoreType(null);
+        return result;
+    }
+
+    /**
+     * Performs a handshake between a client and a server socket.
+     */
+    private void handshake(SSLContext server, SSLContext client)
+            throws Exception {
+        final SSLServerSocket serverSocket = (SSLServerSocket) server
+                .getServerSocketFactory().createServerSocket(0, 1,
+                        InetAddress.getLoopbackAddress());
+        final Exception[] error = new Exception[1];
+        Thread acceptor = new Thread() {
+            public void run() {
+                try {
+                    SSLSocket socket = (SSLSocket) serverSocket.accept();
+                    socket.startHandshake();
+                    socket.getInputStream().read();
+                    socket.close();
+                } catch (Exception e) {
+                    error[0] = e;
+                }
+            }
+        };
+        acceptor.start();
+
+        try {
+            SSLSocket socket = (SSLSocket) client.getSocketFactory()
+                    .createSocket(InetAddress.getLoopbackAddress(),
+                            serverSocket.getLocalPort());
+            socket.startHandshake();
+            socket.close();
+            acceptor.join(10000);
+        } finally {
+            serverSocket.close();
+        }
+
+        if (error[0] != null) {
+            throw error[0];
+        }
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        this.keyStoreFile = File.createTempFile("restlet", ".jks");
+        InputStream in = getClass().getResourceAsStream(
+                "/org/restlet/test/engine/connector/dummy.jks");
+
+        try {
+            Files.copy(in, this.keyStoreFile.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            in.close();
+        }
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        this.keyStoreFile.delete();
+        super.tearDown();
+    }
+
+    public void testCipherSuitesOrder() {
+        DefaultSslContextFactory factory = new DefaultSslContextFactory();
+        factory.setEnabledCipherSuites(new String[] { "C", "A", "X", "B" });
+        factory.setDisabledCipherSuites(new String[] { "B" });
+        assertEquals(Arrays.asList("C", "A"), Arrays.asList(factory
+                .getSelectedCipherSuites(new String[] { "A", "B", "C" })));
+
+        factory.setEnabledCipherSuites(null);
+        assertEquals(Arrays.asList("A", "C"), Arrays.asList(factory
+                .getSelectedCipherSuites(new String[] { "A", "B", "C" })));
+    }
+
+    public void testClientCalls() throws Exception {
+        Client client = new Client(new Context(), Protocol.HTTPS);
+        Series<Parameter> parameters = client.getContext().getParameters();
+        parameters.add("trustStorePath", this.keyStoreFile.getPath());
+        parameters.add("trustStorePassword", "testtest");
+        parameters.add("trustStoreType", "JKS");
+        HttpClientHelper helper = new HttpClientHelper(client);
+
+        // Consecutive calls reuse the factory and its SSL context
+        HttpUrlConnectionCall first = new HttpUrlConnectionCall(helper,
+                "GET", "https://localhost/", false);
+        SslContextFactory factory = SslUtils.getSslContextFactory(helper);
+        SSLContext context = factory.createSslContext();
+        HttpUrlConnectionCall second = new HttpUrlConnectionCall(helper,
+                "GET", "https://localhost/", false);
+        assertSame(factory, SslUtils.getSslContextFactory(helper));
+        assertSame(context, factory.createSslContext());
+        assertNotNull(((HttpsURLConnection) first.getConnection())
+                .getSSLSocketFactory());
+        assertNotNull(((HttpsURLConnection) second.getConnection())
+                .getSSLSocketFactory());
+    }
+
+    public void testFullHandshakes() throws Exception {
+        DefaultSslContextFactory serverFactory = createServerFactory();
+        serverFactory.setReuseSslContext(false);
+        SSLContext server = serverFactory.createSslContext();
+        SSLContext client = createClientFactory().createSslContext();
+        HandshakeStatistics statistics = ((DefaultSslContext) server)
+                .getHandshakeStatistics();
+
+        handshake(server, client);
+        assertEquals(1, statistics.getFullHandshakeCount());
+
+        // The second session is resumed
+        handshake(server, client);
+        assertTrue(statistics.getFullHandshakeCount() <= 2);
+    }
+
+    public void testReload() throws Exception {
+        DefaultSslContextFactory factory = createServerFactory();
+        factory.setReloadCheckInterval(1);
+        factory.setReuseSslContext(false);
+        DefaultSslContext context = (DefaultSslContext) factory
+                .createSslContext();
+        SSLContext client = createClientFactory().createSslContext();
+
+        assertTrue(this.keyStoreFile.setLastModified(this.keyStoreFile
+                .lastModified() - 10000));
+        Thread.sleep(5);
+        context.createSSLEngine();
+        assertEquals(1, context.getHandshakeStatistics().getReloadCount());
+
+        // The reloaded context is functional
+        handshake(context, client);
+
+        // A broken store is ignored and the current context kept
+        Files.write(this.keyStoreFile.toPath(), new byte[] { 1, 2, 3 });
+        assertTrue(this.keyStoreFile.setLastModified(this.keyStoreFile
+                .lastModified() - 20000));
+        Thread.sleep(5);
+        context.createSSLEngine();
+        assertEquals(1, context.getHandshakeStatistics().getReloadCount());
+        handshake(context, client);
+    }
+
+    public void testReuse() throws Exception {
+        DefaultSslContextFactory factory = createServerFactory();
+        SSLContext context = factory.createSslContext();
+        assertSame(context, factory.createSslContext());
+
+        factory.setSessionTimeout(60);
+        SSLContext timed = factory.createSslContext();
+        assertNotSame(context, timed);
+        assertSame(timed, factory.createSslContext());
+
+        DefaultSslContextFactory other = createServerFactory();
+        other.setSessionTimeout(60);
+        assertNotSame(context, other.createSslContext());
+
+        other = createServerFactory();
+        other.setReuseSslContext(false);
+        assertNotSame(context, other.createSslContext());
+
+        // A modified store file isn't reused
+        assertTrue(this.keyStoreFile.setLastModified(this.keyStoreFile
+                .lastModified() - 10000));
+        assertNotSame(timed, factory.createSslContext());
+    }
+
+    public void testSessionContext() throws Exception {
+        DefaultSslContextFactory factory = createServerFactory();
+        factory.setSessionCacheSize(100);
+        factory.setSessionTimeout(60);
+        SSLContext context = factory.createSslContext();
+
+        assertEquals(100, context.getServerSessionContext()
+                .getSessionCacheSize());
+        assertEquals(60, context.getServerSessionContext().getSessionTimeout());
+        assertEquals(100, context.getClientSessionContext()
+                .getSessionCacheSize());
+    }
+
+}
@@ -0,0 +1,107 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or or EPL 1.0 (the "Licenses"). You can
+ * select the license that you prefer but you may not use this file except in
+ * compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+
+package org.restlet.test.ext.crypto;
+
+import java.security.GeneralSecurityException;
+
+import javax.crypto.Cipher;
+
+import org.restlet.engine.io.IoUtils;
+import org.restlet.ext.crypto.DigestUtils;
+import org.restlet.ext.crypto.internal.CryptoPrimitives;
+import org.restlet.ext.crypto.internal.CryptoUtils;
+import org.restlet.test.RestletTestCase;
+
+/**
+ * Unit tests for {@link CryptoPrimitives}.
+ * 
+ * @author Jerome Louvel
+ */
+public class CryptoPrimitivesTestCase extends RestletTestCase {
+
+    private static final byte[] DATA = "what do ya want for nothing?"
+            .getBytes();
+
+    private static final byte[] KEY = "Jefe".getBytes();
+
+    private static String hex(byte[] bytes) {
+        return IoUtils.toHexString(bytes).toLowerCase();
+    }
+
+    public void testCipher() throws Exception {
+        byte[] key = "0123456789abcdef".getBytes();
+        byte[] encrypted = CryptoUtils.encrypt("AES", key, "secret content");
+        assertEquals("secret content",
+                CryptoUtils.decrypt("AES", key, encrypted));
+
+        try {
+            CryptoPrimitives.doFinal("AES", key, Cipher.DECRYPT_MODE,
+                    new byte[] { 1, 2, 3 });
+            fail("GeneralSecurityException expected");
+        } catch (GeneralSecurityException e) {
+            // Expected
+        }
+
+        // The failed cipher mustn't be reused
+        assertEquals("secret content",
+                CryptoUtils.decrypt("AES", key, encrypted));
+    }
+
+    public void testDigest() throws Exception {
+        assertEquals("68e109f0f40ca72a15e05cc22786f8e6",
+                DigestUtils.toMd5("HelloWorld"));
+        assertSame(CryptoPrimitives.getDigest("MD5"),
+                CryptoPrimitives.getDigest("MD5"));
+        assertEquals("68e109f0f40ca72a15e05cc22786f8e6",
+                DigestUtils.toMd5("HelloWorld"));
+    }
+
+    public void testMac() throws Exception {
+        // Test vectors from RFC 2202 and RFC 4231
+        assertEquals("effcdf6ae5eb2fa2d27416d5f184df9c259a7c79",
+                hex(DigestUtils.toHMacSha1(DATA, KEY)));
+        assertEquals(
+                "5bdcc146bf60754e6a042426089575c75a003f089d2739839dec58b964ec3843",
+                hex(DigestUtils.toHMacSha256(DATA, KEY)));
+        assertEquals(
+                "5bdcc146bf60754e6a042426089575c75a003f089d2739839dec58b964ec3843",
+                hex(DigestUtils.toHMacSha256(
+                        "what do ya want for nothing?", "Jefe")));
+
+        // Instances are reused per key
+        assertSame(CryptoPrimitives.getMac("HmacSHA1", KEY),
+                CryptoPrimitives.getMac("HmacSHA1", KEY.clone()));
+
+        // Mutating a key after use doesn't affect the cached instances
+        byte[] key = KEY.clone();
+        DigestUtils.toHMacSha1(DATA, key);
+        key[0] = 'X';
+        assertFalse("effcdf6ae5eb2fa2d27416d5f184df9c259a7c79"
+                .equals(hex(DigestUtils.toHMacSha1(DATA, key))));
+        assertEquals("effcdf6ae5eb2fa2d27416d5f184df9c259a7c79",
+                hex(DigestUtils.toHMacSha1(DATA, KEY)));
+    }
+}
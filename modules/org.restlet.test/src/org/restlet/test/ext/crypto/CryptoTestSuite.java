@@ -39,9 +39,11 @@ public class CryptoTestSuite extends TestCase {
         TestSuite result = new TestSuite();
         result.setName("Crypto extension");
         result.addTestSuite(CookieAuthenticatorTestCase.class);
+        result.addTestSuite(CryptoPrimitivesTestCase.class);
         result.addTestSuite(HttpAwsS3HostNameTestCase.class);
         result.addTestSuite(HttpAwsS3SigningTestCase.class);
         result.addTestSuite(HttpAwsS3VerifierTestCase.class);
+        result.addTestSuite(HttpDigestNoncesTestCase.class);
         return result;
     }
 
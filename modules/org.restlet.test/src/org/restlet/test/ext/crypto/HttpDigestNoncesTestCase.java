@@ -0,0 +1,104 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or or EPL 1.0 (the "Licenses"). You can
+ * select the license that you prefer but you may not use this file except in
+ * compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+
+package org.restlet.test.ext.crypto;
+
+import org.restlet.ext.crypto.internal.HttpDigestNonces;
+import org.restlet.security.Verifier;
+import org.restlet.test.RestletTestCase;
+
+/**
+ * Unit tests for {@link HttpDigestNonces}.
+ * 
+ * @author Jerome Louvel
+ */
+public class HttpDigestNoncesTestCase extends RestletTestCase {
+
+    public void testCapacity() {
+        HttpDigestNonces nonces = new HttpDigestNonces("key", 3);
+        assertEquals(4, nonces.getCapacity());
+
+        nonces = new HttpDigestNonces("key", 2);
+        String nonce1 = nonces.generate();
+        nonces.generate();
+        String nonce3 = nonces.generate();
+
+        // Both nonces share the same slot, the most recent one wins
+        assertEquals(Verifier.RESULT_VALID, nonces.verifyCount(nonce3, 1));
+        assertEquals(Verifier.RESULT_STALE, nonces.verifyCount(nonce1, 1));
+        assertEquals(Verifier.RESULT_VALID, nonces.verifyCount(nonce3, 2));
+    }
+
+    public void testCount() {
+        HttpDigestNonces nonces = new HttpDigestNonces("key", 16);
+        String nonce = nonces.generate();
+
+        assertEquals(Verifier.RESULT_VALID, nonces.verifyCount(nonce, 1));
+        assertEquals(Verifier.RESULT_INVALID, nonces.verifyCount(nonce, 1));
+        assertEquals(Verifier.RESULT_VALID, nonces.verifyCount(nonce, 3));
+
+        // Out of order requests
+        assertEquals(Verifier.RESULT_VALID, nonces.verifyCount(nonce, 2));
+        assertEquals(Verifier.RESULT_INVALID, nonces.verifyCount(nonce, 2));
+        assertEquals(Verifier.RESULT_VALID, nonces.verifyCount(nonce, 100));
+        assertEquals(Verifier.RESULT_INVALID, nonces.verifyCount(nonce, 4));
+        assertEquals(Verifier.RESULT_VALID, nonces.verifyCount(nonce, 37));
+        assertEquals(Verifier.RESULT_INVALID, nonces.verifyCount(nonce, 37));
+
+        // Counts of distinct nonces are independent
+        assertEquals(Verifier.RESULT_VALID,
+                nonces.verifyCount(nonces.generate(), 1));
+    }
+
+    public void testResize() {
+        HttpDigestNonces nonces = new HttpDigestNonces(null, 16);
+        String nonce = nonces.generate();
+        HttpDigestNonces resized = nonces.resize(64);
+        assertEquals(64, resized.getCapacity());
+
+        // The random key is kept
+        assertEquals(Verifier.RESULT_VALID, resized.verify(nonce, 60000L));
+        assertEquals(Verifier.RESULT_VALID, resized.verifyCount(nonce, 1));
+        assertFalse(nonce.equals(resized.generate()));
+    }
+
+    public void testVerify() throws Exception {
+        HttpDigestNonces nonces = new HttpDigestNonces("key", 16);
+        String nonce = nonces.generate();
+
+        assertFalse(nonce.equals(nonces.generate()));
+        assertEquals(Verifier.RESULT_VALID, nonces.verify(nonce, 60000L));
+        assertEquals(Verifier.RESULT_STALE, nonces.verify(nonce, 0L));
+        assertEquals(Verifier.RESULT_INVALID,
+                new HttpDigestNonces("other", 16).verify(nonce, 60000L));
+        assertEquals(Verifier.RESULT_INVALID, nonces.verify(null, 60000L));
+        assertEquals(Verifier.RESULT_INVALID, nonces.verify("abcd", 60000L));
+
+        char[] tampered = nonce.toCharArray();
+        tampered[2] = (tampered[2] == 'A') ? 'B' : 'A';
+        assertEquals(Verifier.RESULT_INVALID,
+                nonces.verify(new String(tampered), 60000L));
+    }
+}
@@ -31,6 +31,8 @@ import static org.restlet.ext.oauth.OAuthResourceDefs.ACCESS_TOKEN;
 import static org.restlet.ext.oauth.OAuthResourceDefs.SCOPE;
 import static org.restlet.ext.oauth.OAuthResourceDefs.USERNAME;
 
+import java.util.concurrent.atomic.AtomicInteger;
+
 import org.json.JSONObject;
 import org.junit.AfterClass;
 import org.junit.BeforeClass;
@@ -63,6 +65,8 @@ import org.restlet.security.Verifier;
  */
 public class TokenVerifierTest extends OAuthTestBase {
 
+    private static final AtomicInteger calls = new AtomicInteger();
+
     private Reference tokenAuthURI = new Reference(baseURI, "/oauth/token_auth");
 
     public static class StubApplication extends Application {
@@ -80,6 +84,7 @@ public class TokenVerifierTest extends OAuthTestBase {
         @Post
         public Representation authenticate(Representation input)
                 throws Exception {
+            calls.incrementAndGet();
             JSONObject call = new JsonRepresentation(input).getJsonObject();
 
             if (call.getString(ACCESS_TOKEN).equals(STUB_ACCESS_TOKEN)) {
@@ -216,4 +221,102 @@ public class TokenVerifierTest extends OAuthTestBase {
         assertThat(Scopes.parseScope(info.getRoles()),
                 is(arrayContainingInAnyOrder("a", "b")));
     }
+
+    /**
+     * Test case 7: Valid access_token cached.
+     */
+    @Test
+    public void testCase7() {
+        TokenVerifier verifier = new TokenVerifier(tokenAuthURI);
+        verifier.setCacheTimeToLive(60);
+        int before = calls.get();
+
+        for (int i = 0; i < 3; i++) {
+            Request request = new Request();
+            ChallengeResponse cr = new ChallengeResponse(
+                    ChallengeScheme.HTTP_OAUTH_BEARER);
+            cr.setRawValue(STUB_ACCESS_TOKEN);
+            request.setChallengeResponse(cr);
+
+            int result = verifier.verify(request, new Response(request));
+            assertThat(result, is(Verifier.RESULT_VALID));
+            assertThat(request.getClientInfo().getUser().getIdentifier(),
+                    is("testuser"));
+        }
+
+        assertThat(calls.get() - before, is(1));
+
+        verifier.clearCache();
+        Request request = new Request();
+        ChallengeResponse cr = new ChallengeResponse(
+                ChallengeScheme.HTTP_OAUTH_BEARER);
+        cr.setRawValue(STUB_ACCESS_TOKEN);
+        request.setChallengeResponse(cr);
+        verifier.verify(request, new Response(request));
+        assertThat(calls.get() - before, is(2));
+    }
+
+    /**
+     * Test case 8: Invalid access_token cached only if negative caching is
+     * enabled.
+     */
+    @Test
+    public void testCase8() {
+        TokenVerifier verifier = new TokenVerifier(tokenAuthURI);
+        verifier.setCacheTimeToLive(60);
+        int before = calls.get();
+
+        for (int i = 0; i < 2; i++) {
+            Request request = new Request();
+            ChallengeResponse cr = new ChallengeResponse(
+                    ChallengeScheme.HTTP_OAUTH_BEARER);
+            cr.setRawValue("qux");
+            request.setChallengeResponse(cr);
+
+            int result = verifier.verify(request, new Response(request));
+            assertThat(result, is(Verifier.RESULT_INVALID));
+        }
+
+        assertThat(calls.get() - before, is(2));
+
+        verifier.setNegativeCacheTimeToLive(60);
+        before = calls.get();
+
+        for (int i = 0; i < 2; i++) {
+            Request request = new Request();
+            ChallengeResponse cr = new ChallengeResponse(
+                    ChallengeScheme.HTTP_OAUTH_BEARER);
+            cr.setRawValue("qux");
+            request.setChallengeResponse(cr);
+
+            int result = verifier.verify(request, new Response(request));
+            assertThat(result, is(Verifier.RESULT_INVALID));
+        }
+
+        assertThat(calls.get() - before, is(1));
+    }
+
+    /**
+     * Test case 9: Invalid access_tokens don't evict the cached valid ones.
+     */
+    @Test
+    public void testCase9() {
+        TokenVerifier verifier = new TokenVerifier(tokenAuthURI);
+        verifier.setCacheMaxSize(1);
+        verifier.setCacheTimeToLive(60);
+        verifier.setNegativeCacheTimeToLive(60);
+        int before = calls.get();
+
+        for (String token : new String[] { STUB_ACCESS_TOKEN, "foo", "bar",
+                STUB_ACCESS_TOKEN }) {
+            Request request = new Request();
+            ChallengeResponse cr = new ChallengeResponse(
+                    ChallengeScheme.HTTP_OAUTH_BEARER);
+            cr.setRawValue(token);
+            request.setChallengeResponse(cr);
+            verifier.verify(request, new Response(request));
+        }
+
+        assertThat(calls.get() - before, is(3));
+    }
 }
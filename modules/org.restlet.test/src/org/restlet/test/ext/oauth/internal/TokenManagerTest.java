@@ -0,0 +1,152 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or or EPL 1.0 (the "Licenses"). You can
+ * select the license that you prefer but you may not use this file except in
+ * compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+
+package org.restlet.test.ext.oauth.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.restlet.ext.oauth.OAuthException;
+import org.restlet.ext.oauth.internal.AuthSession;
+import org.restlet.ext.oauth.internal.Client;
+import org.restlet.ext.oauth.internal.Client.ClientType;
+import org.restlet.ext.oauth.internal.Token;
+import org.restlet.ext.oauth.internal.memory.MemoryClientManager;
+import org.restlet.ext.oauth.internal.memory.MemoryTokenManager;
+
+/**
+ * Unit tests for the {@link MemoryTokenManager} class.
+ * 
+ * @author Jerome Louvel
+ */
+public class TokenManagerTest {
+
+    private Client client;
+
+    private MemoryTokenManager tokens;
+
+    @Before
+    public void setupTokenManager() {
+        client = new MemoryClientManager().createClient(
+                ClientType.CONFIDENTIAL, null, null);
+        tokens = new MemoryTokenManager();
+    }
+
+    @Test
+    public void testFind() throws Exception {
+        Token token1 = tokens.generateToken(client, "alice",
+                new String[] { "a" });
+        Token token2 = tokens.generateToken(client, "bob",
+                new String[] { "a" });
+        Token token3 = tokens.generateToken(client, new String[] { "b" });
+
+        assertSame(token1, tokens.findToken(client, "alice"));
+        assertSame(token3, tokens.findToken(client));
+        assertEquals(3, tokens.findTokens(client).length);
+        assertEquals(1, tokens.findTokens("bob").length);
+        assertSame(token2, tokens.validateToken(token2.getAccessToken()));
+
+        // Generating a new token replaces the previous one
+        Token token4 = tokens.generateToken(client, "alice",
+                new String[] { "a" });
+        assertSame(token4, tokens.findToken(client, "alice"));
+        assertEquals(3, tokens.findTokens(client).length);
+
+        tokens.revokeAllTokens("alice");
+        assertNull(tokens.findToken(client, "alice"));
+        assertEquals(0, tokens.findTokens("alice").length);
+        tokens.revokeAllTokens(client);
+        assertEquals(0, tokens.findTokens(client).length);
+    }
+
+    @Test
+    public void testRefresh() throws Exception {
+        Token token = tokens.generateToken(client, "alice",
+                new String[] { "a", "b" });
+        Token refreshed = tokens.refreshToken(client, token.getRefreshToken(),
+                new String[] { "a" });
+
+        assertNotNull(refreshed);
+        assertSame(refreshed, tokens.findToken(client, "alice"));
+        assertEquals(1, tokens.findTokens(client).length);
+
+        try {
+            tokens.validateToken(token.getAccessToken());
+            fail("OAuthException expected.");
+        } catch (OAuthException e) {
+            // Expected
+        }
+
+        try {
+            tokens.refreshToken(client, token.getRefreshToken(), null);
+            fail("OAuthException expected.");
+        } catch (OAuthException e) {
+            // Expected
+        }
+
+        tokens.setUpdateRefreshToken(false);
+        Token refreshed2 = tokens.refreshToken(client,
+                refreshed.getRefreshToken(), null);
+        assertEquals(refreshed.getRefreshToken(), refreshed2.getRefreshToken());
+        Token refreshed3 = tokens.refreshToken(client,
+                refreshed2.getRefreshToken(), null);
+        assertSame(refreshed3, tokens.findToken(client, "alice"));
+    }
+
+    @Test
+    public void testSweep() throws Exception {
+        tokens.setExpirePeriod(0);
+        tokens.setSweepGracePeriod(0);
+        Token token = tokens.generateToken(client, "alice",
+                new String[] { "a" });
+        AuthSession session = AuthSession.newAuthSession();
+        session.setSessionTimeout(0);
+        String code = tokens.storeSession(session);
+        Thread.sleep(10);
+
+        tokens.sweep();
+        assertNull(tokens.findToken(client, "alice"));
+        assertEquals(0, tokens.findTokens(client).length);
+
+        try {
+            tokens.refreshToken(client, token.getRefreshToken(), null);
+            fail("OAuthException expected.");
+        } catch (OAuthException e) {
+            // Expected
+        }
+
+        try {
+            tokens.restoreSession(code);
+            fail("OAuthException expected.");
+        } catch (OAuthException e) {
+            // Expected
+        }
+    }
+}
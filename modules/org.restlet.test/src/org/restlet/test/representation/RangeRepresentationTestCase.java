@@ -24,8 +24,15 @@
 
 package org.restlet.test.representation;
 
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+
+import org.restlet.data.MediaType;
 import org.restlet.data.Range;
+import org.restlet.engine.application.ByteRangesRepresentation;
 import org.restlet.engine.application.RangeRepresentation;
+import org.restlet.representation.ByteArrayRepresentation;
+import org.restlet.representation.InputRepresentation;
 import org.restlet.representation.StringRepresentation;
 import org.restlet.test.RestletTestCase;
 
@@ -47,6 +54,36 @@ public class RangeRepresentationTestCase extends RestletTestCase {
         assertEquals("34567", rr.getText());
     }
 
+    public void testByteRanges() throws Exception {
+        StringRepresentation sr = new StringRepresentation("1234567890",
+                MediaType.TEXT_PLAIN);
+        sr.setCharacterSet(null);
+        ByteRangesRepresentation brr = new ByteRangesRepresentation(sr,
+                Arrays.asList(new Range(6, 2), new Range(1, 3)), "b");
+        assertEquals("multipart/byteranges; boundary=b", brr.getMediaType()
+                .toString());
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        brr.write(out);
+        String expected = "\r\n--b\r\nContent-Type: text/plain\r\n"
+                + "Content-Range: bytes 6-7/10\r\n\r\n78"
+                + "\r\n--b\r\nContent-Type: text/plain\r\n"
+                + "Content-Range: bytes 1-3/10\r\n\r\n234\r\n--b--\r\n";
+        assertEquals(expected, out.toString("US-ASCII"));
+        assertEquals(expected.length(), brr.getSize());
+        assertFalse(ByteRangesRepresentation.isAscending(brr.getRanges()));
+    }
+
+    public void testSeekable() throws Exception {
+        ByteArrayRepresentation bar = new ByteArrayRepresentation(
+                "1234567890".getBytes("US-ASCII"), MediaType.TEXT_PLAIN, 10);
+        RangeRepresentation rr = new RangeRepresentation(bar);
+        rr.setRange(new Range(Range.INDEX_LAST, 3));
+        assertEquals("890", rr.getText());
+        assertEquals("567890",
+                new InputRepresentation(bar.getStream(4L)).getText());
+    }
+
     public void testSize() throws Exception {
         StringRepresentation sr = new StringRepresentation("1234567890");
         RangeRepresentation rr = new RangeRepresentation(sr);
@@ -25,7 +25,9 @@
 package org.restlet.test.resource;
 
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.logging.Logger;
 
@@ -34,14 +36,20 @@ import org.restlet.Component;
 import org.restlet.Request;
 import org.restlet.Response;
 import org.restlet.Restlet;
+import org.restlet.data.Dimension;
+import org.restlet.data.Encoding;
 import org.restlet.data.Language;
 import org.restlet.data.LocalReference;
+import org.restlet.data.MediaType;
 import org.restlet.data.Metadata;
 import org.restlet.data.Method;
 import org.restlet.data.Protocol;
 import org.restlet.data.Reference;
 import org.restlet.data.Status;
+import org.restlet.data.Tag;
 import org.restlet.engine.io.IoUtils;
+import org.restlet.engine.local.HotFileCache;
+import org.restlet.representation.FileRepresentation;
 import org.restlet.representation.Representation;
 import org.restlet.representation.StringRepresentation;
 import org.restlet.resource.Directory;
@@ -271,6 +279,33 @@ public class DirectoryTestCase extends RestletTestCase {
 
         // Test the access to the sub directories.
         testParentDirectoryInaccessible(application, application.getDirectory());
+
+        this.testDir = new File(System.getProperty("java.io.tmpdir"),
+                "DirectoryTestCase/tests7" + new Date().getTime());
+        this.testDir.mkdirs();
+        application.setTestDirectory(testDir);
+
+        // Test the serving of precompressed files.
+        testPrecompressed(application, application.getDirectory());
+        IoUtils.delete(this.testDir, true);
+
+        this.testDir = new File(System.getProperty("java.io.tmpdir"),
+                "DirectoryTestCase/tests8" + new Date().getTime());
+        this.testDir.mkdirs();
+        application.setTestDirectory(testDir);
+
+        // Test the caching of the local metadata.
+        testMetadataCache(application, application.getDirectory());
+        IoUtils.delete(this.testDir, true);
+
+        this.testDir = new File(System.getProperty("java.io.tmpdir"),
+                "DirectoryTestCase/tests9" + new Date().getTime());
+        this.testDir.mkdirs();
+        application.setTestDirectory(testDir);
+
+        // Test the caching of the hot files.
+        testHotFileCache(application, application.getDirectory());
+        IoUtils.delete(this.testDir, true);
     }
 
     /**
@@ -315,7 +350,7 @@ public class DirectoryTestCase extends RestletTestCase {
 
     /**
      * Helper
-     *
+     * 
      * @param application
      * @param directory
      * @throws IOException
@@ -699,6 +734,204 @@ public class DirectoryTestCase extends RestletTestCase {
         System.out.println("End of tests*********************");
     }
 
+    /**
+     * Test the caching of the hot files content.
+     * 
+     * @param application
+     * @param directory
+     * @throws IOException
+     */
+    private void testHotFileCache(MyApplication application,
+            Directory directory) throws IOException {
+        File smallFile = new File(this.testDir, "small.css");
+        FileOutputStream out = new FileOutputStream(smallFile);
+        out.write("small".getBytes());
+        out.close();
+        File bigFile = new File(this.testDir, "big.js");
+        byte[] bigContent = new byte[100000];
+        Arrays.fill(bigContent, (byte) 'a');
+        out = new FileOutputStream(bigFile);
+        out.write(bigContent);
+        out.close();
+        String smallUrl = this.webSiteURL.concat("small.css");
+        String bigUrl = this.webSiteURL.concat("big.js");
+
+        directory.setHotFileCacheSize(1048576L);
+        Response response = handle(application, webSiteURL, smallUrl,
+                Method.GET, null, "hot-1");
+        assertEquals(Status.SUCCESS_OK, response.getStatus());
+        assertEquals("small", response.getEntityAsText());
+        assertEquals(MediaType.TEXT_CSS, response.getEntity().getMediaType());
+        Tag tag = response.getEntity().getTag();
+        assertNotNull(tag);
+        assertEquals(1, directory.getHotFileCache().size());
+
+        long hits = directory.getHotFileCache().getHits();
+        response = handle(application, webSiteURL, smallUrl, Method.GET, null,
+                "hot-2");
+        assertEquals(Status.SUCCESS_OK, response.getStatus());
+        assertEquals("small", response.getEntityAsText());
+        assertEquals(5, response.getEntity().getSize());
+        assertEquals(tag, response.getEntity().getTag());
+        assertTrue(directory.getHotFileCache().getHits() > hits);
+
+        response = handle(application, webSiteURL, bigUrl, Method.GET, null,
+                "hot-3");
+        assertEquals(Status.SUCCESS_OK, response.getStatus());
+        assertTrue(Arrays.equals(bigContent, response.getEntity().getBytes()));
+        assertEquals(2, directory.getHotFileCache().size());
+        assertEquals(100005, directory.getHotFileCache().getSize());
+
+        // Changed files are reloaded
+        out = new FileOutputStream(smallFile);
+        out.write("changed".getBytes());
+        out.close();
+        response = handle(application, webSiteURL, smallUrl, Method.GET, null,
+                "hot-4");
+        assertEquals(Status.SUCCESS_OK, response.getStatus());
+        assertEquals("changed", response.getEntityAsText());
+        assertFalse(tag.equals(response.getEntity().getTag()));
+
+        // Large files are memory mapped
+        HotFileCache cache = new HotFileCache(1048576L, 1048576L, 65536L);
+        HotFileCache.HotFile hotFile = cache.put("big", new FileRepresentation(
+                bigFile, MediaType.APPLICATION_JAVASCRIPT));
+        assertTrue(hotFile.isMapped());
+        assertTrue(hotFile.isValid());
+        assertTrue(Arrays.equals(bigContent, hotFile.createRepresentation()
+                .getBytes()));
+        hotFile = cache.put("small", new FileRepresentation(smallFile,
+                MediaType.TEXT_CSS));
+        assertFalse(hotFile.isMapped());
+        assertEquals("changed", hotFile.createRepresentation().getText());
+        assertTrue(hotFile.getContent().isReadOnly());
+
+        directory.setHotFileCacheSize(0L);
+        assertEquals(0, directory.getHotFileCache().size());
+    }
+
+    /**
+     * Test the caching of the directory listings and variants.
+     * 
+     * @param application
+     * @param directory
+     * @throws IOException
+     */
+    private void testMetadataCache(MyApplication application,
+            Directory directory) throws IOException {
+        File fileEs = new File(this.testDir, "page.es.txt");
+        FileOutputStream out = new FileOutputStream(fileEs);
+        out.write("spanish".getBytes());
+        out.close();
+        File fileFr = new File(this.testDir, "page.fr.txt");
+        out = new FileOutputStream(fileFr);
+        out.write("french".getBytes());
+        out.close();
+        String pageUrl = this.webSiteURL.concat("page.txt");
+        String newUrl = this.webSiteURL.concat("new.txt");
+
+        application.getTunnelService().setExtensionsTunnel(true);
+        directory.setMetadataTimeToLive(60);
+        directory.setModifiable(true);
+        assertEquals(0, directory.getMetadataCache().size());
+
+        Response response = handle(application, webSiteURL, pageUrl,
+                Method.GET, null, "cache-1", Language.FRENCH);
+        assertEquals(Status.SUCCESS_OK, response.getStatus());
+        assertEquals("french", response.getEntityAsText());
+        assertTrue(directory.getMetadataCache().size() > 0);
+
+        long hits = directory.getMetadataCache().getHits();
+        response = handle(application, webSiteURL, pageUrl, Method.GET,
+                null, "cache-2", Language.SPANISH);
+        assertEquals(Status.SUCCESS_OK, response.getStatus());
+        assertEquals("spanish", response.getEntityAsText());
+        assertTrue(directory.getMetadataCache().getHits() > hits);
+
+        // External modifications are hidden until the entries expire
+        response = handle(application, webSiteURL, newUrl, Method.GET, null,
+                "cache-3");
+        assertEquals(Status.CLIENT_ERROR_NOT_FOUND, response.getStatus());
+        out = new FileOutputStream(new File(this.testDir, "new.txt"));
+        out.write("new".getBytes());
+        out.close();
+        response = handle(application, webSiteURL, newUrl, Method.GET, null,
+                "cache-4");
+        assertEquals(Status.CLIENT_ERROR_NOT_FOUND, response.getStatus());
+        directory.getMetadataCache().clear();
+        response = handle(application, webSiteURL, newUrl, Method.GET, null,
+                "cache-5");
+        assertEquals(Status.SUCCESS_OK, response.getStatus());
+        assertEquals("new", response.getEntityAsText());
+
+        // Modifications through the directory clear the cache
+        String otherUrl = this.webSiteURL.concat("other.txt");
+        response = handle(application, webSiteURL, otherUrl, Method.GET,
+                null, "cache-6");
+        assertEquals(Status.CLIENT_ERROR_NOT_FOUND, response.getStatus());
+        response = handle(application, webSiteURL, otherUrl, Method.PUT,
+                new StringRepresentation("other"), "cache-7");
+        assertTrue(response.getStatus().isSuccess());
+        response = handle(application, webSiteURL, otherUrl, Method.GET,
+                null, "cache-8");
+        assertEquals(Status.SUCCESS_OK, response.getStatus());
+        assertEquals("other", response.getEntityAsText());
+
+        application.getTunnelService().setExtensionsTunnel(false);
+        directory.setMetadataTimeToLive(0);
+        directory.setModifiable(false);
+        assertEquals(0, directory.getMetadataCache().size());
+    }
+
+    /**
+     * Test the serving of precompressed sibling files.
+     * 
+     * @param application
+     * @param directory
+     * @throws IOException
+     */
+    private void testPrecompressed(MyApplication application,
+            Directory directory) throws IOException {
+        File file = new File(this.testDir, "app.js");
+        File gzFile = new File(this.testDir, "app.js.gz");
+        FileOutputStream out = new FileOutputStream(file);
+        out.write("plain".getBytes());
+        out.close();
+        out = new FileOutputStream(gzFile);
+        out.write("zipped".getBytes());
+        out.close();
+        String fileUrl = this.webSiteURL.concat("app.js");
+
+        directory.setServingPrecompressed(false);
+        Response response = handle(application, webSiteURL, fileUrl,
+                Method.GET, null, "precompressed-1", Encoding.GZIP);
+        assertEquals(Status.SUCCESS_OK, response.getStatus());
+        assertEquals("plain", response.getEntityAsText());
+
+        directory.setServingPrecompressed(true);
+        response = handle(application, webSiteURL, fileUrl, Method.GET, null,
+                "precompressed-2", Encoding.GZIP);
+        assertEquals(Status.SUCCESS_OK, response.getStatus());
+        assertEquals("zipped", response.getEntityAsText());
+        assertEquals(Arrays.asList(Encoding.GZIP), response.getEntity()
+                .getEncodings());
+        assertTrue(response.getDimensions().contains(Dimension.ENCODING));
+
+        // The siblings are listed once, then looked up in the cache
+        long hits = directory.getPrecompressedCache().getHits();
+        response = handle(application, webSiteURL, fileUrl, Method.GET, null,
+                "precompressed-2b", Encoding.GZIP);
+        assertEquals("zipped", response.getEntityAsText());
+        assertEquals(hits + 1, directory.getPrecompressedCache().getHits());
+
+        response = handle(application, webSiteURL, fileUrl, Method.GET, null,
+                "precompressed-3", Encoding.valueOf("br"));
+        assertEquals(Status.SUCCESS_OK, response.getStatus());
+        assertEquals("plain", response.getEntityAsText());
+        assertTrue(response.getEntity().getEncodings().isEmpty());
+        directory.setServingPrecompressed(false);
+    }
+
     /**
      * Test content negotiation based on client preferences.
      * 
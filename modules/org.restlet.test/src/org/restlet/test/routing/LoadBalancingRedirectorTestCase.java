@@ -0,0 +1,136 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or or EPL 1.0 (the "Licenses"). You can
+ * select the license that you prefer but you may not use this file except in
+ * compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+package org.restlet.test.routing;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.restlet.Context;
+import org.restlet.Request;
+import org.restlet.Response;
+import org.restlet.Restlet;
+import org.restlet.data.Method;
+import org.restlet.data.Status;
+import org.restlet.routing.LoadBalancingRedirector;
+import org.restlet.routing.LoadBalancingRedirector.Backend;
+import org.restlet.test.RestletTestCase;
+
+/**
+ * Test case for the {@link LoadBalancingRedirector} class.
+ * 
+ * @author Jerome Louvel
+ */
+public class LoadBalancingRedirectorTestCase extends RestletTestCase {
+
+    /** Client dispatcher counting the calls per host, failing for "down". */
+    private static class CountingRestlet extends Restlet {
+        final Map<String, Integer> counts = new HashMap<String, Integer>();
+
+        @Override
+        public synchronized void handle(Request request, Response response) {
+            String host = request.getResourceRef().getHostDomain();
+            Integer count = counts.get(host);
+            counts.put(host, (count == null) ? 1 : count + 1);
+
+            if ("down".equals(host)) {
+                response.setStatus(Status.CONNECTOR_ERROR_CONNECTION);
+            } else {
+                response.setStatus(Status.SUCCESS_OK);
+            }
+        }
+    }
+
+    private CountingRestlet dispatcher;
+
+    private LoadBalancingRedirector redirector;
+
+    private Response call(String clientAddress) {
+        Request request = new Request(Method.GET, "http://proxy/path");
+        request.getResourceRef().setBaseRef("http://proxy");
+        request.getClientInfo().setAddress(clientAddress);
+        Response response = new Response(request);
+        this.redirector.handle(request, response);
+        return response;
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        this.dispatcher = new CountingRestlet();
+        Context context = new Context();
+        context.setClientDispatcher(this.dispatcher);
+        this.redirector = new LoadBalancingRedirector(context);
+    }
+
+    public void testConsistentHash() {
+        this.redirector.addBackend("http://a");
+        this.redirector.addBackend("http://b");
+        this.redirector.addBackend("http://c");
+        this.redirector
+                .setSelectionMode(LoadBalancingRedirector.SELECTION_CONSISTENT_HASH);
+
+        for (int i = 0; i < 10; i++) {
+            call("10.0.0.1");
+        }
+
+        assertEquals(1, this.dispatcher.counts.size());
+        assertEquals(10, this.dispatcher.counts.values().iterator().next()
+                .intValue());
+    }
+
+    public void testEjection() {
+        this.redirector.addBackend("http://up");
+        Backend down = this.redirector.addBackend("http://down");
+        this.redirector.setMaxConsecutiveFailures(2);
+
+        for (int i = 0; i < 10; i++) {
+            call("10.0.0.1");
+        }
+
+        assertFalse(down.isAvailable());
+        assertEquals(2, this.dispatcher.counts.get("down").intValue());
+        assertEquals(8, this.dispatcher.counts.get("up").intValue());
+        assertEquals(2, down.getTotalFailures());
+    }
+
+    public void testNoBackend() {
+        Response response = call("10.0.0.1");
+        assertEquals(Status.SERVER_ERROR_SERVICE_UNAVAILABLE,
+                response.getStatus());
+    }
+
+    public void testRoundRobin() {
+        this.redirector.addBackend("http://a");
+        this.redirector.addBackend("http://b");
+
+        for (int i = 0; i < 10; i++) {
+            assertEquals(Status.SUCCESS_OK, call("10.0.0.1").getStatus());
+        }
+
+        assertEquals(5, this.dispatcher.counts.get("a").intValue());
+        assertEquals(5, this.dispatcher.counts.get("b").intValue());
+    }
+
+}
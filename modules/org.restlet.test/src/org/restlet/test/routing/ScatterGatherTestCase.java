@@ -0,0 +1,141 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or or EPL 1.0 (the "Licenses"). You can
+ * select the license that you prefer but you may not use this file except in
+ * compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+package org.restlet.test.routing;
+
+import java.util.List;
+
+import org.restlet.Context;
+import org.restlet.Request;
+import org.restlet.Response;
+import org.restlet.Restlet;
+import org.restlet.data.Method;
+import org.restlet.data.Status;
+import org.restlet.routing.ScatterGather;
+import org.restlet.service.TaskService;
+import org.restlet.test.RestletTestCase;
+
+/**
+ * Test case for the {@link ScatterGather} class.
+ * 
+ * @author Jerome Louvel
+ */
+public class ScatterGatherTestCase extends RestletTestCase {
+
+    /** Client dispatcher sleeping for the duration given in the URI path. */
+    private static class SleepingRestlet extends Restlet {
+        @Override
+        public void handle(Request request, Response response) {
+            long duration = Long.parseLong(request.getResourceRef()
+                    .getLastSegment());
+
+            try {
+                Thread.sleep(duration);
+                response.setStatus(Status.SUCCESS_OK);
+            } catch (InterruptedException e) {
+                response.setStatus(Status.SERVER_ERROR_SERVICE_UNAVAILABLE);
+            }
+        }
+    }
+
+    private Context context;
+
+    private TaskService taskService;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        this.taskService = new TaskService(4);
+        this.taskService.start();
+        this.context = new Context();
+        this.context.setClientDispatcher(new SleepingRestlet());
+        this.context.setExecutorService(this.taskService);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        this.taskService.stop();
+        super.tearDown();
+    }
+
+    public void testCallTimeout() {
+        ScatterGather sg = new ScatterGather(this.context, 200, 0);
+        List<Response> responses = sg.handle(new Request(Method.GET,
+                "http://localhost/10"), new Request(Method.GET,
+                "http://localhost/5000"));
+
+        assertEquals(2, responses.size());
+        assertEquals(Status.SUCCESS_OK, responses.get(0).getStatus());
+        assertEquals(Status.CONNECTOR_ERROR_COMMUNICATION, responses.get(1)
+                .getStatus());
+    }
+
+    public void testConcurrency() {
+        ScatterGather sg = new ScatterGather(this.context);
+        long start = System.currentTimeMillis();
+        List<Response> responses = sg.handle(new Request(Method.GET,
+                "http://localhost/300"), new Request(Method.GET,
+                "http://localhost/300"), new Request(Method.GET,
+                "http://localhost/300"));
+        long duration = System.currentTimeMillis() - start;
+
+        assertEquals(3, responses.size());
+
+        for (Response response : responses) {
+            assertEquals(Status.SUCCESS_OK, response.getStatus());
+        }
+
+        assertTrue(duration < 900);
+    }
+
+    public void testOverallTimeout() {
+        ScatterGather sg = new ScatterGather(this.context, 0, 300);
+        long start = System.currentTimeMillis();
+        List<Response> responses = sg.handle(new Request(Method.GET,
+                "http://localhost/5000"), new Request(Method.GET,
+                "http://localhost/10"), new Request(Method.GET,
+                "http://localhost/5000"));
+        long duration = System.currentTimeMillis() - start;
+
+        assertEquals(3, responses.size());
+        assertEquals(Status.CONNECTOR_ERROR_COMMUNICATION, responses.get(0)
+                .getStatus());
+        assertEquals(Status.SUCCESS_OK, responses.get(1).getStatus());
+        assertEquals(Status.CONNECTOR_ERROR_COMMUNICATION, responses.get(2)
+                .getStatus());
+        assertTrue(duration < 2000);
+    }
+
+    public void testSequentialWithoutExecutor() {
+        this.context.setExecutorService(null);
+        ScatterGather sg = new ScatterGather(this.context);
+        List<Response> responses = sg.handle(new Request(Method.GET,
+                "http://localhost/1"), new Request(Method.GET,
+                "http://localhost/1"));
+
+        assertEquals(Status.SUCCESS_OK, responses.get(0).getStatus());
+        assertEquals(Status.SUCCESS_OK, responses.get(1).getStatus());
+    }
+
+}
@@ -0,0 +1,194 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or or EPL 1.0 (the "Licenses"). You can
+ * select the license that you prefer but you may not use this file except in
+ * compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+
+package org.restlet.test.security;
+
+import java.util.Collections;
+import java.util.Comparator;
+
+import org.restlet.Application;
+import org.restlet.data.ClientInfo;
+import org.restlet.security.Group;
+import org.restlet.security.MemoryRealm;
+import org.restlet.security.Role;
+import org.restlet.security.SecretVerifier;
+import org.restlet.security.User;
+import org.restlet.test.RestletTestCase;
+
+/**
+ * Suite of unit tests for the {@link MemoryRealm} class.
+ * 
+ * @author Jerome Louvel
+ */
+public class MemoryRealmTestCase extends RestletTestCase {
+
+    private Application application;
+
+    private MemoryRealm realm;
+
+    private ClientInfo enrole(String identifier) {
+        ClientInfo clientInfo = new ClientInfo();
+        clientInfo.setUser(new User(identifier));
+        this.realm.getEnroler().enrole(clientInfo);
+        return clientInfo;
+    }
+
+    private int verify(String identifier, String secret) {
+        return ((SecretVerifier) this.realm.getVerifier()).verify(identifier,
+                secret.toCharArray());
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        this.application = new Application();
+        this.realm = new MemoryRealm();
+
+        for (int i = 0; i < 1000; i++) {
+            this.realm.getUsers().add(new User("user" + i, "pwd" + i));
+        }
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        this.application = null;
+        this.realm = null;
+        super.tearDown();
+    }
+
+    public void testBulkModifications() {
+        // Views are tracked
+        this.realm.getUsers().subList(0, 10).clear();
+        assertNull(this.realm.findUser("user5"));
+        assertNotNull(this.realm.findUser("user10"));
+
+        // Untracked modifications are detected as well
+        final User duplicate = new User("user42");
+        this.realm.getUsers().add(duplicate);
+        assertNotSame(duplicate, this.realm.findUser("user42"));
+        Collections.sort(this.realm.getUsers(), new Comparator<User>() {
+            public int compare(User user1, User user2) {
+                return (user1 == duplicate) ? -1 : (user2 == duplicate) ? 1
+                        : 0;
+            }
+        });
+        assertSame(duplicate, this.realm.findUser("user42"));
+    }
+
+    public void testEnrole() {
+        User user = this.realm.findUser("user1");
+        Role admin = new Role(this.application, "admin");
+        Role staff = new Role(this.application, "staff");
+        Role dev = new Role(this.application, "dev");
+
+        Group employees = new Group("employees", null);
+        Group developers = new Group("developers", null, true);
+        Group contractors = new Group("contractors", null, false);
+        employees.getMemberGroups().add(developers);
+        employees.getMemberGroups().add(contractors);
+        developers.getMemberUsers().add(user);
+        this.realm.getRootGroups().add(employees);
+        this.realm.map(user, admin);
+        this.realm.map(employees, staff);
+        this.realm.map(developers, dev);
+
+        ClientInfo clientInfo = enrole("user1");
+        assertEquals(3, clientInfo.getRoles().size());
+        assertTrue(clientInfo.getRoles().contains(staff));
+        assertTrue(clientInfo.getRoles().contains(dev));
+        assertEquals(1, this.realm.findRoles(this.application, user).size());
+        assertEquals(2,
+                this.realm.findRoles(this.realm.findGroups(user)).size());
+
+        // Modifications are taken into account
+        developers.getMemberUsers().remove(user);
+        contractors.getMemberUsers().add(user);
+        clientInfo = enrole("user1");
+        assertEquals(1, clientInfo.getRoles().size());
+        assertTrue(clientInfo.getRoles().contains(admin));
+
+        contractors.setInheritingRoles(true);
+        assertEquals(2, enrole("user1").getRoles().size());
+
+        this.realm.unmap(user, admin);
+        assertEquals(1, enrole("user1").getRoles().size());
+        assertTrue(enrole("user2").getRoles().isEmpty());
+    }
+
+    public void testFindUser() {
+        assertEquals("user999", this.realm.findUser("user999")
+                .getIdentifier());
+        assertNull(this.realm.findUser("unknown"));
+
+        this.realm.getUsers().add(new User("newcomer"));
+        assertNotNull(this.realm.findUser("newcomer"));
+
+        this.realm.findUser("user5").setIdentifier("renamed");
+        assertNull(this.realm.findUser("user5"));
+        assertNotNull(this.realm.findUser("renamed"));
+
+        this.realm.getUsers().remove(this.realm.findUser("renamed"));
+        assertNull(this.realm.findUser("renamed"));
+    }
+
+    public void testFindRoles() {
+        Application other = new Application();
+        User user = this.realm.findUser("user1");
+        Role admin = new Role(this.application, "admin");
+        Role guest = new Role(other, "guest");
+        this.realm.map(user, admin);
+        this.realm.map(user, guest);
+
+        assertEquals(2, this.realm.findRoles(user).size());
+        assertEquals(1, this.realm.findRoles(this.application, user).size());
+        assertTrue(this.realm.findRoles(other, user).contains(guest));
+    }
+
+    public void testSharedUser() {
+        MemoryRealm other = new MemoryRealm();
+        User user = this.realm.findUser("user7");
+        other.getUsers().add(user);
+        assertSame(user, other.findUser("user7"));
+
+        // Both realms are notified of the modification of a shared user
+        user.setIdentifier("shared");
+        assertNull(this.realm.findUser("user7"));
+        assertNull(other.findUser("user7"));
+        assertSame(user, this.realm.findUser("shared"));
+        assertSame(user, other.findUser("shared"));
+
+        // Modifying a realm doesn't affect the other one
+        other.getUsers().remove(user);
+        assertNull(other.findUser("shared"));
+        assertSame(user, this.realm.findUser("shared"));
+    }
+
+    public void testVerify() {
+        assertEquals(SecretVerifier.RESULT_VALID, verify("user42", "pwd42"));
+        assertEquals(SecretVerifier.RESULT_INVALID, verify("user42", "pwd43"));
+        assertEquals(SecretVerifier.RESULT_INVALID, verify("unknown", "pwd"));
+    }
+
+}
@@ -0,0 +1,172 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or or EPL 1.0 (the "Licenses"). You can
+ * select the license that you prefer but you may not use this file except in
+ * compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+
+package org.restlet.test.security;
+
+import org.restlet.Application;
+import org.restlet.Context;
+import org.restlet.Request;
+import org.restlet.Response;
+import org.restlet.Restlet;
+import org.restlet.data.ChallengeResponse;
+import org.restlet.data.ChallengeScheme;
+import org.restlet.data.ClientInfo;
+import org.restlet.data.Method;
+import org.restlet.data.Status;
+import org.restlet.security.ChallengeAuthenticator;
+import org.restlet.security.Enroler;
+import org.restlet.security.MapVerifier;
+import org.restlet.security.Role;
+import org.restlet.security.VerificationCache;
+import org.restlet.test.RestletTestCase;
+
+/**
+ * Suite of unit tests for the {@link VerificationCache} class.
+ * 
+ * @author Jerome Louvel
+ */
+public class VerificationCacheTestCase extends RestletTestCase {
+
+    /** Verifier counting the verifications. */
+    private static class CountingVerifier extends MapVerifier {
+        volatile int calls;
+
+        @Override
+        public int verify(String identifier, char[] secret) {
+            calls++;
+            return super.verify(identifier, secret);
+        }
+    }
+
+    private ChallengeAuthenticator authenticator;
+
+    private VerificationCache cache;
+
+    private volatile int enrolements;
+
+    private Role role;
+
+    private CountingVerifier verifier;
+
+    private Response handle(String identifier, String secret) {
+        Request request = new Request(Method.GET, "http://server/resource");
+        request.setChallengeResponse(new ChallengeResponse(
+                ChallengeScheme.HTTP_BASIC, identifier, secret));
+        Response response = new Response(request);
+        this.authenticator.handle(request, response);
+        return response;
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        this.role = new Role(new Application(), "user");
+        this.verifier = new CountingVerifier();
+        this.verifier.getLocalSecrets().put("scott", "tiger".toCharArray());
+        this.cache = new VerificationCache();
+        this.authenticator = new ChallengeAuthenticator(new Context(), false,
+                ChallengeScheme.HTTP_BASIC, "realm", this.verifier);
+        this.authenticator.setVerificationCache(this.cache);
+        this.authenticator.setEnroler(new Enroler() {
+            public void enrole(ClientInfo clientInfo) {
+                enrolements++;
+                clientInfo.getRoles().add(role);
+            }
+        });
+        this.authenticator.setNext(new Restlet() {
+            @Override
+            public void handle(Request request, Response response) {
+                response.setStatus(Status.SUCCESS_OK);
+            }
+        });
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        this.authenticator = null;
+        this.cache = null;
+        this.verifier = null;
+        super.tearDown();
+    }
+
+    public void testCache() {
+        Response response = handle("scott", "tiger");
+        assertTrue(response.getRequest().getClientInfo().isAuthenticated());
+        assertEquals(1, this.verifier.calls);
+
+        response = handle("scott", "tiger");
+        ClientInfo clientInfo = response.getRequest().getClientInfo();
+        assertTrue(clientInfo.isAuthenticated());
+        assertEquals("scott", clientInfo.getUser().getIdentifier());
+        assertEquals(1, clientInfo.getRoles().size());
+        assertEquals(this.role, clientInfo.getRoles().get(0));
+        assertEquals(1, this.verifier.calls);
+        assertEquals(1, this.enrolements);
+        assertEquals(1, this.cache.getHits());
+        assertEquals(1, this.cache.getMisses());
+
+        // Invalid credentials are always verified
+        response = handle("scott", "lion");
+        assertEquals(Status.CLIENT_ERROR_UNAUTHORIZED, response.getStatus());
+        handle("scott", "lion");
+        assertEquals(3, this.verifier.calls);
+        assertEquals(1, this.cache.size());
+    }
+
+    public void testInvalidate() {
+        handle("scott", "tiger");
+        this.cache.invalidate("tiger");
+        assertEquals(1, this.cache.size());
+        this.cache.invalidate("scott");
+        assertEquals(0, this.cache.size());
+
+        handle("scott", "tiger");
+        this.cache.invalidateAll();
+        handle("scott", "tiger");
+        assertEquals(3, this.verifier.calls);
+    }
+
+    public void testKey() {
+        ChallengeResponse cr1 = new ChallengeResponse(
+                ChallengeScheme.HTTP_BASIC, "scott", "tiger");
+        ChallengeResponse cr2 = new ChallengeResponse(
+                ChallengeScheme.HTTP_BASIC, "scott", "tiger");
+        String key = this.cache.getKey(cr1);
+        assertEquals(key, this.cache.getKey(cr2));
+        assertFalse(key.contains("tiger"));
+        assertFalse(key.equals(new VerificationCache().getKey(cr1)));
+
+        cr2.setServerNonce("nonce");
+        assertNull(this.cache.getKey(cr2));
+    }
+
+    public void testTimeToLive() {
+        this.cache.setTimeToLive(0);
+        handle("scott", "tiger");
+        handle("scott", "tiger");
+        assertEquals(2, this.verifier.calls);
+    }
+
+}
@@ -0,0 +1,212 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or or EPL 1.0 (the "Licenses"). You can
+ * select the license that you prefer but you may not use this file except in
+ * compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+package org.restlet.test.service;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import org.restlet.Context;
+import org.restlet.Request;
+import org.restlet.Response;
+import org.restlet.Restlet;
+import org.restlet.data.CacheDirective;
+import org.restlet.data.Dimension;
+import org.restlet.data.Language;
+import org.restlet.data.Method;
+import org.restlet.data.Status;
+import org.restlet.data.Tag;
+import org.restlet.engine.application.CachedResponse;
+import org.restlet.engine.application.ClientCacheFilter;
+import org.restlet.representation.Representation;
+import org.restlet.representation.StringRepresentation;
+import org.restlet.service.ClientCacheService;
+import org.restlet.test.RestletTestCase;
+
+/**
+ * Test case for the {@link ClientCacheService} and its
+ * {@link ClientCacheFilter}.
+ * 
+ * @author Jerome Louvel
+ */
+public class ClientCacheServiceTestCase extends RestletTestCase {
+
+    /** Restlet counting the calls and supporting conditional requests. */
+    private static class OriginRestlet extends Restlet {
+        volatile int calls;
+
+        volatile CacheDirective directive = CacheDirective.maxAge(60);
+
+        volatile boolean varying;
+
+        @Override
+        public void handle(Request request, Response response) {
+            calls++;
+
+            if (request.getConditions().getNoneMatch()
+                    .contains(new Tag("v1", false))) {
+                response.setStatus(Status.REDIRECTION_NOT_MODIFIED);
+            } else if (Method.GET.equals(request.getMethod())) {
+                StringRepresentation entity = new StringRepresentation("hello "
+                        + calls);
+                entity.setTag(new Tag("v1", false));
+                response.setEntity(entity);
+            }
+
+            response.getCacheDirectives().add(directive);
+
+            if (varying) {
+                response.getDimensions().add(Dimension.LANGUAGE);
+            }
+        }
+    }
+
+    private ClientCacheFilter filter;
+
+    private OriginRestlet origin;
+
+    private Response get(String language) {
+        Request request = new Request(Method.GET, "http://origin/resource");
+
+        if (language != null) {
+            request.getClientInfo().accept(Language.valueOf(language));
+        }
+
+        Response response = new Response(request);
+        this.filter.handle(request, response);
+        return response;
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        this.origin = new OriginRestlet();
+        this.filter = (ClientCacheFilter) new ClientCacheService()
+                .createOutboundFilter(new Context());
+        this.filter.setNext(this.origin);
+    }
+
+    public void testFreshHit() throws IOException {
+        assertEquals("hello 1", get(null).getEntityAsText());
+        assertEquals("hello 1", get(null).getEntityAsText());
+        assertEquals(1, this.origin.calls);
+        assertEquals(1, this.filter.getHits());
+        assertEquals(0.5D, this.filter.getHitRatio());
+    }
+
+    public void testInvalidation() throws IOException {
+        get(null).getEntityAsText();
+        Request request = new Request(Method.PUT, "http://origin/resource",
+                new StringRepresentation("update"));
+        this.filter.handle(request, new Response(request));
+        get(null).getEntityAsText();
+        assertEquals(3, this.origin.calls);
+
+        // All the variants of the resource are removed
+        this.filter.invalidate("http://origin/resource");
+        this.origin.varying = true;
+        get("fr").getEntityAsText();
+        get("en").getEntityAsText();
+        this.filter.invalidate("http://origin/resource");
+        assertEquals(0, this.filter.getSize());
+        assertEquals("hello 6", get("fr").getEntityAsText());
+    }
+
+    public void testMaxEntrySize() throws IOException {
+        this.filter.setMaxEntrySize(4);
+        assertEquals("hello 1", get(null).getEntityAsText());
+        assertEquals("hello 2", get(null).getEntityAsText());
+        assertEquals(0, this.filter.getSize());
+    }
+
+    public void testNoStore() throws IOException {
+        this.origin.directive = CacheDirective.noStore();
+        get(null).getEntityAsText();
+        get(null).getEntityAsText();
+        assertEquals(2, this.origin.calls);
+    }
+
+    public void testOnlyIfCached() throws IOException {
+        Request request = new Request(Method.GET, "http://origin/resource");
+        request.getCacheDirectives().add(CacheDirective.onlyIfCached());
+        Response response = new Response(request);
+        this.filter.handle(request, response);
+        assertEquals(Status.SERVER_ERROR_GATEWAY_TIMEOUT, response.getStatus());
+
+        // Stale responses aren't revalidated either
+        this.origin.directive = CacheDirective.noCache();
+        get(null).getEntityAsText();
+        request = new Request(Method.GET, "http://origin/resource");
+        request.getCacheDirectives().add(CacheDirective.onlyIfCached());
+        response = new Response(request);
+        this.filter.handle(request, response);
+        assertEquals(Status.SERVER_ERROR_GATEWAY_TIMEOUT, response.getStatus());
+        assertEquals(1, this.origin.calls);
+    }
+
+    public void testRevalidation() throws IOException {
+        this.origin.directive = CacheDirective.noCache();
+        assertEquals("hello 1", get(null).getEntityAsText());
+        Response response = get(null);
+        assertEquals(Status.SUCCESS_OK, response.getStatus());
+        assertEquals("hello 1", response.getEntityAsText());
+        assertEquals(2, this.origin.calls);
+        assertEquals(1, this.filter.getRevalidations());
+    }
+
+    public void testSpooledContent() throws IOException {
+        File file = File.createTempFile("restlet-cache", ".tmp");
+        FileOutputStream out = new FileOutputStream(file);
+        out.write("spooled".getBytes());
+        out.close();
+        Request request = new Request(Method.GET, "http://origin/resource");
+        Response response = new Response(request);
+        response.setEntity(new StringRepresentation("spooled"));
+        CachedResponse cached = new CachedResponse(response, null, file, 0);
+
+        // The file is kept until the last representation is released
+        Representation first = cached.toRepresentation();
+        Representation second = cached.toRepresentation();
+        cached.release();
+        assertTrue(file.exists());
+        assertEquals("spooled", first.getText());
+        first.release();
+        first.release();
+        assertTrue(file.exists());
+        assertEquals("spooled", second.getText());
+        second.release();
+        assertFalse(file.exists());
+    }
+
+    public void testVary() throws IOException {
+        this.origin.varying = true;
+        get("fr").getEntityAsText();
+        get("en").getEntityAsText();
+        assertEquals("hello 1", get("fr").getEntityAsText());
+        assertEquals("hello 2", get("en").getEntityAsText());
+        assertEquals(2, this.origin.calls);
+    }
+
+}
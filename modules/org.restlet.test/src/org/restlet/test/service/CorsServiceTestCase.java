@@ -0,0 +1,206 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or or EPL 1.0 (the "Licenses"). You can
+ * select the license that you prefer but you may not use this file except in
+ * compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+package org.restlet.test.service;
+
+import java.util.Arrays;
+import java.util.HashSet;
+
+import org.restlet.Context;
+import org.restlet.Request;
+import org.restlet.Response;
+import org.restlet.Restlet;
+import org.restlet.data.Method;
+import org.restlet.data.Status;
+import org.restlet.engine.application.CorsFilter;
+import org.restlet.engine.application.CorsPolicy;
+import org.restlet.routing.Filter;
+import org.restlet.service.CorsService;
+import org.restlet.test.RestletTestCase;
+
+/**
+ * Test case for the {@link CorsService} and its compiled {@link CorsPolicy}.
+ * 
+ * @author Jerome Louvel
+ */
+public class CorsServiceTestCase extends RestletTestCase {
+
+    private volatile int calls;
+
+    private Filter filter;
+
+    private CorsService service;
+
+    private Response handle(Method method, String origin) {
+        Request request = new Request(method, "http://server/resource");
+        request.getHeaders().add("Origin", origin);
+        Response response = new Response(request);
+        this.filter.handle(request, response);
+        return response;
+    }
+
+    private Response preflight(String origin, Method requestedMethod,
+            String... requestedHeaders) {
+        Request request = new Request(Method.OPTIONS, "http://server/resource");
+        request.getHeaders().add("Origin", origin);
+        request.setAccessControlRequestMethod(requestedMethod);
+        request.setAccessControlRequestHeaders(new HashSet<>(Arrays
+                .asList(requestedHeaders)));
+        Response response = new Response(request);
+        this.filter.handle(request, response);
+        return response;
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        this.calls = 0;
+        this.service = new CorsService();
+        this.service.setAllowedOrigins(new HashSet<>(Arrays.asList(
+                "https://app.example.com", "https://*.example.org",
+                "*.example.net")));
+        this.service.setAllowingAllRequestedHeaders(false);
+        this.service.setAllowedHeaders(new HashSet<>(Arrays
+                .asList("X-Requested-With")));
+        this.service.setExposedHeaders(new HashSet<>(Arrays.asList("X-Total")));
+        this.service.setSkippingResourceForCorsOptions(true);
+        this.service.setPreflightCacheSize(10);
+        this.filter = this.service.createInboundFilter(new Context());
+        this.filter.setNext(new Restlet() {
+            @Override
+            public void handle(Request request, Response response) {
+                calls++;
+                response.setStatus(Status.SUCCESS_OK);
+            }
+        });
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        this.filter = null;
+        this.service = null;
+        super.tearDown();
+    }
+
+    public void testModifiedSettings() throws Exception {
+        CorsFilter corsFilter = (CorsFilter) this.filter;
+        assertNull(handle(Method.GET, "https://new.com")
+                .getAccessControlAllowOrigin());
+
+        // The compiled policy reflects the modifications of the sets
+        corsFilter.getAllowedOrigins().add("https://new.com");
+        assertEquals("https://new.com", handle(Method.GET, "https://new.com")
+                .getAccessControlAllowOrigin());
+        corsFilter.getAllowedOrigins().remove("https://new.com");
+        assertNull(handle(Method.GET, "https://new.com")
+                .getAccessControlAllowOrigin());
+
+        // And of the settings, including the cached preflight checks
+        assertNull(preflight("https://a.example.org", Method.PUT, "X-Other")
+                .getAccessControlAllowOrigin());
+        corsFilter.setAllowingAllRequestedHeaders(true);
+        assertEquals("https://a.example.org",
+                preflight("https://a.example.org", Method.PUT, "X-Other")
+                        .getAccessControlAllowOrigin());
+
+        // The settings of a started service can't be modified silently
+        this.service.start();
+
+        try {
+            this.service.getAllowedOrigins().add("https://new.com");
+            fail("The settings of a started service should be unmodifiable");
+        } catch (UnsupportedOperationException e) {
+            // Expected
+        }
+    }
+
+    public void testOriginMatching() {
+        CorsPolicy policy = new CorsPolicy(true, false, null, new HashSet<>(
+                Arrays.asList("https://app.example.com",
+                        "https://*.example.org", "*.example.net")), null);
+
+        assertTrue(policy.isAllowedOrigin("https://app.example.com"));
+        assertFalse(policy.isAllowedOrigin("http://app.example.com"));
+        assertTrue(policy.isAllowedOrigin("https://a.example.org"));
+        assertTrue(policy.isAllowedOrigin("https://a.b.example.org"));
+        assertFalse(policy.isAllowedOrigin("https://example.org"));
+        assertFalse(policy.isAllowedOrigin("https://a.example.org:8443"));
+        assertFalse(policy.isAllowedOrigin("http://a.example.org"));
+        assertTrue(policy.isAllowedOrigin("http://a.example.net:8080"));
+        assertFalse(policy.isAllowedOrigin("https://a.example.net.evil.com"));
+        assertFalse(policy.isAllowedOrigin("null"));
+        assertEquals("https://a.example.org",
+                policy.getAllowOrigin("https://a.example.org"));
+        assertNull(policy.getAllowOrigin("https://evil.com"));
+
+        policy = new CorsPolicy(true, false, null, new HashSet<>(
+                Arrays.asList("*")), null);
+        assertEquals("*", policy.getAllowOrigin("https://evil.com"));
+        policy = new CorsPolicy(true, true, null, new HashSet<>(
+                Arrays.asList("*")), null);
+        assertEquals("https://evil.com",
+                policy.getAllowOrigin("https://evil.com"));
+    }
+
+    public void testPreflight() {
+        Response response = preflight("https://a.example.org", Method.PUT,
+                "x-requested-with");
+        assertEquals(0, this.calls);
+        assertEquals(Status.SUCCESS_OK, response.getStatus());
+        assertEquals("https://a.example.org",
+                response.getAccessControlAllowOrigin());
+        assertTrue(response.getAccessControlAllowMethods().contains(Method.PUT));
+        assertTrue(response.getAccessControlAllowHeaders().contains(
+                "x-requested-with"));
+
+        // Cached check
+        response = preflight("https://a.example.org", Method.PUT,
+                "x-requested-with");
+        assertEquals("https://a.example.org",
+                response.getAccessControlAllowOrigin());
+
+        // Denied checks
+        response = preflight("https://a.example.org", Method.PUT, "X-Other");
+        assertNull(response.getAccessControlAllowOrigin());
+        response = preflight("https://a.example.org", Method.PATCH);
+        assertNull(response.getAccessControlAllowOrigin());
+        response = preflight("https://evil.com", Method.PUT);
+        assertNull(response.getAccessControlAllowOrigin());
+        assertEquals(0, this.calls);
+    }
+
+    public void testSimpleRequest() {
+        Response response = handle(Method.GET, "https://app.example.com");
+        assertEquals(1, this.calls);
+        assertEquals("https://app.example.com",
+                response.getAccessControlAllowOrigin());
+        assertTrue(response.getAccessControlExposeHeaders().contains("X-Total"));
+
+        response = handle(Method.GET, "https://evil.com");
+        assertEquals(2, this.calls);
+        assertNull(response.getAccessControlAllowOrigin());
+        assertTrue(response.getAccessControlExposeHeaders().isEmpty());
+    }
+
+}
@@ -0,0 +1,209 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or or EPL 1.0 (the "Licenses"). You can
+ * select the license that you prefer but you may not use this file except in
+ * compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+package org.restlet.test.service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Date;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+import org.restlet.Context;
+import org.restlet.data.CharacterSet;
+import org.restlet.data.ClientInfo;
+import org.restlet.data.Encoding;
+import org.restlet.data.Language;
+import org.restlet.data.MediaType;
+import org.restlet.data.Reference;
+import org.restlet.data.Tag;
+import org.restlet.engine.application.DecodeRepresentation;
+import org.restlet.engine.application.EncodeRepresentation;
+import org.restlet.engine.application.Encoder;
+import org.restlet.representation.ByteArrayRepresentation;
+import org.restlet.representation.Representation;
+import org.restlet.representation.StringRepresentation;
+import org.restlet.service.EncoderService;
+import org.restlet.test.RestletTestCase;
+
+/**
+ * Test case for the compression settings and the cache of encoded content of
+ * the {@link EncoderService}.
+ * 
+ * @author Jerome Louvel
+ */
+public class EncoderServiceTestCase extends RestletTestCase {
+
+    private static final String CONTENT = "Some content to compress, some content to compress.";
+
+    private Representation encode(Encoder encoder, Tag tag) {
+        return encode(encoder, tag, "http://localhost/resource", CONTENT);
+    }
+
+    private Representation encode(Encoder encoder, Tag tag, String uri,
+            String content) {
+        ClientInfo clientInfo = new ClientInfo();
+        clientInfo.accept(Encoding.GZIP);
+        StringRepresentation representation = new StringRepresentation(
+                content);
+        representation.setTag(tag);
+        return encoder.encode(clientInfo, representation,
+                (uri == null) ? null : new Reference(uri));
+    }
+
+    public void testCache() throws IOException {
+        EncoderService service = new EncoderService();
+        service.setCacheMaxSize(1024);
+        Encoder encoder = new Encoder(new Context(), false, true, service);
+
+        Representation first = encode(encoder, new Tag("v1", false));
+        Representation second = encode(encoder, new Tag("v1", false));
+        assertEquals(1, service.getEncodedCache().size());
+        assertEquals(1, service.getEncodedCache().getHits());
+        assertTrue(second.getEncodings().contains(Encoding.GZIP));
+        assertEquals(first.getSize(), second.getSize());
+        assertEquals(CONTENT, new DecodeRepresentation(second).getText());
+
+        // Weak tags don't identify the exact content
+        encode(encoder, new Tag("v1", true));
+        assertEquals(1, service.getEncodedCache().size());
+
+        // Neither does a tag without a resource or location reference
+        encode(encoder, new Tag("v1", false), null, CONTENT);
+        assertEquals(1, service.getEncodedCache().size());
+    }
+
+    public void testCacheKey() throws IOException {
+        EncoderService service = new EncoderService();
+        service.setCacheMaxSize(1024);
+        Encoder encoder = new Encoder(new Context(), false, true, service);
+
+        // Entity tags are only unique per resource
+        encode(encoder, new Tag("v1", false), "http://localhost/a", CONTENT);
+        Representation other = encode(encoder, new Tag("v1", false),
+                "http://localhost/b", CONTENT + "b");
+        assertEquals(2, service.getEncodedCache().size());
+        assertEquals(CONTENT + "b", new DecodeRepresentation(other).getText());
+
+        // The compression settings are part of the key
+        StringRepresentation representation = new StringRepresentation(
+                CONTENT);
+        representation.setTag(new Tag("v1", false));
+        Reference ref = new Reference("http://localhost/a");
+        String key = service.getCacheKey(Encoding.GZIP, representation, ref);
+        service.setCompressionLevel(Deflater.BEST_SPEED);
+        assertFalse(key.equals(service.getCacheKey(Encoding.GZIP,
+                representation, ref)));
+
+        // So are the languages, character set and encodings
+        key = service.getCacheKey(Encoding.GZIP, representation, ref);
+        representation.getLanguages().add(Language.FRENCH);
+        assertFalse(key.equals(service.getCacheKey(Encoding.GZIP,
+                representation, ref)));
+        key = service.getCacheKey(Encoding.GZIP, representation, ref);
+        representation.setCharacterSet(CharacterSet.ISO_8859_1);
+        assertFalse(key.equals(service.getCacheKey(Encoding.GZIP,
+                representation, ref)));
+        key = service.getCacheKey(Encoding.GZIP, representation, ref);
+        representation.getEncodings().add(Encoding.DEFLATE);
+        assertFalse(key.equals(service.getCacheKey(Encoding.GZIP,
+                representation, ref)));
+
+        // The modification date only identifies the content at its location
+        representation = new StringRepresentation(CONTENT);
+        representation.setModificationDate(new Date());
+        assertNull(service.getCacheKey(Encoding.GZIP, representation, ref));
+        representation.setLocationRef("file:///tmp/content.txt");
+        assertNotNull(service.getCacheKey(Encoding.GZIP, representation, ref));
+
+        // Transient content can't be read again
+        representation.setTransient(true);
+        assertNull(service.getCacheKey(Encoding.GZIP, representation, ref));
+    }
+
+    public void testCompressionLevel() throws IOException {
+        EncoderService service = new EncoderService();
+        service.setCompressionLevel(Deflater.BEST_COMPRESSION);
+        service.getMediaTypeLevels().put(MediaType.TEXT_ALL,
+                Deflater.NO_COMPRESSION);
+        service.getMediaTypeLevels().put(MediaType.TEXT_HTML,
+                Deflater.BEST_SPEED);
+        assertEquals(Deflater.BEST_SPEED,
+                service.getCompressionLevel(MediaType.TEXT_HTML));
+        assertEquals(Deflater.NO_COMPRESSION,
+                service.getCompressionLevel(MediaType.TEXT_PLAIN));
+        assertEquals(Deflater.BEST_COMPRESSION,
+                service.getCompressionLevel(MediaType.APPLICATION_JSON));
+
+        // Stored blocks are larger than the original content
+        Encoder encoder = new Encoder(new Context(), false, true, service);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        encode(encoder, null).write(out);
+        assertTrue(out.size() > CONTENT.length());
+    }
+
+    public void testConcatenatedGzip() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        for (int i = 0; i < 2; i++) {
+            GZIPOutputStream gzip = new GZIPOutputStream(out);
+            gzip.write(CONTENT.getBytes("UTF-8"));
+            gzip.finish();
+        }
+
+        ByteArrayRepresentation compressed = new ByteArrayRepresentation(
+                out.toByteArray());
+        compressed.getEncodings().add(Encoding.GZIP);
+        assertEquals(CONTENT + CONTENT,
+                new DecodeRepresentation(compressed).getText());
+    }
+
+    public void testDisabledCache() {
+        EncoderService service = new EncoderService();
+        Encoder encoder = new Encoder(new Context(), false, true, service);
+        encode(encoder, new Tag("v1", false));
+        assertEquals(0, service.getEncodedCache().size());
+        assertNull(service.getCacheKey(Encoding.GZIP, new StringRepresentation(
+                CONTENT), new Reference("http://localhost/resource")));
+    }
+
+    public void testPooledRoundTrip() throws IOException {
+        for (Encoding encoding : new Encoding[] { Encoding.GZIP,
+                Encoding.DEFLATE, Encoding.DEFLATE_NOWRAP }) {
+            // Several rounds reuse the pooled deflaters and inflaters
+            for (int i = 0; i < 3; i++) {
+                EncodeRepresentation encoded = new EncodeRepresentation(
+                        encoding, new StringRepresentation(CONTENT + i));
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                encoded.write(out);
+                ByteArrayRepresentation compressed = new ByteArrayRepresentation(
+                        out.toByteArray());
+                compressed.getEncodings().add(encoding);
+                assertEquals(CONTENT + i,
+                        new DecodeRepresentation(compressed).getText());
+            }
+        }
+    }
+
+}
@@ -0,0 +1,132 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or or EPL 1.0 (the "Licenses"). You can
+ * select the license that you prefer but you may not use this file except in
+ * compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+
+package org.restlet.test.service;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.restlet.Request;
+import org.restlet.Response;
+import org.restlet.data.MediaType;
+import org.restlet.data.Method;
+import org.restlet.engine.io.IoUtils;
+import org.restlet.engine.log.AccessLogWriter;
+import org.restlet.representation.FileRepresentation;
+import org.restlet.service.LogService;
+import org.restlet.test.RestletTestCase;
+
+/**
+ * Test case for the asynchronous access logging of the {@link LogService}.
+ * 
+ * @author Jerome Louvel
+ */
+public class LogServiceTestCase extends RestletTestCase {
+
+    private File testDir;
+
+    private String read(File file) throws IOException {
+        return new FileRepresentation(file, MediaType.TEXT_PLAIN).getText();
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        this.testDir = new File(System.getProperty("java.io.tmpdir"),
+                "LogServiceTestCase-" + System.currentTimeMillis());
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        IoUtils.delete(this.testDir, true);
+        super.tearDown();
+    }
+
+    public void testAsyncLog() throws Exception {
+        LogService logService = new LogService();
+        logService.setAccessLogFile(new File(this.testDir, "access.log"));
+        logService.setResponseLogFormat("{m} {rp} {S}");
+        logService.start();
+
+        AccessLogWriter writer = logService.getAccessLogWriter();
+        assertNotNull(writer);
+
+        Request request = new Request(Method.GET, "http://localhost/path");
+        Response response = new Response(request);
+        String message = logService.getResponseLogMessage(response, 10);
+        assertEquals("GET /path 200", message);
+
+        for (int i = 0; i < 100; i++) {
+            assertTrue(writer.log(message));
+        }
+
+        logService.stop();
+        assertNull(logService.getAccessLogWriter());
+        assertEquals(100, writer.getWrittenCount());
+        assertEquals(0, writer.getDroppedCount());
+
+        String content = read(writer.getFile());
+        assertEquals(100, content.split("\r?\n").length);
+        assertTrue(content.startsWith("GET /path 200"));
+
+        // Records logged after the stop are dropped
+        assertFalse(writer.log(message));
+        assertEquals(1, writer.getDroppedCount());
+    }
+
+    public void testDefaultFormat() {
+        LogService logService = new LogService();
+        Request request = new Request(Method.GET, "http://localhost/path?q");
+        Response response = new Response(request);
+        String[] fields = logService.getResponseLogMessage(response, 5).split(
+                "\t");
+        assertEquals(16, fields.length);
+        assertTrue(fields[0].matches("\\d{4}-\\d{2}-\\d{2}"));
+        assertTrue(fields[1].matches("\\d{2}:\\d{2}:\\d{2}"));
+        assertEquals("GET", fields[6]);
+        assertEquals("/path", fields[7]);
+        assertEquals("q", fields[8]);
+        assertEquals("5", fields[12]);
+    }
+
+    public void testRotation() throws Exception {
+        File file = new File(this.testDir, "rotated.log");
+        AccessLogWriter writer = new AccessLogWriter(file, 16, true, 100, 3);
+        writer.start();
+
+        for (int i = 0; i < 50; i++) {
+            writer.log("0123456789012345678");
+        }
+
+        writer.stop();
+        assertEquals(50, writer.getWrittenCount());
+        assertEquals(0, writer.getDroppedCount());
+        assertTrue(file.length() <= 100);
+        assertTrue(new File(this.testDir, "rotated.log.1").exists());
+        assertTrue(new File(this.testDir, "rotated.log.2").exists());
+        assertFalse(new File(this.testDir, "rotated.log.3").exists());
+    }
+
+}
@@ -0,0 +1,205 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or or EPL 1.0 (the "Licenses"). You can
+ * select the license that you prefer but you may not use this file except in
+ * compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+
+package org.restlet.test.service;
+
+import java.lang.management.ManagementFactory;
+
+import javax.management.ObjectName;
+
+import org.restlet.Context;
+import org.restlet.Request;
+import org.restlet.Response;
+import org.restlet.Restlet;
+import org.restlet.Server;
+import org.restlet.data.MediaType;
+import org.restlet.data.Method;
+import org.restlet.data.Protocol;
+import org.restlet.data.Status;
+import org.restlet.engine.adapter.ConcurrencyLimiter;
+import org.restlet.engine.application.Metrics;
+import org.restlet.engine.application.MetricsRestlet;
+import org.restlet.engine.connector.ServerHelper;
+import org.restlet.engine.util.Histogram;
+import org.restlet.representation.StringRepresentation;
+import org.restlet.routing.Filter;
+import org.restlet.routing.Router;
+import org.restlet.service.MetricsService;
+import org.restlet.test.RestletTestCase;
+
+/**
+ * Test case for the {@link MetricsService}.
+ * 
+ * @author Jerome Louvel
+ */
+public class MetricsServiceTestCase extends RestletTestCase {
+
+    private Filter filter;
+
+    private MetricsService service;
+
+    private Response handle(Method method, String uri) {
+        Request request = new Request(method, uri);
+        request.getResourceRef().setBaseRef("http://localhost");
+        Response response = new Response(request);
+        this.filter.handle(request, response);
+        return response;
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        Context context = new Context();
+        Router users = new Router(context);
+        users.attach("/{id}", new Restlet() {
+            @Override
+            public void handle(Request request, Response response) {
+                response.setEntity(new StringRepresentation("user"));
+            }
+        });
+
+        Router root = new Router(context);
+        root.attach("/users", users);
+
+        this.service = new MetricsService();
+        this.filter = this.service.createInboundFilter(context);
+        this.filter.setNext(root);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        this.service = null;
+        this.filter = null;
+        super.tearDown();
+    }
+
+    public void testHistogram() {
+        Histogram histogram = new Histogram(2);
+
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(i);
+        }
+
+        assertEquals(1000, histogram.getCount());
+        assertEquals(500500, histogram.getSum());
+        assertEquals(1000, histogram.getMax());
+
+        // Log-linear buckets bound the relative error
+        long median = histogram.getQuantile(0.5D);
+        assertTrue(median >= 500 && median <= 500 * 1.125);
+        long p99 = histogram.getQuantile(0.99D);
+        assertTrue(p99 >= 990 && p99 <= 1000);
+
+        histogram.clear();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getQuantile(0.5D));
+    }
+
+    public void testJmx() throws Exception {
+        this.service.setJmxEnabled(true);
+        this.service.start();
+        ObjectName name = ObjectName.getInstance("org.restlet:type=Metrics,*");
+        assertEquals(1, ManagementFactory.getPlatformMBeanServer()
+                .queryNames(name, null).size());
+
+        this.service.stop();
+        assertEquals(0, ManagementFactory.getPlatformMBeanServer()
+                .queryNames(name, null).size());
+    }
+
+    public void testPrometheusFamilies() {
+        for (String name : new String[] { "a", "b" }) {
+            Server server = new Server(new Context(), Protocol.HTTP, 0);
+            server.setName(name);
+            ServerHelper helper = new ServerHelper(server);
+            helper.getAttributes().put("concurrencyLimiter",
+                    new ConcurrencyLimiter(10, 1, 100, null, 1D));
+            server.getContext().getAttributes()
+                    .put("org.restlet.engine.helper", helper);
+            this.service.getServers().add(server);
+        }
+
+        // The samples of a family follow its type, whatever the connector
+        String text = new MetricsRestlet(new Context(),
+                this.service.getMetrics()).formatPrometheus();
+        assertTrue(text.contains("# TYPE restlet_connector_concurrency_limit"
+                + " gauge\n" + "restlet_connector_concurrency_limit"
+                + "{connector=\"a\"} 10\n"
+                + "restlet_connector_concurrency_limit{connector=\"b\"} 10\n"
+                + "# TYPE restlet_connector_limit_rejected_total counter\n"));
+        assertFalse(text.contains("restlet_connector_pool_size"));
+    }
+
+    public void testRecording() {
+        handle(Method.GET, "http://localhost/users/1");
+        handle(Method.GET, "http://localhost/users/2");
+        handle(Method.DELETE, "http://localhost/users/2");
+        Response response = handle(Method.GET, "http://localhost/unknown");
+        assertEquals(Status.CLIENT_ERROR_NOT_FOUND, response.getStatus());
+
+        Metrics metrics = this.service.getMetrics();
+        assertEquals(4, metrics.getRequests());
+        assertEquals(0, metrics.getInFlight());
+        assertEquals(3, metrics.getStatusCount(200));
+        assertEquals(1, metrics.getStatusCount(404));
+        assertEquals(12, metrics.getBytesSent());
+        assertEquals(2, metrics.getLatency("/users/{id}", "GET").getCount());
+        assertEquals(1, metrics.getLatency("/users/{id}", "DELETE").getCount());
+        assertEquals(1, metrics.getLatency(Metrics.UNMATCHED, "GET")
+                .getCount());
+    }
+
+    public void testResource() throws Exception {
+        handle(Method.GET, "http://localhost/users/1");
+        Restlet restlet = this.service.createRestlet(new Context());
+
+        Request request = new Request(Method.GET, "http://localhost/metrics");
+        request.getClientInfo().accept(MediaType.APPLICATION_JSON);
+        Response response = new Response(request);
+        restlet.handle(request, response);
+        assertEquals(MediaType.APPLICATION_JSON, response.getEntity()
+                .getMediaType());
+        String json = response.getEntity().getText();
+        assertTrue(json.startsWith("{\"requests\":1,"));
+        assertTrue(json.contains("\"route\":\"/users/{id}\",\"method\":\"GET\",\"count\":1"));
+
+        request = new Request(Method.GET,
+                "http://localhost/metrics?format=prometheus");
+        response = new Response(request);
+        restlet.handle(request, response);
+        String text = response.getEntity().getText();
+        assertTrue(text.contains("restlet_requests_total 1\n"));
+        assertTrue(text.contains("restlet_responses_total{status=\"200\"} 1\n"));
+        assertTrue(text
+                .contains("restlet_request_duration_seconds_count{route=\"/users/{id}\",method=\"GET\"} 1\n"));
+
+        request = new Request(Method.POST, "http://localhost/metrics");
+        response = new Response(request);
+        restlet.handle(request, response);
+        assertEquals(Status.CLIENT_ERROR_METHOD_NOT_ALLOWED,
+                response.getStatus());
+    }
+
+}
@@ -0,0 +1,203 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or or EPL 1.0 (the "Licenses"). You can
+ * select the license that you prefer but you may not use this file except in
+ * compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+package org.restlet.test.service;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.restlet.Context;
+import org.restlet.Request;
+import org.restlet.Response;
+import org.restlet.Restlet;
+import org.restlet.data.Method;
+import org.restlet.data.Status;
+import org.restlet.engine.application.RateLimiter;
+import org.restlet.engine.application.RateLimiter.Scope;
+import org.restlet.routing.Filter;
+import org.restlet.routing.Router;
+import org.restlet.service.RateLimitService;
+import org.restlet.test.RestletTestCase;
+
+/**
+ * Test case for the {@link RateLimitService} and its {@link RateLimiter}.
+ * 
+ * @author Jerome Louvel
+ */
+public class RateLimitServiceTestCase extends RestletTestCase {
+
+    private static final long SECOND = 1000000000L;
+
+    private Response get(Restlet restlet, String uri) {
+        Request request = new Request(Method.GET, uri);
+        request.getResourceRef().setBaseRef("http://server");
+        Response response = new Response(request);
+        restlet.handle(request, response);
+        return response;
+    }
+
+    private Response handle(Filter filter, String address) {
+        Request request = new Request(Method.GET, "http://server/resource");
+        request.getClientInfo().setAddress(address);
+        Response response = new Response(request);
+        filter.handle(request, response);
+        return response;
+    }
+
+    public void testBucket() {
+        RateLimiter limiter = new RateLimiter(Scope.CLIENT_ADDRESS, 2, 3);
+        long now = 0L;
+
+        assertEquals(0L, limiter.acquire("a", now));
+        assertEquals(0L, limiter.acquire("a", now));
+        assertEquals(0L, limiter.acquire("a", now));
+        assertEquals(500L, limiter.acquire("a", now));
+        assertEquals(0L, limiter.acquire("b", now));
+
+        now += SECOND / 2;
+        assertEquals(0L, limiter.acquire("a", now));
+        assertTrue(limiter.acquire("a", now) > 0L);
+
+        now += 10 * SECOND;
+        for (int i = 0; i < 3; i++) {
+            assertEquals(0L, limiter.acquire("a", now));
+        }
+        assertTrue(limiter.acquire("a", now) > 0L);
+    }
+
+    public void testConcurrencyLimit() throws Exception {
+        final CountDownLatch entered = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        RateLimitService service = new RateLimitService();
+        service.setMaxConcurrentRequests(1);
+        service.setMaxQueuedRequests(0);
+        final Filter filter = service.createInboundFilter(new Context());
+        filter.setNext(new Restlet() {
+            @Override
+            public void handle(Request request, Response response) {
+                entered.countDown();
+
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+
+                response.setStatus(Status.SUCCESS_OK);
+            }
+        });
+
+        Thread first = new Thread() {
+            @Override
+            public void run() {
+                handle(filter, "10.0.0.1");
+            }
+        };
+        first.start();
+        assertTrue(entered.await(5, TimeUnit.SECONDS));
+
+        Response rejected = handle(filter, "10.0.0.2");
+        assertEquals(Status.SERVER_ERROR_SERVICE_UNAVAILABLE,
+                rejected.getStatus());
+        assertNotNull(rejected.getRetryAfter());
+
+        release.countDown();
+        first.join(5000);
+        assertEquals(Status.SUCCESS_OK, handle(filter, "10.0.0.2").getStatus());
+    }
+
+    public void testEviction() {
+        RateLimiter limiter = new RateLimiter(Scope.CLIENT_ADDRESS, 1, 1, 16);
+
+        for (int i = 0; i < 1000; i++) {
+            limiter.acquire("10.0.0." + i, 0L);
+        }
+
+        assertTrue(limiter.size() <= 64);
+
+        // Idle buckets are full again and evicted first
+        for (int i = 0; i < 1000; i++) {
+            limiter.acquire("10.0.1." + i, 10 * SECOND);
+        }
+
+        assertTrue(limiter.size() <= 64);
+        assertEquals(0L, limiter.acquire("10.0.0.1", 10 * SECOND));
+    }
+
+    public void testRateLimit() {
+        RateLimitService service = new RateLimitService();
+        service.setClientAddressLimit(1, 2);
+        Filter filter = service.createInboundFilter(new Context());
+        filter.setNext(new Restlet() {
+            @Override
+            public void handle(Request request, Response response) {
+                response.setStatus(Status.SUCCESS_OK);
+            }
+        });
+
+        assertEquals(Status.SUCCESS_OK, handle(filter, "10.0.0.1").getStatus());
+        assertEquals(Status.SUCCESS_OK, handle(filter, "10.0.0.1").getStatus());
+
+        Response response = handle(filter, "10.0.0.1");
+        assertEquals(Status.CLIENT_ERROR_TOO_MANY_REQUESTS,
+                response.getStatus());
+        assertNotNull(response.getRetryAfter());
+        assertEquals(Status.SUCCESS_OK, handle(filter, "10.0.0.2").getStatus());
+    }
+
+    public void testRouteLimit() {
+        RateLimitService service = new RateLimitService();
+        service.setRouteLimit(1, 2);
+        Context context = new Context();
+        Restlet ok = new Restlet() {
+            @Override
+            public void handle(Request request, Response response) {
+                response.setStatus(Status.SUCCESS_OK);
+            }
+        };
+        Filter routeFilter = service.createRouteFilter(context);
+        routeFilter.setNext(ok);
+        Router router = new Router(context);
+        router.attach("/items/{id}", routeFilter);
+        router.attach("/other", ok);
+        Filter filter = service.createInboundFilter(context);
+        filter.setNext(router);
+
+        // The calls to all the items share the bucket of their template
+        assertEquals(Status.SUCCESS_OK, get(filter, "http://server/items/1")
+                .getStatus());
+        assertEquals(Status.SUCCESS_OK, get(filter, "http://server/items/2")
+                .getStatus());
+        assertEquals(Status.CLIENT_ERROR_TOO_MANY_REQUESTS,
+                get(filter, "http://server/items/3").getStatus());
+        assertEquals(1, service.getRouteLimiter().size());
+
+        // Routes without routing filter aren't limited
+        for (int i = 0; i < 3; i++) {
+            assertEquals(Status.SUCCESS_OK,
+                    get(filter, "http://server/other").getStatus());
+        }
+    }
+
+}
@@ -0,0 +1,187 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or or EPL 1.0 (the "Licenses"). You can
+ * select the license that you prefer but you may not use this file except in
+ * compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+package org.restlet.test.service;
+
+import java.io.IOException;
+
+import org.restlet.Context;
+import org.restlet.Request;
+import org.restlet.Response;
+import org.restlet.Restlet;
+import org.restlet.data.CacheDirective;
+import org.restlet.data.ChallengeResponse;
+import org.restlet.data.ChallengeScheme;
+import org.restlet.data.Dimension;
+import org.restlet.data.Method;
+import org.restlet.data.Status;
+import org.restlet.data.Tag;
+import org.restlet.engine.application.ServerCacheFilter;
+import org.restlet.representation.StringRepresentation;
+import org.restlet.service.ServerCacheService;
+import org.restlet.test.RestletTestCase;
+
+/**
+ * Test case for the {@link ServerCacheService} and its
+ * {@link ServerCacheFilter}.
+ * 
+ * @author Jerome Louvel
+ */
+public class ServerCacheServiceTestCase extends RestletTestCase {
+
+    /** Restlet counting the calls. */
+    private static class ResourceRestlet extends Restlet {
+        volatile int calls;
+
+        volatile CacheDirective directive = CacheDirective.maxAge(60);
+
+        @Override
+        public void handle(Request request, Response response) {
+            calls++;
+            StringRepresentation entity = new StringRepresentation("result "
+                    + calls);
+            entity.setTag(new Tag("r" + calls, false));
+            response.setEntity(entity);
+
+            if (directive != null) {
+                response.getCacheDirectives().add(directive);
+            }
+
+            ServerCacheService.addCacheTags(response, "products");
+            response.getDimensions().add(Dimension.LANGUAGE);
+            response.getHeaders().add("X-Custom", "value " + calls);
+        }
+    }
+
+    private ResourceRestlet resource;
+
+    private ServerCacheService service;
+
+    private Response get(Tag noneMatch) {
+        Request request = new Request(Method.GET, "http://server/resource");
+
+        if (noneMatch != null) {
+            request.getConditions().getNoneMatch().add(noneMatch);
+        }
+
+        Response response = new Response(request);
+        this.service.getFilter().handle(request, response);
+        return response;
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        this.resource = new ResourceRestlet();
+        this.service = new ServerCacheService();
+        this.service.createInboundFilter(new Context()).setNext(this.resource);
+    }
+
+    public void testAuthenticated() throws IOException {
+        Request request = new Request(Method.GET, "http://server/resource");
+        request.setChallengeResponse(new ChallengeResponse(
+                ChallengeScheme.HTTP_BASIC, "scott", "tiger"));
+        this.service.getFilter().handle(request, new Response(request));
+        get(null).getEntityAsText();
+        assertEquals(2, this.resource.calls);
+    }
+
+    public void testConditionalHit() throws IOException {
+        get(null).getEntityAsText();
+        Response response = get(new Tag("r1", false));
+        assertEquals(Status.REDIRECTION_NOT_MODIFIED, response.getStatus());
+        assertEquals(1, this.resource.calls);
+    }
+
+    public void testCookies() throws IOException {
+        Request request = new Request(Method.GET, "http://server/resource");
+        request.getCookies().add("session", "123");
+        this.service.getFilter().handle(request, new Response(request));
+        get(null).getEntityAsText();
+        assertEquals(2, this.resource.calls);
+
+        // Unless explicitly public
+        this.service.invalidateAll();
+        this.service.setDefaultTimeToLive(60);
+        this.resource.directive = CacheDirective.publicInfo();
+        request = new Request(Method.GET, "http://server/resource");
+        request.getCookies().add("session", "123");
+        this.service.getFilter().handle(request, new Response(request));
+        assertEquals("result 3", get(null).getEntityAsText());
+        assertEquals(3, this.resource.calls);
+    }
+
+    public void testDefaultTimeToLive() throws IOException {
+        this.resource.directive = null;
+        get(null).getEntityAsText();
+        get(null).getEntityAsText();
+        assertEquals(2, this.resource.calls);
+
+        this.service.setDefaultTimeToLive(60);
+        get(null).getEntityAsText();
+        assertEquals("result 3", get(null).getEntityAsText());
+        assertEquals(3, this.resource.calls);
+    }
+
+    public void testHit() throws IOException {
+        assertEquals("result 1", get(null).getEntityAsText());
+        assertEquals("result 1", get(null).getEntityAsText());
+        assertEquals(1, this.resource.calls);
+        assertEquals(0.5D, this.service.getHitRatio());
+    }
+
+    public void testInvalidate() throws IOException {
+        get(null).getEntityAsText();
+        this.service.invalidate("http://server/other");
+        assertEquals("result 1", get(null).getEntityAsText());
+        this.service.invalidate("http://server/resource");
+        assertEquals("result 2", get(null).getEntityAsText());
+        assertEquals(2, this.resource.calls);
+    }
+
+    public void testInvalidateTag() throws IOException {
+        get(null).getEntityAsText();
+        this.service.invalidateTag("products");
+        assertEquals("result 2", get(null).getEntityAsText());
+        this.service.invalidateTag("orders");
+        assertEquals("result 2", get(null).getEntityAsText());
+    }
+
+    public void testMetadata() throws IOException {
+        get(null).getEntityAsText();
+        Response response = get(null);
+        assertEquals(1, this.resource.calls);
+        assertTrue(response.getDimensions().contains(Dimension.LANGUAGE));
+        assertEquals("value 1",
+                response.getHeaders().getFirstValue("X-Custom"));
+    }
+
+    public void testNoStore() throws IOException {
+        this.resource.directive = CacheDirective.noStore();
+        get(null).getEntityAsText();
+        get(null).getEntityAsText();
+        assertEquals(2, this.resource.calls);
+    }
+
+}
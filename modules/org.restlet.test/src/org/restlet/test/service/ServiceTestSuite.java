@@ -33,11 +33,19 @@ public class ServiceTestSuite {
         TestSuite suite = new TestSuite("Service package");
 
         // $JUnit-BEGIN$
+        suite.addTestSuite(ClientCacheServiceTestCase.class);
         suite.addTestSuite(ConnegServiceTestCase.class);
+        suite.addTestSuite(CorsServiceTestCase.class);
+        suite.addTestSuite(EncoderServiceTestCase.class);
+        suite.addTestSuite(LogServiceTestCase.class);
         suite.addTestSuite(MetadataServiceTestCase.class);
+        suite.addTestSuite(MetricsServiceTestCase.class);
+        suite.addTestSuite(RateLimitServiceTestCase.class);
+        suite.addTestSuite(ServerCacheServiceTestCase.class);
         // [ifndef jee]
         suite.addTestSuite(StatusServiceTestCase.class);
         // [enddef]
+        suite.addTestSuite(TagServiceTestCase.class);
 
         // $JUnit-END$
 
@@ -28,14 +28,18 @@ import java.io.IOException;
 import java.util.HashMap;
 
 import org.restlet.Application;
+import org.restlet.Context;
 import org.restlet.Request;
 import org.restlet.Response;
+import org.restlet.Restlet;
 import org.restlet.data.MediaType;
+import org.restlet.data.Method;
 import org.restlet.data.Status;
 import org.restlet.engine.Engine;
 import org.restlet.ext.jackson.JacksonConverter;
 import org.restlet.ext.jackson.JacksonRepresentation;
 import org.restlet.representation.Representation;
+import org.restlet.routing.Filter;
 import org.restlet.service.StatusService;
 import org.restlet.test.RestletTestCase;
 
@@ -96,6 +100,60 @@ public class StatusServiceTestCase extends RestletTestCase {
         assertEquals(expectedStatus.getUri(), map.get("uri"));
     }
 
+    public void testRepresentationCache() throws IOException {
+        StatusService ss = new StatusService();
+        Request request = new Request();
+        Representation first = ss.toRepresentation(
+                Status.CLIENT_ERROR_NOT_FOUND, request, new Response(request));
+        Representation second = ss.toRepresentation(
+                Status.CLIENT_ERROR_NOT_FOUND, request, new Response(request));
+
+        // Each response gets its own representation of the same content
+        assertNotSame(first, second);
+        assertEquals(MediaType.APPLICATION_JSON, second.getMediaType());
+        assertEquals(first.getText(), second.getText());
+        assertEquals(first.getSize(), second.getSize());
+
+        Representation other = ss.toRepresentation(
+                Status.CLIENT_ERROR_UNAUTHORIZED, request,
+                new Response(request));
+        assertTrue(other.getText().contains("401"));
+
+        // Disabling the cache doesn't change the content
+        ss.setRepresentationCacheSize(0);
+        assertEquals(
+                ss.toRepresentation(Status.CLIENT_ERROR_NOT_FOUND, request,
+                        new Response(request)).getText(), ss
+                        .toRepresentation(Status.CLIENT_ERROR_NOT_FOUND,
+                                request, new Response(request)).getText());
+    }
+
+    public void testNoEntityStatusClasses() {
+        StatusService ss = new StatusService();
+        ss.getNoEntityStatusClasses().add(4);
+        Filter filter = ss.createInboundFilter(new Context());
+        filter.setNext(new Restlet() {
+            @Override
+            public void handle(Request request, Response response) {
+                response.setStatus(request.getResourceRef().getPath()
+                        .equals("/missing") ? Status.CLIENT_ERROR_NOT_FOUND
+                        : Status.SERVER_ERROR_INTERNAL);
+            }
+        });
+
+        Request request = new Request(Method.GET, "http://localhost/missing");
+        Response response = new Response(request);
+        filter.handle(request, response);
+        assertEquals(Status.CLIENT_ERROR_NOT_FOUND, response.getStatus());
+        assertNull(response.getEntity());
+
+        request = new Request(Method.GET, "http://localhost/broken");
+        response = new Response(request);
+        filter.handle(request, response);
+        assertEquals(Status.SERVER_ERROR_INTERNAL, response.getStatus());
+        assertNotNull(response.getEntity());
+    }
+
     public void testSerializedException() throws IOException {
         Throwable exception = new Status401SerializableException(
                 "test message", 50);
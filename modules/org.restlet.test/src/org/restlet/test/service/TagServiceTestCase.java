@@ -0,0 +1,184 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or or EPL 1.0 (the "Licenses"). You can
+ * select the license that you prefer but you may not use this file except in
+ * compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+
+package org.restlet.test.service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import org.restlet.Application;
+import org.restlet.Context;
+import org.restlet.Request;
+import org.restlet.Response;
+import org.restlet.Restlet;
+import org.restlet.data.MediaType;
+import org.restlet.data.Method;
+import org.restlet.data.Status;
+import org.restlet.data.Tag;
+import org.restlet.engine.application.TagFilter;
+import org.restlet.representation.OutputRepresentation;
+import org.restlet.representation.Representation;
+import org.restlet.representation.StringRepresentation;
+import org.restlet.resource.Finder;
+import org.restlet.resource.ServerResource;
+import org.restlet.routing.Filter;
+import org.restlet.service.TagService;
+import org.restlet.test.RestletTestCase;
+
+/**
+ * Test case for the {@link TagService} and its {@link TagFilter}.
+ * 
+ * @author Jerome Louvel
+ */
+public class TagServiceTestCase extends RestletTestCase {
+
+    /** Resource declaring a version. */
+    public static class VersionedResource extends ServerResource {
+        static volatile int calls;
+
+        static volatile String version = "1";
+
+        @Override
+        protected Representation get() {
+            calls++;
+            return new StringRepresentation("version " + version);
+        }
+
+        @Override
+        protected String getVersion() {
+            return version;
+        }
+    }
+
+    private Filter filter;
+
+    private TagService service;
+
+    private Response get(Restlet restlet, Tag noneMatch) {
+        Request request = new Request(Method.GET, "http://server/resource");
+
+        if (noneMatch != null) {
+            request.getConditions().getNoneMatch().add(noneMatch);
+        }
+
+        Response response = new Response(request);
+        restlet.handle(request, response);
+        return response;
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        this.service = new TagService();
+        this.filter = service.createInboundFilter(new Context());
+        this.filter.setNext(new Restlet() {
+            @Override
+            public void handle(Request request, Response response) {
+                response.setEntity(new StringRepresentation("content"));
+            }
+        });
+    }
+
+    public void testGeneratedTag() throws IOException {
+        Response response = get(this.filter, null);
+        Tag tag = response.getEntity().getTag();
+        assertNotNull(tag);
+        assertFalse(tag.isWeak());
+        assertEquals("content", response.getEntity().getText());
+        assertEquals(tag, get(this.filter, null).getEntity().getTag());
+
+        response = get(this.filter, tag);
+        assertEquals(Status.REDIRECTION_NOT_MODIFIED, response.getStatus());
+    }
+
+    public void testMaxBufferSize() {
+        this.service.setMaxBufferSize(5);
+        assertNull(get(this.filter, null).getEntity().getTag());
+    }
+
+    public void testUnknownSize() throws IOException {
+        final int[] writes = new int[1];
+        this.filter.setNext(new Restlet() {
+            @Override
+            public void handle(Request request, Response response) {
+                response.setEntity(new OutputRepresentation(
+                        MediaType.TEXT_PLAIN) {
+                    @Override
+                    public void write(OutputStream outputStream)
+                            throws IOException {
+                        writes[0]++;
+                        outputStream.write("content".getBytes());
+                    }
+                });
+            }
+        });
+
+        // Serialized once while tagged
+        Representation entity = get(this.filter, null).getEntity();
+        assertNotNull(entity.getTag());
+        assertEquals("content", entity.getText());
+        assertEquals(1, writes[0]);
+
+        // Spilled once larger than the maximum buffer size
+        this.service.setMaxBufferSize(5);
+        entity = get(this.filter, null).getEntity();
+        assertNull(entity.getTag());
+        assertEquals("content", entity.getText());
+        assertEquals(2, writes[0]);
+        entity.release();
+    }
+
+    public void testVersion() throws Exception {
+        Application application = new Application();
+        application.getTagService().setEnabled(true);
+        application.setInboundRoot(new Finder(application.getContext(),
+                VersionedResource.class));
+        application.start();
+
+        try {
+            VersionedResource.calls = 0;
+            VersionedResource.version = "1";
+            Tag tag = get(application, null).getEntity().getTag();
+            assertNotNull(tag);
+            assertEquals(1, VersionedResource.calls);
+
+            // Answered from the cached tag
+            Response response = get(application, tag);
+            assertEquals(Status.REDIRECTION_NOT_MODIFIED, response.getStatus());
+            assertEquals(1, VersionedResource.calls);
+
+            // New version
+            VersionedResource.version = "2";
+            response = get(application, tag);
+            assertEquals(Status.SUCCESS_OK, response.getStatus());
+            assertEquals("version 2", response.getEntity().getText());
+            assertFalse(tag.equals(response.getEntity().getTag()));
+            assertEquals(2, VersionedResource.calls);
+        } finally {
+            application.stop();
+        }
+    }
+
+}
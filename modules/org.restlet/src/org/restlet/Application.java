@@ -36,14 +36,19 @@ import org.restlet.resource.ServerResource;
 import org.restlet.routing.Router;
 import org.restlet.routing.VirtualHost;
 import org.restlet.security.Role;
+import org.restlet.service.ClientCacheService;
 import org.restlet.service.ConnectorService;
 import org.restlet.service.ConnegService;
 import org.restlet.service.ConverterService;
 import org.restlet.service.DecoderService;
 import org.restlet.service.EncoderService;
 import org.restlet.service.MetadataService;
+import org.restlet.service.MetricsService;
 import org.restlet.service.RangeService;
+import org.restlet.service.RateLimitService;
+import org.restlet.service.ServerCacheService;
 import org.restlet.service.StatusService;
+import org.restlet.service.TagService;
 import org.restlet.service.TunnelService;
 import org.restlet.util.ServiceList;
 
@@ -162,11 +167,16 @@ public class Application extends Restlet {
         this.roles = new CopyOnWriteArrayList<Role>();
         this.services = new ServiceList(context);
         this.services.add(new TunnelService(true, true));
+        this.services.add(new MetricsService(false));
         this.services.add(new StatusService(true, converterService,
                 metadataService, connegService));
+        this.services.add(new RateLimitService(false));
+        this.services.add(new ClientCacheService(false));
+        this.services.add(new ServerCacheService(false));
         this.services.add(new DecoderService());
         this.services.add(new EncoderService(false));
         this.services.add(new RangeService());
+        this.services.add(new TagService(false));
         this.services.add(new ConnectorService());
         this.services.add(connegService);
         this.services.add(converterService);
@@ -207,6 +217,15 @@ public class Application extends Restlet {
         return getHelper().getFirstOutboundFilter();
     }
 
+    /**
+     * Returns the client cache service. The service is disabled by default.
+     * 
+     * @return The client cache service.
+     */
+    public ClientCacheService getClientCacheService() {
+        return getServices().get(ClientCacheService.class);
+    }
+
     /**
      * Returns the connector service. The service is enabled by default.
      * 
@@ -288,6 +307,15 @@ public class Application extends Restlet {
         return getServices().get(MetadataService.class);
     }
 
+    /**
+     * Returns the metrics service. The service is disabled by default.
+     * 
+     * @return The metrics service.
+     */
+    public MetricsService getMetricsService() {
+        return getServices().get(MetricsService.class);
+    }
+
     /**
      * Returns the outbound root Restlet.
      * 
@@ -314,6 +342,15 @@ public class Application extends Restlet {
         return getServices().get(RangeService.class);
     }
 
+    /**
+     * Returns the rate limit service. The service is disabled by default.
+     * 
+     * @return The rate limit service.
+     */
+    public RateLimitService getRateLimitService() {
+        return getServices().get(RateLimitService.class);
+    }
+
     /**
      * Returns the role associated to the given name.
      * 
@@ -340,6 +377,15 @@ public class Application extends Restlet {
         return roles;
     }
 
+    /**
+     * Returns the server cache service. The service is disabled by default.
+     * 
+     * @return The server cache service.
+     */
+    public ServerCacheService getServerCacheService() {
+        return getServices().get(ServerCacheService.class);
+    }
+
     /**
      * Returns the modifiable list of services.
      * 
@@ -358,6 +404,15 @@ public class Application extends Restlet {
         return getServices().get(StatusService.class);
     }
 
+    /**
+     * Returns the tag service. The service is disabled by default.
+     * 
+     * @return The tag service.
+     */
+    public TagService getTagService() {
+        return getServices().get(TagService.class);
+    }
+
     /**
      * Returns a task service to run concurrent tasks. The service is enabled by
      * default.
@@ -398,6 +453,16 @@ public class Application extends Restlet {
         return debugging;
     }
 
+    /**
+     * Sets the client cache service.
+     * 
+     * @param clientCacheService
+     *            The client cache service.
+     */
+    public void setClientCacheService(ClientCacheService clientCacheService) {
+        getServices().set(clientCacheService);
+    }
+
     /**
      * Sets the connector service.
      * 
@@ -500,6 +565,16 @@ public class Application extends Restlet {
         getServices().set(metadataService);
     }
 
+    /**
+     * Sets the metrics service.
+     * 
+     * @param metricsService
+     *            The metrics service.
+     */
+    public void setMetricsService(MetricsService metricsService) {
+        getServices().set(metricsService);
+    }
+
     /**
      * Sets the outbound root Resource class.
      * 
@@ -535,6 +610,16 @@ public class Application extends Restlet {
         getServices().set(rangeService);
     }
 
+    /**
+     * Sets the rate limit service.
+     * 
+     * @param rateLimitService
+     *            The rate limit service.
+     */
+    public void setRateLimitService(RateLimitService rateLimitService) {
+        getServices().set(rateLimitService);
+    }
+
     /**
      * Sets the modifiable list of roles. This method clears the current list
      * and adds all entries in the parameter list.
@@ -554,6 +639,16 @@ public class Application extends Restlet {
         }
     }
 
+    /**
+     * Sets the server cache service.
+     * 
+     * @param serverCacheService
+     *            The server cache service.
+     */
+    public void setServerCacheService(ServerCacheService serverCacheService) {
+        getServices().set(serverCacheService);
+    }
+
     /**
      * Sets the status service.
      * 
@@ -564,6 +659,16 @@ public class Application extends Restlet {
         getServices().set(statusService);
     }
 
+    /**
+     * Sets the tag service.
+     * 
+     * @param tagService
+     *            The tag service.
+     */
+    public void setTagService(TagService tagService) {
+        getServices().set(tagService);
+    }
+
     /**
      * Sets the task service.
      * 
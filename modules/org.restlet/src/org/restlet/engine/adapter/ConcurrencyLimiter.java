@@ -0,0 +1,273 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or or EPL 1.0 (the "Licenses"). You can
+ * select the license that you prefer but you may not use this file except in
+ * compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+package org.restlet.engine.adapter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// [excludes gwt]
+/**
+ * Adaptive limiter of the number of calls handled at the same time by a server
+ * connector. The limit follows the gradient between the long term and the
+ * short term averages of the handling latency: it grows while the latency stays
+ * close to its long term average, and shrinks when it rises, which indicates
+ * that the calls start to queue somewhere. The calls above the limit are
+ * rejected instead of piling up in the connector queue.<br>
+ * <br>
+ * The low priority calls, identified by their method or by the prefix of their
+ * path, are only admitted below a ratio of the limit so that they are shed
+ * first.<br>
+ * <br>
+ * Concurrency note: instances of this class can be used by several threads at
+ * the same time.
+ * 
+ * @author Jerome Louvel
+ */
+public class ConcurrencyLimiter {
+
+    /** The weight of a sample in the long term average of the latency. */
+    private static final double LONG_WEIGHT = 1D / 600D;
+
+    /** The weight of a sample in the short term average of the latency. */
+    private static final double SHORT_WEIGHT = 1D / 10D;
+
+    /** The weight of a new estimate in the limit. */
+    private static final double SMOOTHING = 0.2D;
+
+    /** The latency ratio tolerated before shrinking the limit. */
+    private static final double TOLERANCE = 1.5D;
+
+    /** The number of calls being handled. */
+    private final AtomicInteger inFlight;
+
+    /** The current limit. */
+    private volatile double limit;
+
+    /** The long term average of the latency, in nanoseconds. */
+    private double longRtt;
+
+    /** The low priority methods, in upper case. */
+    private final List<String> lowPriorityMethods;
+
+    /** The low priority path prefixes. */
+    private final List<String> lowPriorityPaths;
+
+    /** The ratio of the limit available to low priority calls. */
+    private final double lowPriorityRatio;
+
+    /** The maximum limit. */
+    private final int maxLimit;
+
+    /** The minimum limit. */
+    private final int minLimit;
+
+    /** The number of rejected calls. */
+    private final AtomicLong rejected;
+
+    /** The short term average of the latency, in nanoseconds. */
+    private double shortRtt;
+
+    /**
+     * Constructor.
+     * 
+     * @param initialLimit
+     *            The initial limit.
+     * @param minLimit
+     *            The minimum limit.
+     * @param maxLimit
+     *            The maximum limit.
+     * @param lowPriority
+     *            The comma separated list of low priority methods and path
+     *            prefixes, the latter starting with a slash, or null.
+     * @param lowPriorityRatio
+     *            The ratio of the limit available to low priority calls.
+     */
+    public ConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit,
+            String lowPriority, double lowPriorityRatio) {
+        this.minLimit = Math.max(1, minLimit);
+        this.maxLimit = Math.max(this.minLimit, maxLimit);
+        this.limit = Math.min(this.maxLimit,
+                Math.max(this.minLimit, initialLimit));
+        this.lowPriorityRatio = lowPriorityRatio;
+        this.lowPriorityMethods = new ArrayList<String>();
+        this.lowPriorityPaths = new ArrayList<String>();
+        this.inFlight = new AtomicInteger();
+        this.rejected = new AtomicLong();
+
+        if (lowPriority != null) {
+            for (String token : lowPriority.split(",")) {
+                token = token.trim();
+
+                if (token.startsWith("/")) {
+                    this.lowPriorityPaths.add(token);
+                } else if (!token.isEmpty()) {
+                    this.lowPriorityMethods.add(token
+                            .toUpperCase(Locale.ENGLISH));
+                }
+            }
+        }
+    }
+
+    /**
+     * Admits a call if the number of calls being handled is below the limit.
+     * If true is returned, {@link #release(long, boolean)} must be called once
+     * the call is handled.
+     * 
+     * @param method
+     *            The method name of the call.
+     * @param uri
+     *            The request URI of the call.
+     * @return True if the call is admitted.
+     */
+    public boolean acquire(String method, String uri) {
+        boolean result = false;
+        double ratio = isLowPriority(method, uri) ? this.lowPriorityRatio : 1D;
+        int max = Math.max(1, (int) (this.limit * ratio));
+        int current = this.inFlight.get();
+
+        while (!result && (current < max)) {
+            if (this.inFlight.compareAndSet(current, current + 1)) {
+                result = true;
+            } else {
+                current = this.inFlight.get();
+            }
+        }
+
+        if (!result) {
+            this.rejected.incrementAndGet();
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns the number of calls being handled.
+     * 
+     * @return The number of calls being handled.
+     */
+    public int getInFlight() {
+        return this.inFlight.get();
+    }
+
+    /**
+     * Returns the current limit.
+     * 
+     * @return The current limit.
+     */
+    public int getLimit() {
+        return (int) this.limit;
+    }
+
+    /**
+     * Returns the number of rejected calls.
+     * 
+     * @return The number of rejected calls.
+     */
+    public long getRejected() {
+        return this.rejected.get();
+    }
+
+    /**
+     * Indicates if a call has a low priority.
+     * 
+     * @param method
+     *            The method name of the call.
+     * @param uri
+     *            The request URI of the call.
+     * @return True if the call has a low priority.
+     */
+    protected boolean isLowPriority(String method, String uri) {
+        boolean result = (method != null)
+                && this.lowPriorityMethods.contains(method
+                        .toUpperCase(Locale.ENGLISH));
+
+        if (!result && (uri != null)) {
+            // Skip the scheme and authority of absolute URIs
+            int start = uri.indexOf("://");
+            start = (start < 0) ? 0 : uri.indexOf('/', start + 3);
+
+            for (int i = 0; !result && (start >= 0)
+                    && (i < this.lowPriorityPaths.size()); i++) {
+                result = uri.startsWith(this.lowPriorityPaths.get(i), start);
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Releases an admitted call and updates the limit with its latency.
+     * 
+     * @param latency
+     *            The handling latency, in nanoseconds.
+     * @param dropped
+     *            True if the call failed because of an overload, which shrinks
+     *            the limit.
+     */
+    public void release(long latency, boolean dropped) {
+        int current = this.inFlight.getAndDecrement();
+
+        synchronized (this) {
+            double estimate;
+
+            if (dropped) {
+                estimate = this.limit * 0.9D;
+            } else if (latency <= 0L) {
+                estimate = this.limit;
+            } else {
+                if (this.longRtt == 0D) {
+                    this.longRtt = latency;
+                    this.shortRtt = latency;
+                } else {
+                    this.shortRtt += (latency - this.shortRtt) * SHORT_WEIGHT;
+                    this.longRtt += (latency - this.longRtt) * LONG_WEIGHT;
+
+                    // Let the long term average follow a lasting decrease
+                    if (this.longRtt > 2D * this.shortRtt) {
+                        this.longRtt *= 0.95D;
+                    }
+                }
+
+                if (current < this.limit / 2D) {
+                    // The limit isn't reached, so it can't be assessed
+                    estimate = this.limit;
+                } else {
+                    double gradient = Math.max(0.5D, Math.min(1D, TOLERANCE
+                            * this.longRtt / this.shortRtt));
+                    estimate = this.limit * gradient + Math.sqrt(this.limit);
+                }
+            }
+
+            double result = this.limit * (1D - SMOOTHING) + estimate
+                    * SMOOTHING;
+            this.limit = Math.min(this.maxLimit,
+                    Math.max(this.minLimit, result));
+        }
+    }
+
+}
@@ -25,10 +25,12 @@
 package org.restlet.engine.adapter;
 
 import java.lang.reflect.InvocationTargetException;
+import java.util.Date;
 import java.util.logging.Level;
 
 import org.restlet.Context;
 import org.restlet.Server;
+import org.restlet.data.Status;
 import org.restlet.engine.Engine;
 import org.restlet.engine.connector.ServerHelper;
 
@@ -59,6 +61,47 @@ import org.restlet.engine.connector.ServerHelper;
  * <td>Class name of the adapter of low-level HTTP calls into high level
  * requests and responses.</td>
  * </tr>
+ * <tr>
+ * <td>adaptiveLimit</td>
+ * <td>boolean</td>
+ * <td>false</td>
+ * <td>Indicates if the number of calls handled at the same time is limited by
+ * a {@link ConcurrencyLimiter}, adapted to the observed latency. The calls
+ * above the limit are rejected with a "503 Service Unavailable" status before
+ * their headers are parsed. The limiter is exposed under the
+ * "concurrencyLimiter" helper attribute.</td>
+ * </tr>
+ * <tr>
+ * <td>adaptiveLimitInitial</td>
+ * <td>int</td>
+ * <td>20</td>
+ * <td>Initial number of calls handled at the same time.</td>
+ * </tr>
+ * <tr>
+ * <td>adaptiveLimitMax</td>
+ * <td>int</td>
+ * <td>1000</td>
+ * <td>Maximum number of calls handled at the same time.</td>
+ * </tr>
+ * <tr>
+ * <td>adaptiveLimitMin</td>
+ * <td>int</td>
+ * <td>4</td>
+ * <td>Minimum number of calls handled at the same time.</td>
+ * </tr>
+ * <tr>
+ * <td>adaptiveLimitLowPriority</td>
+ * <td>String</td>
+ * <td>null</td>
+ * <td>Comma separated list of the methods, and of the path prefixes starting
+ * with a slash, of the low priority calls. They are shed first.</td>
+ * </tr>
+ * <tr>
+ * <td>adaptiveLimitLowPriorityRatio</td>
+ * <td>float</td>
+ * <td>0.5</td>
+ * <td>Ratio of the limit available to the low priority calls.</td>
+ * </tr>
  * </table>
  * 
  * @author Jerome Louvel
@@ -68,6 +111,9 @@ public class HttpServerHelper extends ServerHelper {
     /** The adapter from HTTP calls to uniform calls. */
     private volatile ServerAdapter adapter;
 
+    /** The adaptive concurrency limiter, or null. */
+    private volatile ConcurrencyLimiter concurrencyLimiter;
+
     /**
      * Default constructor. Note that many methods assume that a non-null server
      * is set to work properly. You can use the setHelped(Server) method for
@@ -86,6 +132,33 @@ public class HttpServerHelper extends ServerHelper {
     public HttpServerHelper(Server server) {
         super(server);
         this.adapter = null;
+        this.concurrencyLimiter = null;
+    }
+
+    /**
+     * Creates the adaptive concurrency limiter if enabled by the "adaptiveLimit"
+     * parameter.
+     * 
+     * @return The new concurrency limiter or null.
+     */
+    protected ConcurrencyLimiter createConcurrencyLimiter() {
+        ConcurrencyLimiter result = null;
+
+        if (Boolean.parseBoolean(getHelpedParameters().getFirstValue(
+                "adaptiveLimit", "false"))) {
+            result = new ConcurrencyLimiter(Integer.parseInt(getHelpedParameters()
+                    .getFirstValue("adaptiveLimitInitial", "20")),
+                    Integer.parseInt(getHelpedParameters().getFirstValue(
+                            "adaptiveLimitMin", "4")),
+                    Integer.parseInt(getHelpedParameters().getFirstValue(
+                            "adaptiveLimitMax", "1000")),
+                    getHelpedParameters().getFirstValue(
+                            "adaptiveLimitLowPriority"),
+                    Double.parseDouble(getHelpedParameters().getFirstValue(
+                            "adaptiveLimitLowPriorityRatio", "0.5")));
+        }
+
+        return result;
     }
 
     /**
@@ -129,6 +202,15 @@ public class HttpServerHelper extends ServerHelper {
         return this.adapter;
     }
 
+    /**
+     * Returns the adaptive concurrency limiter, created when the helper starts.
+     * 
+     * @return The adaptive concurrency limiter or null.
+     */
+    public ConcurrencyLimiter getConcurrencyLimiter() {
+        return this.concurrencyLimiter;
+    }
+
     /**
      * Handles the connector call. The default behavior is to create an REST
      * call and delegate it to the attached Restlet.
@@ -137,14 +219,56 @@ public class HttpServerHelper extends ServerHelper {
      *            The HTTP server call.
      */
     public void handle(ServerCall httpCall) {
+        ConcurrencyLimiter limiter = getConcurrencyLimiter();
+        HttpResponse response = null;
+        long start = 0L;
+
+        if (limiter != null) {
+            if (!limiter.acquire(httpCall.getMethod(),
+                    httpCall.getRequestUri())) {
+                reject(httpCall);
+                return;
+            }
+
+            start = System.nanoTime();
+        }
+
         try {
             HttpRequest request = getAdapter().toRequest(httpCall);
-            HttpResponse response = new HttpResponse(httpCall, request);
+            response = new HttpResponse(httpCall, request);
             handle(request, response);
             getAdapter().commit(response);
         } catch (Exception e) {
             getLogger().log(Level.WARNING,
                     "Error while handling an HTTP server call", e);
+        } finally {
+            if (limiter != null) {
+                limiter.release(System.nanoTime() - start, (response == null)
+                        || Status.SERVER_ERROR_SERVICE_UNAVAILABLE
+                                .equals(response.getStatus()));
+            }
+
+            Engine.clearThreadLocalVariables();
+        }
+    }
+
+    /**
+     * Rejects a call above the concurrency limit with a
+     * "503 Service Unavailable" status. The request headers are left unparsed.
+     * 
+     * @param httpCall
+     *            The HTTP server call.
+     */
+    protected void reject(ServerCall httpCall) {
+        try {
+            HttpResponse response = new HttpResponse(httpCall, getAdapter()
+                    .toRequest(httpCall));
+            response.setStatus(Status.SERVER_ERROR_SERVICE_UNAVAILABLE);
+            response.setRetryAfter(new Date(System.currentTimeMillis() + 1000L));
+            getAdapter().commit(response);
+        } catch (Exception e) {
+            getLogger().log(Level.FINE,
+                    "Error while rejecting an HTTP server call", e);
         } finally {
             Engine.clearThreadLocalVariables();
         }
@@ -159,4 +283,15 @@ public class HttpServerHelper extends ServerHelper {
     public void setAdapter(ServerAdapter adapter) {
         this.adapter = adapter;
     }
+
+    @Override
+    public synchronized void start() throws Exception {
+        super.start();
+        this.concurrencyLimiter = createConcurrencyLimiter();
+
+        if (this.concurrencyLimiter != null) {
+            // Expose the limiter for monitoring purpose, see MetricsService
+            getAttributes().put("concurrencyLimiter", this.concurrencyLimiter);
+        }
+    }
 }
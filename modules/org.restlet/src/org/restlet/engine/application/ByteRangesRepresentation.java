@@ -0,0 +1,283 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or or EPL 1.0 (the "Licenses"). You can
+ * select the license that you prefer but you may not use this file except in
+ * compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+
+package org.restlet.engine.application;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.restlet.data.MediaType;
+import org.restlet.data.Range;
+import org.restlet.engine.header.ContentType;
+import org.restlet.engine.header.RangeWriter;
+import org.restlet.engine.io.IoUtils;
+import org.restlet.engine.io.SeekableSource;
+import org.restlet.representation.OutputRepresentation;
+import org.restlet.representation.Representation;
+
+// [excludes gwt]
+/**
+ * Representation exposing several ranges of the content of a wrapped
+ * representation as a "multipart/byteranges" entity. Each part has its own
+ * "Content-Type" and "Content-Range" headers. The size of the wrapped
+ * representation must be known and the ranges must be resolved, that is have
+ * a positive index and a size within the content.<br>
+ * <br>
+ * Seekable representations are directly positioned at the start of each range.
+ * Other representations are read once if the ranges are in ascending order, or
+ * else read again for each range, which is why the {@link RangeFilter} only
+ * wraps them with ascending ranges.
+ * 
+ * @author Jerome Louvel
+ */
+public class ByteRangesRepresentation extends OutputRepresentation {
+
+    /** The generator of boundaries. */
+    private static final Random RANDOM = new Random();
+
+    /**
+     * Creates a new boundary.
+     * 
+     * @return A new boundary.
+     */
+    private static String createBoundary() {
+        return "restlet-" + Long.toHexString(RANDOM.nextLong() & Long.MAX_VALUE);
+    }
+
+    /**
+     * Indicates if the ranges are in ascending order without overlapping.
+     * 
+     * @param ranges
+     *            The resolved ranges.
+     * @return True if the ranges are in ascending order.
+     */
+    public static boolean isAscending(List<Range> ranges) {
+        long next = 0L;
+
+        for (Range range : ranges) {
+            if (range.getIndex() < next) {
+                return false;
+            }
+
+            next = range.getIndex() + range.getSize();
+        }
+
+        return true;
+    }
+
+    /** The headers of each part. */
+    private final List<byte[]> partHeaders;
+
+    /** The resolved ranges. */
+    private final List<Range> ranges;
+
+    /** The closing delimiter. */
+    private final byte[] trailer;
+
+    /** The wrapped representation. */
+    private final Representation wrappedRepresentation;
+
+    /**
+     * Constructor.
+     * 
+     * @param wrappedRepresentation
+     *            The wrapped representation with a complete content of known
+     *            size.
+     * @param ranges
+     *            The resolved ranges to expose.
+     */
+    public ByteRangesRepresentation(Representation wrappedRepresentation,
+            List<Range> ranges) {
+        this(wrappedRepresentation, ranges, createBoundary());
+    }
+
+    /**
+     * Constructor.
+     * 
+     * @param wrappedRepresentation
+     *            The wrapped representation with a complete content of known
+     *            size.
+     * @param ranges
+     *            The resolved ranges to expose.
+     * @param boundary
+     *            The boundary separating the parts.
+     */
+    public ByteRangesRepresentation(Representation wrappedRepresentation,
+            List<Range> ranges, String boundary) {
+        super(new MediaType(MediaType.MULTIPART_BYTERANGES.getName()
+                + "; boundary=" + boundary));
+        this.partHeaders = new ArrayList<byte[]>(ranges.size());
+        this.ranges = Collections.unmodifiableList(new ArrayList<Range>(
+                ranges));
+        this.trailer = toBytes("\r\n--" + boundary + "--\r\n");
+        this.wrappedRepresentation = wrappedRepresentation;
+
+        String contentType = (wrappedRepresentation.getMediaType() == null) ? null
+                : ContentType.writeHeader(wrappedRepresentation);
+        long size = this.trailer.length;
+
+        for (Range range : this.ranges) {
+            StringBuilder sb = new StringBuilder();
+            sb.append("\r\n--").append(boundary).append("\r\n");
+
+            if (contentType != null) {
+                sb.append("Content-Type: ").append(contentType).append("\r\n");
+            }
+
+            sb.append("Content-Range: ")
+                    .append(RangeWriter.write(range,
+                            wrappedRepresentation.getSize())).append("\r\n");
+            sb.append("\r\n");
+            byte[] header = toBytes(sb.toString());
+            this.partHeaders.add(header);
+            size += header.length + range.getSize();
+        }
+
+        setSize(size);
+        setModificationDate(wrappedRepresentation.getModificationDate());
+        setTag(wrappedRepresentation.getTag());
+    }
+
+    /**
+     * Copies a given number of bytes from a stream.
+     * 
+     * @param in
+     *            The source stream.
+     * @param out
+     *            The target stream.
+     * @param size
+     *            The number of bytes to copy.
+     * @param buffer
+     *            The copy buffer.
+     * @throws IOException
+     */
+    private void copy(InputStream in, OutputStream out, long size,
+            byte[] buffer) throws IOException {
+        long remaining = size;
+
+        while (remaining > 0) {
+            int read = in.read(buffer, 0,
+                    (int) Math.min(buffer.length, remaining));
+
+            if (read == -1) {
+                throw new IOException("Unexpected end of the ranged content");
+            }
+
+            out.write(buffer, 0, read);
+            remaining -= read;
+        }
+    }
+
+    /**
+     * Returns the resolved ranges.
+     * 
+     * @return The resolved ranges.
+     */
+    public List<Range> getRanges() {
+        return ranges;
+    }
+
+    /**
+     * Returns the wrapped representation.
+     * 
+     * @return The wrapped representation.
+     */
+    public Representation getWrappedRepresentation() {
+        return wrappedRepresentation;
+    }
+
+    @Override
+    public void release() {
+        getWrappedRepresentation().release();
+        super.release();
+    }
+
+    /**
+     * Encodes a string of headers in ASCII.
+     * 
+     * @param value
+     *            The string to encode.
+     * @return The encoded bytes.
+     */
+    private byte[] toBytes(String value) {
+        byte[] result = new byte[value.length()];
+
+        for (int i = 0; i < result.length; i++) {
+            result[i] = (byte) value.charAt(i);
+        }
+
+        return result;
+    }
+
+    @Override
+    public void write(OutputStream outputStream) throws IOException {
+        Representation wrapped = getWrappedRepresentation();
+        boolean sequential = !(wrapped instanceof SeekableSource)
+                && isAscending(getRanges());
+        byte[] buffer = new byte[IoUtils.BUFFER_SIZE];
+        InputStream in = null;
+        long position = 0L;
+
+        try {
+            for (int i = 0; i < getRanges().size(); i++) {
+                Range range = getRanges().get(i);
+                outputStream.write(this.partHeaders.get(i));
+
+                if (sequential) {
+                    // Read the content once, from range to range
+                    if (in == null) {
+                        in = IoUtils.getStreamFrom(wrapped, range.getIndex());
+                    } else {
+                        IoUtils.skip(in, range.getIndex() - position);
+                    }
+
+                    copy(in, outputStream, range.getSize(), buffer);
+                    position = range.getIndex() + range.getSize();
+                } else {
+                    InputStream part = IoUtils.getStreamFrom(wrapped,
+                            range.getIndex());
+
+                    try {
+                        copy(part, outputStream, range.getSize(), buffer);
+                    } finally {
+                        part.close();
+                    }
+                }
+            }
+
+            outputStream.write(this.trailer);
+        } finally {
+            if (in != null) {
+                in.close();
+            }
+        }
+    }
+
+}
@@ -0,0 +1,674 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or or EPL 1.0 (the "Licenses"). You can
+ * select the license that you prefer but you may not use this file except in
+ * compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+package org.restlet.engine.application;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.restlet.Request;
+import org.restlet.Response;
+import org.restlet.data.CacheDirective;
+import org.restlet.data.CharacterSet;
+import org.restlet.data.ClientInfo;
+import org.restlet.data.Dimension;
+import org.restlet.data.Disposition;
+import org.restlet.data.Encoding;
+import org.restlet.data.Header;
+import org.restlet.data.Language;
+import org.restlet.data.MediaType;
+import org.restlet.data.Method;
+import org.restlet.data.Reference;
+import org.restlet.data.Status;
+import org.restlet.data.Tag;
+import org.restlet.engine.header.HeaderConstants;
+import org.restlet.engine.io.IoUtils;
+import org.restlet.representation.ByteArrayRepresentation;
+import org.restlet.representation.EmptyRepresentation;
+import org.restlet.representation.FileRepresentation;
+import org.restlet.representation.InputRepresentation;
+import org.restlet.representation.Representation;
+import org.restlet.util.Series;
+
+// [excludes gwt]
+/**
+ * Response stored by a cache, with the content of its entity fully read either
+ * in memory or in a file, and the metadata needed to serve it again, including
+ * the dimensions it varies upon, the CORS properties and the extension
+ * headers.
+ * 
+ * @author Jerome Louvel
+ */
+public class CachedResponse {
+
+    /**
+     * Representation reading the content file, allowing its deletion once
+     * released.
+     */
+    private class ReaderRepresentation extends FileRepresentation {
+
+        /** Indicates if the representation still reads the content file. */
+        private final AtomicBoolean reading;
+
+        /**
+         * Constructor.
+         */
+        private ReaderRepresentation() {
+            super(CachedResponse.this.file, CachedResponse.this.mediaType);
+            this.reading = new AtomicBoolean(true);
+        }
+
+        @Override
+        public void release() {
+            super.release();
+
+            if (this.reading.compareAndSet(true, false)) {
+                releaseReader();
+            }
+        }
+
+    }
+
+    /**
+     * Returns a copy of a list of headers.
+     * 
+     * @param headers
+     *            The headers to copy.
+     * @return The copied headers.
+     */
+    private static List<Header> copy(List<Header> headers) {
+        List<Header> result = new ArrayList<Header>(headers.size());
+
+        for (Header header : headers) {
+            result.add(new Header(header.getName(), header.getValue()));
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns the first cache directive with the given name.
+     * 
+     * @param directives
+     *            The cache directives.
+     * @param name
+     *            The directive name.
+     * @return The first cache directive with the given name or null.
+     */
+    public static CacheDirective getDirective(List<CacheDirective> directives,
+            String name) {
+        for (CacheDirective directive : directives) {
+            if (name.equalsIgnoreCase(directive.getName())) {
+                return directive;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Returns the value in seconds of a cache directive, or -1 if missing or
+     * invalid.
+     * 
+     * @param directives
+     *            The cache directives.
+     * @param name
+     *            The directive name.
+     * @return The value in seconds of a cache directive, or -1.
+     */
+    public static long getDirectiveSeconds(List<CacheDirective> directives,
+            String name) {
+        CacheDirective directive = getDirective(directives, name);
+
+        if ((directive != null) && (directive.getValue() != null)) {
+            try {
+                return Long.parseLong(directive.getValue().trim());
+            } catch (NumberFormatException nfe) {
+                return -1L;
+            }
+        }
+
+        return -1L;
+    }
+
+    /**
+     * Computes the time until which a response is fresh, based on its
+     * "s-maxage" (for shared caches), "max-age" and "no-cache" cache
+     * directives, its entity expiration date and its age.
+     * 
+     * @param response
+     *            The response.
+     * @param now
+     *            The current time.
+     * @param shared
+     *            True for a shared cache.
+     * @return The time until which the response is fresh.
+     */
+    public static long getFreshUntil(Response response, long now,
+            boolean shared) {
+        List<CacheDirective> directives = response.getCacheDirectives();
+
+        if (getDirective(directives, HeaderConstants.CACHE_NO_CACHE) != null) {
+            return now;
+        }
+
+        long lifetime = shared ? getDirectiveSeconds(directives,
+                HeaderConstants.CACHE_SHARED_MAX_AGE) : -1L;
+
+        if (lifetime < 0) {
+            lifetime = getDirectiveSeconds(directives,
+                    HeaderConstants.CACHE_MAX_AGE);
+        }
+
+        long result = now;
+
+        if (lifetime >= 0) {
+            result = now + lifetime * 1000L;
+        } else if ((response.getEntity() != null)
+                && (response.getEntity().getExpirationDate() != null)) {
+            Date date = response.getDate();
+            long origin = (date == null) ? now : date.getTime();
+            result = now
+                    + (response.getEntity().getExpirationDate().getTime() - origin);
+        }
+
+        return result - Math.max(0, response.getAge()) * 1000L;
+    }
+
+    /**
+     * Returns the key of a stored response, combining the resource URI and the
+     * request metadata matching the dimensions the response varies upon.
+     * Returns null if the response varies upon the time or upon unspecified
+     * dimensions.
+     * 
+     * @param uri
+     *            The resource URI.
+     * @param request
+     *            The request.
+     * @param dimensions
+     *            The dimensions the response varies upon, or null.
+     * @return The key of the stored response or null.
+     */
+    public static String getKey(String uri, Request request,
+            Set<Dimension> dimensions) {
+        if ((dimensions == null) || dimensions.isEmpty()) {
+            return uri;
+        }
+
+        StringBuilder sb = new StringBuilder(uri);
+        ClientInfo clientInfo = request.getClientInfo();
+
+        for (Dimension dimension : Dimension.values()) {
+            if (!dimensions.contains(dimension)) {
+                continue;
+            }
+
+            sb.append('\n');
+
+            switch (dimension) {
+            case AUTHORIZATION:
+                sb.append((request.getChallengeResponse() == null) ? ""
+                        : request.getChallengeResponse().getIdentifier());
+                break;
+            case CHARACTER_SET:
+                sb.append(clientInfo.getAcceptedCharacterSets());
+                break;
+            case CLIENT_ADDRESS:
+                sb.append(clientInfo.getAddress());
+                break;
+            case CLIENT_AGENT:
+                sb.append(clientInfo.getAgent());
+                break;
+            case ENCODING:
+                sb.append(clientInfo.getAcceptedEncodings());
+                break;
+            case LANGUAGE:
+                sb.append(clientInfo.getAcceptedLanguages());
+                break;
+            case MEDIA_TYPE:
+                sb.append(clientInfo.getAcceptedMediaTypes());
+                break;
+            default:
+                // Varying on time or on unspecified dimensions
+                return null;
+            }
+        }
+
+        return sb.toString();
+    }
+
+    /**
+     * Reads the content of the response entity, up to a maximum size. If the
+     * content is larger, the entity of the response is replaced by an
+     * equivalent one streaming the bytes already read followed by the
+     * remaining ones, and null is returned.
+     * 
+     * @param response
+     *            The response.
+     * @param maxSize
+     *            The maximum size to read.
+     * @return The content of the entity or null if too large.
+     * @throws IOException
+     */
+    public static byte[] read(Response response, long maxSize)
+            throws IOException {
+        Representation entity = response.getEntity();
+        InputStream in = entity.getStream();
+
+        if (in == null) {
+            return new byte[0];
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream(
+                (entity.getSize() > 0) ? (int) entity.getSize()
+                        : IoUtils.BUFFER_SIZE);
+        byte[] buffer = new byte[IoUtils.BUFFER_SIZE];
+        int bytesRead;
+
+        while ((bytesRead = in.read(buffer)) != -1) {
+            out.write(buffer, 0, bytesRead);
+
+            if (out.size() > maxSize) {
+                InputRepresentation remaining = new InputRepresentation(
+                        new SequenceInputStream(new ByteArrayInputStream(
+                                out.toByteArray()), in),
+                        entity.getMediaType(), entity.getSize());
+                remaining.setCharacterSet(entity.getCharacterSet());
+                remaining.setDisposition(entity.getDisposition());
+                remaining.setEncodings(entity.getEncodings());
+                remaining.setExpirationDate(entity.getExpirationDate());
+                remaining.setLanguages(entity.getLanguages());
+                remaining.setLocationRef(entity.getLocationRef());
+                remaining.setModificationDate(entity.getModificationDate());
+                remaining.setTag(entity.getTag());
+                response.setEntity(remaining);
+                return null;
+            }
+        }
+
+        in.close();
+        return out.toByteArray();
+    }
+
+    /** Indicates if the resource allows credentials for CORS requests. */
+    private final Boolean accessControlAllowCredentials;
+
+    /** The headers allowed for CORS requests. */
+    private final Set<String> accessControlAllowHeaders;
+
+    /** The methods allowed for CORS requests. */
+    private final Set<Method> accessControlAllowMethods;
+
+    /** The origin allowed for CORS requests. */
+    private final String accessControlAllowOrigin;
+
+    /** The headers exposed to CORS requests. */
+    private final Set<String> accessControlExposeHeaders;
+
+    /** The allowed methods. */
+    private final Set<Method> allowedMethods;
+
+    /** The cache directives. */
+    private final List<CacheDirective> cacheDirectives;
+
+    /** The character set. */
+    private final CharacterSet characterSet;
+
+    /** The content in memory, or null. */
+    private final byte[] content;
+
+    /** The dimensions the response varies upon. */
+    private final Set<Dimension> dimensions;
+
+    /** The disposition. */
+    private final Disposition disposition;
+
+    /** The encodings. */
+    private final List<Encoding> encodings;
+
+    /** The expiration date. */
+    private final Date expirationDate;
+
+    /** The content file, or null. */
+    private final File file;
+
+    /** The time until which the response is fresh. */
+    private volatile long freshUntil;
+
+    /** The extension headers, or null. */
+    private final List<Header> headers;
+
+    /** The languages. */
+    private final List<Language> languages;
+
+    /** The location reference. */
+    private final Reference locationRef;
+
+    /** The media type. */
+    private final MediaType mediaType;
+
+    /** The modification date. */
+    private final Date modificationDate;
+
+    /** The number of representations reading the content file. */
+    private int readers;
+
+    /** Indicates if the cached response has been released. */
+    private boolean released;
+
+    /** The content size. */
+    private final long size;
+
+    /** The status. */
+    private final Status status;
+
+    /** The time at which the response was stored. */
+    private final long storedAt;
+
+    /** The entity tag. */
+    private final Tag tag;
+
+    /**
+     * Constructor.
+     * 
+     * @param response
+     *            The response to store.
+     * @param content
+     *            The content of the entity in memory, or null.
+     * @param file
+     *            The file containing the content of the entity, or null.
+     * @param freshUntil
+     *            The time until which the response is fresh.
+     */
+    public CachedResponse(Response response, byte[] content, File file,
+            long freshUntil) {
+        Representation entity = response.getEntity();
+        this.accessControlAllowCredentials = response
+                .getAccessControlAllowCredentials();
+        this.accessControlAllowHeaders = new HashSet<String>(
+                response.getAccessControlAllowHeaders());
+        this.accessControlAllowMethods = new HashSet<Method>(
+                response.getAccessControlAllowMethods());
+        this.accessControlAllowOrigin = response.getAccessControlAllowOrigin();
+        this.accessControlExposeHeaders = new HashSet<String>(
+                response.getAccessControlExposeHeaders());
+        this.allowedMethods = new HashSet<Method>(response.getAllowedMethods());
+        this.cacheDirectives = new ArrayList<CacheDirective>(
+                response.getCacheDirectives());
+        this.content = content;
+        this.dimensions = new HashSet<Dimension>(response.getDimensions());
+        this.file = file;
+        this.freshUntil = freshUntil;
+
+        @SuppressWarnings("unchecked")
+        Series<Header> extensionHeaders = (Series<Header>) response
+                .getAttributes().get(HeaderConstants.ATTRIBUTE_HEADERS);
+        this.headers = (extensionHeaders == null) ? null
+                : copy(extensionHeaders);
+        this.status = response.getStatus();
+        this.storedAt = System.currentTimeMillis();
+
+        if (entity != null) {
+            this.characterSet = entity.getCharacterSet();
+            this.disposition = entity.getDisposition();
+            this.encodings = new ArrayList<Encoding>(entity.getEncodings());
+            this.expirationDate = entity.getExpirationDate();
+            this.languages = new ArrayList<Language>(entity.getLanguages());
+            this.locationRef = entity.getLocationRef();
+            this.mediaType = entity.getMediaType();
+            this.modificationDate = entity.getModificationDate();
+            this.tag = entity.getTag();
+        } else {
+            this.characterSet = null;
+            this.disposition = null;
+            this.encodings = new ArrayList<Encoding>();
+            this.expirationDate = null;
+            this.languages = new ArrayList<Language>();
+            this.locationRef = null;
+            this.mediaType = null;
+            this.modificationDate = null;
+            this.tag = null;
+        }
+
+        if (content != null) {
+            this.size = content.length;
+        } else if (file != null) {
+            this.size = file.length();
+        } else {
+            this.size = 0L;
+        }
+    }
+
+    /**
+     * Returns the age of the cached response in seconds.
+     * 
+     * @return The age of the cached response in seconds.
+     */
+    public int getAge() {
+        return (int) ((System.currentTimeMillis() - this.storedAt) / 1000L);
+    }
+
+    /**
+     * Returns the cache directives.
+     * 
+     * @return The cache directives.
+     */
+    public List<CacheDirective> getCacheDirectives() {
+        return cacheDirectives;
+    }
+
+    /**
+     * Returns the dimensions the response varies upon.
+     * 
+     * @return The dimensions the response varies upon.
+     */
+    public Set<Dimension> getDimensions() {
+        return dimensions;
+    }
+
+    /**
+     * Returns the time until which the response is fresh.
+     * 
+     * @return The time until which the response is fresh.
+     */
+    public long getFreshUntil() {
+        return freshUntil;
+    }
+
+    /**
+     * Returns the modification date.
+     * 
+     * @return The modification date.
+     */
+    public Date getModificationDate() {
+        return modificationDate;
+    }
+
+    /**
+     * Returns the content size.
+     * 
+     * @return The content size.
+     */
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * Returns the status.
+     * 
+     * @return The status.
+     */
+    public Status getStatus() {
+        return status;
+    }
+
+    /**
+     * Returns the entity tag.
+     * 
+     * @return The entity tag.
+     */
+    public Tag getTag() {
+        return tag;
+    }
+
+    /**
+     * Indicates if the response is fresh.
+     * 
+     * @return True if the response is fresh.
+     */
+    public boolean isFresh() {
+        return System.currentTimeMillis() < this.freshUntil;
+    }
+
+    /**
+     * Indicates if the response has a validator, either a tag or a
+     * modification date.
+     * 
+     * @return True if the response has a validator.
+     */
+    public boolean hasValidator() {
+        return (this.tag != null) || (this.modificationDate != null);
+    }
+
+    /**
+     * Deletes the content file, if any.
+     */
+    private void delete() {
+        if ((this.file != null) && this.file.exists() && !this.file.delete()) {
+            this.file.deleteOnExit();
+        }
+    }
+
+    /**
+     * Releases the resources held by the cached response, deleting the content
+     * file if any. As the representations returned by
+     * {@link #toRepresentation()} may not have read the file yet, its deletion
+     * is deferred until the last of them is released.
+     */
+    public synchronized void release() {
+        this.released = true;
+
+        if (this.readers == 0) {
+            delete();
+        }
+    }
+
+    /**
+     * Indicates that a representation reading the content file has been
+     * released, deleting the file if it was the last one and the cached
+     * response has been released as well.
+     */
+    private synchronized void releaseReader() {
+        this.readers--;
+
+        if (this.released && (this.readers == 0)) {
+            delete();
+        }
+    }
+
+    /**
+     * Sets the time until which the response is fresh, typically after a
+     * successful revalidation.
+     * 
+     * @param freshUntil
+     *            The time until which the response is fresh.
+     */
+    public void setFreshUntil(long freshUntil) {
+        this.freshUntil = freshUntil;
+    }
+
+    /**
+     * Creates a new representation serving the cached content and metadata.
+     * The content file, if any, is kept until the representation is released.
+     * 
+     * @return A new representation.
+     */
+    public Representation toRepresentation() {
+        Representation result;
+
+        if (this.content != null) {
+            result = new ByteArrayRepresentation(this.content, this.mediaType,
+                    this.size);
+        } else if (this.file != null) {
+            synchronized (this) {
+                this.readers++;
+            }
+
+            result = new ReaderRepresentation();
+        } else {
+            result = new EmptyRepresentation();
+            result.setMediaType(this.mediaType);
+        }
+
+        result.setCharacterSet(this.characterSet);
+        result.setDisposition(this.disposition);
+        result.setEncodings(new ArrayList<Encoding>(this.encodings));
+        result.setExpirationDate(this.expirationDate);
+        result.setLanguages(new ArrayList<Language>(this.languages));
+        result.setLocationRef(this.locationRef);
+        result.setModificationDate(this.modificationDate);
+        result.setTag(this.tag);
+        return result;
+    }
+
+    /**
+     * Updates the given response with the cached status, cache directives,
+     * dimensions, CORS properties, extension headers, age and a new entity.
+     * 
+     * @param response
+     *            The response to update.
+     */
+    public void toResponse(Response response) {
+        response.setStatus(this.status);
+        response.setAccessControlAllowCredentials(
+                this.accessControlAllowCredentials);
+        response.setAccessControlAllowHeaders(this.accessControlAllowHeaders);
+        response.setAccessControlAllowMethods(this.accessControlAllowMethods);
+        response.setAccessControlAllowOrigin(this.accessControlAllowOrigin);
+        response.setAccessControlExposeHeaders(this.accessControlExposeHeaders);
+        response.setAllowedMethods(this.allowedMethods);
+        response.setCacheDirectives(new ArrayList<CacheDirective>(
+                this.cacheDirectives));
+        response.setDimensions(this.dimensions);
+
+        if (this.headers != null) {
+            response.getAttributes().put(HeaderConstants.ATTRIBUTE_HEADERS,
+                    new Series<Header>(Header.class, copy(this.headers)));
+        }
+
+        response.setAge(getAge());
+        response.setEntity(toRepresentation());
+    }
+
+}
@@ -0,0 +1,555 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or or EPL 1.0 (the "Licenses"). You can
+ * select the license that you prefer but you may not use this file except in
+ * compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+package org.restlet.engine.application;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+
+import org.restlet.Context;
+import org.restlet.Request;
+import org.restlet.Response;
+import org.restlet.data.CacheDirective;
+import org.restlet.data.Conditions;
+import org.restlet.data.Dimension;
+import org.restlet.data.Method;
+import org.restlet.data.Status;
+import org.restlet.data.Tag;
+import org.restlet.engine.header.HeaderConstants;
+import org.restlet.engine.util.LruCache;
+import org.restlet.representation.Representation;
+import org.restlet.routing.Filter;
+
+// [excludes gwt]
+/**
+ * Filter caching the responses to GET requests on the client-side, typically
+ * attached to the outbound chain of an application. Responses are stored in
+ * memory or optionally in files, with a size-based LRU eviction. Fresh
+ * responses are served without invoking the next Restlet, based on their
+ * "max-age" cache directive or expiration date. Stale responses with an entity
+ * tag or a modification date are revalidated with a conditional request, a
+ * "304 Not Modified" response refreshing the stored response. The "no-store",
+ * "no-cache", "max-age" and "only-if-cached" request directives and the "Vary"
+ * response header are honored. Requests with the "only-if-cached" directive
+ * that can't be served by a fresh stored response are answered with a
+ * "504 Gateway Timeout" status.<br>
+ * <br>
+ * Successful unsafe requests such as POST, PUT or DELETE invalidate the stored
+ * responses of the target resource.<br>
+ * <br>
+ * Concurrency note: instances of this class or its subclasses can be invoked by
+ * several threads at the same time and therefore must be thread-safe. You
+ * should be especially careful when storing state in member variables.
+ * 
+ * @author Jerome Louvel
+ */
+public class ClientCacheFilter extends Filter {
+
+    /** The stored responses, weighted by size. */
+    private final LruCache<String, CachedResponse> cache;
+
+    /** The directory where the entities are stored, or null for memory. */
+    private final File directory;
+
+    /** The number of requests served from a fresh stored response. */
+    private final AtomicLong hits;
+
+    /**
+     * The keys of the stored responses, per resource URI. Also guards the
+     * updates of the dimensions per resource URI.
+     */
+    private final Map<String, Set<String>> keysByUri;
+
+    /** The maximum size of a stored entity. */
+    private volatile long maxEntrySize;
+
+    /** The number of requests forwarded without a usable stored response. */
+    private final AtomicLong misses;
+
+    /** The number of requests served after a successful revalidation. */
+    private final AtomicLong revalidations;
+
+    /**
+     * The dimensions the responses vary upon, per resource URI having stored
+     * responses. Updated while holding the {@link #keysByUri} map.
+     */
+    private final Map<String, Set<Dimension>> variations;
+
+    /**
+     * Constructor storing up to 10 MB of entities in memory, each entity being
+     * limited to 1 MB.
+     * 
+     * @param context
+     *            The context.
+     */
+    public ClientCacheFilter(Context context) {
+        this(context, 10485760L, 1048576L, null);
+    }
+
+    /**
+     * Constructor.
+     * 
+     * @param context
+     *            The context.
+     * @param maxSize
+     *            The maximum total size of the stored entities.
+     * @param maxEntrySize
+     *            The maximum size of a stored entity.
+     * @param directory
+     *            The directory where the entities are stored, or null to store
+     *            them in memory.
+     */
+    public ClientCacheFilter(Context context, long maxSize, long maxEntrySize,
+            File directory) {
+        super(context);
+        this.cache = new LruCache<String, CachedResponse>(maxSize) {
+            @Override
+            protected void evicted(String key, CachedResponse value) {
+                value.release();
+
+                synchronized (keysByUri) {
+                    // Replaced responses keep their index
+                    if (!containsKey(key)) {
+                        unindex(key);
+                    }
+                }
+            }
+
+            @Override
+            protected long weigh(String key, CachedResponse value) {
+                return Math.max(1L, value.getSize());
+            }
+        };
+        this.directory = directory;
+        this.hits = new AtomicLong();
+        this.keysByUri = new HashMap<String, Set<String>>();
+        this.maxEntrySize = maxEntrySize;
+        this.misses = new AtomicLong();
+        this.revalidations = new AtomicLong();
+        this.variations = new ConcurrentHashMap<String, Set<Dimension>>();
+    }
+
+    /**
+     * Removes all the stored responses.
+     */
+    public void clear() {
+        this.cache.clear();
+    }
+
+    @Override
+    protected int doHandle(Request request, Response response) {
+        Method method = request.getMethod();
+
+        if (!Method.GET.equals(method)) {
+            int result = super.doHandle(request, response);
+
+            if (!method.isSafe() && response.getStatus().isSuccess()) {
+                invalidate(getUri(request));
+            }
+
+            return result;
+        }
+
+        List<CacheDirective> directives = request.getCacheDirectives();
+
+        if (CachedResponse.getDirective(directives,
+                HeaderConstants.CACHE_NO_STORE) != null) {
+            this.misses.incrementAndGet();
+            return super.doHandle(request, response);
+        }
+
+        String uri = getUri(request);
+        String key = getKey(uri, request, this.variations.get(uri));
+        CachedResponse cached = (key == null) ? null : this.cache.get(key);
+        boolean revalidating = (CachedResponse.getDirective(directives,
+                HeaderConstants.CACHE_NO_CACHE) != null)
+                || (CachedResponse.getDirectiveSeconds(directives,
+                        HeaderConstants.CACHE_MAX_AGE) == 0);
+
+        if ((cached != null) && !revalidating && cached.isFresh()) {
+            this.hits.incrementAndGet();
+            cached.toResponse(response);
+            return CONTINUE;
+        }
+
+        if (CachedResponse.getDirective(directives,
+                HeaderConstants.CACHE_ONLY_IF_CACHED) != null) {
+            // Stale responses can't be revalidated
+            this.misses.incrementAndGet();
+            response.setStatus(Status.SERVER_ERROR_GATEWAY_TIMEOUT);
+            return CONTINUE;
+        }
+
+        Conditions conditions = request.getConditions();
+        boolean validating = (cached != null) && cached.hasValidator()
+                && !conditions.hasSome();
+
+        if (validating) {
+            if (cached.getTag() != null) {
+                conditions.getNoneMatch().add(cached.getTag());
+            } else {
+                conditions.setModifiedSince(cached.getModificationDate());
+            }
+        }
+
+        long now = System.currentTimeMillis();
+        int result = super.doHandle(request, response);
+
+        if (validating) {
+            conditions.setNoneMatch(new ArrayList<Tag>());
+            conditions.setModifiedSince(null);
+
+            if (Status.REDIRECTION_NOT_MODIFIED.equals(response.getStatus())) {
+                this.revalidations.incrementAndGet();
+                cached.setFreshUntil(CachedResponse.getFreshUntil(response,
+                        now, false));
+
+                if (response.getEntity() != null) {
+                    response.getEntity().release();
+                }
+
+                cached.toResponse(response);
+                return result;
+            }
+        }
+
+        this.misses.incrementAndGet();
+        store(uri, request, response, now);
+        return result;
+    }
+
+    /**
+     * Returns the directory where the entities are stored, or null if they are
+     * stored in memory.
+     * 
+     * @return The directory where the entities are stored, or null.
+     */
+    public File getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Returns the ratio of requests served from the cache, including after a
+     * successful revalidation, between 0 and 1.
+     * 
+     * @return The ratio of requests served from the cache.
+     */
+    public double getHitRatio() {
+        long served = getHits() + getRevalidations();
+        long total = served + getMisses();
+        return (total == 0) ? 0D : (double) served / total;
+    }
+
+    /**
+     * Returns the number of requests served from a fresh stored response.
+     * 
+     * @return The number of requests served from a fresh stored response.
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * Returns the key of a stored response, or null if the response can't be
+     * stored.
+     * 
+     * @param uri
+     *            The resource URI.
+     * @param request
+     *            The request.
+     * @param dimensions
+     *            The dimensions the response varies upon, or null.
+     * @return The key of the stored response or null.
+     * @see CachedResponse#getKey(String, Request, Set)
+     */
+    protected String getKey(String uri, Request request,
+            Set<Dimension> dimensions) {
+        return CachedResponse.getKey(uri, request, dimensions);
+    }
+
+    /**
+     * Returns the maximum size of a stored entity.
+     * 
+     * @return The maximum size of a stored entity.
+     */
+    public long getMaxEntrySize() {
+        return maxEntrySize;
+    }
+
+    /**
+     * Returns the maximum total size of the stored entities.
+     * 
+     * @return The maximum total size of the stored entities.
+     */
+    public long getMaxSize() {
+        return this.cache.getMaxWeight();
+    }
+
+    /**
+     * Returns the number of requests forwarded without a usable stored
+     * response.
+     * 
+     * @return The number of requests forwarded without a usable stored
+     *         response.
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Returns the number of requests served after a successful revalidation.
+     * 
+     * @return The number of requests served after a successful revalidation.
+     */
+    public long getRevalidations() {
+        return revalidations.get();
+    }
+
+    /**
+     * Returns the total size of the stored entities.
+     * 
+     * @return The total size of the stored entities.
+     */
+    public long getSize() {
+        return this.cache.getWeight();
+    }
+
+    /**
+     * Returns the resource URI of a request, without fragment.
+     * 
+     * @param request
+     *            The request.
+     * @return The resource URI.
+     */
+    private String getUri(Request request) {
+        return request.getResourceRef().toString(true, false);
+    }
+
+    /**
+     * Returns the resource URI of the key of a stored response.
+     * 
+     * @param key
+     *            The key of the stored response.
+     * @return The resource URI.
+     * @see CachedResponse#getKey(String, Request, Set)
+     */
+    private String getUri(String key) {
+        int index = key.indexOf('\n');
+        return (index == -1) ? key : key.substring(0, index);
+    }
+
+    /**
+     * Removes the stored responses of a resource, whatever their variant.
+     * 
+     * @param uri
+     *            The resource URI.
+     */
+    public void invalidate(String uri) {
+        synchronized (this.keysByUri) {
+            Set<String> keys = this.keysByUri.get(uri);
+
+            if (keys != null) {
+                for (String key : new ArrayList<String>(keys)) {
+                    this.cache.remove(key);
+                }
+            }
+
+            this.variations.remove(uri);
+        }
+    }
+
+    /**
+     * Sets the maximum size of a stored entity.
+     * 
+     * @param maxEntrySize
+     *            The maximum size of a stored entity.
+     */
+    public void setMaxEntrySize(long maxEntrySize) {
+        this.maxEntrySize = maxEntrySize;
+    }
+
+    /**
+     * Sets the maximum total size of the stored entities.
+     * 
+     * @param maxSize
+     *            The maximum total size of the stored entities.
+     */
+    public void setMaxSize(long maxSize) {
+        this.cache.setMaxWeight(maxSize);
+    }
+
+    /**
+     * Stores a response if it is cacheable, then updates the response so that
+     * its entity can still be consumed.
+     * 
+     * @param uri
+     *            The resource URI.
+     * @param request
+     *            The request.
+     * @param response
+     *            The response to store.
+     * @param now
+     *            The time at which the request was sent.
+     */
+    protected void store(String uri, Request request, Response response,
+            long now) {
+        if (!Status.SUCCESS_OK.equals(response.getStatus())
+                || (CachedResponse.getDirective(response.getCacheDirectives(),
+                        HeaderConstants.CACHE_NO_STORE) != null)) {
+            return;
+        }
+
+        Representation entity = response.getEntity();
+
+        if ((entity != null)
+                && (!entity.isAvailable() || (entity.getSize() > getMaxEntrySize()))) {
+            return;
+        }
+
+        Set<Dimension> dimensions = new HashSet<Dimension>(
+                response.getDimensions());
+        String key = getKey(uri, request, dimensions);
+        long freshUntil = CachedResponse.getFreshUntil(response, now, false);
+
+        if ((key == null)
+                || ((freshUntil <= System.currentTimeMillis()) && ((entity == null) || ((entity
+                        .getTag() == null) && (entity.getModificationDate() == null))))) {
+            return;
+        }
+
+        byte[] content = null;
+
+        if (entity != null) {
+            try {
+                content = CachedResponse.read(response,
+                        getMaxEntrySize());
+            } catch (IOException ioe) {
+                getLogger().log(Level.WARNING,
+                        "Unable to read the response entity of " + uri, ioe);
+            }
+
+            if (content == null) {
+                return;
+            }
+        }
+
+        CachedResponse cached = new CachedResponse(response, content, null,
+                freshUntil);
+
+        if (entity != null) {
+            response.setEntity(cached.toRepresentation());
+
+            if (getDirectory() != null) {
+                cached = storeFile(response, content, freshUntil);
+            }
+        }
+
+        if (cached != null) {
+            synchronized (this.keysByUri) {
+                if (this.cache.put(key, cached)) {
+                    Set<String> keys = this.keysByUri.get(uri);
+
+                    if (keys == null) {
+                        keys = new HashSet<String>();
+                        this.keysByUri.put(uri, keys);
+                    }
+
+                    keys.add(key);
+                    this.variations.put(uri, dimensions);
+                } else {
+                    cached.release();
+                }
+            }
+        }
+    }
+
+    /**
+     * Creates a stored response whose entity content is written in a file of
+     * the cache directory.
+     * 
+     * @param response
+     *            The response to store.
+     * @param content
+     *            The content of the entity.
+     * @param freshUntil
+     *            The time until which the response is fresh.
+     * @return The stored response or null if the file couldn't be written.
+     */
+    private CachedResponse storeFile(Response response, byte[] content,
+            long freshUntil) {
+        File file = null;
+
+        try {
+            file = File.createTempFile("restlet-cache", ".tmp", getDirectory());
+            OutputStream out = new FileOutputStream(file);
+
+            try {
+                out.write(content);
+            } finally {
+                out.close();
+            }
+
+            return new CachedResponse(response, null, file, freshUntil);
+        } catch (IOException ioe) {
+            getLogger().log(Level.WARNING,
+                    "Unable to write the cache file " + file, ioe);
+
+            if ((file != null) && !file.delete()) {
+                file.deleteOnExit();
+            }
+
+            return null;
+        }
+    }
+
+    /**
+     * Removes the key of a removed response from the index, and forgets the
+     * dimensions of its resource if it has no other stored response. Must be
+     * called while holding the {@link #keysByUri} map.
+     * 
+     * @param key
+     *            The key of the removed response.
+     */
+    private void unindex(String key) {
+        String uri = getUri(key);
+        Set<String> keys = this.keysByUri.get(uri);
+
+        if ((keys != null) && keys.remove(key) && keys.isEmpty()) {
+            this.keysByUri.remove(uri);
+            this.variations.remove(uri);
+        }
+    }
+
+}
@@ -50,6 +50,9 @@ import org.restlet.routing.Filter;
  * corsFilter.setAllowedCredentials(true);
  * </pre>
  * 
+ * The settings can be changed after the first request, either via the setters
+ * or via the sets returned by the getters.
+ * 
  * @author Manuel Boillod
  */
 public class CorsFilter extends Filter {
@@ -84,6 +87,13 @@ public class CorsFilter extends Filter {
     /** The value of 'Access-Control-Expose-Headers' response header. */
     private Set<String> exposedHeaders = null;
 
+    /**
+     * The maximum number of cached preflight checks, used when
+     * {@link #skippingResourceForCorsOptions} is true. Default is 0, disabling
+     * the cache.
+     */
+    private int preflightCacheSize = 0;
+
     /**
      * If true, the filter does not call the server resource for OPTIONS method
      * of CORS request and set Access-Control-Allow-Methods header with
@@ -123,7 +133,8 @@ public class CorsFilter extends Filter {
     /**
      * Skip the call to the server resource if the {@link #skippingResourceForCorsOptions}
      * is true and if the current request use the OPTIONS method and is a CORS request.
-     *
+     * The preflight request is then answered directly by this filter.
+     * 
      * @param request
      *            The request to handle.
      * @param response
@@ -134,8 +145,9 @@ public class CorsFilter extends Filter {
         if (skippingResourceForCorsOptions
                 && Method.OPTIONS.equals(request.getMethod())
                 && getCorsResponseHelper().isCorsRequest(request)) {
-            response.setAllowedMethods(DEFAULT_ALLOWED_METHODS);
-            return Filter.SKIP;
+            getCorsResponseHelper().addPreflightResponseHeaders(request,
+                    response, DEFAULT_ALLOWED_METHODS);
+            return Filter.STOP;
         } else {
             return Filter.CONTINUE;
         }
@@ -164,7 +176,8 @@ public class CorsFilter extends Filter {
      *         resource.
      */
     public Set<String> getAllowedHeaders() {
-        return allowedHeaders;
+        return (this.corsResponseHelper == null) ? allowedHeaders
+                : this.corsResponseHelper.getAllowedHeaders();
     }
 
     /**
@@ -176,7 +189,8 @@ public class CorsFilter extends Filter {
      * @return The origin allowed by the requested resource.
      */
     public Set<String> getAllowedOrigins() {
-        return allowedOrigins;
+        return (this.corsResponseHelper == null) ? allowedOrigins
+                : this.corsResponseHelper.getAllowedOrigins();
     }
 
     /**
@@ -192,6 +206,7 @@ public class CorsFilter extends Filter {
                     .setAllowAllRequestedHeaders(allowAllRequestedHeaders);
             corsResponseHelper.setAllowedHeaders(allowedHeaders);
             corsResponseHelper.setExposedHeaders(exposedHeaders);
+            corsResponseHelper.setPreflightCacheSize(preflightCacheSize);
         }
         return corsResponseHelper;
     }
@@ -206,7 +221,20 @@ public class CorsFilter extends Filter {
      *         resource.
      */
     public Set<String> getExposedHeaders() {
-        return exposedHeaders;
+        return (this.corsResponseHelper == null) ? exposedHeaders
+                : this.corsResponseHelper.getExposedHeaders();
+    }
+
+    /**
+     * Returns the maximum number of cached preflight checks, by origin,
+     * requested method and requested headers. Only used when
+     * {@link #skippingResourceForCorsOptions} is true. Default is 0, disabling
+     * the cache.
+     * 
+     * @return The maximum number of cached preflight checks.
+     */
+    public int getPreflightCacheSize() {
+        return preflightCacheSize;
     }
 
     /**
@@ -232,7 +260,7 @@ public class CorsFilter extends Filter {
      * If true, the filter does not call the server resource for OPTIONS method
      * of CORS request and set Access-Control-Allow-Methods header with
      * {@link #DEFAULT_ALLOWED_METHODS}. Default is false.
-     *
+     * 
      * @return True if the filter does not call the server resource for
      * OPTIONS method of CORS request.
      */
@@ -254,6 +282,12 @@ public class CorsFilter extends Filter {
     public CorsFilter setAllowingAllRequestedHeaders(
             boolean allowingAllRequestedHeaders) {
         this.allowAllRequestedHeaders = allowingAllRequestedHeaders;
+
+        if (this.corsResponseHelper != null) {
+            this.corsResponseHelper
+                    .setAllowAllRequestedHeaders(allowingAllRequestedHeaders);
+        }
+
         return this;
     }
 
@@ -266,6 +300,11 @@ public class CorsFilter extends Filter {
      */
     public CorsFilter setAllowedCredentials(boolean allowedCredentials) {
         this.allowedCredentials = allowedCredentials;
+
+        if (this.corsResponseHelper != null) {
+            this.corsResponseHelper.setAllowedCredentials(allowedCredentials);
+        }
+
         return this;
     }
 
@@ -279,6 +318,11 @@ public class CorsFilter extends Filter {
      */
     public CorsFilter setAllowedHeaders(Set<String> allowedHeaders) {
         this.allowedHeaders = allowedHeaders;
+
+        if (this.corsResponseHelper != null) {
+            this.corsResponseHelper.setAllowedHeaders(allowedHeaders);
+        }
+
         return this;
     }
 
@@ -291,6 +335,11 @@ public class CorsFilter extends Filter {
      */
     public CorsFilter setAllowedOrigins(Set<String> allowedOrigins) {
         this.allowedOrigins = allowedOrigins;
+
+        if (this.corsResponseHelper != null) {
+            this.corsResponseHelper.setAllowedOrigins(allowedOrigins);
+        }
+
         return this;
     }
 
@@ -303,12 +352,37 @@ public class CorsFilter extends Filter {
      */
     public CorsFilter setExposedHeaders(Set<String> exposedHeaders) {
         this.exposedHeaders = exposedHeaders;
+
+        if (this.corsResponseHelper != null) {
+            this.corsResponseHelper.setExposedHeaders(exposedHeaders);
+        }
+
+        return this;
+    }
+
+    /**
+     * Sets the maximum number of cached preflight checks, by origin, requested
+     * method and requested headers. Only used when
+     * {@link #skippingResourceForCorsOptions} is true. Set to 0 to disable the
+     * cache.
+     * 
+     * @param preflightCacheSize
+     *            The maximum number of cached preflight checks.
+     * @return Itself for chaining methods calls.
+     */
+    public CorsFilter setPreflightCacheSize(int preflightCacheSize) {
+        this.preflightCacheSize = preflightCacheSize;
+
+        if (this.corsResponseHelper != null) {
+            this.corsResponseHelper.setPreflightCacheSize(preflightCacheSize);
+        }
+
         return this;
     }
 
     /**
      * Sets the value of skipResourceForCorsOptions field.
-     *
+     * 
      * @param skipResourceForCorsOptions
      *          True if the filter does not call the server resource for
      *          OPTIONS method of CORS request.
@@ -0,0 +1,235 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or or EPL 1.0 (the "Licenses"). You can
+ * select the license that you prefer but you may not use this file except in
+ * compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+package org.restlet.engine.application;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Compiled CORS policy, immutable and shared by the concurrent requests. The
+ * allowed origins are matched with hash lookups, including the wildcard
+ * subdomain patterns such as "https://*.example.com" or "*.example.com", which
+ * are looked up for each parent domain of the origin host. The patterns without
+ * a scheme match any scheme and port. The headers are matched
+ * case-insensitively.
+ * 
+ * @author Jerome Louvel
+ */
+public class CorsPolicy {
+
+    /**
+     * Returns an unmodifiable copy of a set, or null if the set is null or
+     * empty.
+     * 
+     * @param set
+     *            The set to copy.
+     * @return An unmodifiable copy or null.
+     */
+    private static Set<String> copy(Set<String> set) {
+        return ((set == null) || set.isEmpty()) ? null : Collections
+                .unmodifiableSet(new HashSet<>(set));
+    }
+
+    /** Indicates if all the origins are allowed. */
+    private final boolean allowingAllOrigins;
+
+    /** Indicates if all the requested headers are allowed. */
+    private final boolean allowingAllRequestedHeaders;
+
+    /** Indicates if the 'Access-Control-Allow-Credentials' header is added. */
+    private final boolean allowedCredentials;
+
+    /** The allowed headers, in lower case. */
+    private final Set<String> allowedHeaders;
+
+    /** The allowed origins. */
+    private final Set<String> allowedOrigins;
+
+    /** The allowed wildcard origins, such as "https://*.example.com". */
+    private final Set<String> allowedOriginPatterns;
+
+    /** The value of 'Access-Control-Expose-Headers' response header. */
+    private final Set<String> exposedHeaders;
+
+    /**
+     * Constructor.
+     * 
+     * @param allowingAllRequestedHeaders
+     *            Indicates if all the requested headers are allowed.
+     * @param allowedCredentials
+     *            Indicates if the 'Access-Control-Allow-Credentials' header is
+     *            added.
+     * @param allowedHeaders
+     *            The allowed headers.
+     * @param allowedOrigins
+     *            The allowed origins, "*" allowing all of them.
+     * @param exposedHeaders
+     *            The value of 'Access-Control-Expose-Headers' response header.
+     */
+    public CorsPolicy(boolean allowingAllRequestedHeaders,
+            boolean allowedCredentials, Set<String> allowedHeaders,
+            Set<String> allowedOrigins, Set<String> exposedHeaders) {
+        Set<String> headers = new HashSet<>();
+        Set<String> origins = new HashSet<>();
+        Set<String> patterns = new HashSet<>();
+        boolean allOrigins = false;
+
+        if (allowedHeaders != null) {
+            for (String header : allowedHeaders) {
+                headers.add(header.toLowerCase(Locale.ENGLISH));
+            }
+        }
+
+        if (allowedOrigins != null) {
+            for (String origin : allowedOrigins) {
+                if ("*".equals(origin)) {
+                    allOrigins = true;
+                } else if (origin.startsWith("*.")
+                        || origin.contains("://*.")) {
+                    patterns.add(origin);
+                } else {
+                    origins.add(origin);
+                }
+            }
+        }
+
+        this.allowingAllOrigins = allOrigins;
+        this.allowingAllRequestedHeaders = allowingAllRequestedHeaders;
+        this.allowedCredentials = allowedCredentials;
+        this.allowedHeaders = (allowedHeaders == null) ? null : Collections
+                .unmodifiableSet(headers);
+        this.allowedOrigins = origins;
+        this.allowedOriginPatterns = patterns;
+        this.exposedHeaders = copy(exposedHeaders);
+    }
+
+    /**
+     * Returns the value of the 'Access-Control-Allow-Origin' header for a
+     * given origin, or null if the origin isn't allowed.
+     * 
+     * @param origin
+     *            The value of the 'Origin' request header.
+     * @return The value of the 'Access-Control-Allow-Origin' header or null.
+     */
+    public String getAllowOrigin(String origin) {
+        String result = null;
+
+        if (this.allowingAllOrigins) {
+            result = this.allowedCredentials ? origin : "*";
+        } else if (isAllowedOrigin(origin)) {
+            result = origin;
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns the unmodifiable value of 'Access-Control-Expose-Headers'
+     * response header, or null if no header is exposed.
+     * 
+     * @return The value of 'Access-Control-Expose-Headers' response header.
+     */
+    public Set<String> getExposedHeaders() {
+        return this.exposedHeaders;
+    }
+
+    /**
+     * Indicates if the 'Access-Control-Allow-Credentials' header is added.
+     * 
+     * @return True if the 'Access-Control-Allow-Credentials' header is added.
+     */
+    public boolean isAllowedCredentials() {
+        return this.allowedCredentials;
+    }
+
+    /**
+     * Indicates if all the requested headers are allowed, case-insensitively.
+     * 
+     * @param requestedHeaders
+     *            The requested headers.
+     * @return True if all the requested headers are allowed.
+     */
+    public boolean isAllowedHeaders(Set<String> requestedHeaders) {
+        boolean result = this.allowingAllRequestedHeaders;
+
+        if (!result && (this.allowedHeaders != null)) {
+            result = true;
+
+            for (String requestedHeader : requestedHeaders) {
+                if (!this.allowedHeaders.contains(requestedHeader
+                        .toLowerCase(Locale.ENGLISH))) {
+                    result = false;
+                    break;
+                }
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Indicates if an origin is allowed, either explicitly or by a wildcard
+     * subdomain pattern.
+     * 
+     * @param origin
+     *            The origin to check.
+     * @return True if the origin is allowed.
+     */
+    public boolean isAllowedOrigin(String origin) {
+        boolean result = this.allowingAllOrigins
+                || this.allowedOrigins.contains(origin);
+
+        if (!result && !this.allowedOriginPatterns.isEmpty()) {
+            int hostIndex = origin.indexOf("://");
+            hostIndex = (hostIndex == -1) ? 0 : hostIndex + 3;
+            int hostEnd = origin.indexOf(':', hostIndex);
+            hostEnd = (hostEnd == -1) ? origin.length() : hostEnd;
+            String scheme = origin.substring(0, hostIndex);
+            int dotIndex = origin.indexOf('.', hostIndex);
+
+            while (!result && (dotIndex != -1) && (dotIndex < hostEnd)) {
+                result = this.allowedOriginPatterns.contains(scheme + "*"
+                        + origin.substring(dotIndex))
+                        || this.allowedOriginPatterns.contains("*"
+                                + origin.substring(dotIndex, hostEnd));
+                dotIndex = origin.indexOf('.', dotIndex + 1);
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Indicates if all the origins are allowed.
+     * 
+     * @return True if all the origins are allowed.
+     */
+    public boolean isAllowingAllOrigins() {
+        return this.allowingAllOrigins;
+    }
+
+}
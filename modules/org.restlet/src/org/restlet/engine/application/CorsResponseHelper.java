@@ -24,7 +24,10 @@
 
 package org.restlet.engine.application;
 
+import java.util.AbstractSet;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.Set;
 import java.util.logging.Logger;
 
@@ -33,13 +36,19 @@ import org.restlet.Request;
 import org.restlet.Response;
 import org.restlet.data.Method;
 import org.restlet.data.Status;
+import org.restlet.engine.util.LruCache;
 import org.restlet.engine.util.SetUtils;
 
 /**
  * Helps to generate response CORS headers.<br>
  * The CORS specification defines a subset of methods qualified as simple HEAD,
  * GET and POST. Any other methods should send a preflight request with the
- * method OPTIONS.
+ * method OPTIONS.<br>
+ * <br>
+ * The settings are compiled into a {@link CorsPolicy} when the first request
+ * is handled. Changing them later through the setters or through the sets
+ * returned by the getters recompiles it. Sets modified directly via the public
+ * fields aren't detected.
  * 
  * @see <a href="http://www.w3.org/TR/cors">W3C CORS Specification</a>
  * @see <a href="http://www.w3.org/TR/cors/#simple-method">Simple methods</a>
@@ -50,6 +59,106 @@ public class CorsResponseHelper {
 
     private static Logger LOGGER = Context.getCurrentLogger();
 
+    /**
+     * Result of the check of a preflight request, cached by origin, requested
+     * method and requested headers.
+     */
+    private static class Preflight {
+
+        /** The denied preflight requests. */
+        private static final Preflight DENIED = new Preflight(null, null);
+
+        /** The value of 'Access-Control-Allow-Headers' response header. */
+        private final Set<String> allowHeaders;
+
+        /** The value of 'Access-Control-Allow-Origin' response header. */
+        private final String allowOrigin;
+
+        /**
+         * Constructor.
+         * 
+         * @param allowOrigin
+         *            The value of 'Access-Control-Allow-Origin' header.
+         * @param allowHeaders
+         *            The value of 'Access-Control-Allow-Headers' header.
+         */
+        private Preflight(String allowOrigin, Set<String> allowHeaders) {
+            this.allowHeaders = allowHeaders;
+            this.allowOrigin = allowOrigin;
+        }
+    }
+
+    /**
+     * View of a set of settings discarding the compiled policy when modified.
+     */
+    private class TrackedSet extends AbstractSet<String> {
+
+        /** The wrapped set. */
+        private final Set<String> delegate;
+
+        /**
+         * Constructor.
+         * 
+         * @param delegate
+         *            The wrapped set.
+         */
+        private TrackedSet(Set<String> delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public boolean add(String e) {
+            boolean result = this.delegate.add(e);
+
+            if (result) {
+                reset();
+            }
+
+            return result;
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            return this.delegate.contains(o);
+        }
+
+        @Override
+        public Iterator<String> iterator() {
+            final Iterator<String> iterator = this.delegate.iterator();
+
+            return new Iterator<String>() {
+                public boolean hasNext() {
+                    return iterator.hasNext();
+                }
+
+                public String next() {
+                    return iterator.next();
+                }
+
+                public void remove() {
+                    iterator.remove();
+                    reset();
+                }
+            };
+        }
+
+        @Override
+        public boolean remove(Object o) {
+            boolean result = this.delegate.remove(o);
+
+            if (result) {
+                reset();
+            }
+
+            return result;
+        }
+
+        @Override
+        public int size() {
+            return this.delegate.size();
+        }
+    }
+
     /**
      * If true, copies the value of 'Access-Control-Request-Headers' request
      * header into the 'Access-Control-Allow-Headers' response header. If false,
@@ -74,6 +183,87 @@ public class CorsResponseHelper {
     /** The value of 'Access-Control-Expose-Headers' response header. */
     public Set<String> exposedHeaders = null;
 
+    /** The compiled policy. */
+    private volatile CorsPolicy policy;
+
+    /** The cached preflight checks. */
+    private volatile LruCache<String, Preflight> preflights;
+
+    /**
+     * The maximum number of cached preflight checks. Default is 0, disabling
+     * the cache.
+     */
+    private volatile int preflightCacheSize = 0;
+
+    /**
+     * Answers a preflight request directly, without calling the target
+     * resource, using a given set of allowed methods. The result of the check
+     * is cached if the preflight cache is enabled.
+     * 
+     * @param request
+     *            The preflight request.
+     * @param response
+     *            The response.
+     * @param allowedMethods
+     *            The allowed methods.
+     */
+    public void addPreflightResponseHeaders(Request request, Response response,
+            Set<Method> allowedMethods) {
+        String origin = request.getHeaders().getFirstValue("Origin", true);
+
+        if (origin != null) {
+            LruCache<String, Preflight> cache = getPreflights();
+            String key = null;
+            Preflight preflight = null;
+
+            if (cache != null) {
+                Method requestedMethod = request
+                        .getAccessControlRequestMethod();
+                key = origin
+                        + '\n'
+                        + ((requestedMethod == null) ? "" : requestedMethod
+                                .getName())
+                        + '\n' + request.getAccessControlRequestHeaders();
+                preflight = cache.get(key);
+            }
+
+            if (preflight == null) {
+                preflight = checkPreflight(request, origin, allowedMethods);
+
+                if (cache != null) {
+                    cache.put(key, preflight);
+                }
+            }
+
+            if (preflight != Preflight.DENIED) {
+                addPreflightResponseHeaders(response, preflight,
+                        allowedMethods);
+            }
+        }
+    }
+
+    /**
+     * Adds the CORS headers of an allowed preflight request.
+     * 
+     * @param response
+     *            The response.
+     * @param preflight
+     *            The preflight check.
+     * @param allowedMethods
+     *            The allowed methods.
+     */
+    private void addPreflightResponseHeaders(Response response,
+            Preflight preflight, Set<Method> allowedMethods) {
+        response.setAccessControlAllowMethods(allowedMethods);
+        response.setAccessControlAllowHeaders(preflight.allowHeaders);
+
+        if (getPolicy().isAllowedCredentials()) {
+            response.setAccessControlAllowCredentials(true);
+        }
+
+        response.setAccessControlAllowOrigin(preflight.allowOrigin);
+    }
+
     /**
      * Adds CORS headers to the given response.
      * 
@@ -95,7 +285,10 @@ public class CorsResponseHelper {
         // Header 'Allow' is not relevant in CORS request.
         response.getAllowedMethods().clear();
 
-        if (!allowedOrigins.contains("*") && !allowedOrigins.contains(origin)) {
+        CorsPolicy policy = getPolicy();
+        String allowOrigin = policy.getAllowOrigin(origin);
+
+        if (allowOrigin == null) {
             // Origin not allowed
             LOGGER.fine("Origin " + origin + " not allowed for CORS request");
             return;
@@ -127,58 +320,79 @@ public class CorsResponseHelper {
                 return;
             }
 
-            Method requestedMethod = request.getAccessControlRequestMethod();
-            if (requestedMethod == null) {
-                // Requested Method is required
-                LOGGER.fine("A CORS preflight request should specified header 'Access-Control-Request-Method'");
-                return;
-            }
+            Preflight preflight = checkPreflight(request, origin,
+                    allowedMethods);
 
-            if (!allowedMethods.contains(requestedMethod)) {
-                // Method not allowed
-                LOGGER.fine("The CORS preflight request ask for methods not allowed in header 'Access-Control-Request-Method'");
-                return;
+            if (preflight != Preflight.DENIED) {
+                addPreflightResponseHeaders(response, preflight,
+                        allowedMethods);
             }
+        } else {
+            // simple request
 
-            Set<String> requestedHeaders = request
-                    .getAccessControlRequestHeaders();
-            if (requestedHeaders == null) {
-                requestedHeaders = SetUtils.newHashSet();
+            // Header 'Access-Control-Expose-Headers'
+            if (policy.getExposedHeaders() != null) {
+                response.setAccessControlExposeHeaders(policy
+                        .getExposedHeaders());
             }
 
-            if (!allowAllRequestedHeaders
-                    && (allowedHeaders == null || !isAllHeadersAllowed(
-                            allowedHeaders, requestedHeaders))) {
-                // Headers not allowed
-                LOGGER.fine("The CORS preflight request ask for headers not allowed in header 'Access-Control-Request-Headers'");
-                return;
+            // Header 'Access-Control-Allow-Credentials'
+            if (policy.isAllowedCredentials()) {
+                response.setAccessControlAllowCredentials(true);
             }
 
-            // Header 'Access-Control-Allow-Methods'
-            response.setAccessControlAllowMethods(allowedMethods);
+            // Header 'Access-Control-Allow-Origin'
+            response.setAccessControlAllowOrigin(allowOrigin);
+        }
+    }
 
-            // Header 'Access-Control-Allow-Headers'
-            response.setAccessControlAllowHeaders(requestedHeaders);
-        } else {
-            // simple request
+    /**
+     * Checks a preflight request against the compiled policy.
+     * 
+     * @param request
+     *            The preflight request.
+     * @param origin
+     *            The value of the 'Origin' request header.
+     * @param allowedMethods
+     *            The allowed methods.
+     * @return The result of the check.
+     */
+    private Preflight checkPreflight(Request request, String origin,
+            Set<Method> allowedMethods) {
+        String allowOrigin = getPolicy().getAllowOrigin(origin);
 
-            // Header 'Access-Control-Expose-Headers'
-            if (exposedHeaders != null && !exposedHeaders.isEmpty()) {
-                response.setAccessControlExposeHeaders(exposedHeaders);
-            }
+        if (allowOrigin == null) {
+            // Origin not allowed
+            LOGGER.fine("Origin " + origin + " not allowed for CORS request");
+            return Preflight.DENIED;
         }
 
-        // Header 'Access-Control-Allow-Credentials'
-        if (allowedCredentials) {
-            response.setAccessControlAllowCredentials(true);
+        Method requestedMethod = request.getAccessControlRequestMethod();
+        if (requestedMethod == null) {
+            // Requested Method is required
+            LOGGER.fine("A CORS preflight request should specified header 'Access-Control-Request-Method'");
+            return Preflight.DENIED;
         }
 
-        // Header 'Access-Control-Allow-Origin'
-        if (!allowedCredentials && allowedOrigins.contains("*")) {
-            response.setAccessControlAllowOrigin("*");
-        } else {
-            response.setAccessControlAllowOrigin(origin);
+        if (!allowedMethods.contains(requestedMethod)) {
+            // Method not allowed
+            LOGGER.fine("The CORS preflight request ask for methods not allowed in header 'Access-Control-Request-Method'");
+            return Preflight.DENIED;
+        }
+
+        Set<String> requestedHeaders = request.getAccessControlRequestHeaders();
+        if (requestedHeaders == null) {
+            requestedHeaders = SetUtils.newHashSet();
         }
+
+        if (!getPolicy().isAllowedHeaders(requestedHeaders)) {
+            // Headers not allowed
+            LOGGER.fine("The CORS preflight request ask for headers not allowed in header 'Access-Control-Request-Headers'");
+            return Preflight.DENIED;
+        }
+
+        return new Preflight(allowOrigin,
+                Collections.unmodifiableSet(requestedHeaders));
     }
 
     /**
@@ -191,7 +405,7 @@ public class CorsResponseHelper {
      *         resource.
      */
     public Set<String> getAllowedHeaders() {
-        return allowedHeaders;
+        return track(allowedHeaders);
     }
 
     /**
@@ -203,7 +417,7 @@ public class CorsResponseHelper {
      * @return The origin allowed by the requested resource.
      */
     public Set<String> getAllowedOrigins() {
-        return allowedOrigins;
+        return track(allowedOrigins);
     }
 
     /**
@@ -216,33 +430,52 @@ public class CorsResponseHelper {
      *         resource.
      */
     public Set<String> getExposedHeaders() {
-        return exposedHeaders;
+        return track(exposedHeaders);
     }
 
     /**
-     * Returns true if all requested headers are allowed (case-insensitive).
+     * Returns the compiled policy, compiling it first if needed.
      * 
-     * @param allowHeaders
-     *            The allowed headers.
-     * @param requestedHeaders
-     *            The requested headers.
-     * @return True if all requested headers are allowed (case-insensitive).
+     * @return The compiled policy.
      */
-    private boolean isAllHeadersAllowed(Set<String> allowHeaders,
-            Set<String> requestedHeaders) {
-        for (String requestedHeader : requestedHeaders) {
-            boolean headerAllowed = false;
-            for (String allowHeader : allowHeaders) {
-                if (allowHeader.equalsIgnoreCase(requestedHeader)) {
-                    headerAllowed = true;
-                    break;
-                }
-            }
-            if (!headerAllowed) {
-                return false;
-            }
+    public CorsPolicy getPolicy() {
+        CorsPolicy result = this.policy;
+
+        if (result == null) {
+            result = new CorsPolicy(allowAllRequestedHeaders,
+                    allowedCredentials, allowedHeaders, allowedOrigins,
+                    exposedHeaders);
+            this.policy = result;
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns the maximum number of cached preflight checks, by origin,
+     * requested method and requested headers. Default is 0, disabling the
+     * cache.
+     * 
+     * @return The maximum number of cached preflight checks.
+     */
+    public int getPreflightCacheSize() {
+        return preflightCacheSize;
+    }
+
+    /**
+     * Returns the cache of preflight checks, creating it first if needed.
+     * 
+     * @return The cache of preflight checks or null if disabled.
+     */
+    private LruCache<String, Preflight> getPreflights() {
+        LruCache<String, Preflight> result = this.preflights;
+
+        if ((result == null) && (getPreflightCacheSize() > 0)) {
+            result = new LruCache<String, Preflight>(getPreflightCacheSize());
+            this.preflights = result;
         }
-        return true;
+
+        return result;
     }
 
     /**
@@ -266,7 +499,7 @@ public class CorsResponseHelper {
 
     /**
      * Returns true if the request is a CORS request.
-     *
+     * 
      * @param request
      *      The current request.
      * @return true if the request is a CORS request.
@@ -275,6 +508,15 @@ public class CorsResponseHelper {
         return request.getHeaders().getFirstValue("Origin", true) != null;
     }
 
+    /**
+     * Discards the compiled policy and the cached preflight checks so that
+     * they reflect the new settings.
+     */
+    private void reset() {
+        this.policy = null;
+        this.preflights = null;
+    }
+
     /**
      * If true, copies the value of 'Access-Control-Request-Headers' request
      * header into the 'Access-Control-Allow-Headers' response header. If false,
@@ -288,6 +530,7 @@ public class CorsResponseHelper {
     public void setAllowAllRequestedHeaders(
             boolean allowAllRequestedHeaders) {
         this.allowAllRequestedHeaders = allowAllRequestedHeaders;
+        reset();
     }
 
     /**
@@ -298,6 +541,7 @@ public class CorsResponseHelper {
      */
     public void setAllowedCredentials(boolean allowedCredentials) {
         this.allowedCredentials = allowedCredentials;
+        reset();
     }
 
     /**
@@ -309,6 +553,7 @@ public class CorsResponseHelper {
      */
     public void setAllowedHeaders(Set<String> allowedHeaders) {
         this.allowedHeaders = allowedHeaders;
+        reset();
     }
 
     /**
@@ -319,6 +564,7 @@ public class CorsResponseHelper {
      */
     public void setAllowedOrigins(Set<String> allowedOrigins) {
         this.allowedOrigins = allowedOrigins;
+        reset();
     }
 
     /**
@@ -329,6 +575,33 @@ public class CorsResponseHelper {
      */
     public void setExposedHeaders(Set<String> exposedHeaders) {
         this.exposedHeaders = exposedHeaders;
+        reset();
+    }
+
+    /**
+     * Sets the maximum number of cached preflight checks, by origin, requested
+     * method and requested headers. Only used when the preflight requests are
+     * answered without calling the target resource. Set to 0 to disable the
+     * cache.
+     * 
+     * @param preflightCacheSize
+     *            The maximum number of cached preflight checks.
+     */
+    public void setPreflightCacheSize(int preflightCacheSize) {
+        this.preflightCacheSize = preflightCacheSize;
+        reset();
+    }
+
+    /**
+     * Returns a view of a set of settings discarding the compiled policy when
+     * modified.
+     * 
+     * @param set
+     *            The set of settings.
+     * @return The tracked view or null if the set is null.
+     */
+    private Set<String> track(Set<String> set) {
+        return (set == null) ? null : new TrackedSet(set);
     }
 
 }
@@ -35,9 +35,6 @@ import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
 import java.util.concurrent.CopyOnWriteArrayList;
-import java.util.zip.GZIPInputStream;
-import java.util.zip.Inflater;
-import java.util.zip.InflaterInputStream;
 import java.util.zip.ZipInputStream;
 
 import org.restlet.data.Encoding;
@@ -115,12 +112,14 @@ public class DecodeRepresentation extends WrapperRepresentation {
 
         if (encodedStream != null) {
             if (encoding.equals(Encoding.GZIP)) {
-                result = new GZIPInputStream(encodedStream);
+                result = new PooledGzipInputStream(encodedStream,
+                        IoUtils.BUFFER_SIZE);
             } else if (encoding.equals(Encoding.DEFLATE)) {
-                result = new InflaterInputStream(encodedStream);
+                result = new PooledInflaterInputStream(encodedStream,
+                        InflaterPool.getInstance(false), IoUtils.BUFFER_SIZE);
             } else if (encoding.equals(Encoding.DEFLATE_NOWRAP)) {
-                result = new InflaterInputStream(encodedStream, new Inflater(
-                        true));
+                result = new PooledInflaterInputStream(encodedStream,
+                        InflaterPool.getInstance(true), IoUtils.BUFFER_SIZE);
             } else if (encoding.equals(Encoding.ZIP)) {
                 @SuppressWarnings("resource")
                 final ZipInputStream stream = new ZipInputStream(encodedStream);
@@ -0,0 +1,177 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or or EPL 1.0 (the "Licenses"). You can
+ * select the license that you prefer but you may not use this file except in
+ * compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+
+package org.restlet.engine.application;
+
+import java.util.zip.Deflater;
+
+import org.restlet.engine.util.Pool;
+
+// [excludes gwt]
+/**
+ * Pool of reusable deflaters. Creating a deflater allocates a sizeable native
+ * compression state, so reusing them across responses reduces the allocation
+ * and finalization costs. The number of idle deflaters kept is bounded, the
+ * surplus ones being ended when checked in.
+ * 
+ * @author Jerome Louvel
+ */
+public class DeflaterPool extends Pool<Deflater> {
+
+    /** The shared pool of deflaters producing ZLIB headers and checksums. */
+    private static final DeflaterPool WRAP = new DeflaterPool(false);
+
+    /** The shared pool of deflaters producing raw deflate data. */
+    private static final DeflaterPool NOWRAP = new DeflaterPool(true);
+
+    /**
+     * Returns the shared pool of deflaters.
+     * 
+     * @param nowrap
+     *            True if the deflaters produce raw deflate data, without
+     *            ZLIB header and checksum.
+     * @return The shared pool of deflaters.
+     */
+    public static DeflaterPool getInstance(boolean nowrap) {
+        return nowrap ? NOWRAP : WRAP;
+    }
+
+    /** The maximum number of idle deflaters kept. */
+    private volatile int maxIdle;
+
+    /** Indicates if the deflaters produce raw deflate data. */
+    private final boolean nowrap;
+
+    /**
+     * Constructor. Keeps up to four idle deflaters per available processor.
+     * 
+     * @param nowrap
+     *            True if the deflaters produce raw deflate data, without
+     *            ZLIB header and checksum.
+     */
+    public DeflaterPool(boolean nowrap) {
+        this(nowrap, 4 * Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Constructor.
+     * 
+     * @param nowrap
+     *            True if the deflaters produce raw deflate data, without
+     *            ZLIB header and checksum.
+     * @param maxIdle
+     *            The maximum number of idle deflaters kept.
+     */
+    public DeflaterPool(boolean nowrap, int maxIdle) {
+        super();
+        this.nowrap = nowrap;
+        this.maxIdle = maxIdle;
+    }
+
+    /**
+     * Checks in a deflater into the pool, or ends it if enough idle deflaters
+     * are already kept.
+     * 
+     * @param deflater
+     *            The deflater to check in.
+     */
+    @Override
+    public void checkin(Deflater deflater) {
+        if (deflater != null) {
+            if (getStore().size() < getMaxIdle()) {
+                super.checkin(deflater);
+            } else {
+                deflater.end();
+            }
+        }
+    }
+
+    /**
+     * Checks out a deflater from the pool, configured with the given
+     * compression level and strategy.
+     * 
+     * @param level
+     *            The compression level, between 0 and 9 or
+     *            {@link Deflater#DEFAULT_COMPRESSION}.
+     * @param strategy
+     *            The compression strategy, see {@link Deflater}.
+     * @return A deflater ready to compress a new stream.
+     */
+    public Deflater checkout(int level, int strategy) {
+        Deflater result = checkout();
+        result.setLevel(level);
+        result.setStrategy(strategy);
+        return result;
+    }
+
+    @Override
+    public void clear() {
+        Deflater deflater;
+
+        while ((deflater = getStore().poll()) != null) {
+            deflater.end();
+        }
+    }
+
+    @Override
+    protected void clear(Deflater deflater) {
+        deflater.reset();
+    }
+
+    @Override
+    protected Deflater createObject() {
+        return new Deflater(Deflater.DEFAULT_COMPRESSION, isNowrap());
+    }
+
+    /**
+     * Returns the maximum number of idle deflaters kept.
+     * 
+     * @return The maximum number of idle deflaters kept.
+     */
+    public int getMaxIdle() {
+        return maxIdle;
+    }
+
+    /**
+     * Indicates if the deflaters produce raw deflate data, without ZLIB header
+     * and checksum.
+     * 
+     * @return True if the deflaters produce raw deflate data.
+     */
+    public boolean isNowrap() {
+        return nowrap;
+    }
+
+    /**
+     * Sets the maximum number of idle deflaters kept.
+     * 
+     * @param maxIdle
+     *            The maximum number of idle deflaters kept.
+     */
+    public void setMaxIdle(int maxIdle) {
+        this.maxIdle = maxIdle;
+    }
+
+}
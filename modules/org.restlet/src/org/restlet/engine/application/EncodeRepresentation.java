@@ -36,7 +36,6 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.zip.Deflater;
 import java.util.zip.DeflaterOutputStream;
-import java.util.zip.GZIPOutputStream;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipOutputStream;
 
@@ -64,6 +63,9 @@ public class EncodeRepresentation extends WrapperRepresentation {
                 Encoding.DEFLATE_NOWRAP, Encoding.ZIP, Encoding.IDENTITY);
     }
 
+    /** The size of the compression buffer. */
+    private volatile int bufferSize;
+
     /** Indicates if the encoding can happen. */
     private volatile boolean canEncode;
 
@@ -73,6 +75,12 @@ public class EncodeRepresentation extends WrapperRepresentation {
     /** The applied encodings. */
     private volatile List<Encoding> encodings;
 
+    /** The compression level. */
+    private volatile int level;
+
+    /** The compression strategy. */
+    private volatile int strategy;
+
     /**
      * Constructor.
      * 
@@ -84,9 +92,12 @@ public class EncodeRepresentation extends WrapperRepresentation {
     public EncodeRepresentation(Encoding encoding,
             Representation wrappedRepresentation) {
         super(wrappedRepresentation);
+        this.bufferSize = IoUtils.BUFFER_SIZE;
         this.canEncode = getSupportedEncodings().contains(encoding);
         this.encodings = null;
         this.encoding = encoding;
+        this.level = Deflater.DEFAULT_COMPRESSION;
+        this.strategy = Deflater.DEFAULT_STRATEGY;
     }
 
     /**
@@ -120,6 +131,16 @@ public class EncodeRepresentation extends WrapperRepresentation {
         return result;
     }
 
+    /**
+     * Returns the size of the compression buffer. Defaults to
+     * {@link IoUtils#BUFFER_SIZE}.
+     * 
+     * @return The size of the compression buffer.
+     */
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
     /**
      * Returns a readable byte channel. If it is supported by a file a read-only
      * instance of FileChannel is returned.
@@ -208,6 +229,16 @@ public class EncodeRepresentation extends WrapperRepresentation {
         return this.encodings;
     }
 
+    /**
+     * Returns the compression level, between 0 and 9. Defaults to
+     * {@link Deflater#DEFAULT_COMPRESSION}.
+     * 
+     * @return The compression level.
+     */
+    public int getLevel() {
+        return level;
+    }
+
     @Override
     public Reader getReader() throws IOException {
         if (canEncode()) {
@@ -247,6 +278,16 @@ public class EncodeRepresentation extends WrapperRepresentation {
         }
     }
 
+    /**
+     * Returns the compression strategy. Defaults to
+     * {@link Deflater#DEFAULT_STRATEGY}.
+     * 
+     * @return The compression strategy.
+     */
+    public int getStrategy() {
+        return strategy;
+    }
+
     @Override
     public String getText() throws IOException {
         if (canEncode()) {
@@ -256,21 +297,58 @@ public class EncodeRepresentation extends WrapperRepresentation {
         }
     }
 
+    /**
+     * Sets the size of the compression buffer.
+     * 
+     * @param bufferSize
+     *            The size of the compression buffer.
+     */
+    public void setBufferSize(int bufferSize) {
+        this.bufferSize = bufferSize;
+    }
+
+    /**
+     * Sets the compression level, between 0 and 9 or
+     * {@link Deflater#DEFAULT_COMPRESSION}.
+     * 
+     * @param level
+     *            The compression level.
+     */
+    public void setLevel(int level) {
+        this.level = level;
+    }
+
+    /**
+     * Sets the compression strategy.
+     * 
+     * @param strategy
+     *            The compression strategy.
+     * @see Deflater#setStrategy(int)
+     */
+    public void setStrategy(int strategy) {
+        this.strategy = strategy;
+    }
+
     @Override
     public void write(OutputStream outputStream) throws IOException {
         if (canEncode()) {
             DeflaterOutputStream encoderOutputStream = null;
 
             if (this.encoding.equals(Encoding.GZIP)) {
-                encoderOutputStream = new GZIPOutputStream(outputStream);
+                encoderOutputStream = new PooledGzipOutputStream(outputStream,
+                        getLevel(), getStrategy(), getBufferSize());
             } else if (this.encoding.equals(Encoding.DEFLATE)) {
-                encoderOutputStream = new DeflaterOutputStream(outputStream);
+                encoderOutputStream = new PooledDeflaterOutputStream(
+                        outputStream, DeflaterPool.getInstance(false),
+                        getLevel(), getStrategy(), getBufferSize());
             } else if (this.encoding.equals(Encoding.DEFLATE_NOWRAP)) {
-                encoderOutputStream = new DeflaterOutputStream(outputStream,
-                        new Deflater(Deflater.DEFAULT_COMPRESSION, true));
+                encoderOutputStream = new PooledDeflaterOutputStream(
+                        outputStream, DeflaterPool.getInstance(true),
+                        getLevel(), getStrategy(), getBufferSize());
             } else if (this.encoding.equals(Encoding.ZIP)) {
                 @SuppressWarnings("resource")
                 final ZipOutputStream stream = new ZipOutputStream(outputStream);
+                stream.setLevel(getLevel());
                 String name = "entry";
 
                 if (getWrappedRepresentation().getDisposition() != null) {
@@ -287,7 +365,18 @@ public class EncodeRepresentation extends WrapperRepresentation {
                 // Encoder unnecessary for identity encoding
             }
 
-            if (encoderOutputStream != null) {
+            if (encoderOutputStream instanceof PooledDeflaterOutputStream) {
+                PooledDeflaterOutputStream pooled = (PooledDeflaterOutputStream) encoderOutputStream;
+
+                try {
+                    getWrappedRepresentation().write(pooled);
+                    pooled.flush();
+                    pooled.finish();
+                } finally {
+                    // Gives the deflater back even if the writing failed
+                    pooled.release();
+                }
+            } else if (encoderOutputStream != null) {
                 getWrappedRepresentation().write(encoderOutputStream);
                 encoderOutputStream.flush();
                 encoderOutputStream.finish();
@@ -24,8 +24,12 @@
 
 package org.restlet.engine.application;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
+import java.util.logging.Level;
 
 import org.restlet.Context;
 import org.restlet.Request;
@@ -33,6 +37,9 @@ import org.restlet.Response;
 import org.restlet.data.ClientInfo;
 import org.restlet.data.Encoding;
 import org.restlet.data.Preference;
+import org.restlet.data.Reference;
+import org.restlet.engine.util.LruCache;
+import org.restlet.representation.ByteArrayRepresentation;
 import org.restlet.representation.Representation;
 import org.restlet.routing.Filter;
 import org.restlet.service.EncoderService;
@@ -100,7 +107,7 @@ public class Encoder extends Filter {
         if (isEncodingResponse()
                 && getEncoderService().canEncode(response.getEntity())) {
             response.setEntity(encode(request.getClientInfo(),
-                    response.getEntity()));
+                    response.getEntity(), request.getResourceRef()));
         }
     }
 
@@ -126,8 +133,36 @@ public class Encoder extends Filter {
         return CONTINUE;
     }
 
+    /**
+     * Creates an encoded representation, configured with the compression
+     * settings of the parent encoder service if available.
+     * 
+     * @param encoding
+     *            The encoding to apply.
+     * @param representation
+     *            The representation to encode.
+     * @return The encoded representation.
+     */
+    private EncodeRepresentation createEncodeRepresentation(Encoding encoding,
+            Representation representation) {
+        EncodeRepresentation result = new EncodeRepresentation(encoding,
+                representation);
+        EncoderService encoderService = getEncoderService();
+
+        if (encoderService != null) {
+            result.setBufferSize(encoderService.getBufferSize());
+            result.setLevel(encoderService.getCompressionLevel(representation
+                    .getMediaType()));
+            result.setStrategy(encoderService.getCompressionStrategy());
+        }
+
+        return result;
+    }
+
     /**
      * Encodes a given representation if an encoding is supported by the client.
+     * The encoded content is only cached if the representation has a location
+     * reference identifying it.
      * 
      * @param client
      *            The client preferences to use.
@@ -138,13 +173,89 @@ public class Encoder extends Filter {
      */
     public Representation encode(ClientInfo client,
             Representation representation) {
+        return encode(client, representation, null);
+    }
+
+    /**
+     * Encodes a given representation if an encoding is supported by the client.
+     * 
+     * @param client
+     *            The client preferences to use.
+     * @param representation
+     *            The representation to encode.
+     * @param resourceRef
+     *            The reference of the resource that the representation belongs
+     *            to, used to identify the cached encoded content.
+     * @return The encoded representation or the original one if no encoding
+     *         supported by the client.
+     */
+    public Representation encode(ClientInfo client,
+            Representation representation, Reference resourceRef) {
         Representation result = representation;
         Encoding bestEncoding = getBestEncoding(client);
 
         if (bestEncoding != null) {
-            result = new EncodeRepresentation(bestEncoding, representation);
+            String key = (getEncoderService() == null) ? null
+                    : getEncoderService().getCacheKey(bestEncoding,
+                            representation, resourceRef);
+
+            if (key != null) {
+                result = encodeCached(key, bestEncoding, representation);
+            } else {
+                result = createEncodeRepresentation(bestEncoding,
+                        representation);
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Encodes a given representation, reusing the encoded content cached by
+     * the parent encoder service if available, or caching it otherwise.
+     * 
+     * @param key
+     *            The cache key.
+     * @param encoding
+     *            The encoding to apply.
+     * @param representation
+     *            The representation to encode.
+     * @return The encoded representation.
+     */
+    private Representation encodeCached(String key, Encoding encoding,
+            Representation representation) {
+        LruCache<String, byte[]> cache = getEncoderService().getEncodedCache();
+        EncodeRepresentation encoded = createEncodeRepresentation(encoding,
+                representation);
+        byte[] content = cache.get(key);
+
+        if (content == null) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+            try {
+                encoded.write(out);
+                content = out.toByteArray();
+                cache.put(key, content);
+            } catch (IOException ioe) {
+                getLogger().log(Level.WARNING,
+                        "Unable to cache the encoded representation", ioe);
+
+                // Cached representations aren't transient, read them again
+                return createEncodeRepresentation(encoding, representation);
+            }
         }
 
+        Representation result = new ByteArrayRepresentation(content,
+                representation.getMediaType(), content.length);
+        result.setCharacterSet(representation.getCharacterSet());
+        result.setDisposition(representation.getDisposition());
+        result.setEncodings(new ArrayList<Encoding>(encoded.getEncodings()));
+        result.setExpirationDate(representation.getExpirationDate());
+        result.setLanguages(representation.getLanguages());
+        result.setLocationRef(representation.getLocationRef());
+        result.setModificationDate(representation.getModificationDate());
+        result.setTag(representation.getTag());
+        representation.release();
         return result;
     }
 
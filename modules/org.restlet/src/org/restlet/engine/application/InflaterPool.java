@@ -0,0 +1,159 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or or EPL 1.0 (the "Licenses"). You can
+ * select the license that you prefer but you may not use this file except in
+ * compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+
+package org.restlet.engine.application;
+
+import java.util.zip.Inflater;
+
+import org.restlet.engine.util.Pool;
+
+// [excludes gwt]
+/**
+ * Pool of reusable inflaters. Creating an inflater allocates a sizeable native
+ * decompression state, so reusing them across requests reduces the allocation
+ * and finalization costs. The number of idle inflaters kept is bounded, the
+ * surplus ones being ended when checked in.
+ * 
+ * @author Jerome Louvel
+ */
+public class InflaterPool extends Pool<Inflater> {
+
+    /** The shared pool of inflaters expecting ZLIB headers and checksums. */
+    private static final InflaterPool WRAP = new InflaterPool(false);
+
+    /** The shared pool of inflaters consuming raw deflate data. */
+    private static final InflaterPool NOWRAP = new InflaterPool(true);
+
+    /**
+     * Returns the shared pool of inflaters.
+     * 
+     * @param nowrap
+     *            True if the inflaters consume raw deflate data, without
+     *            ZLIB header and checksum.
+     * @return The shared pool of inflaters.
+     */
+    public static InflaterPool getInstance(boolean nowrap) {
+        return nowrap ? NOWRAP : WRAP;
+    }
+
+    /** The maximum number of idle inflaters kept. */
+    private volatile int maxIdle;
+
+    /** Indicates if the inflaters consume raw deflate data. */
+    private final boolean nowrap;
+
+    /**
+     * Constructor. Keeps up to four idle inflaters per available processor.
+     * 
+     * @param nowrap
+     *            True if the inflaters consume raw deflate data, without
+     *            ZLIB header and checksum.
+     */
+    public InflaterPool(boolean nowrap) {
+        this(nowrap, 4 * Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Constructor.
+     * 
+     * @param nowrap
+     *            True if the inflaters consume raw deflate data, without
+     *            ZLIB header and checksum.
+     * @param maxIdle
+     *            The maximum number of idle inflaters kept.
+     */
+    public InflaterPool(boolean nowrap, int maxIdle) {
+        super();
+        this.nowrap = nowrap;
+        this.maxIdle = maxIdle;
+    }
+
+    /**
+     * Checks in an inflater into the pool, or ends it if enough idle inflaters
+     * are already kept.
+     * 
+     * @param inflater
+     *            The inflater to check in.
+     */
+    @Override
+    public void checkin(Inflater inflater) {
+        if (inflater != null) {
+            if (getStore().size() < getMaxIdle()) {
+                super.checkin(inflater);
+            } else {
+                inflater.end();
+            }
+        }
+    }
+
+    @Override
+    public void clear() {
+        Inflater inflater;
+
+        while ((inflater = getStore().poll()) != null) {
+            inflater.end();
+        }
+    }
+
+    @Override
+    protected void clear(Inflater inflater) {
+        inflater.reset();
+    }
+
+    @Override
+    protected Inflater createObject() {
+        return new Inflater(isNowrap());
+    }
+
+    /**
+     * Returns the maximum number of idle inflaters kept.
+     * 
+     * @return The maximum number of idle inflaters kept.
+     */
+    public int getMaxIdle() {
+        return maxIdle;
+    }
+
+    /**
+     * Indicates if the inflaters consume raw deflate data, without ZLIB header
+     * and checksum.
+     * 
+     * @return True if the inflaters consume raw deflate data.
+     */
+    public boolean isNowrap() {
+        return nowrap;
+    }
+
+    /**
+     * Sets the maximum number of idle inflaters kept.
+     * 
+     * @param maxIdle
+     *            The maximum number of idle inflaters kept.
+     */
+    public void setMaxIdle(int maxIdle) {
+        this.maxIdle = maxIdle;
+    }
+
+}
@@ -0,0 +1,381 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or or EPL 1.0 (the "Licenses"). You can
+ * select the license that you prefer but you may not use this file except in
+ * compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+
+package org.restlet.engine.application;
+
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.restlet.Server;
+import org.restlet.engine.RestletHelper;
+import org.restlet.engine.adapter.ConcurrencyLimiter;
+import org.restlet.engine.ssl.HandshakeStatistics;
+import org.restlet.engine.util.Histogram;
+
+// [excludes gwt]
+/**
+ * Request metrics recorded by the {@link MetricsFilter}. The latencies are
+ * recorded in microseconds in a {@link Histogram} for each route template and
+ * method, along with the counts of responses per status code, the number of
+ * requests being handled and the entity bytes exchanged.<br>
+ * <br>
+ * The number of latency histograms is bounded, the latencies of additional
+ * routes and methods being recorded together under the {@link #OTHER} key.
+ * 
+ * @author Jerome Louvel
+ */
+public class Metrics implements MetricsMXBean {
+
+    /** The key of the latencies of the routes and methods beyond the limit. */
+    public static final String OTHER = "OTHER";
+
+    /** The route of the requests not matched by any route template. */
+    public static final String UNMATCHED = "-";
+
+    /**
+     * Returns the adaptive concurrency limiter of a server connector, if
+     * enabled by its "adaptiveLimit" parameter.
+     * 
+     * @param server
+     *            The server connector.
+     * @return The concurrency limiter or null.
+     */
+    public static ConcurrencyLimiter getConcurrencyLimiter(Server server) {
+        Object result = getHelperAttribute(server, "concurrencyLimiter");
+        return (result instanceof ConcurrencyLimiter) ? (ConcurrencyLimiter) result
+                : null;
+    }
+
+    /**
+     * Returns the handshake statistics of an HTTPS server connector, if exposed
+     * by its helper under the "handshakeStatistics" attribute, like the
+     * internal and Jetty connectors do.
+     * 
+     * @param server
+     *            The server connector.
+     * @return The handshake statistics or null.
+     */
+    public static HandshakeStatistics getHandshakeStatistics(Server server) {
+        Object result = getHelperAttribute(server, "handshakeStatistics");
+        return (result instanceof HandshakeStatistics) ? (HandshakeStatistics) result
+                : null;
+    }
+
+    /**
+     * Returns an attribute of the helper of a server connector.
+     * 
+     * @param server
+     *            The server connector.
+     * @param name
+     *            The attribute name.
+     * @return The attribute value or null.
+     */
+    private static Object getHelperAttribute(Server server, String name) {
+        Object helper = (server.getContext() == null) ? null : server
+                .getContext().getAttributes().get("org.restlet.engine.helper");
+        return (helper instanceof RestletHelper<?>) ? ((RestletHelper<?>) helper)
+                .getAttributes().get(name) : null;
+    }
+
+    /**
+     * Returns the thread pool of a server connector, if exposed by its helper
+     * under the "threadPool" attribute, like the internal connectors do.
+     * 
+     * @param server
+     *            The server connector.
+     * @return The thread pool or null.
+     */
+    public static ThreadPoolExecutor getThreadPool(Server server) {
+        Object result = getHelperAttribute(server, "threadPool");
+        return (result instanceof ThreadPoolExecutor) ? (ThreadPoolExecutor) result
+                : null;
+    }
+
+    /** The number of bytes received in request entities. */
+    private final AtomicLong bytesReceived;
+
+    /** The number of bytes sent in response entities. */
+    private final AtomicLong bytesSent;
+
+    /** The number of latency histograms. */
+    private final AtomicInteger histogramCount;
+
+    /** The number of requests being handled. */
+    private final AtomicInteger inFlight;
+
+    /** The latency histograms, by route template and method. */
+    private final ConcurrentMap<String, ConcurrentMap<String, Histogram>> latencies;
+
+    /** The maximum number of latency histograms. */
+    private volatile int maxHistograms;
+
+    /** The number of handled requests. */
+    private final AtomicLong requests;
+
+    /** The server connectors whose thread pool is monitored. */
+    private final List<Server> servers;
+
+    /** The number of responses, by status code. */
+    private final AtomicLongArray statusCounts;
+
+    /**
+     * Constructor. Keeps up to 1000 latency histograms.
+     */
+    public Metrics() {
+        this.bytesReceived = new AtomicLong();
+        this.bytesSent = new AtomicLong();
+        this.histogramCount = new AtomicInteger();
+        this.inFlight = new AtomicInteger();
+        this.latencies = new ConcurrentHashMap<String, ConcurrentMap<String, Histogram>>();
+        this.maxHistograms = 1000;
+        this.requests = new AtomicLong();
+        this.servers = new CopyOnWriteArrayList<Server>();
+        this.statusCounts = new AtomicLongArray(1000);
+    }
+
+    /**
+     * Indicates that a request starts being handled.
+     */
+    public void begin() {
+        this.inFlight.incrementAndGet();
+    }
+
+    /**
+     * Indicates that a request was handled and records its metrics.
+     * 
+     * @param route
+     *            The matched route template or {@link #UNMATCHED}.
+     * @param method
+     *            The method name.
+     * @param status
+     *            The response status code.
+     * @param latency
+     *            The latency in microseconds.
+     * @param received
+     *            The size of the request entity, or -1 if unknown.
+     * @param sent
+     *            The size of the response entity, or -1 if unknown.
+     */
+    public void end(String route, String method, int status, long latency,
+            long received, long sent) {
+        this.inFlight.decrementAndGet();
+        this.requests.incrementAndGet();
+        getLatency(route, method).record(latency);
+
+        if ((status >= 0) && (status < this.statusCounts.length())) {
+            this.statusCounts.incrementAndGet(status);
+        }
+
+        if (received > 0) {
+            this.bytesReceived.addAndGet(received);
+        }
+
+        if (sent > 0) {
+            this.bytesSent.addAndGet(sent);
+        }
+    }
+
+    public long getBytesReceived() {
+        return this.bytesReceived.get();
+    }
+
+    public long getBytesSent() {
+        return this.bytesSent.get();
+    }
+
+    public int getInFlight() {
+        return this.inFlight.get();
+    }
+
+    /**
+     * Returns the live map of latency histograms, by route template and
+     * method.
+     * 
+     * @return The latency histograms.
+     */
+    public Map<String, ConcurrentMap<String, Histogram>> getLatencies() {
+        return this.latencies;
+    }
+
+    /**
+     * Returns the latency histogram of a route template and method, creating
+     * it if needed and if the limit isn't reached.
+     * 
+     * @param route
+     *            The route template.
+     * @param method
+     *            The method name.
+     * @return The latency histogram.
+     */
+    public Histogram getLatency(String route, String method) {
+        ConcurrentMap<String, Histogram> methods = this.latencies.get(route);
+        Histogram result = (methods == null) ? null : methods.get(method);
+
+        if (result == null) {
+            if (this.histogramCount.get() >= getMaxHistograms()) {
+                if (!OTHER.equals(route)) {
+                    return getLatency(OTHER, OTHER);
+                }
+            }
+
+            if (methods == null) {
+                methods = new ConcurrentHashMap<String, Histogram>();
+                ConcurrentMap<String, Histogram> current = this.latencies
+                        .putIfAbsent(route, methods);
+
+                if (current != null) {
+                    methods = current;
+                }
+            }
+
+            result = new Histogram();
+            Histogram current = methods.putIfAbsent(method, result);
+
+            if (current == null) {
+                this.histogramCount.incrementAndGet();
+            } else {
+                result = current;
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns a given quantile of the latencies in milliseconds, keyed by
+     * method and route template.
+     * 
+     * @param quantile
+     *            The quantile.
+     * @return The quantile of the latencies.
+     */
+    private Map<String, Double> getLatencyQuantiles(double quantile) {
+        Map<String, Double> result = new TreeMap<String, Double>();
+
+        for (Map.Entry<String, ConcurrentMap<String, Histogram>> route : this.latencies
+                .entrySet()) {
+            for (Map.Entry<String, Histogram> method : route.getValue()
+                    .entrySet()) {
+                result.put(method.getKey() + " " + route.getKey(), method
+                        .getValue().getQuantile(quantile) / 1000D);
+            }
+        }
+
+        return result;
+    }
+
+    public Map<String, Double> getLatencyMedians() {
+        return getLatencyQuantiles(0.5D);
+    }
+
+    public Map<String, Double> getLatencyP99s() {
+        return getLatencyQuantiles(0.99D);
+    }
+
+    /**
+     * Returns the maximum number of latency histograms.
+     * 
+     * @return The maximum number of latency histograms.
+     */
+    public int getMaxHistograms() {
+        return this.maxHistograms;
+    }
+
+    public long getRequests() {
+        return this.requests.get();
+    }
+
+    /**
+     * Returns the modifiable list of server connectors whose thread pool is
+     * monitored.
+     * 
+     * @return The server connectors whose thread pool is monitored.
+     */
+    public List<Server> getServers() {
+        return this.servers;
+    }
+
+    /**
+     * Returns the number of responses with a given status code.
+     * 
+     * @param status
+     *            The status code.
+     * @return The number of responses.
+     */
+    public long getStatusCount(int status) {
+        return ((status >= 0) && (status < this.statusCounts.length())) ? this.statusCounts
+                .get(status) : 0L;
+    }
+
+    public Map<String, Long> getStatusCounts() {
+        Map<String, Long> result = new TreeMap<String, Long>();
+
+        for (int i = 0; i < this.statusCounts.length(); i++) {
+            long count = this.statusCounts.get(i);
+
+            if (count > 0) {
+                result.put(Integer.toString(i), count);
+            }
+        }
+
+        return result;
+    }
+
+    public void reset() {
+        this.bytesReceived.set(0L);
+        this.bytesSent.set(0L);
+        this.requests.set(0L);
+
+        for (int i = 0; i < this.statusCounts.length(); i++) {
+            this.statusCounts.set(i, 0L);
+        }
+
+        for (ConcurrentMap<String, Histogram> methods : this.latencies
+                .values()) {
+            for (Histogram histogram : methods.values()) {
+                histogram.clear();
+            }
+        }
+    }
+
+    /**
+     * Sets the maximum number of latency histograms.
+     * 
+     * @param maxHistograms
+     *            The maximum number of latency histograms.
+     */
+    public void setMaxHistograms(int maxHistograms) {
+        this.maxHistograms = maxHistograms;
+    }
+
+}
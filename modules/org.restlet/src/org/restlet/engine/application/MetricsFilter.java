@@ -0,0 +1,103 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or or EPL 1.0 (the "Licenses"). You can
+ * select the license that you prefer but you may not use this file except in
+ * compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+
+package org.restlet.engine.application;
+
+import org.restlet.Context;
+import org.restlet.Request;
+import org.restlet.Response;
+import org.restlet.routing.Filter;
+import org.restlet.routing.TemplateRoute;
+
+// [excludes gwt]
+/**
+ * Filter recording the metrics of the calls, including their latency per route
+ * template and method. The matched route templates are collected by the
+ * {@link TemplateRoute} instances via the
+ * {@link TemplateRoute#ATTRIBUTE_TEMPLATE} request attribute.<br>
+ * <br>
+ * Concurrency note: instances of this class or its subclasses can be invoked by
+ * several threads at the same time and therefore must be thread-safe. You
+ * should be especially careful when storing state in member variables.
+ * 
+ * @author Jerome Louvel
+ */
+public class MetricsFilter extends Filter {
+
+    /** The recorded metrics. */
+    private final Metrics metrics;
+
+    /**
+     * Constructor.
+     * 
+     * @param context
+     *            The context.
+     * @param metrics
+     *            The recorded metrics.
+     */
+    public MetricsFilter(Context context, Metrics metrics) {
+        super(context);
+        this.metrics = metrics;
+    }
+
+    /**
+     * Records the metrics of the call, even if the next Restlet failed.
+     */
+    @Override
+    protected int doHandle(Request request, Response response) {
+        long start = System.nanoTime();
+        request.getAttributes().put(TemplateRoute.ATTRIBUTE_TEMPLATE, "");
+        getMetrics().begin();
+
+        try {
+            return super.doHandle(request, response);
+        } finally {
+            Object route = request.getAttributes().remove(
+                    TemplateRoute.ATTRIBUTE_TEMPLATE);
+            String method = (request.getMethod() == null) ? Metrics.UNMATCHED
+                    : request.getMethod().getName();
+            int status = (response.getStatus() == null) ? 0 : response
+                    .getStatus().getCode();
+            long received = (request.getEntity() == null) ? 0L : request
+                    .getEntity().getSize();
+            long sent = response.isEntityAvailable() ? response.getEntity()
+                    .getSize() : 0L;
+            getMetrics().end(
+                    ((route == null) || "".equals(route)) ? Metrics.UNMATCHED
+                            : route.toString(), method, status,
+                    (System.nanoTime() - start) / 1000L, received, sent);
+        }
+    }
+
+    /**
+     * Returns the recorded metrics.
+     * 
+     * @return The recorded metrics.
+     */
+    public Metrics getMetrics() {
+        return metrics;
+    }
+
+}
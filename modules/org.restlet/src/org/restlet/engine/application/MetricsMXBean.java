@@ -0,0 +1,94 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or or EPL 1.0 (the "Licenses"). You can
+ * select the license that you prefer but you may not use this file except in
+ * compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+
+package org.restlet.engine.application;
+
+import java.util.Map;
+
+// [excludes gwt]
+/**
+ * Management interface of the request metrics, exposed through JMX.
+ * 
+ * @author Jerome Louvel
+ */
+public interface MetricsMXBean {
+
+    /**
+     * Returns the number of bytes received in request entities of known size.
+     * 
+     * @return The number of bytes received.
+     */
+    long getBytesReceived();
+
+    /**
+     * Returns the number of bytes sent in response entities of known size.
+     * 
+     * @return The number of bytes sent.
+     */
+    long getBytesSent();
+
+    /**
+     * Returns the number of requests being handled.
+     * 
+     * @return The number of requests being handled.
+     */
+    int getInFlight();
+
+    /**
+     * Returns the median latency in milliseconds, for each method and route
+     * template.
+     * 
+     * @return The median latencies, keyed by method and route template.
+     */
+    Map<String, Double> getLatencyMedians();
+
+    /**
+     * Returns the 99th percentile of the latency in milliseconds, for each
+     * method and route template.
+     * 
+     * @return The 99th percentiles, keyed by method and route template.
+     */
+    Map<String, Double> getLatencyP99s();
+
+    /**
+     * Returns the number of handled requests.
+     * 
+     * @return The number of handled requests.
+     */
+    long getRequests();
+
+    /**
+     * Returns the number of responses for each status code.
+     * 
+     * @return The number of responses, keyed by status code.
+     */
+    Map<String, Long> getStatusCounts();
+
+    /**
+     * Resets all the metrics, except the number of requests being handled.
+     */
+    void reset();
+
+}
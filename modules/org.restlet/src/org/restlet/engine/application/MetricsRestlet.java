@@ -0,0 +1,389 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or or EPL 1.0 (the "Licenses"). You can
+ * select the license that you prefer but you may not use this file except in
+ * compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+
+package org.restlet.engine.application;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadPoolExecutor;
+
+import org.restlet.Context;
+import org.restlet.Request;
+import org.restlet.Response;
+import org.restlet.Restlet;
+import org.restlet.Server;
+import org.restlet.data.CacheDirective;
+import org.restlet.data.MediaType;
+import org.restlet.data.Method;
+import org.restlet.data.Status;
+import org.restlet.engine.adapter.ConcurrencyLimiter;
+import org.restlet.engine.util.Histogram;
+import org.restlet.representation.StringRepresentation;
+
+// [excludes gwt]
+/**
+ * Restlet exposing the request metrics, either as a JSON document or in the
+ * Prometheus text format, depending on the preferred media type of the client
+ * or on the "format" query parameter set to "json" or "prometheus". The
+ * latency quantiles are expressed in milliseconds in JSON and in seconds in
+ * the Prometheus format, following its conventions.
+ * 
+ * @author Jerome Louvel
+ */
+public class MetricsRestlet extends Restlet {
+
+    /** The media type of the Prometheus text format. */
+    private static final MediaType PROMETHEUS = MediaType.valueOf(
+            "text/plain; version=0.0.4");
+
+    /** The exposed quantiles. */
+    private static final double[] QUANTILES = { 0.5D, 0.9D, 0.99D };
+
+    /**
+     * Appends a Prometheus metric family, its type being followed by all its
+     * samples. Nothing is appended if the family has no sample.
+     * 
+     * @param sb
+     *            The target builder.
+     * @param name
+     *            The name of the family.
+     * @param type
+     *            The type of the family.
+     * @param samples
+     *            The sample values indexed by their formatted labels.
+     */
+    private static void appendFamily(StringBuilder sb, String name,
+            String type, Map<String, Number> samples) {
+        if (!samples.isEmpty()) {
+            sb.append("# TYPE ").append(name).append(' ').append(type)
+                    .append('\n');
+
+            for (Map.Entry<String, Number> sample : samples.entrySet()) {
+                sb.append(name).append(sample.getKey())
+                        .append(sample.getValue()).append('\n');
+            }
+        }
+    }
+
+    /**
+     * Appends a JSON string.
+     * 
+     * @param sb
+     *            The target builder.
+     * @param value
+     *            The string value.
+     */
+    private static void appendJson(StringBuilder sb, String value) {
+        sb.append('"');
+
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+
+            if ((c == '"') || (c == '\\')) {
+                sb.append('\\').append(c);
+            } else if (c < 0x20) {
+                sb.append(String.format("\\u%04x", (int) c));
+            } else {
+                sb.append(c);
+            }
+        }
+
+        sb.append('"');
+    }
+
+    /**
+     * Appends a Prometheus label value.
+     * 
+     * @param sb
+     *            The target builder.
+     * @param value
+     *            The label value.
+     */
+    private static void appendLabel(StringBuilder sb, String value) {
+        sb.append('"');
+
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+
+            if ((c == '"') || (c == '\\')) {
+                sb.append('\\').append(c);
+            } else if (c == '\n') {
+                sb.append("\\n");
+            } else {
+                sb.append(c);
+            }
+        }
+
+        sb.append('"');
+    }
+
+    /**
+     * Returns the name of a server connector.
+     * 
+     * @param server
+     *            The server connector.
+     * @return The name of the server connector.
+     */
+    private static String getName(Server server) {
+        return (server.getName() != null) ? server.getName() : server
+                .getProtocols() + ":" + server.getPort();
+    }
+
+    /** The exposed metrics. */
+    private final Metrics metrics;
+
+    /**
+     * Constructor.
+     * 
+     * @param context
+     *            The context.
+     * @param metrics
+     *            The exposed metrics.
+     */
+    public MetricsRestlet(Context context, Metrics metrics) {
+        super(context);
+        this.metrics = metrics;
+    }
+
+    /**
+     * Formats the metrics as a JSON document.
+     * 
+     * @return The JSON document.
+     */
+    public String formatJson() {
+        Metrics m = getMetrics();
+        StringBuilder sb = new StringBuilder("{\"requests\":")
+                .append(m.getRequests()).append(",\"inFlight\":")
+                .append(m.getInFlight()).append(",\"bytesReceived\":")
+                .append(m.getBytesReceived()).append(",\"bytesSent\":")
+                .append(m.getBytesSent()).append(",\"statuses\":{");
+        boolean first = true;
+
+        for (Map.Entry<String, Long> entry : m.getStatusCounts().entrySet()) {
+            sb.append(first ? "" : ",");
+            appendJson(sb, entry.getKey());
+            sb.append(':').append(entry.getValue());
+            first = false;
+        }
+
+        sb.append("},\"routes\":[");
+        first = true;
+
+        for (Map.Entry<String, ConcurrentMap<String, Histogram>> route : m
+                .getLatencies().entrySet()) {
+            for (Map.Entry<String, Histogram> method : route.getValue()
+                    .entrySet()) {
+                Histogram histogram = method.getValue();
+                sb.append(first ? "{" : ",{").append("\"route\":");
+                appendJson(sb, route.getKey());
+                sb.append(",\"method\":");
+                appendJson(sb, method.getKey());
+                sb.append(",\"count\":").append(histogram.getCount());
+                sb.append(",\"sum\":").append(histogram.getSum() / 1000D);
+                sb.append(",\"max\":").append(histogram.getMax() / 1000D);
+
+                for (double quantile : QUANTILES) {
+                    sb.append(",\"p").append((int) (quantile * 100))
+                            .append("\":")
+                            .append(histogram.getQuantile(quantile) / 1000D);
+                }
+
+                sb.append('}');
+                first = false;
+            }
+        }
+
+        sb.append("],\"connectors\":[");
+        first = true;
+
+        for (Server server : m.getServers()) {
+            ThreadPoolExecutor pool = Metrics.getThreadPool(server);
+            sb.append(first ? "{" : ",{").append("\"name\":");
+            appendJson(sb, getName(server));
+
+            if (pool != null) {
+                sb.append(",\"activeThreads\":").append(pool.getActiveCount());
+                sb.append(",\"poolSize\":").append(pool.getPoolSize());
+                sb.append(",\"queueDepth\":").append(pool.getQueue().size());
+                sb.append(",\"completedTasks\":").append(
+                        pool.getCompletedTaskCount());
+            }
+
+            ConcurrencyLimiter limiter = Metrics.getConcurrencyLimiter(server);
+
+            if (limiter != null) {
+                sb.append(",\"concurrencyLimit\":").append(limiter.getLimit());
+                sb.append(",\"limitedInFlight\":").append(
+                        limiter.getInFlight());
+                sb.append(",\"limitRejected\":").append(limiter.getRejected());
+            }
+
+            sb.append('}');
+            first = false;
+        }
+
+        return sb.append("]}").toString();
+    }
+
+    /**
+     * Formats the metrics in the Prometheus text format.
+     * 
+     * @return The metrics in the Prometheus text format.
+     */
+    public String formatPrometheus() {
+        Metrics m = getMetrics();
+        StringBuilder sb = new StringBuilder();
+        sb.append("# TYPE restlet_requests_total counter\n");
+        sb.append("restlet_requests_total ").append(m.getRequests())
+                .append('\n');
+        sb.append("# TYPE restlet_requests_in_flight gauge\n");
+        sb.append("restlet_requests_in_flight ").append(m.getInFlight())
+                .append('\n');
+        sb.append("# TYPE restlet_received_bytes_total counter\n");
+        sb.append("restlet_received_bytes_total ")
+                .append(m.getBytesReceived()).append('\n');
+        sb.append("# TYPE restlet_sent_bytes_total counter\n");
+        sb.append("restlet_sent_bytes_total ").append(m.getBytesSent())
+                .append('\n');
+        sb.append("# TYPE restlet_responses_total counter\n");
+
+        for (Map.Entry<String, Long> entry : m.getStatusCounts().entrySet()) {
+            sb.append("restlet_responses_total{status=");
+            appendLabel(sb, entry.getKey());
+            sb.append("} ").append(entry.getValue()).append('\n');
+        }
+
+        sb.append("# TYPE restlet_request_duration_seconds summary\n");
+
+        for (Map.Entry<String, ConcurrentMap<String, Histogram>> route : m
+                .getLatencies().entrySet()) {
+            for (Map.Entry<String, Histogram> method : route.getValue()
+                    .entrySet()) {
+                StringBuilder labels = new StringBuilder("route=");
+                appendLabel(labels, route.getKey());
+                labels.append(",method=");
+                appendLabel(labels, method.getKey());
+                Histogram histogram = method.getValue();
+
+                for (double quantile : QUANTILES) {
+                    sb.append("restlet_request_duration_seconds{")
+                            .append(labels).append(",quantile=\"")
+                            .append(quantile).append("\"} ")
+                            .append(histogram.getQuantile(quantile) / 1e6D)
+                            .append('\n');
+                }
+
+                sb.append("restlet_request_duration_seconds_sum{")
+                        .append(labels).append("} ")
+                        .append(histogram.getSum() / 1e6D).append('\n');
+                sb.append("restlet_request_duration_seconds_count{")
+                        .append(labels).append("} ")
+                        .append(histogram.getCount()).append('\n');
+            }
+        }
+
+        // Group the samples of the connectors by metric family
+        Map<String, Number> activeThreads = new LinkedHashMap<String, Number>();
+        Map<String, Number> poolSizes = new LinkedHashMap<String, Number>();
+        Map<String, Number> queueDepths = new LinkedHashMap<String, Number>();
+        Map<String, Number> limits = new LinkedHashMap<String, Number>();
+        Map<String, Number> rejected = new LinkedHashMap<String, Number>();
+
+        for (Server server : m.getServers()) {
+            StringBuilder labels = new StringBuilder("{connector=");
+            appendLabel(labels, getName(server));
+            String label = labels.append("} ").toString();
+            ThreadPoolExecutor pool = Metrics.getThreadPool(server);
+
+            if (pool != null) {
+                activeThreads.put(label, pool.getActiveCount());
+                poolSizes.put(label, pool.getPoolSize());
+                queueDepths.put(label, pool.getQueue().size());
+            }
+
+            ConcurrencyLimiter limiter = Metrics.getConcurrencyLimiter(server);
+
+            if (limiter != null) {
+                limits.put(label, limiter.getLimit());
+                rejected.put(label, limiter.getRejected());
+            }
+        }
+
+        appendFamily(sb, "restlet_connector_active_threads", "gauge",
+                activeThreads);
+        appendFamily(sb, "restlet_connector_pool_size", "gauge", poolSizes);
+        appendFamily(sb, "restlet_connector_queue_depth", "gauge", queueDepths);
+        appendFamily(sb, "restlet_connector_concurrency_limit", "gauge",
+                limits);
+        appendFamily(sb, "restlet_connector_limit_rejected_total", "counter",
+                rejected);
+        return sb.toString();
+    }
+
+    /**
+     * Returns the exposed metrics.
+     * 
+     * @return The exposed metrics.
+     */
+    public Metrics getMetrics() {
+        return metrics;
+    }
+
+    @Override
+    public void handle(Request request, Response response) {
+        super.handle(request, response);
+
+        if (Method.GET.equals(request.getMethod())
+                || Method.HEAD.equals(request.getMethod())) {
+            String format = request.getResourceRef().getQueryAsForm()
+                    .getFirstValue("format");
+            boolean prometheus;
+
+            if (format != null) {
+                prometheus = "prometheus".equalsIgnoreCase(format);
+            } else {
+                MediaType preferred = request.getClientInfo()
+                        .getPreferredMediaType(
+                                Arrays.asList(MediaType.APPLICATION_JSON,
+                                        MediaType.TEXT_PLAIN));
+                prometheus = MediaType.TEXT_PLAIN.equals(preferred, true);
+            }
+
+            StringRepresentation entity = prometheus ? new StringRepresentation(
+                    formatPrometheus(), PROMETHEUS) : new StringRepresentation(
+                    formatJson(), MediaType.APPLICATION_JSON);
+            response.setEntity(entity);
+            response.getCacheDirectives().add(CacheDirective.noCache());
+            response.setStatus(Status.SUCCESS_OK);
+        } else {
+            response.setStatus(Status.CLIENT_ERROR_METHOD_NOT_ALLOWED);
+            response.getAllowedMethods().add(Method.GET);
+            response.getAllowedMethods().add(Method.HEAD);
+        }
+    }
+
+}
@@ -0,0 +1,132 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or or EPL 1.0 (the "Licenses"). You can
+ * select the license that you prefer but you may not use this file except in
+ * compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+
+package org.restlet.engine.application;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.DeflaterOutputStream;
+
+// [excludes gwt]
+/**
+ * Deflater output stream borrowing its deflater from a {@link DeflaterPool}.
+ * The deflater is given back to the pool as soon as the stream is finished or
+ * closed, after which no more data can be written.
+ * 
+ * @author Jerome Louvel
+ */
+public class PooledDeflaterOutputStream extends DeflaterOutputStream {
+
+    /** The pool providing the deflater. */
+    private final DeflaterPool pool;
+
+    /** Indicates if the deflater was given back to the pool. */
+    private boolean released;
+
+    /**
+     * Constructor.
+     * 
+     * @param out
+     *            The output stream receiving the compressed data.
+     * @param pool
+     *            The pool providing the deflater.
+     * @param level
+     *            The compression level.
+     * @param strategy
+     *            The compression strategy.
+     * @param bufferSize
+     *            The size of the output buffer.
+     */
+    public PooledDeflaterOutputStream(OutputStream out, DeflaterPool pool,
+            int level, int strategy, int bufferSize) {
+        super(out, pool.checkout(level, strategy), bufferSize);
+        this.pool = pool;
+        this.released = false;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            super.close();
+        } finally {
+            release();
+        }
+    }
+
+    /**
+     * Finishes writing the compressed data, including the trailer, and gives
+     * the deflater back to the pool.
+     */
+    @Override
+    public void finish() throws IOException {
+        if (!isReleased()) {
+            try {
+                super.finish();
+                writeTrailer();
+            } finally {
+                release();
+            }
+        }
+    }
+
+    /**
+     * Indicates if the deflater was given back to the pool.
+     * 
+     * @return True if the deflater was given back to the pool.
+     */
+    protected boolean isReleased() {
+        return released;
+    }
+
+    /**
+     * Gives the deflater back to the pool, if not done yet.
+     */
+    public void release() {
+        if (!this.released) {
+            this.released = true;
+            this.pool.checkin(this.def);
+        }
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        if (isReleased()) {
+            throw new IOException("Write beyond end of stream");
+        }
+
+        super.write(b, off, len);
+    }
+
+    /**
+     * Writes the trailer following the compressed data, before the deflater is
+     * given back to the pool. Does nothing by default.
+     * 
+     * @throws IOException
+     */
+    protected void writeTrailer() throws IOException {
+
+    }
+
+}
@@ -0,0 +1,251 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or or EPL 1.0 (the "Licenses"). You can
+ * select the license that you prefer but you may not use this file except in
+ * compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+
+package org.restlet.engine.application;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.util.zip.CRC32;
+import java.util.zip.ZipException;
+
+// [excludes gwt]
+/**
+ * GZIP input stream borrowing its inflater from the shared raw
+ * {@link InflaterPool}, as the JDK's GZIPInputStream always creates its own.
+ * Concatenated GZIP members are decoded as a single stream.
+ * 
+ * @author Jerome Louvel
+ */
+public class PooledGzipInputStream extends PooledInflaterInputStream {
+
+    /** File comment flag. */
+    private static final int FCOMMENT = 16;
+
+    /** Extra field flag. */
+    private static final int FEXTRA = 4;
+
+    /** Header CRC flag. */
+    private static final int FHCRC = 2;
+
+    /** File name flag. */
+    private static final int FNAME = 8;
+
+    /** The checksum of the uncompressed data of the current member. */
+    private final CRC32 crc;
+
+    /**
+     * Constructor. Reads the GZIP header immediately.
+     * 
+     * @param in
+     *            The input stream providing the compressed data.
+     * @param bufferSize
+     *            The size of the input buffer.
+     * @throws IOException
+     */
+    public PooledGzipInputStream(InputStream in, int bufferSize)
+            throws IOException {
+        super(in, InflaterPool.getInstance(true), bufferSize);
+        this.crc = new CRC32();
+
+        try {
+            readHeader(in);
+        } catch (IOException ioe) {
+            release();
+            throw ioe;
+        }
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        int result = super.read(b, off, len);
+
+        if (result > 0) {
+            this.crc.update(b, off, result);
+        }
+
+        return result;
+    }
+
+    /**
+     * Reads a GZIP member header.
+     * 
+     * @param input
+     *            The input stream.
+     * @return The number of bytes read.
+     * @throws IOException
+     */
+    private int readHeader(InputStream input) throws IOException {
+        if (readUShort(input) != 0x8b1f) {
+            throw new ZipException("Not in GZIP format");
+        }
+
+        if (readUByte(input) != 8) {
+            throw new ZipException("Unsupported compression method");
+        }
+
+        int flags = readUByte(input);
+        skipBytes(input, 6);
+        int result = 10;
+
+        if ((flags & FEXTRA) == FEXTRA) {
+            int length = readUShort(input);
+            skipBytes(input, length);
+            result += length + 2;
+        }
+
+        if ((flags & FNAME) == FNAME) {
+            do {
+                result++;
+            } while (readUByte(input) != 0);
+        }
+
+        if ((flags & FCOMMENT) == FCOMMENT) {
+            do {
+                result++;
+            } while (readUByte(input) != 0);
+        }
+
+        if ((flags & FHCRC) == FHCRC) {
+            skipBytes(input, 2);
+            result += 2;
+        }
+
+        this.crc.reset();
+        return result;
+    }
+
+    /**
+     * Checks the checksum and size of the decoded member, then reads the
+     * header of the next member if any.
+     */
+    @Override
+    protected boolean readTrailer() throws IOException {
+        InputStream input = this.in;
+        int remaining = this.inf.getRemaining();
+
+        if (remaining > 0) {
+            input = new SequenceInputStream(new ByteArrayInputStream(this.buf,
+                    this.len - remaining, remaining), new FilterInputStream(
+                    this.in) {
+                @Override
+                public void close() throws IOException {
+                }
+            });
+        }
+
+        long size = this.inf.getBytesWritten() & 0xffffffffL;
+
+        if ((readUInt(input) != this.crc.getValue())
+                || (readUInt(input) != size)) {
+            throw new ZipException("Corrupt GZIP trailer");
+        }
+
+        if ((this.in.available() > 0) || (remaining > 26)) {
+            int read = 8;
+
+            try {
+                read += readHeader(input);
+            } catch (IOException ioe) {
+                // Trailing garbage is ignored
+                return true;
+            }
+
+            this.inf.reset();
+
+            if (remaining > read) {
+                this.inf.setInput(this.buf, this.len - remaining + read,
+                        remaining - read);
+            }
+
+            return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Reads an unsigned byte.
+     * 
+     * @param input
+     *            The input stream.
+     * @return The unsigned byte.
+     * @throws IOException
+     */
+    private int readUByte(InputStream input) throws IOException {
+        int result = input.read();
+
+        if (result == -1) {
+            throw new EOFException();
+        }
+
+        return result;
+    }
+
+    /**
+     * Reads a little-endian unsigned integer.
+     * 
+     * @param input
+     *            The input stream.
+     * @return The unsigned integer.
+     * @throws IOException
+     */
+    private long readUInt(InputStream input) throws IOException {
+        long low = readUShort(input);
+        return ((long) readUShort(input) << 16) | low;
+    }
+
+    /**
+     * Reads a little-endian unsigned short.
+     * 
+     * @param input
+     *            The input stream.
+     * @return The unsigned short.
+     * @throws IOException
+     */
+    private int readUShort(InputStream input) throws IOException {
+        int low = readUByte(input);
+        return (readUByte(input) << 8) | low;
+    }
+
+    /**
+     * Skips a number of bytes.
+     * 
+     * @param input
+     *            The input stream.
+     * @param count
+     *            The number of bytes to skip.
+     * @throws IOException
+     */
+    private void skipBytes(InputStream input, int count) throws IOException {
+        for (int i = 0; i < count; i++) {
+            readUByte(input);
+        }
+    }
+
+}
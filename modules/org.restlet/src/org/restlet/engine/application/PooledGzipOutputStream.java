@@ -0,0 +1,107 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or or EPL 1.0 (the "Licenses"). You can
+ * select the license that you prefer but you may not use this file except in
+ * compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+
+package org.restlet.engine.application;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.CRC32;
+
+// [excludes gwt]
+/**
+ * GZIP output stream borrowing its deflater from the shared raw
+ * {@link DeflaterPool}, as the JDK's GZIPOutputStream always creates its own.
+ * 
+ * @author Jerome Louvel
+ */
+public class PooledGzipOutputStream extends PooledDeflaterOutputStream {
+
+    /** The GZIP header, without file name, comment or modification time. */
+    private static final byte[] HEADER = { (byte) 0x1f, (byte) 0x8b, 8, 0, 0,
+            0, 0, 0, 0, 0 };
+
+    /** The checksum of the uncompressed data. */
+    private final CRC32 crc;
+
+    /**
+     * Constructor. Writes the GZIP header immediately.
+     * 
+     * @param out
+     *            The output stream receiving the compressed data.
+     * @param level
+     *            The compression level.
+     * @param strategy
+     *            The compression strategy.
+     * @param bufferSize
+     *            The size of the output buffer.
+     * @throws IOException
+     */
+    public PooledGzipOutputStream(OutputStream out, int level, int strategy,
+            int bufferSize) throws IOException {
+        super(out, DeflaterPool.getInstance(true), level, strategy, bufferSize);
+        this.crc = new CRC32();
+
+        try {
+            out.write(HEADER);
+        } catch (IOException ioe) {
+            release();
+            throw ioe;
+        }
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        super.write(b, off, len);
+        this.crc.update(b, off, len);
+    }
+
+    /**
+     * Writes the little-endian integer value.
+     * 
+     * @param value
+     *            The value to write.
+     * @param b
+     *            The target byte array.
+     * @param offset
+     *            The offset in the byte array.
+     */
+    private void writeInt(long value, byte[] b, int offset) {
+        for (int i = 0; i < 4; i++) {
+            b[offset + i] = (byte) (value >> (8 * i));
+        }
+    }
+
+    /**
+     * Writes the checksum and the size of the uncompressed data.
+     */
+    @Override
+    protected void writeTrailer() throws IOException {
+        byte[] trailer = new byte[8];
+        writeInt(this.crc.getValue(), trailer, 0);
+        writeInt(this.def.getBytesRead(), trailer, 4);
+        this.out.write(trailer);
+    }
+
+}
@@ -0,0 +1,120 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or or EPL 1.0 (the "Licenses"). You can
+ * select the license that you prefer but you may not use this file except in
+ * compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+
+package org.restlet.engine.application;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.InflaterInputStream;
+
+// [excludes gwt]
+/**
+ * Inflater input stream borrowing its inflater from an {@link InflaterPool}.
+ * The inflater is given back to the pool as soon as the end of the compressed
+ * data is reached or the stream is closed.
+ * 
+ * @author Jerome Louvel
+ */
+public class PooledInflaterInputStream extends InflaterInputStream {
+
+    /** Indicates if the end of the compressed data was reached. */
+    private boolean endReached;
+
+    /** The pool providing the inflater. */
+    private final InflaterPool pool;
+
+    /** Indicates if the inflater was given back to the pool. */
+    private boolean released;
+
+    /**
+     * Constructor.
+     * 
+     * @param in
+     *            The input stream providing the compressed data.
+     * @param pool
+     *            The pool providing the inflater.
+     * @param bufferSize
+     *            The size of the input buffer.
+     */
+    public PooledInflaterInputStream(InputStream in, InflaterPool pool,
+            int bufferSize) {
+        super(in, pool.checkout(), bufferSize);
+        this.endReached = false;
+        this.pool = pool;
+        this.released = false;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            super.close();
+        } finally {
+            release();
+        }
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (this.endReached) {
+            return -1;
+        }
+
+        int result = super.read(b, off, len);
+
+        while ((result == -1) && !this.endReached) {
+            if (readTrailer()) {
+                this.endReached = true;
+                release();
+            } else {
+                result = super.read(b, off, len);
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Reads the trailer following the compressed data, before the inflater is
+     * given back to the pool. Returns true by default.
+     * 
+     * @return True if the end of the stream is reached, false if another
+     *         compressed member follows.
+     * @throws IOException
+     */
+    protected boolean readTrailer() throws IOException {
+        return true;
+    }
+
+    /**
+     * Gives the inflater back to the pool, if not done yet.
+     */
+    public void release() {
+        if (!this.released) {
+            this.released = true;
+            this.pool.checkin(this.inf);
+        }
+    }
+
+}
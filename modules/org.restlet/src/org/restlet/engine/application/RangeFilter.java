@@ -24,18 +24,28 @@
 
 package org.restlet.engine.application;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
 import org.restlet.Context;
 import org.restlet.Request;
 import org.restlet.Response;
 import org.restlet.data.Range;
 import org.restlet.data.Status;
+import org.restlet.engine.io.SeekableSource;
+import org.restlet.representation.Representation;
 import org.restlet.routing.Filter;
 import org.restlet.service.RangeService;
 
 // [excludes gwt]
 /**
  * Filter that is in charge to check the responses to requests for partial
- * content.
+ * content. Requests for several ranges are answered with "multipart/byteranges"
+ * entities, unless there are more ranges than allowed by the
+ * {@link RangeService#getMaxRanges()} property or unless the entity would need
+ * to be read several times, in which case the full entity is served.
  * 
  * @author Thierry Boileau
  */
@@ -70,13 +80,12 @@ public class RangeFilter extends Filter {
                             // We assume that the response entity has been
                             // properly ranged.
                         }
-                    } else {
-                        // At this time, list of ranges are not supported.
-                        if (request.getRanges().size() == 1
-                                && (!request.getConditions().hasSomeRange() || request
-                                        .getConditions()
-                                        .getRangeStatus(response.getEntity())
-                                        .isSuccess())) {
+                    } else if (!request.getRanges().isEmpty()
+                            && (!request.getConditions().hasSomeRange() || request
+                                    .getConditions()
+                                    .getRangeStatus(response.getEntity())
+                                    .isSuccess())) {
+                        if (request.getRanges().size() == 1) {
                             Range requestedRange = request.getRanges().get(0);
 
                             if ((!response.getEntity().hasKnownSize())
@@ -107,14 +116,8 @@ public class RangeFilter extends Filter {
                                         response.getEntity(), requestedRange));
                                 response.setStatus(Status.SUCCESS_PARTIAL_CONTENT);
                             }
-                        } else if (request.getRanges().size() > 1) {
-                            // Return a server error as this feature isn't
-                            // supported yet
-                            response.setStatus(Status.SERVER_ERROR_NOT_IMPLEMENTED);
-                            getLogger()
-                                    .warning(
-                                            "Multiple ranges are not supported at this time.");
-                            response.setEntity(null);
+                        } else if (!rangedEntity) {
+                            handleRanges(request, response);
                         }
                     }
                 } else {
@@ -124,6 +127,116 @@ public class RangeFilter extends Filter {
         }
     }
 
+    /**
+     * Handles a request for several ranges. The ranges are resolved against
+     * the size of the response entity, the overlapping or adjacent ones being
+     * coalesced, then served as a "multipart/byteranges" entity. The ranges
+     * are ignored if there are more than the maximum number of ranges, if the
+     * entity size is unknown, or if the entity can't be positioned while the
+     * ranges aren't in ascending order, as it would have to be read again for
+     * each range.
+     * 
+     * @param request
+     *            The request with several ranges.
+     * @param response
+     *            The response to update.
+     */
+    protected void handleRanges(Request request, Response response) {
+        Representation entity = response.getEntity();
+        int maxRanges = getRangeService().getMaxRanges();
+
+        if (request.getRanges().size() > maxRanges) {
+            getLogger().fine(
+                    "Unable to serve more than " + maxRanges
+                            + " ranges of an entity.");
+            return;
+        }
+
+        if (!entity.hasKnownSize()) {
+            getLogger()
+                    .fine("Unable to serve several ranges of an entity of unknown size.");
+            return;
+        }
+
+        List<Range> ranges = resolveRanges(request.getRanges(),
+                entity.getSize());
+
+        if (ranges.isEmpty()) {
+            response.setStatus(Status.CLIENT_ERROR_REQUESTED_RANGE_NOT_SATISFIABLE);
+            response.setEntity(null);
+        } else if (ranges.size() == 1) {
+            response.setEntity(new RangeRepresentation(entity, ranges.get(0)));
+            response.setStatus(Status.SUCCESS_PARTIAL_CONTENT);
+        } else if (!(entity instanceof SeekableSource)
+                && !ByteRangesRepresentation.isAscending(ranges)) {
+            getLogger()
+                    .fine("Unable to serve unordered ranges of an entity that can't be positioned.");
+        } else {
+            response.setEntity(new ByteRangesRepresentation(entity, ranges));
+            response.setStatus(Status.SUCCESS_PARTIAL_CONTENT);
+        }
+    }
+
+    /**
+     * Resolves the requested ranges against the size of an entity. The
+     * unsatisfiable ranges are removed and the other ones get a positive index
+     * and a size within the content. If some ranges overlap or are adjacent,
+     * they are all sorted and coalesced.
+     * 
+     * @param requestedRanges
+     *            The requested ranges.
+     * @param size
+     *            The entity size.
+     * @return The resolved ranges.
+     */
+    protected List<Range> resolveRanges(List<Range> requestedRanges, long size) {
+        List<Range> result = new ArrayList<Range>(requestedRanges.size());
+
+        for (Range range : requestedRanges) {
+            if (range.getIndex() >= Range.INDEX_FIRST) {
+                if (range.getIndex() < size) {
+                    long rangeSize = ((range.getSize() == Range.SIZE_MAX) || (range
+                            .getSize() > size - range.getIndex())) ? size
+                            - range.getIndex() : range.getSize();
+
+                    if (rangeSize > 0) {
+                        result.add(new Range(range.getIndex(), rangeSize));
+                    }
+                }
+            } else if ((range.getSize() != Range.SIZE_MAX)
+                    && (range.getSize() > 0) && (size > 0)) {
+                // Suffix range
+                long rangeSize = Math.min(range.getSize(), size);
+                result.add(new Range(size - rangeSize, rangeSize));
+            }
+        }
+
+        List<Range> sorted = new ArrayList<Range>(result);
+        Collections.sort(sorted, new Comparator<Range>() {
+            public int compare(Range range0, Range range1) {
+                return (range0.getIndex() < range1.getIndex()) ? -1 : ((range0
+                        .getIndex() == range1.getIndex()) ? 0 : 1);
+            }
+        });
+        List<Range> coalesced = new ArrayList<Range>(sorted.size());
+
+        for (Range range : sorted) {
+            Range last = coalesced.isEmpty() ? null : coalesced.get(coalesced
+                    .size() - 1);
+
+            if ((last != null)
+                    && (range.getIndex() <= last.getIndex() + last.getSize())) {
+                long end = Math.max(last.getIndex() + last.getSize(),
+                        range.getIndex() + range.getSize());
+                last.setSize(end - last.getIndex());
+            } else {
+                coalesced.add(new Range(range.getIndex(), range.getSize()));
+            }
+        }
+
+        return (coalesced.size() < result.size()) ? coalesced : result;
+    }
+
     /**
      * Returns the Range service of the parent application.
      * 
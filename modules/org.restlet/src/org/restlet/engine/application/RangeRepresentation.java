@@ -103,9 +103,38 @@ public class RangeRepresentation extends WrapperRepresentation {
         return IoUtils.getReader(getStream(), getCharacterSet());
     }
 
+    /**
+     * Returns the index of the first byte of the range inside the wrapped
+     * content, or 0 if it can't be determined.
+     * 
+     * @return The index of the first byte of the range.
+     */
+    private long getStartIndex() {
+        Range range = getRange();
+
+        if (range == null) {
+            return 0L;
+        } else if (range.getIndex() >= Range.INDEX_FIRST) {
+            return range.getIndex();
+        } else if ((range.getSize() != Range.SIZE_MAX) && hasKnownSize()) {
+            // Suffix range
+            return Math.max(0L, getSize() - range.getSize());
+        }
+
+        return 0L;
+    }
+
     @Override
     public InputStream getStream() throws IOException {
-        return new RangeInputStream(super.getStream(), getSize(), getRange());
+        if (getRange() == null) {
+            return super.getStream();
+        }
+
+        // Position the wrapped content at the start of the range
+        long startIndex = getStartIndex();
+        return new RangeInputStream(IoUtils.getStreamFrom(
+                getWrappedRepresentation(), startIndex), getSize(),
+                getRange(), startIndex);
     }
 
     @Override
@@ -0,0 +1,234 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or or EPL 1.0 (the "Licenses"). You can
+ * select the license that you prefer but you may not use this file except in
+ * compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+package org.restlet.engine.application;
+
+import java.util.Date;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import org.restlet.Context;
+import org.restlet.Request;
+import org.restlet.Response;
+import org.restlet.data.Status;
+import org.restlet.engine.application.RateLimiter.Scope;
+import org.restlet.routing.Filter;
+import org.restlet.routing.TemplateRoute;
+import org.restlet.service.RateLimitService;
+
+// [excludes gwt]
+/**
+ * Filter admitting the calls according to the limits of a
+ * {@link RateLimitService}. The calls exceeding a rate limit are answered with
+ * a "429 Too Many Requests" status, those exceeding the concurrency limit with
+ * a "503 Service Unavailable" status. In both cases, the "Retry-After" header
+ * is set and the entity is left to the {@link org.restlet.service.StatusService}.
+ * <br>
+ * <br>
+ * The calls waiting for a concurrency permit are admitted in their arrival
+ * order, up to the maximum number of queued calls. Note that the permit is
+ * released when the call returns from the next Restlet, even if its response
+ * is committed later.<br>
+ * <br>
+ * As the route templates are only matched by the routers, the limit per route
+ * isn't enforced by the filter created by the service for the application,
+ * which runs before any router. This filter only asks the routers to record
+ * the matched templates. The limit per route is enforced by the routing
+ * filters returned by {@link RateLimitService#createRouteFilter(Context)}, to
+ * attach behind a router, in front of the routed resources. Routing filters
+ * only enforce the limit per route, without concurrency limit.<br>
+ * <br>
+ * Concurrency note: instances of this class or its subclasses can be invoked by
+ * several threads at the same time and therefore must be thread-safe. You
+ * should be especially careful when storing state in member variables.
+ * 
+ * @author Jerome Louvel
+ */
+public class RateLimitFilter extends Filter {
+
+    /** The concurrency permits, or null if the concurrency isn't limited. */
+    private final Semaphore permits;
+
+    /** The parent rate limit service. */
+    private final RateLimitService rateLimitService;
+
+    /** Indicates if the filter is attached behind a router. */
+    private final boolean routing;
+
+    /**
+     * Constructor for a filter running before the routers.
+     * 
+     * @param context
+     *            The context.
+     * @param rateLimitService
+     *            The parent rate limit service.
+     */
+    public RateLimitFilter(Context context, RateLimitService rateLimitService) {
+        this(context, rateLimitService, false);
+    }
+
+    /**
+     * Constructor.
+     * 
+     * @param context
+     *            The context.
+     * @param rateLimitService
+     *            The parent rate limit service.
+     * @param routing
+     *            True if the filter is attached behind a router, enforcing
+     *            only the limit per route.
+     */
+    public RateLimitFilter(Context context, RateLimitService rateLimitService,
+            boolean routing) {
+        super(context);
+        this.rateLimitService = rateLimitService;
+        this.routing = routing;
+        this.permits = (!routing && (rateLimitService
+                .getMaxConcurrentRequests() > 0)) ? new Semaphore(
+                rateLimitService.getMaxConcurrentRequests(), true) : null;
+    }
+
+    /**
+     * Takes a token from the buckets of the rate limiters of the service
+     * applying at this stage of the call. Rejects the call if one of them is
+     * empty.
+     */
+    @Override
+    protected int beforeHandle(Request request, Response response) {
+        int result = CONTINUE;
+
+        for (RateLimiter limiter : getRateLimitService().getRateLimiters()) {
+            if (isRouting() != (limiter.getScope() == Scope.ROUTE)) {
+                continue;
+            }
+
+            String key = limiter.getKey(request);
+            long delay = (key == null) ? 0L : limiter.acquire(key);
+
+            if (delay > 0L) {
+                reject(response, Status.CLIENT_ERROR_TOO_MANY_REQUESTS, delay);
+                result = STOP;
+                break;
+            }
+        }
+
+        if ((result == CONTINUE) && !isRouting()
+                && (getRateLimitService().getRouteLimiter() != null)) {
+            // Let the routes record the templates read by routing filters
+            if (!request.getAttributes().containsKey(
+                    TemplateRoute.ATTRIBUTE_TEMPLATE)) {
+                request.getAttributes().put(TemplateRoute.ATTRIBUTE_TEMPLATE,
+                        "");
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Handles the call once a concurrency permit is obtained, if the
+     * concurrency is limited.
+     */
+    @Override
+    protected int doHandle(Request request, Response response) {
+        int result = STOP;
+
+        if (this.permits == null) {
+            result = super.doHandle(request, response);
+        } else {
+            boolean acquired = false;
+
+            try {
+                // Unlike tryAcquire(), honors the fairness of the queue
+                acquired = this.permits.tryAcquire(0L, TimeUnit.MILLISECONDS);
+
+                if (!acquired
+                        && (getQueueLength() < getRateLimitService()
+                                .getMaxQueuedRequests())) {
+                    acquired = this.permits.tryAcquire(getRateLimitService()
+                            .getQueueTimeout(), TimeUnit.MILLISECONDS);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+
+            if (acquired) {
+                try {
+                    result = super.doHandle(request, response);
+                } finally {
+                    this.permits.release();
+                }
+            } else {
+                reject(response, Status.SERVER_ERROR_SERVICE_UNAVAILABLE, 1000L);
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns the number of calls waiting for a concurrency permit.
+     * 
+     * @return The number of calls waiting for a concurrency permit.
+     */
+    public int getQueueLength() {
+        return (this.permits == null) ? 0 : this.permits.getQueueLength();
+    }
+
+    /**
+     * Returns the parent rate limit service.
+     * 
+     * @return The parent rate limit service.
+     */
+    public RateLimitService getRateLimitService() {
+        return rateLimitService;
+    }
+
+    /**
+     * Indicates if the filter is attached behind a router, enforcing only the
+     * limit per route.
+     * 
+     * @return True if the filter is attached behind a router.
+     */
+    public boolean isRouting() {
+        return routing;
+    }
+
+    /**
+     * Rejects a call with a given status and a "Retry-After" header.
+     * 
+     * @param response
+     *            The response to update.
+     * @param status
+     *            The status to set.
+     * @param delay
+     *            The delay in milliseconds before retrying.
+     */
+    protected void reject(Response response, Status status, long delay) {
+        response.setStatus(status);
+        response.setRetryAfter(new Date(System.currentTimeMillis()
+                + Math.min(delay, 86400000L)));
+    }
+
+}
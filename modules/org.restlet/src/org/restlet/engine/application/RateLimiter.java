@@ -0,0 +1,305 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or or EPL 1.0 (the "Licenses"). You can
+ * select the license that you prefer but you may not use this file except in
+ * compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+package org.restlet.engine.application;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.restlet.Request;
+import org.restlet.routing.TemplateRoute;
+
+// [excludes gwt]
+/**
+ * Token bucket rate limiter, keeping one bucket per key. A bucket holds up to
+ * a burst of tokens and is refilled at a given rate, each admitted request
+ * taking one token.<br>
+ * <br>
+ * The buckets are spread over lock-striped shards, so that concurrent requests
+ * for different keys rarely contend. Each shard keeps its buckets in access
+ * order. The least recently used buckets are evicted when they are full again,
+ * since they are then equivalent to new ones. They are also evicted when the
+ * shard exceeds its share of the maximum number of keys.<br>
+ * <br>
+ * Concurrency note: instances of this class or its subclasses can be invoked by
+ * several threads at the same time and therefore must be thread-safe.
+ * 
+ * @author Jerome Louvel
+ */
+public class RateLimiter {
+
+    /** The scopes of the keys of the buckets. */
+    public enum Scope {
+        /** One bucket per client IP address, the upstream one if known. */
+        CLIENT_ADDRESS,
+
+        /** One bucket per identifier of the challenge response. */
+        IDENTIFIER,
+
+        /**
+         * One bucket per route template, only known once a router matched it.
+         */
+        ROUTE
+    }
+
+    /** Token bucket. */
+    private static class Bucket {
+
+        /** The time of the last refill, in nanoseconds. */
+        private long time;
+
+        /** The available tokens. */
+        private double tokens;
+
+        /**
+         * Constructor.
+         * 
+         * @param tokens
+         *            The available tokens.
+         * @param time
+         *            The time of the last refill, in nanoseconds.
+         */
+        private Bucket(double tokens, long time) {
+            this.time = time;
+            this.tokens = tokens;
+        }
+    }
+
+    /** The maximum number of tokens of a bucket. */
+    private final int burst;
+
+    /** The maximum number of buckets per shard. */
+    private final int maxShardSize;
+
+    /** The refill rate, in tokens per nanosecond. */
+    private final double rate;
+
+    /** The scope of the keys. */
+    private final Scope scope;
+
+    /** The shards of buckets, also used as locks. */
+    private final Map<String, Bucket>[] shards;
+
+    /**
+     * Constructor keeping up to 100 000 buckets.
+     * 
+     * @param scope
+     *            The scope of the keys.
+     * @param rate
+     *            The refill rate, in tokens per second.
+     * @param burst
+     *            The maximum number of tokens of a bucket.
+     */
+    public RateLimiter(Scope scope, double rate, int burst) {
+        this(scope, rate, burst, 100000);
+    }
+
+    /**
+     * Constructor.
+     * 
+     * @param scope
+     *            The scope of the keys.
+     * @param rate
+     *            The refill rate, in tokens per second.
+     * @param burst
+     *            The maximum number of tokens of a bucket.
+     * @param maxSize
+     *            The maximum number of buckets.
+     */
+    @SuppressWarnings("unchecked")
+    public RateLimiter(Scope scope, double rate, int burst, int maxSize) {
+        int count = 16;
+
+        while (count < 4 * Runtime.getRuntime().availableProcessors()) {
+            count <<= 1;
+        }
+
+        this.burst = Math.max(1, burst);
+        this.maxShardSize = Math.max(1, maxSize / count);
+        this.rate = rate / 1000000000D;
+        this.scope = scope;
+        this.shards = (Map<String, Bucket>[]) new Map<?, ?>[count];
+
+        for (int i = 0; i < count; i++) {
+            this.shards[i] = new LinkedHashMap<String, Bucket>(16, 0.75f, true);
+        }
+    }
+
+    /**
+     * Takes a token from the bucket of a key.
+     * 
+     * @param key
+     *            The key.
+     * @return 0 if a token was taken, otherwise the delay in milliseconds
+     *         before a token is available.
+     */
+    public long acquire(String key) {
+        return acquire(key, System.nanoTime());
+    }
+
+    /**
+     * Takes a token from the bucket of a key at a given time.
+     * 
+     * @param key
+     *            The key.
+     * @param now
+     *            The current time, in nanoseconds.
+     * @return 0 if a token was taken, otherwise the delay in milliseconds
+     *         before a token is available.
+     */
+    public long acquire(String key, long now) {
+        long result = 0L;
+        int hash = key.hashCode();
+        Map<String, Bucket> shard = this.shards[(hash ^ (hash >>> 16))
+                & (this.shards.length - 1)];
+
+        synchronized (shard) {
+            Bucket bucket = shard.get(key);
+
+            if (bucket == null) {
+                evict(shard, now);
+                bucket = new Bucket(this.burst, now);
+                shard.put(key, bucket);
+            } else {
+                bucket.tokens = Math.min(this.burst, bucket.tokens
+                        + (now - bucket.time) * this.rate);
+                bucket.time = now;
+            }
+
+            if (bucket.tokens >= 1D) {
+                bucket.tokens -= 1D;
+            } else {
+                result = (this.rate <= 0D) ? Long.MAX_VALUE : Math.max(1L,
+                        (long) Math.ceil((1D - bucket.tokens) / this.rate
+                                / 1000000D));
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Evicts the least recently used buckets of a shard that are full again,
+     * then the least recently used ones if the shard is full.
+     * 
+     * @param shard
+     *            The shard, locked by the caller.
+     * @param now
+     *            The current time, in nanoseconds.
+     */
+    private void evict(Map<String, Bucket> shard, long now) {
+        Iterator<Bucket> buckets = shard.values().iterator();
+
+        while (buckets.hasNext()) {
+            Bucket bucket = buckets.next();
+
+            if ((shard.size() >= this.maxShardSize)
+                    || (bucket.tokens + (now - bucket.time) * this.rate >= this.burst)) {
+                buckets.remove();
+            } else {
+                break;
+            }
+        }
+    }
+
+    /**
+     * Returns the maximum number of tokens of a bucket.
+     * 
+     * @return The maximum number of tokens of a bucket.
+     */
+    public int getBurst() {
+        return burst;
+    }
+
+    /**
+     * Returns the key of the bucket of a request for the scope of this
+     * limiter, or null if the request isn't limited, for example if no route
+     * template was matched yet.
+     * 
+     * @param request
+     *            The request.
+     * @return The key of the bucket or null.
+     */
+    public String getKey(Request request) {
+        String result = null;
+
+        switch (getScope()) {
+        case CLIENT_ADDRESS:
+            result = request.getClientInfo().getUpstreamAddress();
+            break;
+
+        case IDENTIFIER:
+            result = (request.getChallengeResponse() == null) ? null : request
+                    .getChallengeResponse().getIdentifier();
+            break;
+
+        case ROUTE:
+            Object template = request.getAttributes().get(
+                    TemplateRoute.ATTRIBUTE_TEMPLATE);
+            if ((template != null) && !"".equals(template)) {
+                result = template.toString();
+            }
+            break;
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns the refill rate, in tokens per second.
+     * 
+     * @return The refill rate, in tokens per second.
+     */
+    public double getRate() {
+        return this.rate * 1000000000D;
+    }
+
+    /**
+     * Returns the scope of the keys.
+     * 
+     * @return The scope of the keys.
+     */
+    public Scope getScope() {
+        return scope;
+    }
+
+    /**
+     * Returns the number of buckets.
+     * 
+     * @return The number of buckets.
+     */
+    public int size() {
+        int result = 0;
+
+        for (Map<String, Bucket> shard : this.shards) {
+            synchronized (shard) {
+                result += shard.size();
+            }
+        }
+
+        return result;
+    }
+
+}
@@ -0,0 +1,633 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or or EPL 1.0 (the "Licenses"). You can
+ * select the license that you prefer but you may not use this file except in
+ * compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+package org.restlet.engine.application;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+
+import org.restlet.Context;
+import org.restlet.Request;
+import org.restlet.Response;
+import org.restlet.data.CacheDirective;
+import org.restlet.data.Dimension;
+import org.restlet.data.Encoding;
+import org.restlet.data.Method;
+import org.restlet.data.Status;
+import org.restlet.engine.header.HeaderConstants;
+import org.restlet.engine.util.LruCache;
+import org.restlet.representation.Representation;
+import org.restlet.routing.Filter;
+import org.restlet.service.ServerCacheService;
+
+// [excludes gwt]
+/**
+ * Filter caching the fully serialized responses to GET requests on the
+ * server-side, typically attached to the inbound chain of an application
+ * before the {@link Encoder} so that encoded variants are cached as well.
+ * Fresh responses are served without invoking the next Restlet, including
+ * "304 Not Modified" responses to conditional requests. The responses are
+ * keyed by resource URI and by the request metadata matching the dimensions
+ * the response varies upon, so that each negotiated variant is stored
+ * separately.<br>
+ * <br>
+ * The freshness of a response is given by its "s-maxage" or "max-age" cache
+ * directives or its expiration date, or else by a default time to live. The
+ * "no-store" and "private" response directives prevent the storage, as well as
+ * cookie settings and CORS responses allowing a specific origin. Responses to
+ * authenticated requests are only stored if explicitly marked as "public" or
+ * with a "s-maxage" directive, and responses to requests with cookies only if
+ * explicitly marked as "public".<br>
+ * <br>
+ * Stored responses can be invalidated by URI or by the cache tags attached by
+ * resources with {@link ServerCacheService#addCacheTags(Response, String...)}.
+ * Successful unsafe requests such as POST, PUT or DELETE invalidate the stored
+ * responses of the target resource.<br>
+ * <br>
+ * Concurrency note: instances of this class or its subclasses can be invoked by
+ * several threads at the same time and therefore must be thread-safe. You
+ * should be especially careful when storing state in member variables.
+ * 
+ * @author Jerome Louvel
+ */
+public class ServerCacheFilter extends Filter {
+
+    /** The stored responses, weighted by size. */
+    private final LruCache<String, CachedResponse> cache;
+
+    /** The default time to live in seconds. */
+    private volatile int defaultTimeToLive;
+
+    /** The number of requests served from a stored response. */
+    private final AtomicLong hits;
+
+    /**
+     * The keys of the stored responses, per cache tag. Guarded by the
+     * {@link #keysByUri} map.
+     */
+    private final Map<String, Set<String>> keysByTag;
+
+    /**
+     * The keys of the stored responses, per resource URI. Also guards the
+     * updates of the other indexes, so that storing and invalidating responses
+     * are atomic.
+     */
+    private final Map<String, Set<String>> keysByUri;
+
+    /** The maximum size of a stored entity. */
+    private volatile long maxEntrySize;
+
+    /** The number of requests forwarded to the next Restlet. */
+    private final AtomicLong misses;
+
+    /**
+     * The cache tags, per key of stored response. Guarded by the
+     * {@link #keysByUri} map.
+     */
+    private final Map<String, Collection<String>> tagsByKey;
+
+    /**
+     * The dimensions the responses vary upon, per resource URI having stored
+     * responses. Updated while holding the {@link #keysByUri} map.
+     */
+    private final Map<String, Set<Dimension>> variations;
+
+    /**
+     * Constructor storing up to 10 MB of entities, each entity being limited to
+     * 1 MB, without default time to live.
+     * 
+     * @param context
+     *            The context.
+     */
+    public ServerCacheFilter(Context context) {
+        this(context, 10485760L, 1048576L, 0);
+    }
+
+    /**
+     * Constructor.
+     * 
+     * @param context
+     *            The context.
+     * @param maxSize
+     *            The maximum total size of the stored entities.
+     * @param maxEntrySize
+     *            The maximum size of a stored entity.
+     * @param defaultTimeToLive
+     *            The default time to live in seconds.
+     */
+    public ServerCacheFilter(Context context, long maxSize, long maxEntrySize,
+            int defaultTimeToLive) {
+        super(context);
+        this.cache = new LruCache<String, CachedResponse>(maxSize) {
+            @Override
+            protected void evicted(String key, CachedResponse value) {
+                synchronized (keysByUri) {
+                    // Replaced responses keep their indexes
+                    if (!containsKey(key)) {
+                        unindex(key);
+                    }
+                }
+            }
+
+            @Override
+            protected long weigh(String key, CachedResponse value) {
+                return Math.max(1L, value.getSize());
+            }
+        };
+        this.defaultTimeToLive = defaultTimeToLive;
+        this.hits = new AtomicLong();
+        this.keysByTag = new HashMap<String, Set<String>>();
+        this.keysByUri = new HashMap<String, Set<String>>();
+        this.maxEntrySize = maxEntrySize;
+        this.misses = new AtomicLong();
+        this.tagsByKey = new HashMap<String, Collection<String>>();
+        this.variations = new ConcurrentHashMap<String, Set<Dimension>>();
+    }
+
+    /**
+     * Removes all the stored responses.
+     */
+    public void clear() {
+        this.cache.clear();
+    }
+
+    @Override
+    protected int doHandle(Request request, Response response) {
+        Method method = request.getMethod();
+
+        if (!Method.GET.equals(method)) {
+            int result = super.doHandle(request, response);
+
+            if (!method.isSafe() && response.getStatus().isSuccess()) {
+                invalidate(getUri(request));
+            }
+
+            return result;
+        }
+
+        List<CacheDirective> directives = request.getCacheDirectives();
+        boolean storing = (CachedResponse.getDirective(directives,
+                HeaderConstants.CACHE_NO_STORE) == null);
+        boolean serving = storing
+                && request.getRanges().isEmpty()
+                && (CachedResponse.getDirective(directives,
+                        HeaderConstants.CACHE_NO_CACHE) == null);
+        String uri = getUri(request);
+
+        if (serving) {
+            String key = CachedResponse.getKey(uri, request,
+                    this.variations.get(uri));
+            CachedResponse cached = (key == null) ? null : this.cache
+                    .get(key);
+
+            if ((cached != null) && cached.isFresh()) {
+                this.hits.incrementAndGet();
+                Status status = request.getConditions().getStatus(method,
+                        true, cached.getTag(), cached.getModificationDate());
+
+                if ((status != null) && status.isError()) {
+                    response.setStatus(status);
+                } else {
+                    cached.toResponse(response);
+
+                    if (status != null) {
+                        response.setStatus(status);
+                    }
+                }
+
+                return CONTINUE;
+            }
+        }
+
+        this.misses.incrementAndGet();
+        long now = System.currentTimeMillis();
+        int result = super.doHandle(request, response);
+
+        if (storing && request.getRanges().isEmpty()) {
+            store(uri, request, response, now);
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns the default time to live in seconds, used for responses without
+     * explicit freshness information. Responses aren't stored if zero.
+     * 
+     * @return The default time to live in seconds.
+     */
+    public int getDefaultTimeToLive() {
+        return defaultTimeToLive;
+    }
+
+    /**
+     * Returns the time until which a response is fresh.
+     * 
+     * @param response
+     *            The response.
+     * @param now
+     *            The time at which the request was received.
+     * @return The time until which the response is fresh.
+     */
+    protected long getFreshUntil(Response response, long now) {
+        List<CacheDirective> directives = response.getCacheDirectives();
+        boolean explicit = (CachedResponse.getDirective(directives,
+                HeaderConstants.CACHE_NO_CACHE) != null)
+                || (CachedResponse.getDirective(directives,
+                        HeaderConstants.CACHE_SHARED_MAX_AGE) != null)
+                || (CachedResponse.getDirective(directives,
+                        HeaderConstants.CACHE_MAX_AGE) != null)
+                || (response.getEntity() != null && response.getEntity()
+                        .getExpirationDate() != null);
+
+        return explicit ? CachedResponse.getFreshUntil(response, now, true)
+                : now + getDefaultTimeToLive() * 1000L;
+    }
+
+    /**
+     * Returns the ratio of requests served from the cache, between 0 and 1.
+     * 
+     * @return The ratio of requests served from the cache.
+     */
+    public double getHitRatio() {
+        long total = getHits() + getMisses();
+        return (total == 0) ? 0D : (double) getHits() / total;
+    }
+
+    /**
+     * Returns the number of requests served from a stored response.
+     * 
+     * @return The number of requests served from a stored response.
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * Returns the maximum size of a stored entity.
+     * 
+     * @return The maximum size of a stored entity.
+     */
+    public long getMaxEntrySize() {
+        return maxEntrySize;
+    }
+
+    /**
+     * Returns the maximum total size of the stored entities.
+     * 
+     * @return The maximum total size of the stored entities.
+     */
+    public long getMaxSize() {
+        return this.cache.getMaxWeight();
+    }
+
+    /**
+     * Returns the number of requests forwarded to the next Restlet.
+     * 
+     * @return The number of requests forwarded to the next Restlet.
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Returns the total size of the stored entities.
+     * 
+     * @return The total size of the stored entities.
+     */
+    public long getSize() {
+        return this.cache.getWeight();
+    }
+
+    /**
+     * Returns the resource URI of a request, without fragment.
+     * 
+     * @param request
+     *            The request.
+     * @return The resource URI.
+     */
+    private String getUri(Request request) {
+        return request.getResourceRef().toString(true, false);
+    }
+
+    /**
+     * Returns the resource URI of the key of a stored response.
+     * 
+     * @param key
+     *            The key of the stored response.
+     * @return The resource URI.
+     * @see CachedResponse#getKey(String, Request, Set)
+     */
+    private String getUri(String key) {
+        int index = key.indexOf('\n');
+        return (index == -1) ? key : key.substring(0, index);
+    }
+
+    /**
+     * Indexes the key of a stored response by resource URI and by cache tag,
+     * and records the dimensions the responses of the resource vary upon. Must
+     * be called while holding the {@link #keysByUri} map.
+     * 
+     * @param key
+     *            The key of the stored response.
+     * @param uri
+     *            The resource URI.
+     * @param dimensions
+     *            The dimensions the response varies upon.
+     * @param tags
+     *            The cache tags or null.
+     */
+    private void index(String key, String uri, Set<Dimension> dimensions,
+            Collection<String> tags) {
+        Set<String> keys = this.keysByUri.get(uri);
+
+        if (keys == null) {
+            keys = new HashSet<String>();
+            this.keysByUri.put(uri, keys);
+        }
+
+        keys.add(key);
+        this.variations.put(uri, dimensions);
+        untag(key);
+
+        if ((tags != null) && !tags.isEmpty()) {
+            this.tagsByKey.put(key, new ArrayList<String>(tags));
+
+            for (String tag : tags) {
+                Set<String> tagged = this.keysByTag.get(tag);
+
+                if (tagged == null) {
+                    tagged = new HashSet<String>();
+                    this.keysByTag.put(tag, tagged);
+                }
+
+                tagged.add(key);
+            }
+        }
+    }
+
+    /**
+     * Removes the stored responses of a resource, whatever their variant.
+     * 
+     * @param uri
+     *            The resource URI.
+     */
+    public void invalidate(String uri) {
+        synchronized (this.keysByUri) {
+            Set<String> keys = this.keysByUri.get(uri);
+
+            if (keys != null) {
+                remove(new ArrayList<String>(keys));
+            }
+
+            this.variations.remove(uri);
+        }
+    }
+
+    /**
+     * Removes the stored responses having a given cache tag.
+     * 
+     * @param tag
+     *            The cache tag.
+     */
+    public void invalidateTag(String tag) {
+        synchronized (this.keysByUri) {
+            Set<String> keys = this.keysByTag.get(tag);
+
+            if (keys != null) {
+                remove(new ArrayList<String>(keys));
+            }
+        }
+    }
+
+    /**
+     * Indicates if a response can be stored.
+     * 
+     * @param request
+     *            The request.
+     * @param response
+     *            The response.
+     * @return True if the response can be stored.
+     */
+    protected boolean isStorable(Request request, Response response) {
+        List<CacheDirective> directives = response.getCacheDirectives();
+        Representation entity = response.getEntity();
+        boolean result = Status.SUCCESS_OK.equals(response.getStatus())
+                && response.getCookieSettings().isEmpty()
+                && (CachedResponse.getDirective(directives,
+                        HeaderConstants.CACHE_NO_STORE) == null)
+                && (CachedResponse.getDirective(directives,
+                        HeaderConstants.CACHE_PRIVATE) == null)
+                && ((entity == null) || (entity.isAvailable() && (entity
+                        .getSize() <= getMaxEntrySize())));
+
+        if (result && (response.getAccessControlAllowOrigin() != null)) {
+            // The allowed origin depends on the origin of the request
+            result = "*".equals(response.getAccessControlAllowOrigin());
+        }
+
+        boolean explicitlyPublic = (CachedResponse.getDirective(directives,
+                HeaderConstants.CACHE_PUBLIC) != null);
+
+        if (result && (request.getChallengeResponse() != null)) {
+            result = explicitlyPublic
+                    || (CachedResponse.getDirective(directives,
+                            HeaderConstants.CACHE_SHARED_MAX_AGE) != null);
+        }
+
+        if (result && !request.getCookies().isEmpty()) {
+            result = explicitlyPublic;
+        }
+
+        return result;
+    }
+
+    /**
+     * Removes stored responses.
+     * 
+     * @param keys
+     *            The keys of the stored responses.
+     */
+    private void remove(List<String> keys) {
+        for (String key : keys) {
+            this.cache.remove(key);
+        }
+    }
+
+    /**
+     * Sets the default time to live in seconds, used for responses without
+     * explicit freshness information. Responses aren't stored if zero.
+     * 
+     * @param defaultTimeToLive
+     *            The default time to live in seconds.
+     */
+    public void setDefaultTimeToLive(int defaultTimeToLive) {
+        this.defaultTimeToLive = defaultTimeToLive;
+    }
+
+    /**
+     * Sets the maximum size of a stored entity.
+     * 
+     * @param maxEntrySize
+     *            The maximum size of a stored entity.
+     */
+    public void setMaxEntrySize(long maxEntrySize) {
+        this.maxEntrySize = maxEntrySize;
+    }
+
+    /**
+     * Sets the maximum total size of the stored entities.
+     * 
+     * @param maxSize
+     *            The maximum total size of the stored entities.
+     */
+    public void setMaxSize(long maxSize) {
+        this.cache.setMaxWeight(maxSize);
+    }
+
+    /**
+     * Stores a response if it is cacheable and fresh, then updates the
+     * response so that its entity can still be written.
+     * 
+     * @param uri
+     *            The resource URI.
+     * @param request
+     *            The request.
+     * @param response
+     *            The response to store.
+     * @param now
+     *            The time at which the request was received.
+     */
+    protected void store(String uri, Request request, Response response,
+            long now) {
+        if (!isStorable(request, response)) {
+            return;
+        }
+
+        Representation entity = response.getEntity();
+
+        if ((entity != null) && !entity.getEncodings().isEmpty()
+                && !entity.getEncodings().contains(Encoding.IDENTITY)) {
+            // The entity was encoded according to the accepted encodings
+            response.getDimensions().add(Dimension.ENCODING);
+        }
+
+        Set<Dimension> dimensions = new HashSet<Dimension>(
+                response.getDimensions());
+
+        String key = CachedResponse.getKey(uri, request, dimensions);
+        long freshUntil = getFreshUntil(response, now);
+
+        if ((key == null) || (freshUntil <= System.currentTimeMillis())) {
+            return;
+        }
+
+        byte[] content = null;
+
+        if (entity != null) {
+            try {
+                content = CachedResponse.read(response, getMaxEntrySize());
+            } catch (IOException ioe) {
+                getLogger().log(Level.WARNING,
+                        "Unable to read the response entity of " + uri, ioe);
+            }
+
+            if (content == null) {
+                return;
+            }
+        }
+
+        CachedResponse cached = new CachedResponse(response, content, null,
+                freshUntil);
+
+        if (entity != null) {
+            response.setEntity(cached.toRepresentation());
+        }
+
+        @SuppressWarnings("unchecked")
+        Collection<String> tags = (Collection<String>) response
+                .getAttributes().get(ServerCacheService.ATTRIBUTE_TAGS);
+
+        synchronized (this.keysByUri) {
+            if (this.cache.put(key, cached)) {
+                index(key, uri, dimensions, tags);
+            }
+        }
+    }
+
+    /**
+     * Removes the key of a removed response from the indexes, and forgets the
+     * dimensions of its resource if it has no other stored response. Must be
+     * called while holding the {@link #keysByUri} map.
+     * 
+     * @param key
+     *            The key of the removed response.
+     */
+    private void unindex(String key) {
+        String uri = getUri(key);
+        Set<String> keys = this.keysByUri.get(uri);
+
+        if ((keys != null) && keys.remove(key) && keys.isEmpty()) {
+            this.keysByUri.remove(uri);
+            this.variations.remove(uri);
+        }
+
+        untag(key);
+    }
+
+    /**
+     * Dissociates the cache tags from the key of a stored response. Must be
+     * called while holding the {@link #keysByUri} map.
+     * 
+     * @param key
+     *            The key of the stored response.
+     */
+    private void untag(String key) {
+        Collection<String> tags = this.tagsByKey.remove(key);
+
+        if (tags != null) {
+            for (String tag : tags) {
+                Set<String> keys = this.keysByTag.get(tag);
+
+                if (keys != null) {
+                    keys.remove(key);
+
+                    if (keys.isEmpty()) {
+                        this.keysByTag.remove(tag);
+                    }
+                }
+            }
+        }
+    }
+
+}
@@ -111,7 +111,9 @@ public class StatusFilter extends Filter {
         // Do we need to get a representation for the current status?
         try {
             if (response.getStatus().isError()
-                    && ((response.getEntity() == null) || isOverwriting())) {
+                    && ((response.getEntity() == null) || isOverwriting())
+                    && !getStatusService().getNoEntityStatusClasses().contains(
+                            response.getStatus().getCode() / 100)) {
                 response.setEntity(getStatusService().toRepresentation(
                         response.getStatus(), request, response));
             }
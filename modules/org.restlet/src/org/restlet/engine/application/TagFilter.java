@@ -0,0 +1,320 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or or EPL 1.0 (the "Licenses"). You can
+ * select the license that you prefer but you may not use this file except in
+ * compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+
+package org.restlet.engine.application;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.security.NoSuchAlgorithmException;
+import java.util.logging.Level;
+
+import org.restlet.Context;
+import org.restlet.Request;
+import org.restlet.Response;
+import org.restlet.data.Digest;
+import org.restlet.data.Method;
+import org.restlet.data.Status;
+import org.restlet.data.Tag;
+import org.restlet.engine.io.IoUtils;
+import org.restlet.representation.ByteArrayRepresentation;
+import org.restlet.representation.DigesterRepresentation;
+import org.restlet.representation.FileRepresentation;
+import org.restlet.representation.Representation;
+import org.restlet.routing.Filter;
+import org.restlet.service.TagService;
+
+// [excludes gwt]
+/**
+ * Filter generating strong entity tags for the successful GET and HEAD response
+ * entities lacking one, typically attached to the inbound chain of an
+ * application after the {@link RangeFilter} so that the tag covers the full
+ * entity. The entity is written once into a buffer while its digest is
+ * computed, then the buffered content is sent instead, so the entity isn't
+ * serialized twice. The request conditions are finally evaluated against the
+ * generated tag, answering "304 Not Modified" when they match.<br>
+ * <br>
+ * Transient entities and entities declaring a size larger than the maximum
+ * buffer size of the parent service are left untouched. Entities of unknown
+ * size turning out to be larger are spilled into a temporary file while
+ * buffered, then served untagged from it, so that an entity is never
+ * serialized once for buffering and again for sending. The tags of the
+ * responses to requests having the {@link TagService#ATTRIBUTE_KEY} attribute,
+ * set by server resources declaring a version, are stored in the cache of the
+ * parent service.<br>
+ * <br>
+ * Concurrency note: instances of this class or its subclasses can be invoked by
+ * several threads at the same time and therefore must be thread-safe. You
+ * should be especially careful when storing state in member variables.
+ * 
+ * @author Jerome Louvel
+ */
+public class TagFilter extends Filter {
+
+    /**
+     * Output stream buffering in memory up to a maximum size, then spilling the
+     * content into a temporary file.
+     */
+    private static class SpillOutputStream extends OutputStream {
+
+        /** The memory buffer, or null once spilled. */
+        private ByteArrayOutputStream buffer;
+
+        /** The temporary file, or null. */
+        private File file;
+
+        /** The output stream of the temporary file, or null. */
+        private OutputStream fileStream;
+
+        /** The maximum size buffered in memory. */
+        private final long maxSize;
+
+        /**
+         * Constructor.
+         * 
+         * @param maxSize
+         *            The maximum size buffered in memory.
+         */
+        public SpillOutputStream(long maxSize) {
+            this.buffer = new ByteArrayOutputStream();
+            this.maxSize = maxSize;
+        }
+
+        /**
+         * Spills the content into a temporary file if the maximum size would
+         * be exceeded.
+         * 
+         * @param length
+         *            The number of bytes to write.
+         * @throws IOException
+         */
+        private void check(int length) throws IOException {
+            if ((this.buffer != null)
+                    && (this.buffer.size() + length > this.maxSize)) {
+                this.file = File.createTempFile("restlet-tag", ".tmp");
+                this.fileStream = new BufferedOutputStream(
+                        new FileOutputStream(this.file));
+                this.buffer.writeTo(this.fileStream);
+                this.buffer = null;
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (this.fileStream != null) {
+                this.fileStream.close();
+            }
+        }
+
+        /**
+         * Deletes the temporary file, if any.
+         */
+        public void delete() {
+            if (this.file != null) {
+                try {
+                    close();
+                } catch (IOException ioe) {
+                    // Deleted anyway
+                }
+
+                if (this.file.exists() && !this.file.delete()) {
+                    this.file.deleteOnExit();
+                }
+            }
+        }
+
+        /**
+         * Returns the temporary file, or null if the content fits in memory.
+         * 
+         * @return The temporary file, or null.
+         */
+        public File getFile() {
+            return this.file;
+        }
+
+        /**
+         * Returns the content buffered in memory, or null once spilled.
+         * 
+         * @return The content buffered in memory, or null.
+         */
+        public byte[] toByteArray() {
+            return (this.buffer == null) ? null : this.buffer.toByteArray();
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            check(len);
+
+            if (this.buffer == null) {
+                this.fileStream.write(b, off, len);
+            } else {
+                this.buffer.write(b, off, len);
+            }
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            check(1);
+
+            if (this.buffer == null) {
+                this.fileStream.write(b);
+            } else {
+                this.buffer.write(b);
+            }
+        }
+
+    }
+
+    /** The parent tag service. */
+    private final TagService tagService;
+
+    /**
+     * Constructor.
+     * 
+     * @param context
+     *            The context.
+     * @param tagService
+     *            The parent tag service.
+     */
+    public TagFilter(Context context, TagService tagService) {
+        super(context);
+        this.tagService = tagService;
+    }
+
+    @Override
+    protected void afterHandle(Request request, Response response) {
+        Method method = request.getMethod();
+        Representation entity = response.getEntity();
+
+        if ((Method.GET.equals(method) || Method.HEAD.equals(method))
+                && Status.SUCCESS_OK.equals(response.getStatus())
+                && (entity != null) && entity.isAvailable()) {
+            if (entity.getTag() == null) {
+                Representation tagged = tag(entity);
+
+                if (tagged != null) {
+                    response.setEntity(tagged);
+                    Status status = request.getConditions().getStatus(method,
+                            tagged);
+
+                    if (status != null) {
+                        response.setStatus(status);
+
+                        if (status.isError()) {
+                            response.setEntity(null);
+                        }
+                    }
+                }
+            }
+
+            String key = (String) request.getAttributes().get(
+                    TagService.ATTRIBUTE_KEY);
+
+            if ((key != null) && (response.getEntity() != null)
+                    && (response.getEntity().getTag() != null)) {
+                getTagService().putTag(key, response.getEntity().getTag());
+            }
+        }
+    }
+
+    /**
+     * Returns the parent tag service.
+     * 
+     * @return The parent tag service.
+     */
+    public TagService getTagService() {
+        return tagService;
+    }
+
+    /**
+     * Buffers an entity while computing its digest, and returns a copy of the
+     * entity with the buffered content and a strong tag based on the digest.
+     * The copy of an entity of unknown size exceeding the maximum buffer size
+     * is served from a temporary file and isn't tagged.
+     * 
+     * @param entity
+     *            The entity to tag.
+     * @return The copy of the entity or null if it can't be buffered.
+     */
+    protected Representation tag(Representation entity) {
+        long maxSize = getTagService().getMaxBufferSize();
+
+        if (entity.isTransient() || (entity.getRange() != null)
+                || (maxSize <= 0) || (entity.getSize() > maxSize)) {
+            return null;
+        }
+
+        SpillOutputStream out = new SpillOutputStream(maxSize);
+        Digest digest = null;
+
+        try {
+            DigesterRepresentation digester = new DigesterRepresentation(
+                    entity, getTagService().getAlgorithm());
+            digester.write(out);
+            out.close();
+            digest = digester.getComputedDigest();
+        } catch (NoSuchAlgorithmException nsae) {
+            getLogger().log(Level.WARNING, "Unable to tag the entity", nsae);
+            return null;
+        } catch (IOException ioe) {
+            getLogger().log(Level.WARNING, "Unable to tag the entity", ioe);
+            out.delete();
+            return null;
+        }
+
+        byte[] content = out.toByteArray();
+        Representation result;
+
+        if (content == null) {
+            // Larger than the maximum buffer size, served from the file
+            getLogger().fine(
+                    "Entity larger than the maximum buffer size, not tagged");
+            FileRepresentation spilled = new FileRepresentation(out.getFile(),
+                    entity.getMediaType());
+            spilled.setAutoDeleting(true);
+            result = spilled;
+        } else {
+            result = new ByteArrayRepresentation(content,
+                    entity.getMediaType(), content.length);
+            result.setTag(new Tag(IoUtils.toHexString(digest.getValue()),
+                    false));
+        }
+
+        result.setCharacterSet(entity.getCharacterSet());
+        result.setDigest(entity.getDigest());
+        result.setDisposition(entity.getDisposition());
+        result.setEncodings(entity.getEncodings());
+        result.setExpirationDate(entity.getExpirationDate());
+        result.setLanguages(entity.getLanguages());
+        result.setLocationRef(entity.getLocationRef());
+        result.setModificationDate(entity.getModificationDate());
+        entity.release();
+        return result;
+    }
+
+}
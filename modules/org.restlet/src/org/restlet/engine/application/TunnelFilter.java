@@ -54,6 +54,7 @@ import org.restlet.engine.Engine;
 import org.restlet.engine.header.HeaderConstants;
 import org.restlet.engine.header.PreferenceReader;
 import org.restlet.engine.io.IoUtils;
+import org.restlet.engine.util.LruCache;
 import org.restlet.routing.Filter;
 import org.restlet.service.MetadataService;
 import org.restlet.service.TunnelService;
@@ -63,7 +64,13 @@ import org.restlet.util.Series;
 /**
  * Filter tunneling browser calls into full REST calls. The request method can
  * be changed (via POST requests only) as well as the accepted media types,
- * languages, encodings and character sets.
+ * languages, encodings and character sets.<br>
+ * <br>
+ * The query is only parsed when one of the tunnel parameters appears in it,
+ * and the metadata of the extensions are looked up in the index of the
+ * {@link MetadataService}. The user agent replacement rules matching each
+ * user agent string are cached, so the agent attributes are only parsed once
+ * per distinct user agent.
  * 
  * Concurrency note: instances of this class or its subclasses can be invoked by
  * several threads at the same time and therefore must be thread-safe. You
@@ -73,6 +80,19 @@ import org.restlet.util.Series;
  */
 public class TunnelFilter extends Filter {
 
+    /**
+     * The header replacers whose agent attributes match a given user agent.
+     */
+    private static final class AgentReplacers {
+
+        /** The matching accept header replacers. */
+        final List<HeaderReplacer> accept = new ArrayList<HeaderReplacer>();
+
+        /** The matching accept-encoding header replacers. */
+        final List<HeaderReplacer> acceptEncoding = new ArrayList<HeaderReplacer>();
+
+    }
+
     /**
      * Used to describe the replacement value for an old client preference and
      * for a a series of specific agent (i.e. web client) attributes.
@@ -134,21 +154,17 @@ public class TunnelFilter extends Filter {
         }
 
         /**
-         * Indicates if the current header replacer matches the request
+         * Indicates if the current header replacer matches the user agent
          * attributes.
          * 
          * @param agentAttributes
          *            The user agent attributes to match.
-         * @param headerOld
-         *            The facultative value of the current's request header to
-         *            match.
-         * @return true if the given request's attibutes match the current
+         * @return true if the given user agent attributes match the current
          *         header replacer.
          */
-        public boolean matchesConditions(Map<String, String> agentAttributes,
-                String headerOld) {
-            // Check the conditions
+        public boolean matchesAgent(Map<String, String> agentAttributes) {
             boolean checked = true;
+
             // Check that the agent properties match the properties
             // set by the rule.
             for (Iterator<Entry<String, String>> iterator = getAgentAttributes()
@@ -158,22 +174,44 @@ public class TunnelFilter extends Filter {
                 checked = (attribute != null && attribute
                         .equalsIgnoreCase(entry.getValue()));
             }
-            if (checked && getHeaderOld() != null) {
-                // If the rule defines an old header value, check that it is the
-                // same than the user agent's header value.
-                checked = getHeaderOld().equals(headerOld);
-            }
+
             return checked;
         }
 
+        /**
+         * Indicates if the current header replacer matches the value of the
+         * request header.
+         * 
+         * @param headerOld
+         *            The facultative value of the current's request header to
+         *            match.
+         * @return true if the given header value matches the current header
+         *         replacer.
+         */
+        public boolean matchesHeader(String headerOld) {
+            // If the rule defines an old header value, check that it is the
+            // same than the user agent's header value.
+            return (getHeaderOld() == null) || getHeaderOld().equals(headerOld);
+        }
+
     }
 
+    /** The maximum number of user agent strings whose rules are cached. */
+    private static final int AGENT_CACHE_SIZE = 1000;
+
     /** Used to replace accept-encoding header values. */
     private final List<HeaderReplacer> acceptEncodingReplacers = getAcceptEncodingReplacers();
 
     /** Used to replace accept header values. */
     private final List<HeaderReplacer> acceptReplacers = getAcceptReplacers();
 
+    /**
+     * The accept and accept-encoding replacers matching the attributes of each
+     * user agent string.
+     */
+    private final LruCache<String, AgentReplacers> agentReplacers = new LruCache<String, AgentReplacers>(
+            AGENT_CACHE_SIZE);
+
     /**
      * Constructor.
      * 
@@ -233,6 +271,45 @@ public class TunnelFilter extends Filter {
                 "acceptOld", "acceptNew");
     }
 
+    /**
+     * Returns the header replacers whose agent attributes match the user agent
+     * of a request. They are cached per user agent string, so the agent
+     * attributes are only parsed once per distinct user agent.
+     * 
+     * @param request
+     *            The request.
+     * @return The matching header replacers.
+     */
+    private AgentReplacers getAgentReplacers(Request request) {
+        String agent = request.getClientInfo().getAgent();
+        String key = (agent == null) ? "" : agent;
+        AgentReplacers result = this.agentReplacers.get(key);
+
+        if (result == null) {
+            Map<String, String> agentAttributes = request.getClientInfo()
+                    .getAgentAttributes();
+            result = new AgentReplacers();
+
+            if (agentAttributes != null) {
+                for (HeaderReplacer headerReplacer : this.acceptReplacers) {
+                    if (headerReplacer.matchesAgent(agentAttributes)) {
+                        result.accept.add(headerReplacer);
+                    }
+                }
+
+                for (HeaderReplacer headerReplacer : this.acceptEncodingReplacers) {
+                    if (headerReplacer.matchesAgent(agentAttributes)) {
+                        result.acceptEncoding.add(headerReplacer);
+                    }
+                }
+            }
+
+            this.agentReplacers.put(key, result);
+        }
+
+        return result;
+    }
+
     /**
      * Returns the list of new header values. Each of them describe also a set
      * of conditions required to set the new value. This method is used only to
@@ -332,6 +409,80 @@ public class TunnelFilter extends Filter {
         return getApplication().getTunnelService();
     }
 
+    /**
+     * Indicates if a raw query contains one of the tunnel parameters, without
+     * parsing it. The parameter names that are encoded are conservatively
+     * considered as matching.
+     * 
+     * @param query
+     *            The raw query.
+     * @param tunnelService
+     *            The tunnel service.
+     * @return True if the query might contain a tunnel parameter.
+     */
+    private boolean hasTunnelParameter(String query, TunnelService tunnelService) {
+        boolean result = false;
+        boolean preferences = tunnelService.isPreferencesTunnel();
+        String method = tunnelService.isMethodTunnel() ? tunnelService
+                .getMethodParameter() : null;
+
+        if ((method != null) || preferences) {
+            String characterSet = tunnelService.getCharacterSetParameter();
+            String encoding = tunnelService.getEncodingParameter();
+            String language = tunnelService.getLanguageParameter();
+            String mediaType = tunnelService.getMediaTypeParameter();
+            int start = 0;
+            int nameEnd = -1;
+
+            // Single scan of the query, delimiting the names of the parameters
+            for (int i = 0; !result && (i <= query.length()); i++) {
+                char c = (i < query.length()) ? query.charAt(i) : '&';
+
+                if (c == '&') {
+                    int end = (nameEnd < 0) ? i : nameEnd;
+                    result = isName(query, start, end, method);
+
+                    if (!result && preferences) {
+                        result = isName(query, start, end, characterSet)
+                                || isName(query, start, end, encoding)
+                                || isName(query, start, end, language)
+                                || isName(query, start, end, mediaType);
+                    }
+
+                    start = i + 1;
+                    nameEnd = -1;
+                } else if (nameEnd < 0) {
+                    if (c == '=') {
+                        nameEnd = i;
+                    } else if (c == '%') {
+                        result = true;
+                    }
+                }
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Indicates if a parameter name of a raw query is equal to a given name.
+     * 
+     * @param query
+     *            The raw query.
+     * @param start
+     *            The start index of the parameter name.
+     * @param end
+     *            The end index of the parameter name.
+     * @param name
+     *            The name to compare with.
+     * @return True if the parameter name is equal to the given name.
+     */
+    private static boolean isName(String query, int start, int end,
+            String name) {
+        return (name != null) && (name.length() == end - start)
+                && query.startsWith(name, start);
+    }
+
     /**
      * Updates the client preferences based on file-like extensions. The matched
      * extensions are removed from the last segment.
@@ -451,7 +602,8 @@ public class TunnelFilter extends Filter {
         boolean queryModified = false;
         Reference resourceRef = request.getResourceRef();
 
-        if (resourceRef.hasQuery()) {
+        if (resourceRef.hasQuery()
+                && hasTunnelParameter(resourceRef.getQuery(), tunnelService)) {
             Form query = resourceRef.getQueryAsForm(CharacterSet.UTF_8);
 
             // Tunnel the request method
@@ -583,11 +735,12 @@ public class TunnelFilter extends Filter {
      *            the request to update.
      */
     private void processUserAgent(Request request) {
-        final Map<String, String> agentAttributes = request.getClientInfo()
-                .getAgentAttributes();
-        if (agentAttributes != null) {
-            if (!this.acceptReplacers.isEmpty()
-                    || !this.acceptEncodingReplacers.isEmpty()) {
+        if (!this.acceptReplacers.isEmpty()
+                || !this.acceptEncodingReplacers.isEmpty()) {
+            AgentReplacers replacers = getAgentReplacers(request);
+
+            if (!replacers.accept.isEmpty()
+                    || !replacers.acceptEncoding.isEmpty()) {
                 // Get the old Accept header value
                 @SuppressWarnings("unchecked")
                 Series<Header> headers = (Series<Header>) request
@@ -596,9 +749,8 @@ public class TunnelFilter extends Filter {
                 String acceptOld = (headers != null) ? headers.getFirstValue(
                         HeaderConstants.HEADER_ACCEPT, true) : null;
                 // Check each replacer
-                for (HeaderReplacer headerReplacer : this.acceptReplacers) {
-                    if (headerReplacer.matchesConditions(agentAttributes,
-                            acceptOld)) {
+                for (HeaderReplacer headerReplacer : replacers.accept) {
+                    if (headerReplacer.matchesHeader(acceptOld)) {
                         ClientInfo clientInfo = new ClientInfo();
                         PreferenceReader.addMediaTypes(
                                 headerReplacer.getHeaderNew(), clientInfo);
@@ -611,9 +763,8 @@ public class TunnelFilter extends Filter {
                         .getFirstValue(HeaderConstants.HEADER_ACCEPT_ENCODING,
                                 true) : null;
                 // Check each replacer
-                for (HeaderReplacer headerReplacer : this.acceptEncodingReplacers) {
-                    if (headerReplacer.matchesConditions(agentAttributes,
-                            acceptEncodingOld)) {
+                for (HeaderReplacer headerReplacer : replacers.acceptEncoding) {
+                    if (headerReplacer.matchesHeader(acceptEncodingOld)) {
                         ClientInfo clientInfo = new ClientInfo();
                         PreferenceReader.addEncodings(
                                 headerReplacer.getHeaderNew(), clientInfo);
@@ -33,13 +33,16 @@ import javax.net.ssl.SSLParameters;
 
 import org.restlet.Server;
 import org.restlet.data.Protocol;
+import org.restlet.engine.ssl.DefaultSslContext;
 import org.restlet.engine.ssl.DefaultSslContextFactory;
+import org.restlet.engine.ssl.HandshakeStatistics;
 import org.restlet.engine.ssl.SslContextFactory;
 import org.restlet.engine.ssl.SslUtils;
 
 import com.sun.net.httpserver.HttpExchange;
 import com.sun.net.httpserver.HttpHandler;
 import com.sun.net.httpserver.HttpsConfigurator;
+import com.sun.net.httpserver.HttpsExchange;
 import com.sun.net.httpserver.HttpsParameters;
 import com.sun.net.httpserver.HttpsServer;
 
@@ -64,7 +67,9 @@ import com.sun.net.httpserver.HttpsServer;
  * </tr>
  * </table>
  * For the default SSL parameters see the Javadocs of the
- * {@link DefaultSslContextFactory} class.
+ * {@link DefaultSslContextFactory} class. When the SSL context is created by
+ * this factory, its {@link HandshakeStatistics} are exposed by the
+ * "handshakeStatistics" helper attribute.
  * 
  * @author Jerome Louvel
  */
@@ -90,6 +95,13 @@ public class HttpsServerHelper extends NetServerHelper {
         SslContextFactory sslContextFactory = SslUtils
                 .getSslContextFactory(this);
         SSLContext sslContext = sslContextFactory.createSslContext();
+        final HandshakeStatistics statistics = (sslContext instanceof DefaultSslContext) ? ((DefaultSslContext) sslContext)
+                .getHandshakeStatistics() : null;
+
+        if (statistics != null) {
+            getAttributes().put("handshakeStatistics", statistics);
+        }
+
         String addr = getHelped().getAddress();
 
         if (addr != null) {
@@ -122,6 +134,12 @@ public class HttpsServerHelper extends NetServerHelper {
         server.createContext("/", new HttpHandler() {
             @Override
             public void handle(HttpExchange httpExchange) throws IOException {
+                if ((statistics != null)
+                        && (httpExchange instanceof HttpsExchange)) {
+                    statistics.recordSession(((HttpsExchange) httpExchange)
+                            .getSSLSession());
+                }
+
                 HttpsServerHelper.this.handle(new HttpExchangeCall(getHelped(),
                         httpExchange, true));
             }
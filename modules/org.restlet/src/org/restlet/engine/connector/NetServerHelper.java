@@ -139,6 +139,9 @@ public abstract class NetServerHelper extends HttpServerHelper {
 
         // Ensure that core threads act like a minimum number of threads
         result.prestartAllCoreThreads();
+
+        // Expose the pool for monitoring purpose, see MetricsService
+        getAttributes().put("threadPool", result);
         return result;
     }
 
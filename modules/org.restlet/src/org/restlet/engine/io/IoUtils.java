@@ -36,6 +36,7 @@ import java.io.UnsupportedEncodingException;
 import java.io.Writer;
 import java.nio.channels.Channel;
 import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
 import java.nio.channels.ReadableByteChannel;
 import java.nio.channels.SelectableChannel;
 import java.nio.channels.WritableByteChannel;
@@ -46,6 +47,7 @@ import org.restlet.data.CharacterSet;
 import org.restlet.data.Range;
 import org.restlet.engine.Edition;
 import org.restlet.engine.Engine;
+import org.restlet.representation.ChannelRepresentation;
 import org.restlet.representation.Representation;
 
 /**
@@ -569,6 +571,48 @@ public class IoUtils {
         return result;
     }
 
+    // [ifndef gwt] method
+    /**
+     * Returns the content stream of a representation, positioned at the given
+     * index. Representations implementing {@link SeekableSource} and those
+     * backed by a file channel are directly positioned, while the others have
+     * their stream skipped up to the index.
+     * 
+     * @param representation
+     *            The representation.
+     * @param index
+     *            The index of the first byte to read.
+     * @return The content stream positioned at the given index or null.
+     * @throws IOException
+     */
+    public static InputStream getStreamFrom(Representation representation,
+            long index) throws IOException {
+        if (representation instanceof SeekableSource) {
+            return ((SeekableSource) representation).getStream(index);
+        }
+
+        InputStream result = null;
+
+        if (representation instanceof ChannelRepresentation) {
+            ReadableByteChannel channel = representation.getChannel();
+
+            if (channel instanceof FileChannel) {
+                ((FileChannel) channel).position(index);
+                return Channels.newInputStream(channel);
+            }
+
+            result = getStream(channel);
+        } else {
+            result = representation.getStream();
+        }
+
+        if (result != null) {
+            skip(result, index);
+        }
+
+        return result;
+    }
+
     // [ifndef gwt] method
     /**
      * Returns an input stream based on the given representation's content and
@@ -720,6 +764,40 @@ public class IoUtils {
         return result;
     }
 
+    // [ifndef gwt] method
+    /**
+     * Skips a given number of bytes of an input stream, reading them if the
+     * stream can't skip further.
+     * 
+     * @param input
+     *            The input stream.
+     * @param count
+     *            The number of bytes to skip.
+     * @return The number of bytes skipped, lower than the given number if the
+     *         end of the stream was reached.
+     * @throws IOException
+     */
+    public static long skip(InputStream input, long count) throws IOException {
+        long remaining = count;
+
+        while (remaining > 0) {
+            long skipped = input.skip(remaining);
+
+            if (skipped <= 0) {
+                // Some streams only skip their buffered bytes
+                if (input.read() == -1) {
+                    break;
+                }
+
+                skipped = 1;
+            }
+
+            remaining -= skipped;
+        }
+
+        return count - remaining;
+    }
+
     // [ifndef gwt] method
     /**
      * Converts a char array into a byte array using the default character set.
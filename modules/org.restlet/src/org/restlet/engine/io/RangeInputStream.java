@@ -57,6 +57,9 @@ public class RangeInputStream extends FilterInputStream {
     /** The range size available. */
     private volatile int availableSize;
 
+    /** The buffer reused by single byte reads. */
+    private final byte[] singleByte = new byte[1];
+
     /**
      * Constructs a stream exposing only a range of a given source stream.
      * 
@@ -68,9 +71,28 @@ public class RangeInputStream extends FilterInputStream {
      *            The range to satisfy.
      */
     public RangeInputStream(InputStream in, long totalSize, Range range) {
+        this(in, totalSize, range, 0L);
+    }
+
+    /**
+     * Constructs a stream exposing only a range of a given source stream,
+     * already positioned at a given index. This avoids skipping the bytes
+     * preceding the range when the source stream can be directly positioned.
+     * 
+     * @param in
+     *            The source input stream.
+     * @param totalSize
+     *            The total size of the source stream.
+     * @param range
+     *            The range to satisfy.
+     * @param position
+     *            The current position of the source stream.
+     */
+    public RangeInputStream(InputStream in, long totalSize, Range range,
+            long position) {
         super(in);
         this.range = range;
-        this.position = 0;
+        this.position = position;
         this.totalSize = totalSize;
         this.availableSize = (int) range.getSize();
 
@@ -130,17 +152,13 @@ public class RangeInputStream extends FilterInputStream {
 
     @Override
     public int read() throws IOException {
-        int result = super.read();
+        int result = read(this.singleByte, 0, 1);
 
-        while ((result != -1) && !this.range.isIncluded(position++, totalSize)) {
-            result = super.read();
+        while (result == 0) {
+            result = read(this.singleByte, 0, 1);
         }
 
-        if ((result != -1) && (this.availableSize > 0)) {
-            this.availableSize--;
-        }
-
-        return result;
+        return (result == -1) ? -1 : (this.singleByte[0] & 0xFF);
     }
 
     @Override
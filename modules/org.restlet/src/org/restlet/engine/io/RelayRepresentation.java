@@ -0,0 +1,242 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or or EPL 1.0 (the "Licenses"). You can
+ * select the license that you prefer but you may not use this file except in
+ * compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+package org.restlet.engine.io;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+
+import org.restlet.representation.Representation;
+import org.restlet.util.WrapperRepresentation;
+
+/**
+ * Representation relaying the content of a wrapped representation chunk by
+ * chunk, typically between a client and a server connector when proxying
+ * calls. A single bounded buffer is used and the target stream is flushed after
+ * each chunk. As the relaying thread blocks on the slowest side, the network
+ * flow control naturally applies back-pressure between both connectors and the
+ * memory used stays constant whatever the size of the content.<br>
+ * <br>
+ * The wrapped representation is released once the content is relayed. The
+ * {@link #afterRelay(long, long)} method can be overridden to collect transfer
+ * statistics. When the content is read via {@link #getStream()},
+ * {@link #getChannel()} or {@link #getReader()} instead of being written, the
+ * consumer controls the pace and the relaying ends when the returned stream,
+ * channel or reader is closed.
+ * 
+ * @author Jerome Louvel
+ */
+public class RelayRepresentation extends WrapperRepresentation {
+
+    /**
+     * Input stream counting the bytes read and ending the relaying when
+     * closed.
+     */
+    private class RelayInputStream extends FilterInputStream {
+
+        /** The number of bytes read. */
+        private long bytes;
+
+        /** Indicates if the stream was closed. */
+        private boolean closed;
+
+        /** The start time of the relaying. */
+        private final long start;
+
+        /**
+         * Constructor.
+         * 
+         * @param inputStream
+         *            The wrapped input stream.
+         */
+        private RelayInputStream(InputStream inputStream) {
+            super(inputStream);
+            this.start = System.currentTimeMillis();
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (!this.closed) {
+                this.closed = true;
+
+                try {
+                    super.close();
+                } finally {
+                    release();
+                    afterRelay(this.bytes, System.currentTimeMillis()
+                            - this.start);
+                }
+            }
+        }
+
+        @Override
+        public int read() throws IOException {
+            int result = super.read();
+
+            if (result != -1) {
+                this.bytes++;
+            }
+
+            return result;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int result = super.read(b, off, len);
+
+            if (result > 0) {
+                this.bytes += result;
+            }
+
+            return result;
+        }
+    }
+
+    /** The size of the relaying buffer. */
+    private final int bufferSize;
+
+    /**
+     * Constructor using the default {@link IoUtils#BUFFER_SIZE} buffer size.
+     * 
+     * @param wrappedRepresentation
+     *            The wrapped representation.
+     */
+    public RelayRepresentation(Representation wrappedRepresentation) {
+        this(wrappedRepresentation, IoUtils.BUFFER_SIZE);
+    }
+
+    /**
+     * Constructor.
+     * 
+     * @param wrappedRepresentation
+     *            The wrapped representation.
+     * @param bufferSize
+     *            The size of the relaying buffer.
+     */
+    public RelayRepresentation(Representation wrappedRepresentation,
+            int bufferSize) {
+        super(wrappedRepresentation);
+        this.bufferSize = (bufferSize > 0) ? bufferSize : IoUtils.BUFFER_SIZE;
+    }
+
+    /**
+     * Callback invoked once the content is relayed, successfully or not. Does
+     * nothing by default.
+     * 
+     * @param bytes
+     *            The number of bytes relayed.
+     * @param duration
+     *            The duration of the relaying in milliseconds.
+     */
+    protected void afterRelay(long bytes, long duration) {
+        // To be overriden
+    }
+
+    @Override
+    public ReadableByteChannel getChannel() throws IOException {
+        return IoUtils.getChannel(getStream());
+    }
+
+    @Override
+    public Reader getReader() throws IOException {
+        InputStream stream = getStream();
+        return (stream == null) ? null : IoUtils.getReader(stream,
+                getCharacterSet());
+    }
+
+    /**
+     * Returns the size of the relaying buffer.
+     * 
+     * @return The size of the relaying buffer.
+     */
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    /**
+     * Returns a stream relaying the content of the wrapped representation. The
+     * relaying ends when the stream is closed.
+     * 
+     * @return A stream relaying the content.
+     */
+    @Override
+    public InputStream getStream() throws IOException {
+        InputStream result = getWrappedRepresentation().getStream();
+
+        if (result != null) {
+            result = new RelayInputStream(result);
+        } else {
+            release();
+            afterRelay(0L, 0L);
+        }
+
+        return result;
+    }
+
+    @Override
+    public boolean isTransient() {
+        return true;
+    }
+
+    @Override
+    public void write(OutputStream outputStream) throws IOException {
+        long start = System.currentTimeMillis();
+        long bytes = 0L;
+        InputStream inputStream = getWrappedRepresentation().getStream();
+
+        try {
+            if (inputStream != null) {
+                byte[] buffer = new byte[getBufferSize()];
+                int bytesRead;
+
+                while ((bytesRead = inputStream.read(buffer)) != -1) {
+                    if (bytesRead > 0) {
+                        outputStream.write(buffer, 0, bytesRead);
+                        outputStream.flush();
+                        bytes += bytesRead;
+                    }
+                }
+            }
+        } finally {
+            if (inputStream != null) {
+                inputStream.close();
+            }
+
+            release();
+            afterRelay(bytes, System.currentTimeMillis() - start);
+        }
+    }
+
+    @Override
+    public void write(WritableByteChannel writableChannel) throws IOException {
+        write(Channels.newOutputStream(writableChannel));
+    }
+
+}
@@ -0,0 +1,54 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or or EPL 1.0 (the "Licenses"). You can
+ * select the license that you prefer but you may not use this file except in
+ * compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+
+package org.restlet.engine.io;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+// [excludes gwt]
+/**
+ * Source of content able to provide streams directly positioned at a given
+ * index, without reading the preceding bytes. Implemented by the
+ * representations backed by files, byte arrays or buffers so that byte ranges
+ * can be served efficiently.
+ * 
+ * @author Jerome Louvel
+ */
+public interface SeekableSource {
+
+    /**
+     * Returns a new stream positioned at the given index of the content. This
+     * method can be invoked several times, for example to serve several
+     * ranges of the same content.
+     * 
+     * @param index
+     *            The index of the first byte to read.
+     * @return A new stream positioned at the given index.
+     * @throws IOException
+     */
+    InputStream getStream(long index) throws IOException;
+
+}
@@ -0,0 +1,439 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or or EPL 1.0 (the "Licenses"). You can
+ * select the license that you prefer but you may not use this file except in
+ * compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+
+package org.restlet.engine.local;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+
+import org.restlet.data.Reference;
+import org.restlet.engine.util.LruCache;
+
+/**
+ * Cache of the local metadata looked up by a {@link DirectoryServerResource},
+ * shared by all the resources of the parent directory. It holds the listings
+ * returned by the client connectors, the missing entries, the variant
+ * references computed for each target URI and the sorted index listings, so
+ * that serving negotiated static content doesn't hit the file system several
+ * times per request.<br>
+ * <br>
+ * Each entry expires after a time to live. The cache is disabled when this
+ * time to live is zero, the default. Modifications made through the parent
+ * directory clear the cache, but external modifications are only visible once
+ * the entries expire.<br>
+ * <br>
+ * Concurrency note: instances of this class can be invoked by several threads
+ * at the same time.
+ * 
+ * @author Jerome Louvel
+ */
+public class DirectoryCache {
+
+    /**
+     * Cache entry with an expiration time.
+     */
+    private static final class Entry {
+
+        /** The expiration time in milliseconds. */
+        private final long expiration;
+
+        /** The cached value. */
+        private final Object value;
+
+        /**
+         * Constructor.
+         * 
+         * @param value
+         *            The cached value.
+         * @param expiration
+         *            The expiration time in milliseconds.
+         */
+        private Entry(Object value, long expiration) {
+            this.expiration = expiration;
+            this.value = value;
+        }
+    }
+
+    /**
+     * Sorted listing, remembering the comparator used to sort it.
+     */
+    private static final class SortedListing {
+
+        /** The comparator used to sort the references. */
+        private final Comparator<Reference> comparator;
+
+        /** The sorted references. */
+        private final List<Reference> references;
+
+        /**
+         * Constructor.
+         * 
+         * @param comparator
+         *            The comparator used to sort the references.
+         * @param references
+         *            The sorted references.
+         */
+        private SortedListing(Comparator<Reference> comparator,
+                List<Reference> references) {
+            this.comparator = comparator;
+            this.references = references;
+        }
+    }
+
+    /**
+     * Variant references of a target URI.
+     */
+    public static final class Variants {
+
+        /** The references of the variants. */
+        private final List<Reference> references;
+
+        /** The reference of the unique variant or null. */
+        private final Reference uniqueReference;
+
+        /**
+         * Constructor.
+         * 
+         * @param references
+         *            The references of the variants.
+         * @param uniqueReference
+         *            The reference of the unique variant or null.
+         */
+        public Variants(List<Reference> references, Reference uniqueReference) {
+            this.references = Collections
+                    .unmodifiableList(new ArrayList<Reference>(references));
+            this.uniqueReference = uniqueReference;
+        }
+
+        /**
+         * Returns the unmodifiable references of the variants.
+         * 
+         * @return The references of the variants.
+         */
+        public List<Reference> getReferences() {
+            return references;
+        }
+
+        /**
+         * Returns the reference of the variant exactly matching the target
+         * URI, or null.
+         * 
+         * @return The reference of the unique variant or null.
+         */
+        public Reference getUniqueReference() {
+            return uniqueReference;
+        }
+    }
+
+    /** The marker of missing entries. */
+    private static final Object MISSING = new Object();
+
+    /** The cached entries. */
+    private final LruCache<String, Entry> entries;
+
+    /** The time to live of the entries in seconds. */
+    private volatile int timeToLive;
+
+    /**
+     * Constructor. Disabled by default, with up to 10000 entries.
+     */
+    public DirectoryCache() {
+        this(0, 10000);
+    }
+
+    /**
+     * Constructor.
+     * 
+     * @param timeToLive
+     *            The time to live of the entries in seconds.
+     * @param maxEntries
+     *            The maximum number of entries.
+     */
+    public DirectoryCache(int timeToLive, int maxEntries) {
+        this.entries = new LruCache<String, Entry>(maxEntries);
+        this.timeToLive = timeToLive;
+    }
+
+    /**
+     * Removes all the entries.
+     */
+    public void clear() {
+        this.entries.clear();
+    }
+
+    /**
+     * Returns the value of an entry if it hasn't expired.
+     * 
+     * @param key
+     *            The entry key.
+     * @return The value or null.
+     */
+    private Object get(String key) {
+        if (!isEnabled()) {
+            return null;
+        }
+
+        Entry entry = this.entries.get(key);
+
+        if (entry == null) {
+            return null;
+        } else if (entry.expiration < System.currentTimeMillis()) {
+            this.entries.remove(key);
+            return null;
+        }
+
+        return entry.value;
+    }
+
+    /**
+     * Returns the number of successful lookups.
+     * 
+     * @return The number of successful lookups.
+     */
+    public long getHits() {
+        return this.entries.getHits();
+    }
+
+    /**
+     * Returns the cached listing returned by the client connectors for a URI.
+     * 
+     * @param uri
+     *            The listed URI.
+     * @param variants
+     *            True if the variants of the URI were listed, false if the URI
+     *            itself was listed.
+     * @return The listing in "text/uri-list" format or null.
+     */
+    public String getListing(String uri, boolean variants) {
+        Object result = get(getListingKey(uri, variants));
+        return (result instanceof String) ? (String) result : null;
+    }
+
+    /**
+     * Returns the key of a listing.
+     * 
+     * @param uri
+     *            The listed URI.
+     * @param variants
+     *            True if the variants of the URI were listed.
+     * @return The key of the listing.
+     */
+    private String getListingKey(String uri, boolean variants) {
+        return (variants ? "V " : "L ") + uri;
+    }
+
+    /**
+     * Returns the number of failed lookups.
+     * 
+     * @return The number of failed lookups.
+     */
+    public long getMisses() {
+        return this.entries.getMisses();
+    }
+
+    /**
+     * Returns the cached URIs of the precompressed siblings of a file.
+     * 
+     * @param uri
+     *            The URI of the original file.
+     * @return The URIs of the siblings or null.
+     */
+    @SuppressWarnings("unchecked")
+    public Set<String> getSiblings(String uri) {
+        Object result = get("P " + uri);
+        return (result instanceof Set) ? (Set<String>) result : null;
+    }
+
+    /**
+     * Returns the listing of a directory sorted by a given comparator, reusing
+     * the previously sorted listing if available.
+     * 
+     * @param uri
+     *            The directory URI.
+     * @param references
+     *            The references to sort.
+     * @param comparator
+     *            The comparator to use.
+     * @return The sorted references.
+     */
+    public List<Reference> getSorted(String uri,
+            Collection<Reference> references,
+            Comparator<Reference> comparator) {
+        String key = "S " + uri;
+        Object cached = get(key);
+
+        if ((cached instanceof SortedListing)
+                && (((SortedListing) cached).comparator == comparator)
+                && (((SortedListing) cached).references.size() == references
+                        .size())) {
+            return ((SortedListing) cached).references;
+        }
+
+        List<Reference> result = new ArrayList<Reference>(references);
+        Collections.sort(result, comparator);
+        result = Collections.unmodifiableList(result);
+        put(key, new SortedListing(comparator, result));
+        return result;
+    }
+
+    /**
+     * Returns the time to live of the entries in seconds. The cache is
+     * disabled if zero, the default.
+     * 
+     * @return The time to live of the entries in seconds.
+     */
+    public int getTimeToLive() {
+        return timeToLive;
+    }
+
+    /**
+     * Returns the cached variant references of a target URI.
+     * 
+     * @param uri
+     *            The target URI.
+     * @return The variant references or null.
+     */
+    public Variants getVariants(String uri) {
+        Object result = get("R " + uri);
+        return (result instanceof Variants) ? (Variants) result : null;
+    }
+
+    /**
+     * Indicates if the cache is enabled, that is if the time to live is
+     * positive.
+     * 
+     * @return True if the cache is enabled.
+     */
+    public boolean isEnabled() {
+        return getTimeToLive() > 0;
+    }
+
+    /**
+     * Indicates if the client connectors found no entry for a URI.
+     * 
+     * @param uri
+     *            The URI.
+     * @param variants
+     *            True if the variants of the URI were listed, false if the URI
+     *            itself was looked up.
+     * @return True if no entry was found.
+     */
+    public boolean isMissing(String uri, boolean variants) {
+        return get(getListingKey(uri, variants)) == MISSING;
+    }
+
+    /**
+     * Stores an entry if the cache is enabled.
+     * 
+     * @param key
+     *            The entry key.
+     * @param value
+     *            The value.
+     */
+    private void put(String key, Object value) {
+        if (isEnabled()) {
+            this.entries.put(key, new Entry(value, System.currentTimeMillis()
+                    + (1000L * getTimeToLive())));
+        }
+    }
+
+    /**
+     * Stores a listing returned by the client connectors.
+     * 
+     * @param uri
+     *            The listed URI.
+     * @param variants
+     *            True if the variants of the URI were listed, false if the URI
+     *            itself was listed.
+     * @param listing
+     *            The listing in "text/uri-list" format.
+     */
+    public void putListing(String uri, boolean variants, String listing) {
+        put(getListingKey(uri, variants), listing);
+    }
+
+    /**
+     * Records that the client connectors found no entry for a URI.
+     * 
+     * @param uri
+     *            The URI.
+     * @param variants
+     *            True if the variants of the URI were listed, false if the URI
+     *            itself was looked up.
+     */
+    public void putMissing(String uri, boolean variants) {
+        put(getListingKey(uri, variants), MISSING);
+    }
+
+    /**
+     * Stores the URIs of the precompressed siblings of a file.
+     * 
+     * @param uri
+     *            The URI of the original file.
+     * @param siblings
+     *            The URIs of the siblings.
+     */
+    public void putSiblings(String uri, Set<String> siblings) {
+        put("P " + uri, Collections.unmodifiableSet(siblings));
+    }
+
+    /**
+     * Stores the variant references of a target URI.
+     * 
+     * @param uri
+     *            The target URI.
+     * @param variants
+     *            The variant references.
+     */
+    public void putVariants(String uri, Variants variants) {
+        put("R " + uri, variants);
+    }
+
+    /**
+     * Sets the time to live of the entries in seconds, then clears the cache.
+     * The cache is disabled if zero.
+     * 
+     * @param timeToLive
+     *            The time to live of the entries in seconds.
+     */
+    public void setTimeToLive(int timeToLive) {
+        this.timeToLive = timeToLive;
+        clear();
+    }
+
+    /**
+     * Returns the number of entries.
+     * 
+     * @return The number of entries.
+     */
+    public int size() {
+        return this.entries.size();
+    }
+
+}
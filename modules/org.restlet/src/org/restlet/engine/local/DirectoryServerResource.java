@@ -27,7 +27,10 @@ package org.restlet.engine.local;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Comparator;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.SortedSet;
 import java.util.TreeSet;
 import java.util.logging.Level;
@@ -35,13 +38,17 @@ import java.util.logging.Level;
 import org.restlet.Request;
 import org.restlet.Response;
 import org.restlet.Restlet;
+import org.restlet.data.Dimension;
+import org.restlet.data.Encoding;
 import org.restlet.data.MediaType;
 import org.restlet.data.Method;
 import org.restlet.data.Preference;
 import org.restlet.data.Reference;
 import org.restlet.data.ReferenceList;
 import org.restlet.data.Status;
+import org.restlet.representation.FileRepresentation;
 import org.restlet.representation.Representation;
+import org.restlet.representation.StringRepresentation;
 import org.restlet.representation.Variant;
 import org.restlet.resource.Directory;
 import org.restlet.resource.ResourceException;
@@ -146,6 +153,9 @@ public class DirectoryServerResource extends ServerResource {
             }
 
             setStatus(contextResponse.getStatus());
+            getDirectory().getMetadataCache().clear();
+            getDirectory().getPrecompressedCache().clear();
+            getDirectory().getHotFileCache().clear();
         } else {
             setStatus(Status.CLIENT_ERROR_METHOD_NOT_ALLOWED,
                     "The directory is not modifiable.");
@@ -486,6 +496,128 @@ public class DirectoryServerResource extends ServerResource {
         return this.directoryUri;
     }
 
+    /**
+     * Returns a representation of a file cached by the hot file cache of the
+     * parent directory, caching it first if needed. Returns the original
+     * representation if the cache is disabled or if the file can't be cached.
+     * 
+     * @param fileUri
+     *            The URI of the file.
+     * @param representation
+     *            The original file representation.
+     * @return The cached representation or the original one.
+     */
+    private Representation getHotFile(String fileUri,
+            FileRepresentation representation) {
+        HotFileCache hotFiles = getDirectory().getHotFileCache();
+
+        if (hotFiles.isEnabled()) {
+            try {
+                HotFileCache.HotFile hotFile = hotFiles.put(fileUri,
+                        representation);
+
+                if (hotFile != null) {
+                    Representation result = hotFile.createRepresentation();
+                    result.setLocationRef(representation.getLocationRef());
+                    representation.release();
+                    return result;
+                }
+            } catch (IOException ioe) {
+                getLogger().log(Level.FINE, "Unable to cache the file", ioe);
+            }
+        }
+
+        return representation;
+    }
+
+    /**
+     * Returns the precompressed sibling of a file representation, such as
+     * "app.js.gz" for "app.js", if the parent directory serves them and if the
+     * client prefers its encoding. The sibling inherits the metadata of the
+     * original representation, except its encoding.
+     * 
+     * @param fileUri
+     *            The URI of the original file.
+     * @param representation
+     *            The representation of the original file.
+     * @return The precompressed representation or the original one.
+     */
+    private Representation getPrecompressed(String fileUri,
+            Representation representation) {
+        Map<Encoding, String> extensions = getDirectory()
+                .getPrecompressedExtensions();
+
+        if (!getDirectory().isServingPrecompressed() || extensions.isEmpty()
+                || !representation.getEncodings().isEmpty()) {
+            return representation;
+        }
+
+        // The response now depends on the accepted encodings
+        getResponse().getDimensions().add(Dimension.ENCODING);
+        List<Encoding> candidates = new ArrayList<Encoding>(
+                extensions.keySet());
+        candidates.add(Encoding.IDENTITY);
+        Encoding preferred = getClientInfo().getPreferredEncoding(candidates);
+
+        if ((preferred == null) || Encoding.IDENTITY.equals(preferred)) {
+            return representation;
+        }
+
+        // As local connectors fall back to compatible variants, check that the
+        // siblings exist by listing the files sharing the same base name
+        DirectoryCache cache = getDirectory().getPrecompressedCache();
+        Set<String> siblings = cache.getSiblings(fileUri);
+
+        if (siblings == null) {
+            siblings = new HashSet<String>();
+            Response listResponse = getRepresentation(fileUri,
+                    MediaType.TEXT_URI_LIST);
+
+            if ((listResponse.getEntity() != null)
+                    && MediaType.TEXT_URI_LIST.equals(listResponse.getEntity()
+                            .getMediaType())) {
+                try {
+                    for (Reference ref : new ReferenceList(
+                            listResponse.getEntity())) {
+                        siblings.add(ref.toString(false, false));
+                    }
+                } catch (IOException ioe) {
+                    getLogger().log(Level.WARNING,
+                            "Unable to list the precompressed files", ioe);
+                }
+            }
+
+            cache.putSiblings(fileUri, siblings);
+        }
+
+        while ((preferred != null) && !Encoding.IDENTITY.equals(preferred)) {
+            String siblingUri = fileUri + "." + extensions.get(preferred);
+            Response contextResponse = siblings
+                    .contains(siblingUri) ? getRepresentation(siblingUri)
+                    : null;
+
+            if ((contextResponse != null)
+                    && contextResponse.getStatus().isSuccess()
+                    && (contextResponse.getEntity() != null)) {
+                Representation result = contextResponse.getEntity();
+                result.setCharacterSet(representation.getCharacterSet());
+                result.setDisposition(representation.getDisposition());
+                result.getEncodings().clear();
+                result.getEncodings().add(preferred);
+                result.setLanguages(representation.getLanguages());
+                result.setLocationRef(representation.getLocationRef());
+                result.setMediaType(representation.getMediaType());
+                representation.release();
+                return result;
+            }
+
+            candidates.remove(preferred);
+            preferred = getClientInfo().getPreferredEncoding(candidates);
+        }
+
+        return representation;
+    }
+
     /**
      * Returns a representation of the resource at the target URI. Leverages the
      * client dispatcher of the parent directory's context.
@@ -495,13 +627,14 @@ public class DirectoryServerResource extends ServerResource {
      * @return A response with the representation if success.
      */
     private Response getRepresentation(String resourceUri) {
-        return getClientDispatcher().handle(
-                new Request(Method.GET, resourceUri));
+        return getRepresentation(resourceUri, null);
     }
 
     /**
      * Returns a representation of the resource at the target URI. Leverages the
-     * client dispatcher of the parent directory's context.
+     * client dispatcher of the parent directory's context. The listings and
+     * the missing entries are looked up in the metadata cache of the parent
+     * directory first.
      * 
      * @param resourceUri
      *            The URI of the target resource.
@@ -511,15 +644,65 @@ public class DirectoryServerResource extends ServerResource {
      */
     protected Response getRepresentation(String resourceUri,
             MediaType acceptedMediaType) {
-        if (acceptedMediaType == null) {
-            return getClientDispatcher().handle(
-                    new Request(Method.GET, resourceUri));
+        Request request = new Request(Method.GET, resourceUri);
+        DirectoryCache cache = getDirectory().getMetadataCache();
+        boolean variants = MediaType.TEXT_URI_LIST.equals(acceptedMediaType);
+
+        if (acceptedMediaType != null) {
+            request.getClientInfo().getAcceptedMediaTypes()
+                    .add(new Preference<MediaType>(acceptedMediaType));
         }
 
-        Request request = new Request(Method.GET, resourceUri);
-        request.getClientInfo().getAcceptedMediaTypes()
-                .add(new Preference<MediaType>(acceptedMediaType));
-        return getClientDispatcher().handle(request);
+        if ((acceptedMediaType != null) && !variants) {
+            return getClientDispatcher().handle(request);
+        }
+
+        // Reuse the files, listings and lookups previously cached
+        Response result = new Response(request);
+        HotFileCache.HotFile hotFile = variants ? null : getDirectory()
+                .getHotFileCache().get(resourceUri);
+        String listing = cache.getListing(resourceUri, variants);
+
+        if (hotFile != null) {
+            result.setEntity(hotFile.createRepresentation());
+            result.getEntity().setLocationRef(resourceUri);
+            result.setStatus(Status.SUCCESS_OK);
+        } else if (listing != null) {
+            result.setEntity(new StringRepresentation(listing,
+                    MediaType.TEXT_URI_LIST));
+            result.setStatus(Status.SUCCESS_OK);
+        } else if (cache.isMissing(resourceUri, variants)) {
+            result.setStatus(Status.CLIENT_ERROR_NOT_FOUND);
+        } else {
+            getClientDispatcher().handle(request, result);
+
+            if (result.getEntity() == null) {
+                // Only remember the lookups of missing files
+                if (Status.CLIENT_ERROR_NOT_FOUND.equals(result.getStatus())) {
+                    cache.putMissing(resourceUri, variants);
+                }
+            } else if (cache.isEnabled()
+                    && MediaType.TEXT_URI_LIST.equals(result.getEntity()
+                            .getMediaType())) {
+                try {
+                    listing = result.getEntity().getText();
+                    cache.putListing(resourceUri, variants, listing);
+                    result.setEntity(new StringRepresentation(listing,
+                            MediaType.TEXT_URI_LIST));
+                } catch (IOException ioe) {
+                    getLogger().log(Level.WARNING,
+                            "Unable to cache the listing of " + resourceUri,
+                            ioe);
+                    result.setEntity(null);
+                }
+            } else if (!variants
+                    && (result.getEntity() instanceof FileRepresentation)) {
+                result.setEntity(getHotFile(resourceUri,
+                        (FileRepresentation) result.getEntity()));
+            }
+        }
+
+        return result;
     }
 
     /**
@@ -611,6 +794,11 @@ public class DirectoryServerResource extends ServerResource {
                     if (this.baseName != null) {
                         String filePath;
                         for (Reference ref : getVariantsReferences()) {
+                            if (isPrecompressed(ref)) {
+                                // Only served in place of the original file
+                                continue;
+                            }
+
                             // Add the new variant to the result list
                             Response contextResponse = getRepresentation(ref
                                     .toString());
@@ -618,8 +806,9 @@ public class DirectoryServerResource extends ServerResource {
                                     && (contextResponse.getEntity() != null)) {
                                 filePath = ref.toString(false, false)
                                         .substring(rootLength);
-                                Representation rep = contextResponse
-                                        .getEntity();
+                                Representation rep = getPrecompressed(
+                                        ref.toString(),
+                                        contextResponse.getEntity());
 
                                 if (filePath.startsWith("/")) {
                                     rep.setLocationRef(baseRef + filePath);
@@ -644,11 +833,13 @@ public class DirectoryServerResource extends ServerResource {
                             // Set the list identifier
                             userList.setIdentifier(baseRef);
 
-                            SortedSet<Reference> sortedSet = new TreeSet<Reference>(
-                                    getDirectory().getComparator());
-                            sortedSet.addAll(this.directoryContent);
+                            List<Reference> sortedList = getDirectory()
+                                    .getMetadataCache().getSorted(
+                                            getDirectoryUri(),
+                                            this.directoryContent,
+                                            getDirectory().getComparator());
 
-                            for (Reference ref : sortedSet) {
+                            for (Reference ref : sortedList) {
                                 String filePart = ref.toString(false, false)
                                         .substring(rootLength);
                                 StringBuilder filePath = new StringBuilder();
@@ -674,6 +865,9 @@ public class DirectoryServerResource extends ServerResource {
                         }
                     }
                 } else if (this.fileTarget && (this.fileContent != null)) {
+                    this.fileContent = getPrecompressed(getTargetUri(),
+                            this.fileContent);
+
                     // Sets the location of the target representation.
                     if (getOriginalRef() != null) {
                         this.fileContent.setLocationRef(getRequest()
@@ -700,6 +894,15 @@ public class DirectoryServerResource extends ServerResource {
      * @return The list of variants references
      */
     private ReferenceList getVariantsReferences() {
+        DirectoryCache cache = getDirectory().getMetadataCache();
+        DirectoryCache.Variants cached = cache.getVariants(this.targetUri);
+
+        if (cached != null) {
+            this.uniqueReference = cached.getUniqueReference();
+            return new ReferenceList(new ArrayList<Reference>(
+                    cached.getReferences()));
+        }
+
         ReferenceList result = new ReferenceList(0);
 
         try {
@@ -757,6 +960,9 @@ public class DirectoryServerResource extends ServerResource {
                     result.add(contextResponse.getEntity().getLocationRef());
                 }
             }
+
+            cache.putVariants(this.targetUri, new DirectoryCache.Variants(
+                    result, this.uniqueReference));
         } catch (IOException ioe) {
             getLogger().log(Level.WARNING, "Unable to get resource variants",
                     ioe);
@@ -810,6 +1016,29 @@ public class DirectoryServerResource extends ServerResource {
         return this.fileTarget;
     }
 
+    /**
+     * Indicates if a reference targets a precompressed sibling file that should
+     * only be served in place of its original file.
+     * 
+     * @param ref
+     *            The reference to test.
+     * @return True if the reference targets a precompressed sibling file.
+     */
+    private boolean isPrecompressed(Reference ref) {
+        if (getDirectory().isServingPrecompressed()) {
+            String path = ref.getPath();
+
+            for (String extension : getDirectory().getPrecompressedExtensions()
+                    .values()) {
+                if ((path != null) && path.endsWith("." + extension)) {
+                    return true;
+                }
+            }
+        }
+
+        return false;
+    }
+
     @Override
     public Representation put(Representation entity) throws ResourceException {
         if (this.directory.isModifiable()) {
@@ -824,6 +1053,9 @@ public class DirectoryServerResource extends ServerResource {
             contextRequest.setResourceRef(this.targetUri);
             getClientDispatcher().handle(contextRequest, contextResponse);
             setStatus(contextResponse.getStatus());
+            getDirectory().getMetadataCache().clear();
+            getDirectory().getPrecompressedCache().clear();
+            getDirectory().getHotFileCache().clear();
         } else {
             setStatus(Status.CLIENT_ERROR_METHOD_NOT_ALLOWED,
                     "The directory is not modifiable.");
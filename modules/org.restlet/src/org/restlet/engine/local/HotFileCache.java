@@ -0,0 +1,460 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or or EPL 1.0 (the "Licenses"). You can
+ * select the license that you prefer but you may not use this file except in
+ * compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+
+package org.restlet.engine.local;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import org.restlet.data.CharacterSet;
+import org.restlet.data.Disposition;
+import org.restlet.data.Encoding;
+import org.restlet.data.Language;
+import org.restlet.data.MediaType;
+import org.restlet.data.Tag;
+import org.restlet.engine.util.LruCache;
+import org.restlet.representation.FileRepresentation;
+import org.restlet.representation.Representation;
+
+/**
+ * Cache of the content of frequently requested files, used by a
+ * {@link DirectoryServerResource} to serve small static files without
+ * reopening them. Each file is held as a shared read-only buffer, memory
+ * mapped above a size threshold or copied on the heap below, along with its
+ * metadata and a precomputed entity tag based on its size and modification
+ * date.<br>
+ * <br>
+ * The least recently used files are evicted once the total size exceeds the
+ * maximum size. A cached file is discarded as soon as its modification date or
+ * its size changes. The cache is disabled when the maximum size is zero, the
+ * default.<br>
+ * <br>
+ * Concurrency note: instances of this class can be invoked by several threads
+ * at the same time.
+ * 
+ * @author Jerome Louvel
+ */
+public class HotFileCache {
+
+    /**
+     * Cached file.
+     */
+    public static final class HotFile {
+
+        /** The character set. */
+        private final CharacterSet characterSet;
+
+        /** The shared content. */
+        private final ByteBuffer content;
+
+        /** The disposition. */
+        private final Disposition disposition;
+
+        /** The encodings. */
+        private final List<Encoding> encodings;
+
+        /** The underlying file. */
+        private final File file;
+
+        /** The languages. */
+        private final List<Language> languages;
+
+        /** The modification date of the file in milliseconds. */
+        private final long lastModified;
+
+        /** Indicates if the content is memory mapped. */
+        private final boolean mapped;
+
+        /** The media type. */
+        private final MediaType mediaType;
+
+        /** The size of the file. */
+        private final long size;
+
+        /** The entity tag. */
+        private final Tag tag;
+
+        /** The time to live in milliseconds or -1 if unknown. */
+        private final long timeToLive;
+
+        /**
+         * Constructor.
+         * 
+         * @param representation
+         *            The original file representation.
+         * @param content
+         *            The shared content.
+         * @param lastModified
+         *            The modification date of the file in milliseconds.
+         * @param mapped
+         *            Indicates if the content is memory mapped.
+         */
+        private HotFile(FileRepresentation representation, ByteBuffer content,
+                long lastModified, boolean mapped) {
+            this.characterSet = representation.getCharacterSet();
+            this.content = content;
+            this.disposition = representation.getDisposition();
+            this.encodings = new ArrayList<Encoding>(
+                    representation.getEncodings());
+            this.file = representation.getFile();
+            this.languages = new ArrayList<Language>(
+                    representation.getLanguages());
+            this.lastModified = lastModified;
+            this.mapped = mapped;
+            this.mediaType = representation.getMediaType();
+            this.size = content.remaining();
+            this.tag = new Tag(Long.toHexString(lastModified) + "-"
+                    + Long.toHexString(this.size), false);
+            this.timeToLive = (representation.getExpirationDate() == null) ? -1L
+                    : Math.max(0L, representation.getExpirationDate()
+                            .getTime() - System.currentTimeMillis());
+        }
+
+        /**
+         * Creates a new representation of the cached content, with the
+         * metadata of the original file representation.
+         * 
+         * @return A new representation of the cached content.
+         */
+        public Representation createRepresentation() {
+            Representation result = new HotFileRepresentation(this.content,
+                    this.mediaType);
+            result.setCharacterSet(this.characterSet);
+            result.setDisposition(this.disposition);
+            result.setEncodings(new ArrayList<Encoding>(this.encodings));
+            result.setLanguages(new ArrayList<Language>(this.languages));
+            result.setModificationDate(new Date(this.lastModified));
+            result.setTag(this.tag);
+
+            if (this.timeToLive >= 0) {
+                result.setExpirationDate(new Date(System.currentTimeMillis()
+                        + this.timeToLive));
+            }
+
+            return result;
+        }
+
+        /**
+         * Returns a read-only view of the shared content.
+         * 
+         * @return A read-only view of the shared content.
+         */
+        public ByteBuffer getContent() {
+            return this.content.asReadOnlyBuffer();
+        }
+
+        /**
+         * Returns the underlying file.
+         * 
+         * @return The underlying file.
+         */
+        public File getFile() {
+            return this.file;
+        }
+
+        /**
+         * Returns the size of the file.
+         * 
+         * @return The size of the file.
+         */
+        public long getSize() {
+            return this.size;
+        }
+
+        /**
+         * Returns the entity tag, based on the size and modification date of
+         * the file.
+         * 
+         * @return The entity tag.
+         */
+        public Tag getTag() {
+            return this.tag;
+        }
+
+        /**
+         * Indicates if the content is memory mapped or copied on the heap.
+         * 
+         * @return True if the content is memory mapped.
+         */
+        public boolean isMapped() {
+            return this.mapped;
+        }
+
+        /**
+         * Indicates if the file is unchanged since it was cached.
+         * 
+         * @return True if the file is unchanged.
+         */
+        public boolean isValid() {
+            return (this.file.lastModified() == this.lastModified)
+                    && (this.file.length() == this.size);
+        }
+    }
+
+    /** The cached files, weighted by size. */
+    private final LruCache<String, HotFile> files;
+
+    /** The minimum size of the memory mapped files. */
+    private volatile long mappingThreshold;
+
+    /** The maximum size of a cached file. */
+    private volatile long maxFileSize;
+
+    /**
+     * Constructor. Disabled by default, caching files up to 1 MB and memory
+     * mapping the files above 64 KB.
+     */
+    public HotFileCache() {
+        this(0L, 1048576L, 65536L);
+    }
+
+    /**
+     * Constructor.
+     * 
+     * @param maxSize
+     *            The maximum total size of the cached files.
+     * @param maxFileSize
+     *            The maximum size of a cached file.
+     * @param mappingThreshold
+     *            The minimum size of the memory mapped files.
+     */
+    public HotFileCache(long maxSize, long maxFileSize, long mappingThreshold) {
+        this.files = new LruCache<String, HotFile>(maxSize) {
+            @Override
+            protected long weigh(String key, HotFile value) {
+                return Math.max(1L, value.getSize());
+            }
+        };
+        this.mappingThreshold = mappingThreshold;
+        this.maxFileSize = maxFileSize;
+    }
+
+    /**
+     * Removes all the cached files.
+     */
+    public void clear() {
+        this.files.clear();
+    }
+
+    /**
+     * Returns the cached file for a URI, unless it has changed since it was
+     * cached.
+     * 
+     * @param uri
+     *            The file URI.
+     * @return The cached file or null.
+     */
+    public HotFile get(String uri) {
+        HotFile result = isEnabled() ? this.files.get(uri) : null;
+
+        if ((result != null) && !result.isValid()) {
+            this.files.remove(uri);
+            result = null;
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns the number of successful lookups.
+     * 
+     * @return The number of successful lookups.
+     */
+    public long getHits() {
+        return this.files.getHits();
+    }
+
+    /**
+     * Returns the minimum size of the memory mapped files. Smaller files are
+     * copied on the heap. Defaults to 64 KB.
+     * 
+     * @return The minimum size of the memory mapped files.
+     */
+    public long getMappingThreshold() {
+        return mappingThreshold;
+    }
+
+    /**
+     * Returns the maximum size of a cached file. Defaults to 1 MB.
+     * 
+     * @return The maximum size of a cached file.
+     */
+    public long getMaxFileSize() {
+        return maxFileSize;
+    }
+
+    /**
+     * Returns the maximum total size of the cached files. The cache is
+     * disabled if zero, the default.
+     * 
+     * @return The maximum total size of the cached files.
+     */
+    public long getMaxSize() {
+        return this.files.getMaxWeight();
+    }
+
+    /**
+     * Returns the number of failed lookups.
+     * 
+     * @return The number of failed lookups.
+     */
+    public long getMisses() {
+        return this.files.getMisses();
+    }
+
+    /**
+     * Returns the current total size of the cached files.
+     * 
+     * @return The current total size of the cached files.
+     */
+    public long getSize() {
+        return this.files.getWeight();
+    }
+
+    /**
+     * Indicates if the cache is enabled, that is if the maximum size is
+     * positive.
+     * 
+     * @return True if the cache is enabled.
+     */
+    public boolean isEnabled() {
+        return getMaxSize() > 0;
+    }
+
+    /**
+     * Loads the content of a file representation then caches it, if its size
+     * is within the limits.
+     * 
+     * @param uri
+     *            The file URI.
+     * @param representation
+     *            The file representation.
+     * @return The cached file or null.
+     * @throws IOException
+     */
+    public HotFile put(String uri, FileRepresentation representation)
+            throws IOException {
+        File file = representation.getFile();
+
+        // Read the date first so that concurrent updates are detected later
+        long lastModified = file.lastModified();
+        long size = file.length();
+
+        if (!isEnabled() || !file.isFile() || (size > getMaxFileSize())
+                || (size > getMaxSize())) {
+            return null;
+        }
+
+        HotFile result = null;
+        FileInputStream fis = new FileInputStream(file);
+
+        try {
+            FileChannel channel = fis.getChannel();
+            size = channel.size();
+
+            if (size > getMaxFileSize()) {
+                return null;
+            } else if (size >= getMappingThreshold()) {
+                result = new HotFile(representation, channel.map(
+                        FileChannel.MapMode.READ_ONLY, 0, size), lastModified,
+                        true);
+            } else {
+                ByteBuffer content = ByteBuffer.allocate((int) size);
+
+                while (content.hasRemaining()
+                        && (channel.read(content) != -1)) {
+                    // Continue reading
+                }
+
+                content.flip();
+                result = new HotFile(representation, content, lastModified,
+                        false);
+            }
+        } finally {
+            fis.close();
+        }
+
+        this.files.put(uri, result);
+        return result;
+    }
+
+    /**
+     * Removes the cached file for a URI.
+     * 
+     * @param uri
+     *            The file URI.
+     */
+    public void remove(String uri) {
+        this.files.remove(uri);
+    }
+
+    /**
+     * Sets the minimum size of the memory mapped files.
+     * 
+     * @param mappingThreshold
+     *            The minimum size of the memory mapped files.
+     */
+    public void setMappingThreshold(long mappingThreshold) {
+        this.mappingThreshold = mappingThreshold;
+    }
+
+    /**
+     * Sets the maximum size of a cached file.
+     * 
+     * @param maxFileSize
+     *            The maximum size of a cached file.
+     */
+    public void setMaxFileSize(long maxFileSize) {
+        this.maxFileSize = maxFileSize;
+    }
+
+    /**
+     * Sets the maximum total size of the cached files, then removes all the
+     * cached files. The cache is disabled if zero.
+     * 
+     * @param maxSize
+     *            The maximum total size of the cached files.
+     */
+    public void setMaxSize(long maxSize) {
+        this.files.setMaxWeight(maxSize);
+        clear();
+    }
+
+    /**
+     * Returns the number of cached files.
+     * 
+     * @return The number of cached files.
+     */
+    public int size() {
+        return this.files.size();
+    }
+
+}
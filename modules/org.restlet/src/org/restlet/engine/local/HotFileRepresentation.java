@@ -0,0 +1,169 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or or EPL 1.0 (the "Licenses"). You can
+ * select the license that you prefer but you may not use this file except in
+ * compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+
+package org.restlet.engine.local;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+
+import org.restlet.data.MediaType;
+import org.restlet.engine.io.SeekableSource;
+import org.restlet.representation.ChannelRepresentation;
+
+/**
+ * Representation exposing the content of a file held by a
+ * {@link HotFileCache}. Each instance reads its own view of the shared
+ * read-only buffer, so the file is neither reopened nor copied again, and
+ * can be directly positioned to serve byte ranges.
+ * 
+ * @author Jerome Louvel
+ */
+public class HotFileRepresentation extends ChannelRepresentation implements
+        SeekableSource {
+
+    /** The shared content of the file. */
+    private final ByteBuffer content;
+
+    /**
+     * Constructor.
+     * 
+     * @param content
+     *            The shared content of the file.
+     * @param mediaType
+     *            The media type.
+     */
+    public HotFileRepresentation(ByteBuffer content, MediaType mediaType) {
+        super(mediaType);
+        this.content = content;
+        setSize(content.remaining());
+    }
+
+    @Override
+    public ReadableByteChannel getChannel() throws IOException {
+        final ByteBuffer buffer = this.content.duplicate();
+
+        return new ReadableByteChannel() {
+            private volatile boolean open = true;
+
+            public void close() throws IOException {
+                this.open = false;
+            }
+
+            public boolean isOpen() {
+                return this.open;
+            }
+
+            public int read(ByteBuffer dst) throws IOException {
+                if (!buffer.hasRemaining()) {
+                    return -1;
+                }
+
+                int length = Math.min(dst.remaining(), buffer.remaining());
+                ByteBuffer slice = buffer.slice();
+                slice.limit(length);
+                dst.put(slice);
+                buffer.position(buffer.position() + length);
+                return length;
+            }
+        };
+    }
+
+    @Override
+    public InputStream getStream() throws IOException {
+        return getStream(0L);
+    }
+
+    /**
+     * Returns a new stream positioned at the given index of the content.
+     * 
+     * @param index
+     *            The index of the first byte to read.
+     * @return A new stream positioned at the given index.
+     */
+    public InputStream getStream(long index) throws IOException {
+        final ByteBuffer buffer = this.content.duplicate();
+        buffer.position(buffer.position()
+                + (int) Math.max(0L, Math.min(index, buffer.remaining())));
+
+        return new InputStream() {
+            @Override
+            public int available() throws IOException {
+                return buffer.remaining();
+            }
+
+            @Override
+            public int read() throws IOException {
+                return buffer.hasRemaining() ? (buffer.get() & 0xFF) : -1;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                if (len == 0) {
+                    return 0;
+                } else if (!buffer.hasRemaining()) {
+                    return -1;
+                }
+
+                int length = Math.min(len, buffer.remaining());
+                buffer.get(b, off, length);
+                return length;
+            }
+
+            @Override
+            public long skip(long n) throws IOException {
+                int length = (int) Math.max(0L,
+                        Math.min(n, buffer.remaining()));
+                buffer.position(buffer.position() + length);
+                return length;
+            }
+        };
+    }
+
+    @Override
+    public void write(OutputStream outputStream) throws IOException {
+        ByteBuffer buffer = this.content.duplicate();
+
+        if (buffer.hasArray()) {
+            outputStream.write(buffer.array(), buffer.arrayOffset()
+                    + buffer.position(), buffer.remaining());
+        } else {
+            super.write(outputStream);
+        }
+    }
+
+    @Override
+    public void write(WritableByteChannel writableChannel) throws IOException {
+        ByteBuffer buffer = this.content.duplicate();
+
+        while (buffer.hasRemaining()) {
+            writableChannel.write(buffer);
+        }
+    }
+
+}
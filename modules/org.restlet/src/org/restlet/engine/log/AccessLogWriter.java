@@ -0,0 +1,431 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or or EPL 1.0 (the "Licenses"). You can
+ * select the license that you prefer but you may not use this file except in
+ * compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+
+package org.restlet.engine.log;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.restlet.engine.Engine;
+
+/**
+ * Asynchronous writer of access log records. The calling threads only append
+ * their records to a bounded lock-free ring buffer, while a background thread
+ * drains it and writes the records by batches to a file channel, rotating the
+ * files when they reach a maximum size.<br>
+ * <br>
+ * When the buffer is full, the records are either dropped and counted, or the
+ * calling threads wait for some room, depending on the blocking policy.
+ * 
+ * @author Jerome Louvel
+ */
+public class AccessLogWriter implements Runnable {
+
+    /** The maximum number of records written by batch. */
+    private static final int BATCH_SIZE = 1024;
+
+    /** The charset of the log files. */
+    private static final Charset CHARSET = Charset.forName("UTF-8");
+
+    /** The line separator. */
+    private static final String LINE_SEPARATOR = System
+            .getProperty("line.separator");
+
+    /** The delay in nanoseconds between two checks of an empty buffer. */
+    private static final long POLL_DELAY = TimeUnit.MILLISECONDS.toNanos(10);
+
+    /** Indicates if the calling threads wait when the buffer is full. */
+    private final boolean blocking;
+
+    /** The file channel currently written. */
+    private volatile FileChannel channel;
+
+    /** The number of dropped records. */
+    private final AtomicLong droppedCount;
+
+    /** The log file. */
+    private final File file;
+
+    /** The maximum number of files kept, including the current one. */
+    private final int fileCount;
+
+    /** The size of the current file. */
+    private volatile long fileSize;
+
+    /** The position of the next record to write. */
+    private volatile long head;
+
+    /** The logger for writing errors. */
+    private final Logger logger;
+
+    /** The mask giving the slot index of a position. */
+    private final int mask;
+
+    /** The maximum size of a file before rotation, or 0 for no rotation. */
+    private final long maxFileSize;
+
+    /** Indicates if the writer is running. */
+    private volatile boolean running;
+
+    /** The ring buffer of records. */
+    private final AtomicReferenceArray<String> slots;
+
+    /** The position of the next record to append. */
+    private final AtomicLong tail;
+
+    /** The background writing thread. */
+    private volatile Thread thread;
+
+    /** The number of written records. */
+    private final AtomicLong writtenCount;
+
+    /**
+     * Constructor.
+     * 
+     * @param file
+     *            The log file.
+     * @param capacity
+     *            The capacity of the buffer in records, rounded up to a power
+     *            of two.
+     * @param blocking
+     *            True if the calling threads wait when the buffer is full,
+     *            false if the records are dropped.
+     * @param maxFileSize
+     *            The maximum size of a file before rotation, or 0 for no
+     *            rotation.
+     * @param fileCount
+     *            The maximum number of files kept, including the current one.
+     */
+    public AccessLogWriter(File file, int capacity, boolean blocking,
+            long maxFileSize, int fileCount) {
+        int size = 1;
+
+        while (size < capacity) {
+            size <<= 1;
+        }
+
+        this.blocking = blocking;
+        this.droppedCount = new AtomicLong();
+        this.file = file;
+        this.fileCount = Math.max(1, fileCount);
+        this.head = 0L;
+        this.logger = Engine.getLogger(AccessLogWriter.class);
+        this.mask = size - 1;
+        this.maxFileSize = maxFileSize;
+        this.running = false;
+        this.slots = new AtomicReferenceArray<String>(size);
+        this.tail = new AtomicLong();
+        this.writtenCount = new AtomicLong();
+    }
+
+    /**
+     * Closes the current file channel, if any.
+     */
+    private void closeChannel() {
+        if (this.channel != null) {
+            try {
+                this.channel.close();
+            } catch (IOException ioe) {
+                this.logger.log(Level.WARNING, "Unable to close the log file",
+                        ioe);
+            }
+
+            this.channel = null;
+        }
+    }
+
+    /**
+     * Drains a batch of records from the buffer and writes them.
+     * 
+     * @return The number of drained records.
+     */
+    private int drain() {
+        StringBuilder sb = new StringBuilder();
+        long position = this.head;
+        long end = this.tail.get();
+        int result = 0;
+
+        while ((position < end) && (result < BATCH_SIZE)) {
+            int index = (int) (position & this.mask);
+            String record = this.slots.get(index);
+
+            if (record == null) {
+                // Slot claimed but not published yet
+                break;
+            }
+
+            this.slots.lazySet(index, null);
+            sb.append(record).append(LINE_SEPARATOR);
+            position++;
+            result++;
+        }
+
+        this.head = position;
+
+        if (result > 0) {
+            try {
+                write(sb.toString().getBytes(CHARSET));
+                this.writtenCount.addAndGet(result);
+            } catch (IOException ioe) {
+                this.droppedCount.addAndGet(result);
+                this.logger.log(Level.WARNING,
+                        "Unable to write the access log records", ioe);
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns the capacity of the buffer in records.
+     * 
+     * @return The capacity of the buffer in records.
+     */
+    public int getCapacity() {
+        return this.slots.length();
+    }
+
+    /**
+     * Returns the number of records dropped because the buffer was full or the
+     * writing failed.
+     * 
+     * @return The number of dropped records.
+     */
+    public long getDroppedCount() {
+        return this.droppedCount.get();
+    }
+
+    /**
+     * Returns the log file.
+     * 
+     * @return The log file.
+     */
+    public File getFile() {
+        return this.file;
+    }
+
+    /**
+     * Returns the number of records waiting to be written.
+     * 
+     * @return The number of records waiting to be written.
+     */
+    public int getPendingCount() {
+        return (int) (this.tail.get() - this.head);
+    }
+
+    /**
+     * Returns the number of written records.
+     * 
+     * @return The number of written records.
+     */
+    public long getWrittenCount() {
+        return this.writtenCount.get();
+    }
+
+    /**
+     * Indicates if the calling threads wait when the buffer is full.
+     * 
+     * @return True if the calling threads wait when the buffer is full.
+     */
+    public boolean isBlocking() {
+        return this.blocking;
+    }
+
+    /**
+     * Indicates if the writer is running.
+     * 
+     * @return True if the writer is running.
+     */
+    public boolean isRunning() {
+        return this.running;
+    }
+
+    /**
+     * Appends a record to the buffer. Never waits for the record to be
+     * written. Records logged while the writer isn't running are dropped.
+     * 
+     * @param record
+     *            The record to append.
+     * @return True if the record was appended, false if it was dropped.
+     */
+    public boolean log(String record) {
+        long position;
+
+        if (!isRunning()) {
+            this.droppedCount.incrementAndGet();
+            return false;
+        }
+
+        for (;;) {
+            position = this.tail.get();
+
+            if (position - this.head >= this.slots.length()) {
+                if (!isBlocking() || !isRunning()) {
+                    this.droppedCount.incrementAndGet();
+                    return false;
+                }
+
+                // Wait for the writing thread to make some room
+                LockSupport.unpark(this.thread);
+                LockSupport.parkNanos(POLL_DELAY / 100);
+            } else if (this.tail.compareAndSet(position, position + 1)) {
+                break;
+            }
+        }
+
+        this.slots.set((int) (position & this.mask), record);
+        return true;
+    }
+
+    /**
+     * Opens the file channel in append mode.
+     * 
+     * @throws IOException
+     */
+    @SuppressWarnings("resource")
+    private void openChannel() throws IOException {
+        File parent = this.file.getAbsoluteFile().getParentFile();
+
+        if ((parent != null) && !parent.exists()) {
+            parent.mkdirs();
+        }
+
+        this.channel = new FileOutputStream(this.file, true).getChannel();
+        this.fileSize = this.channel.size();
+    }
+
+    /**
+     * Rotates the files, the current one becoming the first backup suffixed
+     * with ".1", and opens a new file.
+     * 
+     * @throws IOException
+     */
+    private void rotate() throws IOException {
+        closeChannel();
+
+        if (this.fileCount > 1) {
+            String path = this.file.getPath();
+            new File(path + "." + (this.fileCount - 1)).delete();
+
+            for (int i = this.fileCount - 2; i > 0; i--) {
+                File backup = new File(path + "." + i);
+
+                if (backup.exists()) {
+                    backup.renameTo(new File(path + "." + (i + 1)));
+                }
+            }
+
+            this.file.renameTo(new File(path + ".1"));
+        } else {
+            this.file.delete();
+        }
+
+        openChannel();
+    }
+
+    /**
+     * Drains the buffer until the writer is stopped and the remaining records
+     * are written.
+     */
+    public void run() {
+        try {
+            while (isRunning() || (this.head < this.tail.get())) {
+                if ((drain() == 0) && isRunning()) {
+                    LockSupport.parkNanos(POLL_DELAY);
+                }
+            }
+        } finally {
+            closeChannel();
+        }
+    }
+
+    /**
+     * Opens the log file and starts the background writing thread.
+     * 
+     * @throws IOException
+     */
+    public synchronized void start() throws IOException {
+        if (!isRunning()) {
+            openChannel();
+            this.running = true;
+            this.thread = new LoggingThreadFactory(this.logger, true)
+                    .newThread(this);
+            this.thread.start();
+        }
+    }
+
+    /**
+     * Stops the background writing thread after the buffered records are
+     * written, and closes the log file.
+     * 
+     * @throws InterruptedException
+     */
+    public synchronized void stop() throws InterruptedException {
+        if (isRunning()) {
+            this.running = false;
+            LockSupport.unpark(this.thread);
+            this.thread.join();
+            this.thread = null;
+        }
+    }
+
+    /**
+     * Writes a batch of bytes, rotating the file before if it would exceed the
+     * maximum file size.
+     * 
+     * @param bytes
+     *            The bytes to write.
+     * @throws IOException
+     */
+    private void write(byte[] bytes) throws IOException {
+        if (this.channel == null) {
+            openChannel();
+        }
+
+        if ((this.maxFileSize > 0) && (this.fileSize > 0)
+                && (this.fileSize + bytes.length > this.maxFileSize)) {
+            rotate();
+        }
+
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+
+        while (buffer.hasRemaining()) {
+            this.channel.write(buffer);
+        }
+
+        this.fileSize += bytes.length;
+    }
+
+}
@@ -37,7 +37,8 @@ import org.restlet.service.LogService;
 /**
  * Filter logging all calls after their handling by the target Restlet. The
  * current format is similar to IIS 6 logs. The logging is based on the
- * java.util.logging package.
+ * java.util.logging package, unless the log service has an asynchronous
+ * {@link AccessLogWriter}.
  * 
  * Concurrency note: instances of this class or its subclasses can be invoked by
  * several threads at the same time and therefore must be thread-safe. You
@@ -91,12 +92,23 @@ public class LogFilter extends Filter {
     @Override
     protected void afterHandle(Request request, Response response) {
         try {
-            if (request.isLoggable() && this.logLogger.isLoggable(Level.INFO)) {
+            AccessLogWriter writer = this.logService.getAccessLogWriter();
+
+            if (request.isLoggable()
+                    && ((writer != null) || this.logLogger
+                            .isLoggable(Level.INFO))) {
                 long startTime = (Long) request.getAttributes().get(
                         "org.restlet.startTime");
                 int duration = (int) (System.currentTimeMillis() - startTime);
-                this.logLogger.log(Level.INFO, this.logService
-                        .getResponseLogMessage(response, duration));
+                String message = this.logService.getResponseLogMessage(
+                        response, duration);
+
+                if (writer != null) {
+                    // Asynchronously written, never blocking by default
+                    writer.log(message);
+                } else {
+                    this.logLogger.log(Level.INFO, message);
+                }
             }
         } catch (Throwable e) {
             // Error while logging the call, cf issue #931
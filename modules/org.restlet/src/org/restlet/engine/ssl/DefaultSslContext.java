@@ -48,6 +48,9 @@ public class DefaultSslContext extends SSLContext {
         return new WrapperSslContextSpi(contextFactory, wrappedContext);
     }
 
+    /** The SSL context SPI. */
+    private final WrapperSslContextSpi contextSpi;
+
     /**
      * Constructor.
      * 
@@ -59,8 +62,41 @@ public class DefaultSslContext extends SSLContext {
      */
     public DefaultSslContext(DefaultSslContextFactory contextFactory,
             SSLContext wrappedContext) {
-        super(createContextSpi(contextFactory, wrappedContext), wrappedContext
-                .getProvider(), wrappedContext.getProtocol());
+        this(createContextSpi(contextFactory, wrappedContext), wrappedContext);
+    }
+
+    /**
+     * Constructor.
+     * 
+     * @param contextSpi
+     *            The SSL context SPI.
+     * @param wrappedContext
+     *            The wrapped SSL context.
+     */
+    private DefaultSslContext(WrapperSslContextSpi contextSpi,
+            SSLContext wrappedContext) {
+        super(contextSpi, wrappedContext.getProvider(), wrappedContext
+                .getProtocol());
+        this.contextSpi = contextSpi;
+    }
+
+    /**
+     * Returns the statistics of the handshakes of this SSL context.
+     * 
+     * @return The statistics of the handshakes of this SSL context.
+     */
+    public HandshakeStatistics getHandshakeStatistics() {
+        return this.contextSpi.getContextFactory().getHandshakeStatistics();
+    }
+
+    /**
+     * Indicates if the key or trust store files were modified since the
+     * wrapped SSL context was built or reloaded.
+     * 
+     * @return True if the key or trust store files were modified.
+     */
+    boolean isStale() {
+        return this.contextSpi.isStale();
     }
 
 }
@@ -24,18 +24,31 @@
 
 package org.restlet.engine.ssl;
 
+import java.io.File;
 import java.io.FileInputStream;
+import java.lang.reflect.Method;
 import java.security.KeyStore;
+import java.security.MessageDigest;
 import java.security.SecureRandom;
 import java.util.Arrays;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Set;
+import java.util.logging.Level;
 
+import javax.net.ssl.KeyManager;
 import javax.net.ssl.SSLContext;
 import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLParameters;
+import javax.net.ssl.SSLSessionContext;
 import javax.net.ssl.SSLSocketFactory;
+import javax.net.ssl.X509KeyManager;
 
+import org.restlet.Context;
 import org.restlet.data.Parameter;
+import org.restlet.engine.io.IoUtils;
+import org.restlet.engine.util.LruCache;
 import org.restlet.util.Series;
 
 /**
@@ -81,6 +94,14 @@ import org.restlet.util.Series;
  * specified multiple times. Used when creating SSL sockets and engines.</td>
  * </tr>
  * <tr>
+ * <td>honorCipherSuitesOrder</td>
+ * <td>boolean</td>
+ * <td>false</td>
+ * <td>Indicates if the order of the enabled cipher suites is used instead of
+ * the client's one when negotiating a cipher suite. Requires Java 8 or later,
+ * ignored otherwise.</td>
+ * </tr>
+ * <tr>
  * <td>keyManagerAlgorithm</td>
  * <td>String</td>
  * <td>System property "ssl.KeyManagerFactory.algorithm" or "SunX509"</td>
@@ -124,12 +145,44 @@ import org.restlet.util.Series;
  * <td>SSL protocol used when creating the SSLContext.</td>
  * </tr>
  * <tr>
+ * <td>reloadCheckInterval</td>
+ * <td>long</td>
+ * <td>0</td>
+ * <td>Minimum delay in milliseconds between two checks of the modification
+ * date of the key and trust store files. When a change is detected, the
+ * SSLContext is rebuilt so that new connections use the rotated certificates.
+ * Disabled if set to 0.</td>
+ * </tr>
+ * <tr>
+ * <td>reuseSslContext</td>
+ * <td>boolean</td>
+ * <td>true</td>
+ * <td>Indicates if the SSLContext built by this factory for a given set of
+ * parameters is reused by its next calls to {@link #createSslContext()}, until
+ * the key or trust store files are modified. Contexts are never shared between
+ * factory instances.</td>
+ * </tr>
+ * <tr>
  * <td>secureRandomAlgorithm</td>
  * <td>String</td>
  * <td>null (see java.security.SecureRandom)</td>
  * <td>Name of the RNG algorithm. (see java.security.SecureRandom class)</td>
  * </tr>
  * <tr>
+ * <td>sessionCacheSize</td>
+ * <td>int</td>
+ * <td>-1</td>
+ * <td>Maximum number of SSL sessions cached for resumption, 0 meaning no
+ * limit. The JSSE default is kept if set to -1.</td>
+ * </tr>
+ * <tr>
+ * <td>sessionTimeout</td>
+ * <td>int</td>
+ * <td>-1</td>
+ * <td>Timeout in seconds of the cached SSL sessions, 0 meaning no limit. The
+ * JSSE default is kept if set to -1.</td>
+ * </tr>
+ * <tr>
  * <td>trustManagerAlgorithm</td>
  * <td>String</td>
  * <td>System property "ssl.TrustManagerFactory.algorithm" or "SunX509"</td>
@@ -185,6 +238,22 @@ import org.restlet.util.Series;
  */
 public class DefaultSslContextFactory extends SslContextFactory {
 
+    /** The SSLParameters#setUseCipherSuitesOrder method, since Java 8. */
+    private static final Method setUseCipherSuitesOrder;
+
+    static {
+        Method method = null;
+
+        try {
+            method = SSLParameters.class.getMethod("setUseCipherSuitesOrder",
+                    boolean.class);
+        } catch (Exception e) {
+            // Not available before Java 8.
+        }
+
+        setUseCipherSuitesOrder = method;
+    }
+
     /** The whitespace-separated list of disabled cipher suites. */
     private volatile String[] disabledCipherSuites = null;
 
@@ -197,6 +266,19 @@ public class DefaultSslContextFactory extends SslContextFactory {
     /** The whitespace-separated list of enabled SSL protocols. */
     private volatile String[] enabledProtocols = null;
 
+    /**
+     * The SSL contexts built by this factory, by parameter set. They are never
+     * shared with other factories, whose managers could differ.
+     */
+    private final LruCache<String, SSLContext> contexts = new LruCache<String, SSLContext>(
+            16);
+
+    /** The statistics of the handshakes of the SSL contexts built. */
+    private final HandshakeStatistics handshakeStatistics = new HandshakeStatistics();
+
+    /** Indicates if the order of the enabled cipher suites is honored. */
+    private volatile boolean honorCipherSuitesOrder = false;
+
     /** The name of the KeyManager algorithm. */
     private volatile String keyManagerAlgorithm = System.getProperty(
             "ssl.KeyManagerFactory.algorithm", "SunX509");
@@ -236,9 +318,21 @@ public class DefaultSslContextFactory extends SslContextFactory {
     /** The standard name of the protocol to use when creating the SSLContext. */
     private volatile String protocol = "TLS";
 
+    /** The minimum delay between two checks of the stores modification. */
+    private volatile long reloadCheckInterval = 0L;
+
+    /** Indicates if the SSL context built for a parameter set is reused. */
+    private volatile boolean reuseSslContext = true;
+
     /** The name of the SecureRandom algorithm. */
     private volatile String secureRandomAlgorithm = null;
 
+    /** The maximum number of cached SSL sessions. */
+    private volatile int sessionCacheSize = -1;
+
+    /** The timeout in seconds of the cached SSL sessions. */
+    private volatile int sessionTimeout = -1;
+
     /** The name of the TrustManager algorithm. */
     private volatile String trustManagerAlgorithm = System.getProperty(
             "ssl.TrustManagerFactory.algorithm", "SunX509");
@@ -274,6 +368,40 @@ public class DefaultSslContextFactory extends SslContextFactory {
         throw new CloneNotSupportedException();
     }
 
+    /**
+     * Returns the configured and initialized SSLContext. Unless the
+     * "reuseSslContext" parameter is false, the SSLContext previously built by
+     * this factory for the same parameters is returned if the key and trust store files weren't
+     * modified since. Otherwise, a new one is created with
+     * {@link #createWrappedSslContext()} and wrapped with
+     * {@link #createWrapper(SSLContext)}.
+     * 
+     * @see #createWrappedSslContext()
+     */
+    @Override
+    public javax.net.ssl.SSLContext createSslContext() throws Exception {
+        javax.net.ssl.SSLContext result = null;
+
+        if (isReuseSslContext()) {
+            String key = getContextKey();
+            result = this.contexts.get(key);
+
+            if ((result instanceof DefaultSslContext)
+                    && ((DefaultSslContext) result).isStale()) {
+                result = null;
+            }
+
+            if (result == null) {
+                result = createWrapper(createWrappedSslContext());
+                this.contexts.put(key, result);
+            }
+        } else {
+            result = createWrapper(createWrappedSslContext());
+        }
+
+        return result;
+    }
+
     /**
      * Creates a configured and initialized SSLContext from the values set via
      * the various setters of this class. If <code>keyStorePath</code>,
@@ -284,12 +412,16 @@ public class DefaultSslContextFactory extends SslContextFactory {
      * <code>trustStoreType</code> are all <code>null</code>, a
      * <code>null</code> array of <code>TrustManager</code>s will be used.
      * 
+     * The key managers are wrapped to count the full handshakes in the
+     * {@link #getHandshakeStatistics()} and the session caches are configured
+     * with the "sessionCacheSize" and "sessionTimeout" parameters.
+     * 
+     * @return The SSLContext to wrap.
      * @see SSLContext#init(javax.net.ssl.KeyManager[],
      *      javax.net.ssl.TrustManager[], SecureRandom)
      */
-    @Override
-    public javax.net.ssl.SSLContext createSslContext() throws Exception {
-        javax.net.ssl.SSLContext result = null;
+    protected javax.net.ssl.SSLContext createWrappedSslContext()
+            throws Exception {
         javax.net.ssl.KeyManagerFactory kmf = null;
 
         if ((this.keyStorePath != null) || (this.keyStoreProvider != null)
@@ -363,13 +495,23 @@ public class DefaultSslContextFactory extends SslContextFactory {
             sr = SecureRandom.getInstance(this.secureRandomAlgorithm);
         }
 
-        sslContext.init(kmf != null ? kmf.getKeyManagers() : null,
-                tmf != null ? tmf.getTrustManagers() : null, sr);
+        KeyManager[] keyManagers = (kmf != null) ? kmf.getKeyManagers() : null;
 
-        // Wraps the SSL context to be able to set cipher suites and other
-        // properties after SSL engine creation for example
-        result = createWrapper(sslContext);
-        return result;
+        if (keyManagers != null) {
+            for (int i = 0; i < keyManagers.length; i++) {
+                if (keyManagers[i] instanceof X509KeyManager) {
+                    keyManagers[i] = new MonitoredKeyManager(
+                            (X509KeyManager) keyManagers[i],
+                            getHandshakeStatistics());
+                }
+            }
+        }
+
+        sslContext.init(keyManagers,
+                tmf != null ? tmf.getTrustManagers() : null, sr);
+        initSessionContext(sslContext.getServerSessionContext());
+        initSessionContext(sslContext.getClientSessionContext());
+        return sslContext;
     }
 
     /**
@@ -386,6 +528,43 @@ public class DefaultSslContextFactory extends SslContextFactory {
         return new DefaultSslContext(this, sslContext);
     }
 
+    /**
+     * Returns the key identifying the parameter set of this factory, used to
+     * reuse the SSL contexts built. The passwords are included but only a
+     * digest is kept.
+     * 
+     * @return The key identifying the parameter set of this factory.
+     */
+    private String getContextKey() throws Exception {
+        StringBuilder sb = new StringBuilder(getClass().getName());
+
+        for (Object value : new Object[] { getDisabledCipherSuites(),
+                getDisabledProtocols(), getEnabledCipherSuites(),
+                getEnabledProtocols(), getKeyManagerAlgorithm(),
+                getKeyStoreKeyPassword(), getKeyStorePassword(),
+                getKeyStorePath(), getKeyStoreProvider(), getKeyStoreType(),
+                isHonorCipherSuitesOrder(), isNeedClientAuthentication(),
+                getProtocol(), getReloadCheckInterval(),
+                getSecureRandomAlgorithm(), getSessionCacheSize(),
+                getSessionTimeout(), getTrustManagerAlgorithm(),
+                getTrustStorePassword(), getTrustStorePath(),
+                getTrustStoreProvider(), getTrustStoreType(),
+                isWantClientAuthentication() }) {
+            sb.append('\0');
+
+            if (value instanceof char[]) {
+                sb.append((char[]) value);
+            } else if (value instanceof String[]) {
+                sb.append(Arrays.toString((String[]) value));
+            } else {
+                sb.append(value);
+            }
+        }
+
+        return IoUtils.toHexString(MessageDigest.getInstance("SHA-256")
+                .digest(sb.toString().getBytes("UTF-8")));
+    }
+
     /**
      * Returns the whitespace-separated list of disabled cipher suites.
      * 
@@ -422,6 +601,16 @@ public class DefaultSslContextFactory extends SslContextFactory {
         return enabledProtocols;
     }
 
+    /**
+     * Returns the statistics of the handshakes of the SSL contexts built by
+     * this factory.
+     * 
+     * @return The statistics of the handshakes of the SSL contexts built.
+     */
+    public HandshakeStatistics getHandshakeStatistics() {
+        return handshakeStatistics;
+    }
+
     /**
      * Returns the name of the KeyManager algorithm.
      * 
@@ -485,6 +674,16 @@ public class DefaultSslContextFactory extends SslContextFactory {
         return this.protocol;
     }
 
+    /**
+     * Returns the minimum delay in milliseconds between two checks of the
+     * modification of the key and trust store files. Disabled if set to 0.
+     * 
+     * @return The minimum delay between two checks of the stores modification.
+     */
+    public long getReloadCheckInterval() {
+        return reloadCheckInterval;
+    }
+
     /**
      * Returns the name of the SecureRandom algorithm.
      * 
@@ -497,24 +696,27 @@ public class DefaultSslContextFactory extends SslContextFactory {
     /**
      * Returns the selected cipher suites. The selection is the subset of
      * supported suites that are both in the enable suites and out of the
-     * disabled suites.
+     * disabled suites. The order of the enabled suites is preserved so that it
+     * can be honored by servers, otherwise the order of the supported suites.
      * 
      * @param supportedCipherSuites
      *            The initial cipher suites to restrict.
      * @return The selected cipher suites.
      */
     public String[] getSelectedCipherSuites(String[] supportedCipherSuites) {
-        Set<String> resultSet = new HashSet<String>();
+        Set<String> resultSet = new LinkedHashSet<String>();
 
         if (supportedCipherSuites != null) {
-            for (String supportedCipherSuite : supportedCipherSuites) {
-                if (((getEnabledCipherSuites() == null) || Arrays.asList(
-                        getEnabledCipherSuites())
-                        .contains(supportedCipherSuite))
+            List<String> supported = Arrays.asList(supportedCipherSuites);
+            String[] candidates = (getEnabledCipherSuites() == null) ? supportedCipherSuites
+                    : getEnabledCipherSuites();
+
+            for (String candidate : candidates) {
+                if (supported.contains(candidate)
                         && ((getDisabledCipherSuites() == null) || !Arrays
                                 .asList(getDisabledCipherSuites()).contains(
-                                        supportedCipherSuite))) {
-                    resultSet.add(supportedCipherSuite);
+                                        candidate))) {
+                    resultSet.add(candidate);
                 }
             }
         }
@@ -551,6 +753,37 @@ public class DefaultSslContextFactory extends SslContextFactory {
         return resultSet.toArray(result);
     }
 
+    /**
+     * Returns the maximum number of cached SSL sessions, 0 meaning no limit.
+     * The JSSE default is kept if set to -1.
+     * 
+     * @return The maximum number of cached SSL sessions.
+     */
+    public int getSessionCacheSize() {
+        return sessionCacheSize;
+    }
+
+    /**
+     * Returns the timeout in seconds of the cached SSL sessions, 0 meaning no
+     * limit. The JSSE default is kept if set to -1.
+     * 
+     * @return The timeout in seconds of the cached SSL sessions.
+     */
+    public int getSessionTimeout() {
+        return sessionTimeout;
+    }
+
+    /**
+     * Returns a stamp that changes when the key or the trust store file is
+     * modified, based on their last modification dates.
+     * 
+     * @return A stamp that changes when a store file is modified.
+     */
+    public long getStoresStamp() {
+        return 31 * lastModified(getKeyStorePath())
+                + lastModified(getTrustStorePath());
+    }
+
     /**
      * Returns the name of the TrustManager algorithm.
      * 
@@ -649,7 +882,7 @@ public class DefaultSslContextFactory extends SslContextFactory {
         // Parses and set the enabled cipher suites
         String[] enabledCipherSuitesArray = helperParameters
                 .getValuesArray("enabledCipherSuites");
-        Set<String> enabledCipherSuites = new HashSet<String>();
+        Set<String> enabledCipherSuites = new LinkedHashSet<String>();
 
         for (String enabledCipherSuiteSeries : enabledCipherSuitesArray) {
             for (String enabledCipherSuite : enabledCipherSuiteSeries
@@ -685,6 +918,8 @@ public class DefaultSslContextFactory extends SslContextFactory {
             setEnabledProtocols(null);
         }
 
+        setHonorCipherSuitesOrder(Boolean.parseBoolean(helperParameters
+                .getFirstValue("honorCipherSuitesOrder", true, "false")));
         setKeyManagerAlgorithm(helperParameters.getFirstValue(
                 "keyManagerAlgorithm", true, System.getProperty(
                         "ssl.KeyManagerFactory.algorithm", "SunX509")));
@@ -704,8 +939,16 @@ public class DefaultSslContextFactory extends SslContextFactory {
         setNeedClientAuthentication(Boolean.parseBoolean(helperParameters
                 .getFirstValue("needClientAuthentication", true, "false")));
         setProtocol(helperParameters.getFirstValue("protocol", true, "TLS"));
+        setReloadCheckInterval(Long.parseLong(helperParameters.getFirstValue(
+                "reloadCheckInterval", true, "0")));
+        setReuseSslContext(Boolean.parseBoolean(helperParameters
+                .getFirstValue("reuseSslContext", true, "true")));
         setSecureRandomAlgorithm(helperParameters.getFirstValue(
                 "secureRandomAlgorithm", true));
+        setSessionCacheSize(Integer.parseInt(helperParameters.getFirstValue(
+                "sessionCacheSize", true, "-1")));
+        setSessionTimeout(Integer.parseInt(helperParameters.getFirstValue(
+                "sessionTimeout", true, "-1")));
         setTrustManagerAlgorithm(helperParameters.getFirstValue(
                 "trustManagerAlgorithm", true, System.getProperty(
                         "ssl.TrustManagerFactory.algorithm", "SunX509")));
@@ -720,6 +963,60 @@ public class DefaultSslContextFactory extends SslContextFactory {
                 .getFirstValue("wantClientAuthentication", true, "false")));
     }
 
+    /**
+     * Initializes an SSL session context with the "sessionCacheSize" and
+     * "sessionTimeout" parameters.
+     * 
+     * @param sessionContext
+     *            The SSL session context to initialize.
+     */
+    protected void initSessionContext(SSLSessionContext sessionContext) {
+        if (sessionContext != null) {
+            if (getSessionCacheSize() >= 0) {
+                sessionContext.setSessionCacheSize(getSessionCacheSize());
+            }
+
+            if (getSessionTimeout() >= 0) {
+                sessionContext.setSessionTimeout(getSessionTimeout());
+            }
+        }
+    }
+
+    /**
+     * Initializes the SSL parameters of an SSL engine or socket to honor the
+     * order of the enabled cipher suites if the "honorCipherSuitesOrder"
+     * parameter is true. Requires Java 8 or later.
+     * 
+     * @param sslParameters
+     *            The SSL parameters to initialize.
+     * @return True if the SSL parameters were modified.
+     */
+    public boolean initSslParameters(SSLParameters sslParameters) {
+        boolean result = false;
+
+        if (isHonorCipherSuitesOrder() && (setUseCipherSuitesOrder != null)) {
+            try {
+                setUseCipherSuitesOrder.invoke(sslParameters, Boolean.TRUE);
+                result = true;
+            } catch (Exception e) {
+                Context.getCurrentLogger().log(Level.FINE,
+                        "Unable to honor the cipher suites order", e);
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Indicates if the order of the enabled cipher suites is used instead of
+     * the client's one when negotiating a cipher suite.
+     * 
+     * @return True if the order of the enabled cipher suites is honored.
+     */
+    public boolean isHonorCipherSuitesOrder() {
+        return honorCipherSuitesOrder;
+    }
+
     /**
      * Indicates if we require client certificate authentication.
      * 
@@ -729,6 +1026,17 @@ public class DefaultSslContextFactory extends SslContextFactory {
         return needClientAuthentication;
     }
 
+    /**
+     * Indicates if the SSL context built for a given set of parameters is
+     * reused by the next calls to {@link #createSslContext()}, until the key
+     * or trust store files are modified.
+     * 
+     * @return True if the SSL context built for a parameter set is reused.
+     */
+    public boolean isReuseSslContext() {
+        return reuseSslContext;
+    }
+
     /**
      * Indicates if we would like client certificate authentication.
      * 
@@ -738,6 +1046,18 @@ public class DefaultSslContextFactory extends SslContextFactory {
         return wantClientAuthentication;
     }
 
+    /**
+     * Returns the last modification date of a store file.
+     * 
+     * @param path
+     *            The path of the store file.
+     * @return The last modification date or 0.
+     */
+    private static long lastModified(String path) {
+        return ((path == null) || "NONE".equals(path)) ? 0L : new File(path)
+                .lastModified();
+    }
+
     /**
      * Sets the whitespace-separated list of disabled cipher suites.
      * 
@@ -780,6 +1100,18 @@ public class DefaultSslContextFactory extends SslContextFactory {
         this.enabledProtocols = enabledProtocols;
     }
 
+    /**
+     * Indicates if the order of the enabled cipher suites should be used
+     * instead of the client's one when negotiating a cipher suite. Requires
+     * Java 8 or later, ignored otherwise.
+     * 
+     * @param honorCipherSuitesOrder
+     *            True if the order of the enabled cipher suites is honored.
+     */
+    public void setHonorCipherSuitesOrder(boolean honorCipherSuitesOrder) {
+        this.honorCipherSuitesOrder = honorCipherSuitesOrder;
+    }
+
     /**
      * Sets the KeyManager algorithm. The default value is that of the
      * <i>ssl.KeyManagerFactory.algorithm</i> system property, or
@@ -896,6 +1228,31 @@ public class DefaultSslContextFactory extends SslContextFactory {
         this.protocol = protocol;
     }
 
+    /**
+     * Sets the minimum delay in milliseconds between two checks of the
+     * modification of the key and trust store files. When a change is
+     * detected, the SSL context is rebuilt so that new connections use the
+     * rotated certificates. Disabled if set to 0.
+     * 
+     * @param reloadCheckInterval
+     *            The minimum delay between two checks of the stores
+     *            modification.
+     */
+    public void setReloadCheckInterval(long reloadCheckInterval) {
+        this.reloadCheckInterval = reloadCheckInterval;
+    }
+
+    /**
+     * Indicates if the SSL context built for a given set of parameters should
+     * be reused by the next calls to {@link #createSslContext()}.
+     * 
+     * @param reuseSslContext
+     *            True if the SSL context built for a parameter set is reused.
+     */
+    public void setReuseSslContext(boolean reuseSslContext) {
+        this.reuseSslContext = reuseSslContext;
+    }
+
     /**
      * Sets the SecureRandom algorithm. The default value is <i>null</i>, in
      * which case the default SecureRandom would be used.
@@ -907,6 +1264,28 @@ public class DefaultSslContextFactory extends SslContextFactory {
         this.secureRandomAlgorithm = secureRandomAlgorithm;
     }
 
+    /**
+     * Sets the maximum number of cached SSL sessions, 0 meaning no limit. The
+     * JSSE default is kept if set to -1.
+     * 
+     * @param sessionCacheSize
+     *            The maximum number of cached SSL sessions.
+     */
+    public void setSessionCacheSize(int sessionCacheSize) {
+        this.sessionCacheSize = sessionCacheSize;
+    }
+
+    /**
+     * Sets the timeout in seconds of the cached SSL sessions, 0 meaning no
+     * limit. The JSSE default is kept if set to -1.
+     * 
+     * @param sessionTimeout
+     *            The timeout in seconds of the cached SSL sessions.
+     */
+    public void setSessionTimeout(int sessionTimeout) {
+        this.sessionTimeout = sessionTimeout;
+    }
+
     /**
      * Sets the TrustManager algorithm. The default value is that of the
      * <i>ssl.TrustManagerFactory.algorithm</i> system property, or
@@ -0,0 +1,125 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or or EPL 1.0 (the "Licenses"). You can
+ * select the license that you prefer but you may not use this file except in
+ * compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+package org.restlet.engine.ssl;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.net.ssl.SSLSession;
+
+import org.restlet.engine.util.Histogram;
+
+/**
+ * Handshake statistics of the SSL contexts created by a
+ * {@link DefaultSslContextFactory}. The full handshakes are counted when the
+ * server key material is selected, which doesn't happen when a session is
+ * resumed. The handshake latencies are recorded in milliseconds by the server
+ * connectors calling {@link #recordSession(SSLSession)} when they receive the
+ * first request of a new session, as the time elapsed since the creation of
+ * the session.
+ * 
+ * @author Jerome Louvel
+ */
+public class HandshakeStatistics {
+
+    /** The name of the session value marking the recorded sessions. */
+    private static final String RECORDED = "org.restlet.engine.ssl.recorded";
+
+    /** The number of full handshakes. */
+    private final AtomicLong fullHandshakes;
+
+    /** The handshake latencies, in milliseconds. */
+    private final Histogram latencies;
+
+    /** The number of key and trust stores reloads. */
+    private final AtomicLong reloads;
+
+    /**
+     * Constructor.
+     */
+    public HandshakeStatistics() {
+        this.fullHandshakes = new AtomicLong();
+        this.latencies = new Histogram();
+        this.reloads = new AtomicLong();
+    }
+
+    /**
+     * Returns the number of full handshakes.
+     * 
+     * @return The number of full handshakes.
+     */
+    public long getFullHandshakeCount() {
+        return this.fullHandshakes.get();
+    }
+
+    /**
+     * Returns the handshake latencies, in milliseconds.
+     * 
+     * @return The handshake latencies, in milliseconds.
+     */
+    public Histogram getLatencies() {
+        return this.latencies;
+    }
+
+    /**
+     * Returns the number of times the SSL contexts were rebuilt after a change
+     * of the key or trust store files.
+     * 
+     * @return The number of key and trust stores reloads.
+     */
+    public long getReloadCount() {
+        return this.reloads.get();
+    }
+
+    /**
+     * Records a full handshake.
+     */
+    public void recordFullHandshake() {
+        this.fullHandshakes.incrementAndGet();
+    }
+
+    /**
+     * Records a reload of the key and trust stores.
+     */
+    public void recordReload() {
+        this.reloads.incrementAndGet();
+    }
+
+    /**
+     * Records the latency of the handshake of a session, the first time a
+     * request is received on it. Resumed sessions are already marked and
+     * ignored.
+     * 
+     * @param session
+     *            The SSL session of the received request.
+     */
+    public void recordSession(SSLSession session) {
+        if ((session != null) && (session.getValue(RECORDED) == null)) {
+            session.putValue(RECORDED, Boolean.TRUE);
+            this.latencies.record(Math.max(0L, System.currentTimeMillis()
+                    - session.getCreationTime()));
+        }
+    }
+
+}
@@ -0,0 +1,132 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or or EPL 1.0 (the "Licenses"). You can
+ * select the license that you prefer but you may not use this file except in
+ * compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+package org.restlet.engine.ssl;
+
+import java.net.Socket;
+import java.security.Principal;
+import java.security.PrivateKey;
+import java.security.cert.X509Certificate;
+
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.X509ExtendedKeyManager;
+import javax.net.ssl.X509KeyManager;
+
+/**
+ * Key manager that counts the full handshakes in the
+ * {@link HandshakeStatistics} as the server key material is only selected when
+ * a session isn't resumed. Delegates all the calls to the wrapped key manager.
+ * 
+ * @author Jerome Louvel
+ */
+class MonitoredKeyManager extends X509ExtendedKeyManager {
+
+    /** The handshake statistics to update. */
+    private final HandshakeStatistics statistics;
+
+    /** The wrapped key manager. */
+    private final X509KeyManager wrappedKeyManager;
+
+    /**
+     * Constructor.
+     * 
+     * @param wrappedKeyManager
+     *            The wrapped key manager.
+     * @param statistics
+     *            The handshake statistics to update.
+     */
+    public MonitoredKeyManager(X509KeyManager wrappedKeyManager,
+            HandshakeStatistics statistics) {
+        this.statistics = statistics;
+        this.wrappedKeyManager = wrappedKeyManager;
+    }
+
+    @Override
+    public String chooseClientAlias(String[] keyType, Principal[] issuers,
+            Socket socket) {
+        return this.wrappedKeyManager.chooseClientAlias(keyType, issuers,
+                socket);
+    }
+
+    @Override
+    public String chooseEngineClientAlias(String[] keyType,
+            Principal[] issuers, SSLEngine engine) {
+        return (this.wrappedKeyManager instanceof X509ExtendedKeyManager) ? ((X509ExtendedKeyManager) this.wrappedKeyManager)
+                .chooseEngineClientAlias(keyType, issuers, engine) : super
+                .chooseEngineClientAlias(keyType, issuers, engine);
+    }
+
+    @Override
+    public String chooseEngineServerAlias(String keyType, Principal[] issuers,
+            SSLEngine engine) {
+        return selected((this.wrappedKeyManager instanceof X509ExtendedKeyManager) ? ((X509ExtendedKeyManager) this.wrappedKeyManager)
+                .chooseEngineServerAlias(keyType, issuers, engine) : super
+                .chooseEngineServerAlias(keyType, issuers, engine));
+    }
+
+    @Override
+    public String chooseServerAlias(String keyType, Principal[] issuers,
+            Socket socket) {
+        return selected(this.wrappedKeyManager.chooseServerAlias(keyType,
+                issuers, socket));
+    }
+
+    @Override
+    public X509Certificate[] getCertificateChain(String alias) {
+        return this.wrappedKeyManager.getCertificateChain(alias);
+    }
+
+    @Override
+    public String[] getClientAliases(String keyType, Principal[] issuers) {
+        return this.wrappedKeyManager.getClientAliases(keyType, issuers);
+    }
+
+    @Override
+    public PrivateKey getPrivateKey(String alias) {
+        return this.wrappedKeyManager.getPrivateKey(alias);
+    }
+
+    @Override
+    public String[] getServerAliases(String keyType, Principal[] issuers) {
+        return this.wrappedKeyManager.getServerAliases(keyType, issuers);
+    }
+
+    /**
+     * Counts a full handshake if a server alias was selected. The key types of
+     * the candidate cipher suites are tried in turn, so the unsuccessful
+     * selections aren't counted.
+     * 
+     * @param alias
+     *            The selected alias or null.
+     * @return The selected alias or null.
+     */
+    private String selected(String alias) {
+        if (alias != null) {
+            this.statistics.recordFullHandshake();
+        }
+
+        return alias;
+    }
+
+}
@@ -24,6 +24,7 @@
 
 package org.restlet.engine.ssl;
 
+import java.util.Map;
 import java.util.StringTokenizer;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
@@ -110,11 +111,74 @@ public class SslUtils {
         return keySize;
     }
 
+    // [ifndef gae] method
+    /**
+     * Creates the SSL context factory described by the "sslContextFactory"
+     * parameter (class name to instantiate), or a default one.
+     * 
+     * @param helper
+     *            The helper to use.
+     * @return The SSL context factory.
+     */
+    private static SslContextFactory createSslContextFactory(
+            RestletHelper<?> helper) {
+        SslContextFactory result = null;
+
+        String[] sslContextFactoryNames = helper.getHelpedParameters()
+                .getValuesArray("sslContextFactory");
+
+        if (sslContextFactoryNames != null) {
+            for (String sslContextFactoryName : sslContextFactoryNames) {
+                if ((result == null) && (sslContextFactoryName != null)) {
+                    try {
+                        Class<? extends SslContextFactory> sslContextFactoryClass = Class
+                                .forName(sslContextFactoryName).asSubclass(
+                                        SslContextFactory.class);
+                        result = sslContextFactoryClass.newInstance();
+                        result.init(helper.getHelpedParameters());
+                    } catch (ClassNotFoundException e) {
+                        Context.getCurrentLogger().log(
+                                Level.WARNING,
+                                "Unable to find SslContextFactory class: "
+                                        + sslContextFactoryName, e);
+                    } catch (ClassCastException e) {
+                        Context.getCurrentLogger()
+                                .log(Level.WARNING,
+                                        "Class "
+                                                + sslContextFactoryName
+                                                + " does not implement SslContextFactory.",
+                                        e);
+                    } catch (InstantiationException e) {
+                        Context.getCurrentLogger().log(
+                                Level.WARNING,
+                                "Could not instantiate class "
+                                        + sslContextFactoryName
+                                        + " with default constructor.", e);
+                    } catch (IllegalAccessException e) {
+                        Context.getCurrentLogger().log(
+                                Level.WARNING,
+                                "Illegal access when instantiating class "
+                                        + sslContextFactoryName + ".", e);
+                    }
+                }
+            }
+        }
+
+        if (result == null) {
+            result = new DefaultSslContextFactory();
+            result.init(helper.getHelpedParameters());
+        }
+
+        return result;
+    }
+
     // [ifndef gae] method
     /**
      * Returns the SSL context factory. It first look for a "sslContextFactory"
      * attribute (instance), then for a "sslContextFactory" parameter (class
-     * name to instantiate).
+     * name to instantiate). The factory created from the parameters is kept in
+     * the "sslContextFactory" attribute of the helper, so that the following
+     * calls reuse it along with the SSL contexts it built and their sessions.
      * 
      * @param helper
      *            The helper to use.
@@ -126,52 +190,19 @@ public class SslUtils {
                 : helper.getContext().getAttributes().get("sslContextFactory"));
 
         if (result == null) {
-            String[] sslContextFactoryNames = helper.getHelpedParameters()
-                    .getValuesArray("sslContextFactory");
-
-            if (sslContextFactoryNames != null) {
-                for (String sslContextFactoryName : sslContextFactoryNames) {
-                    if ((result == null) && (sslContextFactoryName != null)) {
-                        try {
-                            Class<? extends SslContextFactory> sslContextFactoryClass = Class
-                                    .forName(sslContextFactoryName).asSubclass(
-                                            SslContextFactory.class);
-                            result = sslContextFactoryClass.newInstance();
-                            result.init(helper.getHelpedParameters());
-                        } catch (ClassNotFoundException e) {
-                            Context.getCurrentLogger().log(
-                                    Level.WARNING,
-                                    "Unable to find SslContextFactory class: "
-                                            + sslContextFactoryName, e);
-                        } catch (ClassCastException e) {
-                            Context.getCurrentLogger()
-                                    .log(Level.WARNING,
-                                            "Class "
-                                                    + sslContextFactoryName
-                                                    + " does not implement SslContextFactory.",
-                                            e);
-                        } catch (InstantiationException e) {
-                            Context.getCurrentLogger().log(
-                                    Level.WARNING,
-                                    "Could not instantiate class "
-                                            + sslContextFactoryName
-                                            + " with default constructor.", e);
-                        } catch (IllegalAccessException e) {
-                            Context.getCurrentLogger().log(
-                                    Level.WARNING,
-                                    "Illegal access when instantiating class "
-                                            + sslContextFactoryName + ".", e);
-                        }
-                    }
+            Map<String, Object> attributes = helper.getAttributes();
+
+            synchronized (attributes) {
+                result = (SslContextFactory) attributes
+                        .get("sslContextFactory");
+
+                if (result == null) {
+                    result = createSslContextFactory(helper);
+                    attributes.put("sslContextFactory", result);
                 }
             }
         }
 
-        if (result == null) {
-            result = new DefaultSslContextFactory();
-            result.init(helper.getHelpedParameters());
-        }
-
         return result;
     }
 
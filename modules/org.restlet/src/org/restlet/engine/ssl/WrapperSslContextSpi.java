@@ -26,19 +26,27 @@ package org.restlet.engine.ssl;
 
 import java.security.KeyManagementException;
 import java.security.SecureRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
 
 import javax.net.ssl.KeyManager;
 import javax.net.ssl.SSLContext;
 import javax.net.ssl.SSLContextSpi;
 import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLParameters;
 import javax.net.ssl.SSLServerSocketFactory;
 import javax.net.ssl.SSLSessionContext;
 import javax.net.ssl.SSLSocketFactory;
 import javax.net.ssl.TrustManager;
 
+import org.restlet.Context;
+
 /**
  * Default SSL context SPI capable or setting additional properties on the
- * created SSL engines and socket factories.
+ * created SSL engines and socket factories. If the "reloadCheckInterval"
+ * parameter of the SSL context factory is set, the wrapped SSL context is
+ * rebuilt when the key or trust store files are modified, the new connections
+ * using the rotated certificates without restarting the connectors.
  * 
  * @author Jerome Louvel
  */
@@ -47,8 +55,14 @@ public class WrapperSslContextSpi extends SSLContextSpi {
     /** The parent SSL context factory. */
     private final DefaultSslContextFactory contextFactory;
 
+    /** The time of the next check of the stores modification. */
+    private final AtomicLong nextReloadCheck;
+
+    /** The stamp of the store files used by the wrapped SSL context. */
+    private volatile long storesStamp;
+
     /** The wrapped SSL context. */
-    private final SSLContext wrappedContext;
+    private volatile SSLContext wrappedContext;
 
     /**
      * Constructor.
@@ -61,6 +75,9 @@ public class WrapperSslContextSpi extends SSLContextSpi {
     public WrapperSslContextSpi(DefaultSslContextFactory contextFactory,
             SSLContext wrappedContext) {
         this.contextFactory = contextFactory;
+        this.nextReloadCheck = new AtomicLong(System.currentTimeMillis()
+                + contextFactory.getReloadCheckInterval());
+        this.storesStamp = contextFactory.getStoresStamp();
         this.wrappedContext = wrappedContext;
     }
 
@@ -121,14 +138,39 @@ public class WrapperSslContextSpi extends SSLContextSpi {
     }
 
     /**
-     * Returns the wrapped SSL context.
+     * Returns the wrapped SSL context. It is rebuilt first if the key or trust
+     * store files were modified since it was built, at most once per reload
+     * check interval.
      * 
      * @return The wrapped SSL context.
      */
     protected SSLContext getWrappedContext() {
+        long interval = getContextFactory().getReloadCheckInterval();
+
+        if (interval > 0) {
+            long next = this.nextReloadCheck.get();
+            long now = System.currentTimeMillis();
+
+            if ((now >= next)
+                    && this.nextReloadCheck.compareAndSet(next, now + interval)
+                    && isStale()) {
+                reload();
+            }
+        }
+
         return wrappedContext;
     }
 
+    /**
+     * Indicates if the key or trust store files were modified since the
+     * wrapped SSL context was built.
+     * 
+     * @return True if the key or trust store files were modified.
+     */
+    protected boolean isStale() {
+        return getContextFactory().getStoresStamp() != this.storesStamp;
+    }
+
     /**
      * Initializes the SSL engine with additional parameters from the SSL
      * context factory.
@@ -157,6 +199,33 @@ public class WrapperSslContextSpi extends SSLContextSpi {
                             .getSelectedSslProtocols(
                                     sslEngine.getSupportedProtocols()));
         }
+
+        SSLParameters sslParameters = sslEngine.getSSLParameters();
+
+        if (getContextFactory().initSslParameters(sslParameters)) {
+            sslEngine.setSSLParameters(sslParameters);
+        }
+    }
+
+    /**
+     * Rebuilds the wrapped SSL context with the current key and trust store
+     * files. The current SSL context is kept if the rebuild fails, for example
+     * if a store file is being written.
+     */
+    protected void reload() {
+        long stamp = getContextFactory().getStoresStamp();
+
+        try {
+            this.wrappedContext = getContextFactory().createWrappedSslContext();
+            this.storesStamp = stamp;
+            getContextFactory().getHandshakeStatistics().recordReload();
+            Context.getCurrentLogger().info(
+                    "SSL context reloaded after a change of the key or trust store files");
+        } catch (Exception e) {
+            Context.getCurrentLogger().log(Level.WARNING,
+                    "Unable to reload the SSL context, keeping the current one",
+                    e);
+        }
     }
 
 }
@@ -29,6 +29,7 @@ import java.net.InetAddress;
 import java.net.Socket;
 import java.net.UnknownHostException;
 
+import javax.net.ssl.SSLParameters;
 import javax.net.ssl.SSLSocket;
 import javax.net.ssl.SSLSocketFactory;
 
@@ -163,6 +164,12 @@ public class WrapperSslSocketFactory extends SSLSocketFactory {
                                     sslSocket.getSupportedProtocols()));
         }
 
+        SSLParameters sslParameters = sslSocket.getSSLParameters();
+
+        if (getContextFactory().initSslParameters(sslParameters)) {
+            sslSocket.setSSLParameters(sslParameters);
+        }
+
         return sslSocket;
     }
 
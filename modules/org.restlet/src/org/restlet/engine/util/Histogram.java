@@ -0,0 +1,266 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or or EPL 1.0 (the "Licenses"). You can
+ * select the license that you prefer but you may not use this file except in
+ * compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+
+package org.restlet.engine.util;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Concurrent histogram of positive values, such as latencies in microseconds.
+ * The values are counted in log-linear buckets, each power of two being split
+ * into eight buckets, which bounds the relative error of the quantiles to
+ * 12.5%. The counters are striped by thread to limit the contention between
+ * cores, and recording a value never allocates memory.
+ * 
+ * @author Jerome Louvel
+ */
+public class Histogram {
+
+    /** The number of buckets. */
+    private static final int BUCKETS;
+
+    /** The highest exponent counted precisely, larger values being capped. */
+    private static final int MAX_EXPONENT = 40;
+
+    /** The padding between the sums of two stripes, against false sharing. */
+    private static final int PADDING = 8;
+
+    /** The number of bits giving the sub-bucket in a power of two. */
+    private static final int SUB_BITS = 3;
+
+    /** The number of sub-buckets in a power of two. */
+    private static final int SUB_COUNT = 1 << SUB_BITS;
+
+    static {
+        BUCKETS = (MAX_EXPONENT - SUB_BITS + 2) * SUB_COUNT;
+    }
+
+    /**
+     * Returns the index of the bucket counting a value.
+     * 
+     * @param value
+     *            The value.
+     * @return The index of the bucket.
+     */
+    private static int getBucket(long value) {
+        if (value < SUB_COUNT) {
+            return (int) Math.max(0L, value);
+        }
+
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+
+        if (exponent > MAX_EXPONENT) {
+            return BUCKETS - 1;
+        }
+
+        return (exponent - SUB_BITS + 1) * SUB_COUNT
+                + (int) ((value >>> (exponent - SUB_BITS)) & (SUB_COUNT - 1));
+    }
+
+    /**
+     * Returns the highest value counted by a bucket.
+     * 
+     * @param bucket
+     *            The index of the bucket.
+     * @return The highest value counted by the bucket.
+     */
+    private static long getHighestValue(int bucket) {
+        if (bucket < SUB_COUNT) {
+            return bucket;
+        }
+
+        int shift = (bucket / SUB_COUNT) - 1;
+        long lowest = (long) (SUB_COUNT + (bucket % SUB_COUNT)) << shift;
+        return lowest + (1L << shift) - 1;
+    }
+
+    /** The bucket counters, stripe after stripe. */
+    private final AtomicLongArray counts;
+
+    /** The highest recorded value. */
+    private final AtomicLongArray max;
+
+    /** The mask giving the stripe of a thread. */
+    private final int stripeMask;
+
+    /** The sums of the recorded values, one per padded stripe. */
+    private final AtomicLongArray sums;
+
+    /**
+     * Constructor. Uses one stripe per available processor, up to eight.
+     */
+    public Histogram() {
+        this(Math.min(8, Runtime.getRuntime().availableProcessors()));
+    }
+
+    /**
+     * Constructor.
+     * 
+     * @param stripes
+     *            The number of stripes, rounded up to a power of two.
+     */
+    public Histogram(int stripes) {
+        int size = 1;
+
+        while (size < stripes) {
+            size <<= 1;
+        }
+
+        this.counts = new AtomicLongArray(size * BUCKETS);
+        this.max = new AtomicLongArray(size * PADDING);
+        this.stripeMask = size - 1;
+        this.sums = new AtomicLongArray(size * PADDING);
+    }
+
+    /**
+     * Resets all the counters.
+     */
+    public void clear() {
+        for (int i = 0; i < this.counts.length(); i++) {
+            this.counts.set(i, 0L);
+        }
+
+        for (int i = 0; i < this.sums.length(); i++) {
+            this.max.set(i, 0L);
+            this.sums.set(i, 0L);
+        }
+    }
+
+    /**
+     * Returns the number of recorded values.
+     * 
+     * @return The number of recorded values.
+     */
+    public long getCount() {
+        long result = 0L;
+
+        for (int i = 0; i < this.counts.length(); i++) {
+            result += this.counts.get(i);
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns the counts of the buckets, merged across the stripes.
+     * 
+     * @return The counts of the buckets.
+     */
+    private long[] getCounts() {
+        long[] result = new long[BUCKETS];
+
+        for (int i = 0; i < this.counts.length(); i++) {
+            result[i % BUCKETS] += this.counts.get(i);
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns the highest recorded value.
+     * 
+     * @return The highest recorded value.
+     */
+    public long getMax() {
+        long result = 0L;
+
+        for (int i = 0; i < this.max.length(); i += PADDING) {
+            result = Math.max(result, this.max.get(i));
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns the value at a given quantile, as the highest value of the
+     * bucket containing it.
+     * 
+     * @param quantile
+     *            The quantile, between 0 and 1.
+     * @return The value at the quantile, or 0 if no value was recorded.
+     */
+    public long getQuantile(double quantile) {
+        long[] buckets = getCounts();
+        long total = 0L;
+
+        for (long count : buckets) {
+            total += count;
+        }
+
+        if (total == 0L) {
+            return 0L;
+        }
+
+        long rank = Math.max(1L, (long) Math.ceil(quantile * total));
+        long seen = 0L;
+
+        for (int i = 0; i < buckets.length; i++) {
+            seen += buckets[i];
+
+            if (seen >= rank) {
+                return Math.min(getHighestValue(i), getMax());
+            }
+        }
+
+        return getMax();
+    }
+
+    /**
+     * Returns the sum of the recorded values.
+     * 
+     * @return The sum of the recorded values.
+     */
+    public long getSum() {
+        long result = 0L;
+
+        for (int i = 0; i < this.sums.length(); i += PADDING) {
+            result += this.sums.get(i);
+        }
+
+        return result;
+    }
+
+    /**
+     * Records a value. Negative values are recorded as 0.
+     * 
+     * @param value
+     *            The value to record.
+     */
+    public void record(long value) {
+        long positive = Math.max(0L, value);
+        int stripe = (int) Thread.currentThread().getId() & this.stripeMask;
+        this.counts.incrementAndGet(stripe * BUCKETS + getBucket(positive));
+        this.sums.addAndGet(stripe * PADDING, positive);
+
+        int index = stripe * PADDING;
+        long current;
+
+        while (positive > (current = this.max.get(index))
+                && !this.max.compareAndSet(index, current, positive)) {
+            // Retry
+        }
+    }
+
+}
@@ -0,0 +1,310 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or or EPL 1.0 (the "Licenses"). You can
+ * select the license that you prefer but you may not use this file except in
+ * compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+package org.restlet.engine.util;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded cache evicting the least recently used entries once the total weight
+ * of the entries exceeds a maximum weight. By default, each entry weighs 1, so
+ * the maximum weight is a maximum number of entries. Override the
+ * {@link #weigh(Object, Object)} method to bound the cache by size instead.<br>
+ * <br>
+ * Concurrency note: instances of this class can be invoked by several threads
+ * at the same time.
+ * 
+ * @author Jerome Louvel
+ * 
+ * @param <K>
+ *            The key type.
+ * @param <V>
+ *            The value type.
+ */
+public class LruCache<K, V> {
+
+    /** The number of successful lookups. */
+    private final AtomicLong hits;
+
+    /** The entries, in access order. */
+    private final LinkedHashMap<K, V> map;
+
+    /** The maximum total weight. */
+    private volatile long maxWeight;
+
+    /** The number of failed lookups. */
+    private final AtomicLong misses;
+
+    /** The current total weight. */
+    private long weight;
+
+    /**
+     * Constructor.
+     * 
+     * @param maxWeight
+     *            The maximum total weight.
+     */
+    public LruCache(long maxWeight) {
+        this.hits = new AtomicLong();
+        this.map = new LinkedHashMap<K, V>(16, 0.75f, true);
+        this.maxWeight = maxWeight;
+        this.misses = new AtomicLong();
+        this.weight = 0L;
+    }
+
+    /**
+     * Removes all the entries.
+     */
+    public void clear() {
+        List<Map.Entry<K, V>> removed;
+
+        synchronized (this.map) {
+            removed = new ArrayList<Map.Entry<K, V>>(this.map.entrySet());
+            this.map.clear();
+            this.weight = 0L;
+        }
+
+        for (Map.Entry<K, V> entry : removed) {
+            evicted(entry.getKey(), entry.getValue());
+        }
+    }
+
+    /**
+     * Indicates if a value is associated to a key, without marking it as
+     * recently used nor updating the statistics.
+     * 
+     * @param key
+     *            The key.
+     * @return True if a value is associated to the key.
+     */
+    public boolean containsKey(K key) {
+        synchronized (this.map) {
+            return this.map.containsKey(key);
+        }
+    }
+
+    /**
+     * Callback invoked when an entry is evicted, replaced or removed. Does
+     * nothing by default.
+     * 
+     * @param key
+     *            The key.
+     * @param value
+     *            The value.
+     */
+    protected void evicted(K key, V value) {
+        // To be overriden
+    }
+
+    /**
+     * Returns the value associated to a key and marks it as recently used.
+     * 
+     * @param key
+     *            The key.
+     * @return The value or null.
+     */
+    public V get(K key) {
+        V result;
+
+        synchronized (this.map) {
+            result = this.map.get(key);
+        }
+
+        if (result == null) {
+            this.misses.incrementAndGet();
+        } else {
+            this.hits.incrementAndGet();
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns the number of successful lookups.
+     * 
+     * @return The number of successful lookups.
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * Returns the maximum total weight.
+     * 
+     * @return The maximum total weight.
+     */
+    public long getMaxWeight() {
+        return maxWeight;
+    }
+
+    /**
+     * Returns the number of failed lookups.
+     * 
+     * @return The number of failed lookups.
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Returns the current total weight.
+     * 
+     * @return The current total weight.
+     */
+    public long getWeight() {
+        synchronized (this.map) {
+            return this.weight;
+        }
+    }
+
+    /**
+     * Returns a snapshot of the keys, from the least to the most recently used.
+     * 
+     * @return A snapshot of the keys.
+     */
+    public List<K> keys() {
+        synchronized (this.map) {
+            return new ArrayList<K>(this.map.keySet());
+        }
+    }
+
+    /**
+     * Associates a value to a key, then evicts the least recently used entries
+     * if needed. A value heavier than the maximum weight isn't stored.
+     * 
+     * @param key
+     *            The key.
+     * @param value
+     *            The value.
+     * @return True if the value was stored.
+     */
+    public boolean put(K key, V value) {
+        long valueWeight = weigh(key, value);
+        List<Map.Entry<K, V>> removed = new ArrayList<Map.Entry<K, V>>();
+        boolean result = (valueWeight <= getMaxWeight());
+
+        synchronized (this.map) {
+            V previous = result ? this.map.put(key, value) : this.map
+                    .remove(key);
+
+            if (previous != null) {
+                this.weight -= weigh(key, previous);
+                removed.add(new AbstractMap.SimpleEntry<K, V>(key,
+                        previous));
+            }
+
+            if (result) {
+                this.weight += valueWeight;
+                Iterator<Map.Entry<K, V>> iter = this.map.entrySet()
+                        .iterator();
+
+                while ((this.weight > getMaxWeight()) && iter.hasNext()) {
+                    Map.Entry<K, V> eldest = iter.next();
+
+                    if (eldest.getValue() != value) {
+                        this.weight -= weigh(eldest.getKey(), eldest
+                                .getValue());
+                        removed.add(new AbstractMap.SimpleEntry<K, V>(
+                                eldest));
+                        iter.remove();
+                    }
+                }
+            }
+        }
+
+        for (Map.Entry<K, V> entry : removed) {
+            evicted(entry.getKey(), entry.getValue());
+        }
+
+        return result;
+    }
+
+    /**
+     * Removes the value associated to a key.
+     * 
+     * @param key
+     *            The key.
+     * @return The removed value or null.
+     */
+    public V remove(K key) {
+        V result;
+
+        synchronized (this.map) {
+            result = this.map.remove(key);
+
+            if (result != null) {
+                this.weight -= weigh(key, result);
+            }
+        }
+
+        if (result != null) {
+            evicted(key, result);
+        }
+
+        return result;
+    }
+
+    /**
+     * Sets the maximum total weight. Entries are evicted on the next insertion
+     * if needed.
+     * 
+     * @param maxWeight
+     *            The maximum total weight.
+     */
+    public void setMaxWeight(long maxWeight) {
+        this.maxWeight = maxWeight;
+    }
+
+    /**
+     * Returns the number of entries.
+     * 
+     * @return The number of entries.
+     */
+    public int size() {
+        synchronized (this.map) {
+            return this.map.size();
+        }
+    }
+
+    /**
+     * Returns the weight of an entry. Returns 1 by default. The weight of an
+     * entry must not change while it is stored.
+     * 
+     * @param key
+     *            The key.
+     * @param value
+     *            The value.
+     * @return The weight of the entry.
+     */
+    protected long weigh(K key, V value) {
+        return 1L;
+    }
+
+}
@@ -25,15 +25,29 @@
 package org.restlet.representation;
 
 import java.io.ByteArrayInputStream;
+import java.io.InputStream;
 
 import org.restlet.data.MediaType;
+import org.restlet.engine.io.SeekableSource;
 
 /**
- * Representation wrapping a byte array.
+ * Representation wrapping a byte array. Streams positioned at a given index
+ * can be obtained several times, so that byte ranges are served without
+ * reading the preceding content.
  * 
  * @author Jerome Louvel
  */
-public class ByteArrayRepresentation extends InputRepresentation {
+public class ByteArrayRepresentation extends InputRepresentation implements
+        SeekableSource {
+
+    /** The wrapped byte array. */
+    private final byte[] byteArray;
+
+    /** The length exposed inside the byte array. */
+    private final int length;
+
+    /** The offset inside the byte array. */
+    private final int offSet;
 
     /**
      * Constructor.
@@ -43,6 +57,9 @@ public class ByteArrayRepresentation extends InputRepresentation {
      */
     public ByteArrayRepresentation(byte[] byteArray) {
         super(new ByteArrayInputStream(byteArray));
+        this.byteArray = byteArray;
+        this.length = byteArray.length;
+        this.offSet = 0;
     }
 
     /**
@@ -56,6 +73,9 @@ public class ByteArrayRepresentation extends InputRepresentation {
      */
     public ByteArrayRepresentation(byte[] byteArray, int offSet, int length) {
         super(new ByteArrayInputStream(byteArray, offSet, length));
+        this.byteArray = byteArray;
+        this.length = length;
+        this.offSet = offSet;
     }
 
     /**
@@ -71,6 +91,9 @@ public class ByteArrayRepresentation extends InputRepresentation {
     public ByteArrayRepresentation(byte[] byteArray, int offSet, int length,
             MediaType mediaType) {
         super(new ByteArrayInputStream(byteArray, offSet, length), mediaType);
+        this.byteArray = byteArray;
+        this.length = length;
+        this.offSet = offSet;
     }
 
     /**
@@ -89,6 +112,9 @@ public class ByteArrayRepresentation extends InputRepresentation {
             MediaType mediaType, long expectedSize) {
         super(new ByteArrayInputStream(byteArray, offSet, length), mediaType,
                 expectedSize);
+        this.byteArray = byteArray;
+        this.length = length;
+        this.offSet = offSet;
     }
 
     /**
@@ -101,6 +127,9 @@ public class ByteArrayRepresentation extends InputRepresentation {
      */
     public ByteArrayRepresentation(byte[] byteArray, MediaType mediaType) {
         super(new ByteArrayInputStream(byteArray), mediaType);
+        this.byteArray = byteArray;
+        this.length = byteArray.length;
+        this.offSet = 0;
     }
 
     /**
@@ -114,6 +143,23 @@ public class ByteArrayRepresentation extends InputRepresentation {
     public ByteArrayRepresentation(byte[] byteArray, MediaType mediaType,
             long expectedSize) {
         super(new ByteArrayInputStream(byteArray), mediaType, expectedSize);
+        this.byteArray = byteArray;
+        this.length = byteArray.length;
+        this.offSet = 0;
+    }
+
+    /**
+     * Returns a new stream positioned at the given index of the exposed part
+     * of the byte array.
+     * 
+     * @param index
+     *            The index of the first byte to read.
+     * @return A new stream positioned at the given index.
+     */
+    public InputStream getStream(long index) {
+        int start = (int) Math.max(0L, Math.min(index, this.length));
+        return new ByteArrayInputStream(this.byteArray, this.offSet + start,
+                this.length - start);
     }
 
 }
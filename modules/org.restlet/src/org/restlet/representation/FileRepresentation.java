@@ -40,16 +40,21 @@ import org.restlet.data.Disposition;
 import org.restlet.data.LocalReference;
 import org.restlet.data.MediaType;
 import org.restlet.engine.io.IoUtils;
+import org.restlet.engine.io.SeekableSource;
 
 /**
  * Representation based on a static file. Note that in order for Web clients to
  * display a download box upon reception of a file representation, it needs an
  * additional call to {@link Disposition#setType(String)} with a
- * {@link Disposition#TYPE_ATTACHMENT} value.
+ * {@link Disposition#TYPE_ATTACHMENT} value.<br>
+ * <br>
+ * Its streams can be directly positioned at a given index, so that byte ranges
+ * are served without reading the preceding content.
  * 
  * @author Jerome Louvel
  */
-public class FileRepresentation extends Representation {
+public class FileRepresentation extends Representation implements
+        SeekableSource {
     /**
      * Creates a new file by detecting if the name is a URI or a simple path
      * name.
@@ -198,6 +203,23 @@ public class FileRepresentation extends Representation {
         }
     }
 
+    /**
+     * Returns a new stream positioned at the given index of the file.
+     * 
+     * @param index
+     *            The index of the first byte to read.
+     * @return A new stream positioned at the given index.
+     */
+    public FileInputStream getStream(long index) throws IOException {
+        FileInputStream result = getStream();
+
+        if (index > 0) {
+            result.getChannel().position(index);
+        }
+
+        return result;
+    }
+
     /**
      * Note that this method relies on {@link #getStream()}. This stream is
      * closed once fully read.
@@ -27,14 +27,19 @@ package org.restlet.resource;
 import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.restlet.Context;
 import org.restlet.Request;
 import org.restlet.Response;
+import org.restlet.data.Encoding;
 import org.restlet.data.MediaType;
 import org.restlet.data.Reference;
 import org.restlet.data.ReferenceList;
+import org.restlet.engine.local.DirectoryCache;
 import org.restlet.engine.local.DirectoryServerResource;
+import org.restlet.engine.local.HotFileCache;
 import org.restlet.engine.util.AlphaNumericComparator;
 import org.restlet.engine.util.AlphabeticalComparator;
 import org.restlet.representation.Representation;
@@ -70,6 +75,27 @@ import org.restlet.representation.Variant;
  * idea</a>, using a different and faster implementation contributed by Rob
  * Heittman.<br>
  * <br>
+ * When the "servingPrecompressed" property is turned on, precompressed sibling
+ * files such as "app.js.gz" are served instead of the original "app.js" file
+ * to the clients accepting their encoding, saving the CPU cost of compressing
+ * static files on the fly. The extensions of those siblings are mapped to
+ * encodings by the {@link #getPrecompressedExtensions()} map. The siblings
+ * found for each file are kept for ten seconds by the
+ * {@link #getPrecompressedCache()}, so that the file system isn't listed on
+ * each request.<br>
+ * <br>
+ * When the "metadataTimeToLive" property is set, the directory listings and
+ * the variants resolved during content negotiation are cached for this number
+ * of seconds by the {@link #getMetadataCache()}, sparing several file system
+ * lookups per request. Modifications made through the directory clear this
+ * cache, but other modifications are only visible once the entries expire.<br>
+ * <br>
+ * When the "hotFileCacheSize" property is set, the content of the small files
+ * served from the file system is kept in memory by the
+ * {@link #getHotFileCache()}, up to this total size, along with precomputed
+ * entity tags. The cached files are revalidated against their modification
+ * date and size on each request.<br>
+ * <br>
  * Concurrency note: instances of this class or its subclasses can be invoked by
  * several threads at the same time and therefore must be thread-safe. You
  * should be especially careful when storing state in member variables.
@@ -88,6 +114,9 @@ public class Directory extends Finder {
      */
     private volatile boolean deeplyAccessible;
 
+    /** The cache of the hot files content. */
+    private final HotFileCache hotFileCache;
+
     /** The index name, without extensions (ex: "index" or "home"). */
     private volatile String indexName;
 
@@ -97,6 +126,9 @@ public class Directory extends Finder {
      */
     private volatile boolean listingAllowed;
 
+    /** The cache of the local metadata. */
+    private final DirectoryCache metadataCache;
+
     /**
      * Indicates if modifications to local resources are allowed (false by
      * default).
@@ -106,9 +138,21 @@ public class Directory extends Finder {
     /** Indicates if the best content is automatically negotiated. */
     private volatile boolean negotiatingContent;
 
+    /** The cache of the precompressed siblings found for each file. */
+    private final DirectoryCache precompressedCache;
+
+    /** The extensions of the precompressed files, per encoding. */
+    private final Map<Encoding, String> precompressedExtensions;
+
     /** The absolute root reference (file, clap URI). */
     private volatile Reference rootRef;
 
+    /**
+     * Indicates if precompressed sibling files are served when the client
+     * accepts their encoding (false by default).
+     */
+    private volatile boolean servingPrecompressed;
+
     /**
      * Constructor.
      * 
@@ -135,10 +179,17 @@ public class Directory extends Finder {
 
         this.comparator = new AlphaNumericComparator();
         this.deeplyAccessible = true;
+        this.hotFileCache = new HotFileCache();
         this.indexName = "index";
         this.listingAllowed = false;
+        this.metadataCache = new DirectoryCache();
         this.modifiable = false;
         this.negotiatingContent = true;
+        this.precompressedCache = new DirectoryCache(10, 10000);
+        this.precompressedExtensions = new ConcurrentHashMap<Encoding, String>();
+        this.precompressedExtensions.put(Encoding.GZIP, "gz");
+        this.precompressedExtensions.put(Encoding.valueOf("br"), "br");
+        this.servingPrecompressed = false;
         setTargetClass(DirectoryServerResource.class);
     }
 
@@ -175,6 +226,25 @@ public class Directory extends Finder {
         return this.comparator;
     }
 
+    /**
+     * Returns the cache of the hot files content.
+     * 
+     * @return The cache of the hot files content.
+     */
+    public HotFileCache getHotFileCache() {
+        return this.hotFileCache;
+    }
+
+    /**
+     * Returns the maximum total size of the cached hot files. The cache is
+     * disabled if zero, the default.
+     * 
+     * @return The maximum total size of the cached hot files.
+     */
+    public long getHotFileCacheSize() {
+        return getHotFileCache().getMaxSize();
+    }
+
     /**
      * Returns the index name, without extensions. Returns "index" by default.
      * 
@@ -222,6 +292,48 @@ public class Directory extends Finder {
         return result;
     }
 
+    /**
+     * Returns the cache of the local metadata, such as directory listings and
+     * variant references.
+     * 
+     * @return The cache of the local metadata.
+     */
+    public DirectoryCache getMetadataCache() {
+        return this.metadataCache;
+    }
+
+    /**
+     * Returns the time to live in seconds of the cached local metadata. The
+     * cache is disabled if zero, the default.
+     * 
+     * @return The time to live in seconds of the cached local metadata.
+     */
+    public int getMetadataTimeToLive() {
+        return getMetadataCache().getTimeToLive();
+    }
+
+    /**
+     * Returns the cache of the precompressed siblings found for each file.
+     * Its entries expire after ten seconds by default. Modifications made
+     * through the directory clear this cache.
+     * 
+     * @return The cache of the precompressed siblings found for each file.
+     */
+    public DirectoryCache getPrecompressedCache() {
+        return this.precompressedCache;
+    }
+
+    /**
+     * Returns the modifiable map of the extensions of the precompressed files,
+     * per encoding. By default, "gz" is mapped to {@link Encoding#GZIP} and "br"
+     * to the Brotli encoding.
+     * 
+     * @return The extensions of the precompressed files, per encoding.
+     */
+    public Map<Encoding, String> getPrecompressedExtensions() {
+        return this.precompressedExtensions;
+    }
+
     /**
      * Returns the root URI from which the relative resource URIs will be looked
      * up.
@@ -278,6 +390,16 @@ public class Directory extends Finder {
         return this.negotiatingContent;
     }
 
+    /**
+     * Indicates if precompressed sibling files are served when the client
+     * accepts their encoding. Returns false by default.
+     * 
+     * @return True if precompressed sibling files are served.
+     */
+    public boolean isServingPrecompressed() {
+        return this.servingPrecompressed;
+    }
+
     /**
      * Sets the reference comparator used to sort index pages.
      * 
@@ -298,6 +420,17 @@ public class Directory extends Finder {
         this.deeplyAccessible = deeplyAccessible;
     }
 
+    /**
+     * Sets the maximum total size of the cached hot files, then clears the
+     * cache. The cache is disabled if zero.
+     * 
+     * @param hotFileCacheSize
+     *            The maximum total size of the cached hot files.
+     */
+    public void setHotFileCacheSize(long hotFileCacheSize) {
+        getHotFileCache().setMaxSize(hotFileCacheSize);
+    }
+
     /**
      * Sets the index name, without extensions.
      * 
@@ -320,6 +453,17 @@ public class Directory extends Finder {
         this.listingAllowed = listingAllowed;
     }
 
+    /**
+     * Sets the time to live in seconds of the cached local metadata, then
+     * clears the cache. The cache is disabled if zero.
+     * 
+     * @param metadataTimeToLive
+     *            The time to live in seconds of the cached local metadata.
+     */
+    public void setMetadataTimeToLive(int metadataTimeToLive) {
+        getMetadataCache().setTimeToLive(metadataTimeToLive);
+    }
+
     /**
      * Indicates if modifications to local resources are allowed.
      * 
@@ -352,6 +496,17 @@ public class Directory extends Finder {
         this.rootRef = rootRef;
     }
 
+    /**
+     * Indicates if precompressed sibling files are served when the client
+     * accepts their encoding.
+     * 
+     * @param servingPrecompressed
+     *            True if precompressed sibling files are served.
+     */
+    public void setServingPrecompressed(boolean servingPrecompressed) {
+        this.servingPrecompressed = servingPrecompressed;
+    }
+
     /**
      * Sets the reference comparator based on classic alphabetical order.
      * 
@@ -749,6 +749,25 @@ public abstract class Resource {
         return result;
     }
 
+    // [ifndef gwt] method
+    /**
+     * Returns the application's tag service or create a new one.
+     * 
+     * @return The tag service.
+     */
+    public org.restlet.service.TagService getTagService() {
+        org.restlet.service.TagService result = null;
+
+        // [ifndef gwt] instruction
+        result = getApplication().getTagService();
+
+        if (result == null) {
+            result = new org.restlet.service.TagService(false);
+        }
+
+        return result;
+    }
+
     /**
      * Handles the call composed of the current context, request and response.
      * 
@@ -47,6 +47,7 @@ import org.restlet.data.Method;
 import org.restlet.data.Reference;
 import org.restlet.data.ServerInfo;
 import org.restlet.data.Status;
+import org.restlet.data.Tag;
 import org.restlet.engine.resource.AnnotationInfo;
 import org.restlet.engine.resource.AnnotationUtils;
 import org.restlet.engine.resource.MethodAnnotationInfo;
@@ -58,6 +59,7 @@ import org.restlet.routing.Filter;
 import org.restlet.routing.Router;
 import org.restlet.security.Role;
 import org.restlet.service.ConverterService;
+import org.restlet.service.TagService;
 import org.restlet.util.Series;
 
 /**
@@ -277,7 +279,8 @@ public abstract class ServerResource extends Resource {
      * Handles a call by first verifying the optional request conditions and
      * continue the processing if possible. Note that in order to evaluate those
      * conditions, {@link #getInfo()} or {@link #getInfo(Variant)} methods might
-     * be invoked.
+     * be invoked, unless the tag service has cached the entity tag of the
+     * current version of the resource, as returned by {@link #getVersion()}.
      * 
      * @return The response entity.
      * @throws ResourceException
@@ -289,7 +292,15 @@ public abstract class ServerResource extends Resource {
             RepresentationInfo resultInfo = null;
 
             if (existing) {
-                if (isNegotiated()) {
+                String tagKey = (String) getRequestAttributes().get(
+                        TagService.ATTRIBUTE_KEY);
+                Tag cachedTag = (tagKey == null) ? null : getTagService()
+                        .getTag(tagKey);
+
+                if (cachedTag != null) {
+                    resultInfo = new RepresentationInfo((MediaType) null,
+                            cachedTag);
+                } else if (isNegotiated()) {
                     Variant preferredVariant = getPreferredVariant(getVariants(Method.GET));
 
                     if (preferredVariant == null
@@ -911,6 +922,32 @@ public abstract class ServerResource extends Resource {
         return Role.get(getApplication(), name);
     }
 
+    /**
+     * Returns the key of the entity tag cached by the tag service for the
+     * current request, or null if the tag service is disabled or if the
+     * resource doesn't declare a version.
+     * 
+     * @return The key of the cached entity tag or null.
+     */
+    private String getTagKey() {
+        String result = null;
+
+        if (Method.GET.equals(getMethod()) || Method.HEAD.equals(getMethod())) {
+            TagService tagService = getTagService();
+
+            if (tagService.isEnabled()) {
+                String version = getVersion();
+
+                if (version != null) {
+                    result = tagService.getTagKey(getRequest(), version,
+                            isNegotiated());
+                }
+            }
+        }
+
+        return result;
+    }
+
     /**
      * Returns a modifiable list of exposed variants for the current request
      * method. You can declare variants manually by updating the result list ,
@@ -1012,6 +1049,23 @@ public abstract class ServerResource extends Resource {
         return result;
     }
 
+    /**
+     * Returns an opaque identifier of the current state of the resource, such
+     * as a revision number or a modification counter, much cheaper to compute
+     * than its representations. When the tag service of the application is
+     * enabled, the entity tags of the representations returned for a given
+     * version are cached, so that later conditional GET requests are answered
+     * without generating the representations again. The version must change
+     * each time the representations change.<br>
+     * <br>
+     * By default, it returns null and no tag is cached.
+     * 
+     * @return The version of the resource state or null.
+     */
+    protected String getVersion() {
+        return null;
+    }
+
     /**
      * Handles any call to this resource. The default implementation check the
      * {@link #isConditional()} and {@link #isNegotiated()} method to determine
@@ -1039,6 +1093,13 @@ public abstract class ServerResource extends Resource {
             doError(Status.CLIENT_ERROR_NOT_FOUND);
         } else {
             try {
+                String tagKey = getTagKey();
+
+                if (tagKey != null) {
+                    getRequestAttributes().put(TagService.ATTRIBUTE_KEY,
+                            tagKey);
+                }
+
                 if (isConditional()) {
                     result = doConditionalHandle();
                 } else if (isNegotiated()) {
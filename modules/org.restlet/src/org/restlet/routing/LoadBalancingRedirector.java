@@ -0,0 +1,858 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or or EPL 1.0 (the "Licenses"). You can
+ * select the license that you prefer but you may not use this file except in
+ * compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+package org.restlet.routing;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+
+import org.restlet.Context;
+import org.restlet.Request;
+import org.restlet.Response;
+import org.restlet.Restlet;
+import org.restlet.data.Method;
+import org.restlet.data.Reference;
+import org.restlet.data.Status;
+import org.restlet.service.TaskService;
+
+/**
+ * Redirector spreading the calls over a pool of backend base URIs, typically
+ * used as a reverse proxy in the {@link #MODE_SERVER_OUTBOUND} mode. The target
+ * URI template is resolved as usual, then appended to the base URI of the
+ * selected backend. The default "{rr}" template appends the remaining part of
+ * the request URI that hasn't been routed yet.<br>
+ * <br>
+ * Several selection policies are available: {@link #SELECTION_ROUND_ROBIN},
+ * {@link #SELECTION_LEAST_OUTSTANDING} and {@link #SELECTION_CONSISTENT_HASH}.
+ * Only available backends are selected. If none is available, a
+ * {@link Status#SERVER_ERROR_SERVICE_UNAVAILABLE} status is returned.<br>
+ * <br>
+ * The health of the backends is checked passively, by ejecting a backend for a
+ * given duration after a number of consecutive failures, or when its average
+ * latency is an outlier compared to the other backends. It can also be checked
+ * actively, by periodically probing each backend via the
+ * {@link Context#getClientDispatcher()}, using the context's executor service
+ * which is normally backed by the parent {@link TaskService}.<br>
+ * <br>
+ * Concurrency note: instances of this class or its subclasses can be invoked by
+ * several threads at the same time and therefore must be thread-safe. You
+ * should be especially careful when storing state in member variables.
+ * 
+ * @author Jerome Louvel
+ */
+public class LoadBalancingRedirector extends Redirector {
+
+    /**
+     * Backend of the pool, with its health and load statistics.
+     * 
+     * @author Jerome Louvel
+     */
+    public static class Backend {
+
+        /** The average latency in milliseconds, as a moving average. */
+        private final AtomicLong averageLatency;
+
+        /** The base URI. */
+        private final String baseUri;
+
+        /** The number of consecutive failures. */
+        private final AtomicInteger consecutiveFailures;
+
+        /** The time until which the backend is ejected. */
+        private volatile long ejectedUntil;
+
+        /** The number of outstanding calls. */
+        private final AtomicInteger outstanding;
+
+        /** The total number of calls. */
+        private final AtomicLong totalCalls;
+
+        /** The total number of failed calls. */
+        private final AtomicLong totalFailures;
+
+        /**
+         * Constructor.
+         * 
+         * @param baseUri
+         *            The base URI.
+         */
+        public Backend(String baseUri) {
+            this.averageLatency = new AtomicLong(-1L);
+            this.baseUri = baseUri;
+            this.consecutiveFailures = new AtomicInteger();
+            this.ejectedUntil = 0L;
+            this.outstanding = new AtomicInteger();
+            this.totalCalls = new AtomicLong();
+            this.totalFailures = new AtomicLong();
+        }
+
+        /**
+         * Returns the average latency in milliseconds, or -1 if unknown.
+         * 
+         * @return The average latency in milliseconds.
+         */
+        public long getAverageLatency() {
+            return averageLatency.get();
+        }
+
+        /**
+         * Returns the base URI.
+         * 
+         * @return The base URI.
+         */
+        public String getBaseUri() {
+            return baseUri;
+        }
+
+        /**
+         * Returns the number of consecutive failures.
+         * 
+         * @return The number of consecutive failures.
+         */
+        public int getConsecutiveFailures() {
+            return consecutiveFailures.get();
+        }
+
+        /**
+         * Returns the time until which the backend is ejected, or 0.
+         * 
+         * @return The time until which the backend is ejected.
+         */
+        public long getEjectedUntil() {
+            return ejectedUntil;
+        }
+
+        /**
+         * Returns the number of outstanding calls.
+         * 
+         * @return The number of outstanding calls.
+         */
+        public int getOutstanding() {
+            return outstanding.get();
+        }
+
+        /**
+         * Returns the total number of calls.
+         * 
+         * @return The total number of calls.
+         */
+        public long getTotalCalls() {
+            return totalCalls.get();
+        }
+
+        /**
+         * Returns the total number of failed calls.
+         * 
+         * @return The total number of failed calls.
+         */
+        public long getTotalFailures() {
+            return totalFailures.get();
+        }
+
+        /**
+         * Indicates if the backend is available, that is not ejected.
+         * 
+         * @return True if the backend is available.
+         */
+        public boolean isAvailable() {
+            return System.currentTimeMillis() >= this.ejectedUntil;
+        }
+
+        /**
+         * Updates the average latency with a new sample.
+         * 
+         * @param latency
+         *            The latency sample in milliseconds.
+         */
+        private void updateLatency(long latency) {
+            long average;
+            long updated;
+
+            do {
+                average = this.averageLatency.get();
+                updated = (average < 0) ? latency : average
+                        + (latency - average) / 8;
+            } while (!this.averageLatency.compareAndSet(average, updated));
+        }
+
+        @Override
+        public String toString() {
+            return getBaseUri();
+        }
+    }
+
+    /**
+     * Each call is sent to the available backend whose hash on a consistent
+     * hash ring follows the hash of the call key. By default, the key is the
+     * upstream client address.
+     * 
+     * @see LoadBalancingRedirector#getHashKey(Request)
+     */
+    public static final int SELECTION_CONSISTENT_HASH = 3;
+
+    /**
+     * Each call is sent to the available backend with the least outstanding
+     * calls.
+     */
+    public static final int SELECTION_LEAST_OUTSTANDING = 2;
+
+    /** Each call is sent to the next available backend. */
+    public static final int SELECTION_ROUND_ROBIN = 1;
+
+    /** Number of points of each backend on the consistent hash ring. */
+    private static final int VIRTUAL_NODES = 64;
+
+    /**
+     * Returns a 32-bit FNV-1a hash of the given string.
+     * 
+     * @param value
+     *            The string to hash.
+     * @return The hash.
+     */
+    private static int hash(String value) {
+        int result = 0x811c9dc5;
+
+        for (int i = 0; i < value.length(); i++) {
+            result ^= value.charAt(i);
+            result *= 0x01000193;
+        }
+
+        // Final avalanche for a better spread on the ring
+        result ^= (result >>> 16);
+        result *= 0x85ebca6b;
+        result ^= (result >>> 13);
+        return result;
+    }
+
+    /** The modifiable list of backends. */
+    private final List<Backend> backends;
+
+    /** The backend ejection duration in milliseconds. */
+    private volatile long ejectionDuration;
+
+    /** The latency ratio to the pool average beyond which a backend is ejected. */
+    private volatile double latencyOutlierFactor;
+
+    /** The number of consecutive failures after which a backend is ejected. */
+    private volatile int maxConsecutiveFailures;
+
+    /** The active probing interval in milliseconds. */
+    private volatile long probeInterval;
+
+    /** The relative path of the active probes. */
+    private volatile String probePath;
+
+    /** The scheduled active probing task. */
+    private volatile ScheduledFuture<?> probeTask;
+
+    /** The consistent hash ring, rebuilt when the backends change. */
+    private volatile SortedMap<Integer, Backend> ring;
+
+    /** The round robin counter. */
+    private final AtomicInteger roundRobin;
+
+    /** The backend selection policy. */
+    private volatile int selectionMode;
+
+    /**
+     * Constructor for the {@link #MODE_SERVER_OUTBOUND} mode, using the "{rr}"
+     * target template and the {@link #SELECTION_ROUND_ROBIN} policy.
+     * 
+     * @param context
+     *            The context.
+     */
+    public LoadBalancingRedirector(Context context) {
+        this(context, "{rr}", MODE_SERVER_OUTBOUND);
+    }
+
+    /**
+     * Constructor.
+     * 
+     * @param context
+     *            The context.
+     * @param targetTemplate
+     *            The template to build the target URI, relative to the base URI
+     *            of the selected backend.
+     * @param mode
+     *            The redirection mode.
+     */
+    public LoadBalancingRedirector(Context context, String targetTemplate,
+            int mode) {
+        super(context, targetTemplate, mode);
+        this.backends = new CopyOnWriteArrayList<Backend>();
+        this.ejectionDuration = 30000L;
+        this.latencyOutlierFactor = 0D;
+        this.maxConsecutiveFailures = 5;
+        this.probeInterval = 0L;
+        this.probePath = "";
+        this.ring = new TreeMap<Integer, Backend>();
+        this.roundRobin = new AtomicInteger();
+        this.selectionMode = SELECTION_ROUND_ROBIN;
+    }
+
+    /**
+     * Adds a backend to the pool.
+     * 
+     * @param baseUri
+     *            The base URI of the backend.
+     * @return The added backend.
+     */
+    public Backend addBackend(String baseUri) {
+        Backend result = new Backend(baseUri);
+        this.backends.add(result);
+        updateRing();
+        return result;
+    }
+
+    /**
+     * Ejects a backend for the ejection duration.
+     * 
+     * @param backend
+     *            The backend to eject.
+     * @param reason
+     *            The reason of the ejection.
+     */
+    protected void eject(Backend backend, String reason) {
+        backend.ejectedUntil = System.currentTimeMillis()
+                + getEjectionDuration();
+        getLogger().log(Level.INFO,
+                "Ejecting backend " + backend + " (" + reason + ")");
+    }
+
+    /**
+     * Returns the list of backends. Use the {@link #addBackend(String)} and
+     * {@link #removeBackend(String)} methods to update it.
+     * 
+     * @return The unmodifiable list of backends.
+     */
+    public List<Backend> getBackends() {
+        return Collections.unmodifiableList(this.backends);
+    }
+
+    /**
+     * Returns the backend ejection duration in milliseconds. Default value is
+     * 30 seconds.
+     * 
+     * @return The backend ejection duration in milliseconds.
+     */
+    public long getEjectionDuration() {
+        return ejectionDuration;
+    }
+
+    /**
+     * Returns the key used by the {@link #SELECTION_CONSISTENT_HASH} policy.
+     * By default, it returns the upstream client address, or the resource URI
+     * if unknown.
+     * 
+     * @param request
+     *            The request to handle.
+     * @return The key used to select a backend.
+     */
+    protected String getHashKey(Request request) {
+        String result = request.getClientInfo().getUpstreamAddress();
+
+        if (result == null) {
+            result = request.getResourceRef().toString();
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns the ratio of the average latency of a backend to the average
+     * latency of the other available backends beyond which it is ejected.
+     * Default value is 0, disabling the latency outlier detection.
+     * 
+     * @return The latency outlier factor.
+     */
+    public double getLatencyOutlierFactor() {
+        return latencyOutlierFactor;
+    }
+
+    /**
+     * Returns the number of consecutive failures after which a backend is
+     * ejected, or 0 to disable the passive ejection. Default value is 5.
+     * 
+     * @return The number of consecutive failures before ejection.
+     */
+    public int getMaxConsecutiveFailures() {
+        return maxConsecutiveFailures;
+    }
+
+    /**
+     * Returns the active probing interval in milliseconds, or 0 to disable the
+     * active probes. Default value is 0.
+     * 
+     * @return The active probing interval in milliseconds.
+     */
+    public long getProbeInterval() {
+        return probeInterval;
+    }
+
+    /**
+     * Returns the path, relative to the base URI of the backends, that is
+     * requested by the active probes. Default value is an empty string.
+     * 
+     * @return The relative path of the active probes.
+     */
+    public String getProbePath() {
+        return probePath;
+    }
+
+    /**
+     * Returns the backend selection policy. Default value is
+     * {@link #SELECTION_ROUND_ROBIN}.
+     * 
+     * @return The backend selection policy.
+     */
+    public int getSelectionMode() {
+        return selectionMode;
+    }
+
+    /**
+     * Returns the target reference by appending the resolved target template
+     * to the base URI of the given backend.
+     * 
+     * @param backend
+     *            The selected backend.
+     * @param request
+     *            The request to handle.
+     * @param response
+     *            The response to update.
+     * @return The target reference to redirect to.
+     */
+    protected Reference getTargetRef(Backend backend, Request request,
+            Response response) {
+        Template rt = new Template(getTargetTemplate());
+        rt.setLogger(getLogger());
+        return new Reference(backend.getBaseUri()
+                + rt.format(request, response));
+    }
+
+    /**
+     * Selects a backend then redirects the call to it, updating its health and
+     * load statistics.
+     * 
+     * @param request
+     *            The request to handle.
+     * @param response
+     *            The response to update.
+     */
+    @Override
+    public void handle(Request request, Response response) {
+        Backend backend = select(request);
+
+        if (backend == null) {
+            response.setStatus(Status.SERVER_ERROR_SERVICE_UNAVAILABLE,
+                    "No available backend");
+            return;
+        }
+
+        Reference targetRef = getTargetRef(backend, request, response);
+
+        if ((getMode() != MODE_SERVER_OUTBOUND)
+                && (getMode() != MODE_SERVER_INBOUND)) {
+            redirect(targetRef, request, response);
+            return;
+        }
+
+        long start = System.currentTimeMillis();
+        backend.outstanding.incrementAndGet();
+        boolean failed = true;
+
+        try {
+            redirect(targetRef, request, response);
+            failed = isFailure(response);
+        } finally {
+            backend.outstanding.decrementAndGet();
+            backend.totalCalls.incrementAndGet();
+
+            if (failed) {
+                recordFailure(backend);
+            } else {
+                recordSuccess(backend, System.currentTimeMillis() - start);
+            }
+        }
+    }
+
+    /**
+     * Indicates if the given response is a failure counting toward the
+     * ejection of the backend. By default, connector errors and the
+     * {@link Status#SERVER_ERROR_BAD_GATEWAY},
+     * {@link Status#SERVER_ERROR_SERVICE_UNAVAILABLE} and
+     * {@link Status#SERVER_ERROR_GATEWAY_TIMEOUT} statuses are failures.
+     * 
+     * @param response
+     *            The response to check.
+     * @return True if the response is a failure.
+     */
+    protected boolean isFailure(Response response) {
+        Status status = response.getStatus();
+        return status.isConnectorError()
+                || Status.SERVER_ERROR_BAD_GATEWAY.equals(status)
+                || Status.SERVER_ERROR_SERVICE_UNAVAILABLE.equals(status)
+                || Status.SERVER_ERROR_GATEWAY_TIMEOUT.equals(status);
+    }
+
+    /**
+     * Probes a backend by requesting its probe path via the client dispatcher.
+     * A successful probe restores the backend, a failed one ejects it.
+     * 
+     * @param backend
+     *            The backend to probe.
+     */
+    protected void probe(Backend backend) {
+        Restlet dispatcher = getContext().getClientDispatcher();
+        Request request = new Request(Method.GET, backend.getBaseUri()
+                + getProbePath());
+        Response response = new Response(request);
+
+        try {
+            dispatcher.handle(request, response);
+        } catch (Throwable t) {
+            response.setStatus(Status.CONNECTOR_ERROR_INTERNAL, t);
+        } finally {
+            if (response.getEntity() != null) {
+                response.getEntity().release();
+            }
+        }
+
+        if (response.getStatus().isSuccess()) {
+            if (backend.ejectedUntil != 0L) {
+                getLogger().log(Level.INFO,
+                        "Restoring backend " + backend + " after probe");
+            }
+
+            backend.consecutiveFailures.set(0);
+            backend.ejectedUntil = 0L;
+        } else if (backend.isAvailable()) {
+            eject(backend, "probe failed with status " + response.getStatus());
+        }
+    }
+
+    /**
+     * Records a failed call and ejects the backend if needed.
+     * 
+     * @param backend
+     *            The backend.
+     */
+    private void recordFailure(Backend backend) {
+        backend.totalFailures.incrementAndGet();
+        int failures = backend.consecutiveFailures.incrementAndGet();
+
+        if ((getMaxConsecutiveFailures() > 0)
+                && (failures >= getMaxConsecutiveFailures())
+                && backend.isAvailable()) {
+            eject(backend, failures + " consecutive failures");
+        }
+    }
+
+    /**
+     * Records a successful call and ejects the backend if its latency is an
+     * outlier.
+     * 
+     * @param backend
+     *            The backend.
+     * @param latency
+     *            The latency of the call in milliseconds.
+     */
+    private void recordSuccess(Backend backend, long latency) {
+        backend.consecutiveFailures.set(0);
+        backend.updateLatency(latency);
+        double factor = getLatencyOutlierFactor();
+
+        if (factor > 0) {
+            long sum = 0L;
+            int count = 0;
+
+            for (Backend other : this.backends) {
+                if ((other != backend) && other.isAvailable()
+                        && (other.getAverageLatency() >= 0)) {
+                    sum += other.getAverageLatency();
+                    count++;
+                }
+            }
+
+            // Never eject the last available backend
+            if ((count > 0)
+                    && (backend.getAverageLatency() > factor
+                            * Math.max(1D, (double) sum / count))) {
+                eject(backend, "latency outlier of "
+                        + backend.getAverageLatency() + " ms");
+                // Start again from the pool average once restored
+                backend.averageLatency.set(sum / count);
+            }
+        }
+    }
+
+    /**
+     * Removes a backend from the pool.
+     * 
+     * @param baseUri
+     *            The base URI of the backend.
+     * @return True if a backend was removed.
+     */
+    public boolean removeBackend(String baseUri) {
+        boolean result = false;
+
+        for (Backend backend : this.backends) {
+            if (backend.getBaseUri().equals(baseUri)) {
+                result |= this.backends.remove(backend);
+            }
+        }
+
+        if (result) {
+            updateRing();
+        }
+
+        return result;
+    }
+
+    /**
+     * Selects an available backend according to the selection policy.
+     * 
+     * @param request
+     *            The request to handle.
+     * @return The selected backend or null if none is available.
+     */
+    protected Backend select(Request request) {
+        Backend result = null;
+
+        switch (getSelectionMode()) {
+        case SELECTION_CONSISTENT_HASH:
+            SortedMap<Integer, Backend> currentRing = this.ring;
+
+            if (!currentRing.isEmpty()) {
+                int hash = hash(getHashKey(request));
+
+                // Walk the ring clockwise until an available backend
+                for (Backend backend : currentRing.tailMap(hash).values()) {
+                    if (backend.isAvailable()) {
+                        result = backend;
+                        break;
+                    }
+                }
+
+                if (result == null) {
+                    for (Backend backend : currentRing.headMap(hash).values()) {
+                        if (backend.isAvailable()) {
+                            result = backend;
+                            break;
+                        }
+                    }
+                }
+            }
+            break;
+
+        case SELECTION_LEAST_OUTSTANDING:
+            int size = this.backends.size();
+            int offset = (size == 0) ? 0 : (this.roundRobin
+                    .getAndIncrement() & Integer.MAX_VALUE) % size;
+
+            // Start at a rotating offset to spread the ties
+            for (int i = 0; i < size; i++) {
+                Backend backend = getBackend((offset + i) % size);
+
+                if ((backend != null)
+                        && backend.isAvailable()
+                        && ((result == null) || (backend.getOutstanding() < result
+                                .getOutstanding()))) {
+                    result = backend;
+                }
+            }
+            break;
+
+        default:
+            int count = this.backends.size();
+
+            for (int i = 0; (result == null) && (i < count); i++) {
+                Backend backend = getBackend((this.roundRobin
+                        .getAndIncrement() & Integer.MAX_VALUE) % count);
+
+                if ((backend != null) && backend.isAvailable()) {
+                    result = backend;
+                }
+            }
+            break;
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns the backend at the given index, or null if the list shrunk.
+     * 
+     * @param index
+     *            The index.
+     * @return The backend or null.
+     */
+    private Backend getBackend(int index) {
+        try {
+            return this.backends.get(index);
+        } catch (IndexOutOfBoundsException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Sets the backend ejection duration in milliseconds.
+     * 
+     * @param ejectionDuration
+     *            The backend ejection duration in milliseconds.
+     */
+    public void setEjectionDuration(long ejectionDuration) {
+        this.ejectionDuration = ejectionDuration;
+    }
+
+    /**
+     * Sets the ratio of the average latency of a backend to the average latency
+     * of the other available backends beyond which it is ejected. Set it to 0
+     * to disable the latency outlier detection.
+     * 
+     * @param latencyOutlierFactor
+     *            The latency outlier factor.
+     */
+    public void setLatencyOutlierFactor(double latencyOutlierFactor) {
+        this.latencyOutlierFactor = latencyOutlierFactor;
+    }
+
+    /**
+     * Sets the number of consecutive failures after which a backend is
+     * ejected, or 0 to disable the passive ejection.
+     * 
+     * @param maxConsecutiveFailures
+     *            The number of consecutive failures before ejection.
+     */
+    public void setMaxConsecutiveFailures(int maxConsecutiveFailures) {
+        this.maxConsecutiveFailures = maxConsecutiveFailures;
+    }
+
+    /**
+     * Sets the active probing interval in milliseconds, or 0 to disable the
+     * active probes. Changes are taken into account on the next start.
+     * 
+     * @param probeInterval
+     *            The active probing interval in milliseconds.
+     */
+    public void setProbeInterval(long probeInterval) {
+        this.probeInterval = probeInterval;
+    }
+
+    /**
+     * Sets the path, relative to the base URI of the backends, that is
+     * requested by the active probes.
+     * 
+     * @param probePath
+     *            The relative path of the active probes.
+     */
+    public void setProbePath(String probePath) {
+        this.probePath = probePath;
+    }
+
+    /**
+     * Sets the backend selection policy.
+     * 
+     * @param selectionMode
+     *            The backend selection policy.
+     */
+    public void setSelectionMode(int selectionMode) {
+        this.selectionMode = selectionMode;
+    }
+
+    /**
+     * Starts the redirector and schedules the active probes if enabled.
+     */
+    @Override
+    public synchronized void start() throws Exception {
+        if (isStopped()) {
+            ScheduledExecutorService executorService = (getContext() == null) ? null
+                    : getContext().getExecutorService();
+
+            if ((getProbeInterval() > 0) && (executorService != null)) {
+                try {
+                    this.probeTask = executorService.scheduleWithFixedDelay(
+                            new Runnable() {
+                                public void run() {
+                                    for (Backend backend : backends) {
+                                        probe(backend);
+                                    }
+                                }
+                            }, getProbeInterval(), getProbeInterval(),
+                            TimeUnit.MILLISECONDS);
+                } catch (RejectedExecutionException ree) {
+                    getLogger().log(Level.WARNING,
+                            "Unable to schedule the backend probes", ree);
+                }
+            } else if (getProbeInterval() > 0) {
+                getLogger().warning(
+                        "No executor service available for the backend probes");
+            }
+
+            super.start();
+        }
+    }
+
+    /**
+     * Stops the redirector and cancels the active probes.
+     */
+    @Override
+    public synchronized void stop() throws Exception {
+        if (isStarted()) {
+            super.stop();
+
+            if (this.probeTask != null) {
+                this.probeTask.cancel(false);
+                this.probeTask = null;
+            }
+        }
+    }
+
+    /**
+     * Rebuilds the consistent hash ring from the current backends.
+     */
+    private void updateRing() {
+        TreeMap<Integer, Backend> newRing = new TreeMap<Integer, Backend>();
+        List<Backend> current = new ArrayList<Backend>(this.backends);
+
+        for (Backend backend : current) {
+            for (int i = 0; i < VIRTUAL_NODES; i++) {
+                newRing.put(hash(backend.getBaseUri() + "#" + i), backend);
+            }
+        }
+
+        this.ring = newRing;
+    }
+
+}
@@ -24,6 +24,7 @@
 
 package org.restlet.routing;
 
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 
 import org.restlet.Application;
@@ -36,6 +37,8 @@ import org.restlet.data.Reference;
 import org.restlet.data.Status;
 import org.restlet.engine.header.HeaderConstants;
 import org.restlet.engine.header.HeaderUtils;
+import org.restlet.engine.io.IoUtils;
+import org.restlet.engine.io.RelayRepresentation;
 import org.restlet.representation.Representation;
 import org.restlet.util.Resolver;
 
@@ -59,6 +62,12 @@ import org.restlet.util.Resolver;
  * properly redirected as well, "rr" appending the remaining part of the current
  * request URI that hasn't been routed yet.<br>
  * <br>
+ * In the server-side modes, the {@link #setStreaming(boolean)} property
+ * guarantees that the request and response entities are relayed chunk by chunk
+ * with a bounded buffer, so that large entities go through the proxy with a
+ * constant memory usage. In this case, the byte and latency counters of both
+ * hops are also updated.<br>
+ * <br>
  * Concurrency note: instances of this class or its subclasses can be invoked by
  * several threads at the same time and therefore must be thread-safe. You
  * should be especially careful when storing state in member variables.
@@ -160,6 +169,27 @@ public class Redirector extends Restlet {
     /** The redirection mode. */
     protected volatile int mode;
 
+    /** The number of calls redirected on the server-side. */
+    private final AtomicLong serverCalls;
+
+    /** The cumulated latency of the next Restlet in milliseconds. */
+    private final AtomicLong serverLatency;
+
+    /** Indicates if the entities are relayed chunk by chunk. */
+    private volatile boolean streaming;
+
+    /** The size of the buffer used to relay the entities. */
+    private volatile int streamingBufferSize;
+
+    /** The number of request entity bytes relayed to the next Restlet. */
+    private final AtomicLong streamedRequestBytes;
+
+    /** The number of response entity bytes relayed back to the client. */
+    private final AtomicLong streamedResponseBytes;
+
+    /** The cumulated duration of the response entity relaying. */
+    private final AtomicLong streamedResponseTime;
+
     /** The target URI pattern. */
     protected volatile String targetTemplate;
 
@@ -192,6 +222,13 @@ public class Redirector extends Restlet {
         this.targetTemplate = targetPattern;
         this.mode = mode;
         this.headersCleaning = true;
+        this.serverCalls = new AtomicLong();
+        this.serverLatency = new AtomicLong();
+        this.streaming = false;
+        this.streamingBufferSize = IoUtils.BUFFER_SIZE;
+        this.streamedRequestBytes = new AtomicLong();
+        this.streamedResponseBytes = new AtomicLong();
+        this.streamedResponseTime = new AtomicLong();
     }
 
     /**
@@ -233,6 +270,66 @@ public class Redirector extends Restlet {
         return this.mode;
     }
 
+    /**
+     * Returns the number of calls redirected on the server-side.
+     * 
+     * @return The number of calls redirected on the server-side.
+     */
+    public long getServerCalls() {
+        return serverCalls.get();
+    }
+
+    /**
+     * Returns the cumulated latency of the next Restlet in milliseconds, for
+     * the calls redirected on the server-side. When streaming, it measures the
+     * time until the response headers are available.
+     * 
+     * @return The cumulated latency of the next Restlet in milliseconds.
+     */
+    public long getServerLatency() {
+        return serverLatency.get();
+    }
+
+    /**
+     * Returns the number of request entity bytes relayed to the next Restlet
+     * while streaming.
+     * 
+     * @return The number of request entity bytes relayed.
+     */
+    public long getStreamedRequestBytes() {
+        return streamedRequestBytes.get();
+    }
+
+    /**
+     * Returns the number of response entity bytes relayed back to the client
+     * while streaming.
+     * 
+     * @return The number of response entity bytes relayed.
+     */
+    public long getStreamedResponseBytes() {
+        return streamedResponseBytes.get();
+    }
+
+    /**
+     * Returns the cumulated duration of the response entities relaying in
+     * milliseconds while streaming.
+     * 
+     * @return The cumulated duration of the response entities relaying.
+     */
+    public long getStreamedResponseTime() {
+        return streamedResponseTime.get();
+    }
+
+    /**
+     * Returns the size of the buffer used to relay the entities while
+     * streaming. Defaults to {@link IoUtils#BUFFER_SIZE}.
+     * 
+     * @return The size of the buffer used to relay the entities.
+     */
+    public int getStreamingBufferSize() {
+        return streamingBufferSize;
+    }
+
     /**
      * Returns the target reference to redirect to by automatically resolving
      * URI template variables found using the {@link Template} class using the
@@ -280,7 +377,22 @@ public class Redirector extends Restlet {
     public void handle(Request request, Response response) {
         // Generate the target reference
         Reference targetRef = getTargetRef(request, response);
+        redirect(targetRef, request, response);
+    }
 
+    /**
+     * Redirects the call to the given target reference, using the selected
+     * redirection mode.
+     * 
+     * @param targetRef
+     *            The target reference with URI variables resolved.
+     * @param request
+     *            The request to handle.
+     * @param response
+     *            The response to update.
+     */
+    protected void redirect(Reference targetRef, Request request,
+            Response response) {
         switch (this.mode) {
         case MODE_CLIENT_PERMANENT:
             if (request.isLoggable()) {
@@ -400,10 +512,22 @@ public class Redirector extends Restlet {
         }
     }
 
+    /**
+     * Indicates if the request and response entities are relayed chunk by
+     * chunk in the server-side modes.
+     * 
+     * @return True if the entities are relayed chunk by chunk.
+     */
+    public boolean isStreaming() {
+        return streaming;
+    }
+
     /**
      * Optionally rewrites the response entity returned in the
      * {@link #MODE_SERVER_INBOUND} and {@link #MODE_SERVER_OUTBOUND} modes. By
      * default, it just returns the initial entity without any modification.
+     * When streaming, overriding methods must not access the content of the
+     * entity, only its metadata.
      * 
      * @param initialEntity
      *            The initial entity returned.
@@ -515,13 +639,43 @@ public class Redirector extends Restlet {
             // Update the request to cleanly go to the target URI
             request.setResourceRef(targetRef);
             rewrite(request);
-            next.handle(request, response);
+
+            if (isStreaming() && request.isEntityAvailable()) {
+                request.setEntity(new RelayRepresentation(request.getEntity(),
+                        getStreamingBufferSize()) {
+                    @Override
+                    protected void afterRelay(long bytes, long duration) {
+                        streamedRequestBytes.addAndGet(bytes);
+                    }
+                });
+            }
+
+            long start = System.currentTimeMillis();
+
+            try {
+                next.handle(request, response);
+            } finally {
+                this.serverCalls.incrementAndGet();
+                this.serverLatency.addAndGet(System.currentTimeMillis()
+                        - start);
+            }
 
             request.setResourceRef(resourceRef);
             // Allow for response rewriting and clean the headers
             response.setEntity(rewrite(response.getEntity()));
             rewrite(response);
 
+            if (isStreaming() && response.isEntityAvailable()) {
+                response.setEntity(new RelayRepresentation(
+                        response.getEntity(), getStreamingBufferSize()) {
+                    @Override
+                    protected void afterRelay(long bytes, long duration) {
+                        streamedResponseBytes.addAndGet(bytes);
+                        streamedResponseTime.addAndGet(duration);
+                    }
+                });
+            }
+
             // In case of redirection, we may have to rewrite the redirect URI
             rewriteLocation(request, response);
         }
@@ -547,6 +701,27 @@ public class Redirector extends Restlet {
         this.mode = mode;
     }
 
+    /**
+     * Indicates if the request and response entities are relayed chunk by
+     * chunk in the server-side modes.
+     * 
+     * @param streaming
+     *            True if the entities are relayed chunk by chunk.
+     */
+    public void setStreaming(boolean streaming) {
+        this.streaming = streaming;
+    }
+
+    /**
+     * Sets the size of the buffer used to relay the entities while streaming.
+     * 
+     * @param streamingBufferSize
+     *            The size of the buffer used to relay the entities.
+     */
+    public void setStreamingBufferSize(int streamingBufferSize) {
+        this.streamingBufferSize = streamingBufferSize;
+    }
+
     /**
      * Sets the target URI pattern.
      * 
@@ -0,0 +1,462 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or or EPL 1.0 (the "Licenses"). You can
+ * select the license that you prefer but you may not use this file except in
+ * compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+package org.restlet.routing;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+
+import org.restlet.Application;
+import org.restlet.Context;
+import org.restlet.Request;
+import org.restlet.Response;
+import org.restlet.Restlet;
+import org.restlet.data.Status;
+import org.restlet.service.TaskService;
+
+/**
+ * Helper issuing several client calls in parallel and gathering their
+ * responses, typically used by aggregation resources that need to combine the
+ * results of many backend calls.<br>
+ * <br>
+ * The calls are dispatched to {@link Application#getOutboundRoot()} or if null
+ * to {@link Context#getClientDispatcher()}, exactly like a {@link Redirector}
+ * in {@link Redirector#MODE_SERVER_OUTBOUND} mode. They are executed by the
+ * context's executor service, normally backed by the parent
+ * {@link TaskService}. If no executor service is available, the calls are
+ * handled sequentially in the current thread.<br>
+ * <br>
+ * Two deadlines can be set. The call timeout limits the duration of each call,
+ * starting when it is actually executed. The overall timeout limits the
+ * duration of the whole gathering. Once a deadline passes, the outstanding
+ * calls are cancelled and aborted, and the matching responses are returned
+ * with a {@link Status#CONNECTOR_ERROR_COMMUNICATION} status wrapping a
+ * {@link TimeoutException}. The other responses are returned as is, so callers
+ * can work with partial results by checking each status.<br>
+ * <br>
+ * Concurrency note: instances of this class can be invoked by several threads
+ * at the same time.
+ * 
+ * @author Jerome Louvel
+ */
+public class ScatterGather {
+
+    /**
+     * Call dispatched by the gathering, tracking its completion in order to
+     * resolve races between its execution and its deadlines.
+     */
+    private class ScatteredCall implements Callable<Response> {
+
+        /** Indicates if the call is done, normally or not. */
+        private final AtomicBoolean done;
+
+        /** The future wrapping this call. */
+        private final FutureTask<Response> future;
+
+        /** The next Restlet to dispatch to. */
+        private final Restlet next;
+
+        /** The request to dispatch. */
+        private final Request request;
+
+        /** The response to update. */
+        private final Response response;
+
+        /** The task cancelling this call once its own deadline passed. */
+        private volatile ScheduledFuture<?> timer;
+
+        /**
+         * Constructor.
+         * 
+         * @param next
+         *            The next Restlet to dispatch to.
+         * @param request
+         *            The request to dispatch.
+         */
+        public ScatteredCall(Restlet next, Request request) {
+            this.done = new AtomicBoolean(false);
+            this.future = new FutureTask<Response>(this);
+            this.next = next;
+            this.request = request;
+            this.response = new Response(request);
+        }
+
+        /**
+         * Handles the call, arming the call timeout first if needed.
+         */
+        public Response call() throws Exception {
+            long callTimeout = getCallTimeout();
+            ScheduledExecutorService executorService = getExecutorService();
+
+            if ((callTimeout > 0) && (executorService != null)) {
+                try {
+                    this.timer = executorService.schedule(new Runnable() {
+                        public void run() {
+                            cancel();
+                        }
+                    }, callTimeout, TimeUnit.MILLISECONDS);
+                } catch (RejectedExecutionException ree) {
+                    getLogger().log(Level.FINE,
+                            "Unable to schedule the call timeout", ree);
+                }
+            }
+
+            try {
+                this.next.handle(this.request, this.response);
+            } finally {
+                ScheduledFuture<?> t = this.timer;
+
+                if (t != null) {
+                    t.cancel(false);
+                }
+            }
+
+            return this.response;
+        }
+
+        /**
+         * Cancels the call if it isn't done yet, aborting the underlying
+         * connection if possible.
+         * 
+         * @return True if the call was effectively cancelled.
+         */
+        public boolean cancel() {
+            if (this.done.compareAndSet(false, true)) {
+                this.future.cancel(true);
+
+                try {
+                    this.request.abort();
+                } catch (Throwable t) {
+                    getLogger().log(Level.FINE, "Unable to abort the call", t);
+                }
+
+                return true;
+            }
+
+            return false;
+        }
+
+        /**
+         * Returns the gathered response, waiting at most for the given
+         * duration.
+         * 
+         * @param timeout
+         *            The maximum duration to wait in milliseconds, or a
+         *            negative value to wait without limit.
+         * @return The gathered response.
+         */
+        public Response gather(long timeout) {
+            Response result = null;
+
+            try {
+                if (timeout < 0) {
+                    this.future.get();
+                } else {
+                    this.future.get(timeout, TimeUnit.MILLISECONDS);
+                }
+
+                if (this.done.compareAndSet(false, true)) {
+                    result = this.response;
+                }
+            } catch (TimeoutException te) {
+                cancel();
+            } catch (CancellationException ce) {
+                // Call timeout, handled below
+            } catch (InterruptedException ie) {
+                cancel();
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException ee) {
+                if (this.done.compareAndSet(false, true)) {
+                    result = new Response(this.request);
+                    result.setStatus(Status.CONNECTOR_ERROR_INTERNAL,
+                            ee.getCause());
+                }
+            }
+
+            if (result == null) {
+                result = createTimeoutResponse(this.request);
+            }
+
+            return result;
+        }
+
+        /**
+         * Starts the execution of the call with the given executor service.
+         * 
+         * @param executorService
+         *            The executor service.
+         * @return True if the call could be started.
+         */
+        public boolean start(ScheduledExecutorService executorService) {
+            try {
+                executorService.execute(this.future);
+                return true;
+            } catch (RejectedExecutionException ree) {
+                getLogger().log(Level.WARNING,
+                        "Unable to scatter the call to "
+                                + this.request.getResourceRef(), ree);
+                return false;
+            }
+        }
+    }
+
+    /** The maximum duration of each call in milliseconds. */
+    private volatile long callTimeout;
+
+    /** The context. */
+    private volatile Context context;
+
+    /** The maximum duration of the whole gathering in milliseconds. */
+    private volatile long timeout;
+
+    /**
+     * Constructor without deadlines.
+     * 
+     * @param context
+     *            The context.
+     */
+    public ScatterGather(Context context) {
+        this(context, 0, 0);
+    }
+
+    /**
+     * Constructor.
+     * 
+     * @param context
+     *            The context.
+     * @param callTimeout
+     *            The maximum duration of each call in milliseconds, or 0 for
+     *            no limit.
+     * @param timeout
+     *            The maximum duration of the whole gathering in milliseconds,
+     *            or 0 for no limit.
+     */
+    public ScatterGather(Context context, long callTimeout, long timeout) {
+        this.context = context;
+        this.callTimeout = callTimeout;
+        this.timeout = timeout;
+    }
+
+    /**
+     * Creates the response returned for a call whose deadline passed.
+     * 
+     * @param request
+     *            The request that timed out.
+     * @return The response returned for a call whose deadline passed.
+     */
+    protected Response createTimeoutResponse(Request request) {
+        Response result = new Response(request);
+        result.setStatus(Status.CONNECTOR_ERROR_COMMUNICATION,
+                new TimeoutException("Deadline exceeded for "
+                        + request.getResourceRef()));
+        return result;
+    }
+
+    /**
+     * Returns the maximum duration of each call in milliseconds, or 0 for no
+     * limit.
+     * 
+     * @return The maximum duration of each call in milliseconds.
+     */
+    public long getCallTimeout() {
+        return callTimeout;
+    }
+
+    /**
+     * Returns the context.
+     * 
+     * @return The context.
+     */
+    public Context getContext() {
+        return context;
+    }
+
+    /**
+     * Returns the executor service used to run the calls. By default, it
+     * returns the context's executor service.
+     * 
+     * @return The executor service used to run the calls or null.
+     */
+    protected ScheduledExecutorService getExecutorService() {
+        return (getContext() == null) ? null : getContext()
+                .getExecutorService();
+    }
+
+    /**
+     * Returns the logger.
+     * 
+     * @return The logger.
+     */
+    private java.util.logging.Logger getLogger() {
+        return (getContext() == null) ? Context.getCurrentLogger()
+                : getContext().getLogger();
+    }
+
+    /**
+     * Returns the next Restlet to dispatch the calls to. By default, it returns
+     * the current application's outbound root or if null the context's client
+     * dispatcher.
+     * 
+     * @return The next Restlet to dispatch the calls to.
+     */
+    protected Restlet getNext() {
+        Application application = Application.getCurrent();
+        Restlet result = (application == null) ? null : application
+                .getOutboundRoot();
+
+        if ((result == null) && (getContext() != null)) {
+            result = getContext().getClientDispatcher();
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns the maximum duration of the whole gathering in milliseconds, or 0
+     * for no limit.
+     * 
+     * @return The maximum duration of the whole gathering in milliseconds.
+     */
+    public long getTimeout() {
+        return timeout;
+    }
+
+    /**
+     * Handles the given requests concurrently and gathers the responses.
+     * 
+     * @param requests
+     *            The requests to handle.
+     * @return The responses, in the same order as the requests.
+     * @see #handle(List)
+     */
+    public List<Response> handle(Request... requests) {
+        return handle(Arrays.asList(requests));
+    }
+
+    /**
+     * Handles the given requests concurrently and gathers the responses. This
+     * method blocks until all the calls are completed or until the deadlines
+     * passed.
+     * 
+     * @param requests
+     *            The requests to handle.
+     * @return The responses, in the same order as the requests.
+     */
+    public List<Response> handle(List<Request> requests) {
+        List<Response> result = new ArrayList<Response>(requests.size());
+        Restlet next = getNext();
+
+        if (next == null) {
+            getLogger().warning(
+                    "No next Restlet provided for the scattered calls");
+
+            for (Request request : requests) {
+                Response response = new Response(request);
+                response.setStatus(Status.CONNECTOR_ERROR_INTERNAL,
+                        "No next Restlet provided for the scattered calls");
+                result.add(response);
+            }
+
+            return result;
+        }
+
+        long timeout = getTimeout();
+        long deadline = (timeout > 0) ? System.currentTimeMillis() + timeout
+                : 0L;
+        ScheduledExecutorService executorService = getExecutorService();
+        List<ScatteredCall> calls = new ArrayList<ScatteredCall>(
+                requests.size());
+
+        // Scatter the calls
+        for (Request request : requests) {
+            ScatteredCall call = new ScatteredCall(next, request);
+
+            if ((executorService == null) || !call.start(executorService)) {
+                // Run the call in the current thread, within the deadline
+                if ((deadline == 0L)
+                        || (System.currentTimeMillis() < deadline)) {
+                    call.future.run();
+                } else {
+                    call.cancel();
+                }
+            }
+
+            calls.add(call);
+        }
+
+        // Gather the responses
+        for (ScatteredCall call : calls) {
+            long remaining = (deadline == 0L) ? -1L : Math.max(0L, deadline
+                    - System.currentTimeMillis());
+            result.add(call.gather(remaining));
+        }
+
+        return result;
+    }
+
+    /**
+     * Sets the maximum duration of each call in milliseconds, or 0 for no
+     * limit.
+     * 
+     * @param callTimeout
+     *            The maximum duration of each call in milliseconds.
+     */
+    public void setCallTimeout(long callTimeout) {
+        this.callTimeout = callTimeout;
+    }
+
+    /**
+     * Sets the context.
+     * 
+     * @param context
+     *            The context.
+     */
+    public void setContext(Context context) {
+        this.context = context;
+    }
+
+    /**
+     * Sets the maximum duration of the whole gathering in milliseconds, or 0
+     * for no limit.
+     * 
+     * @param timeout
+     *            The maximum duration of the whole gathering in milliseconds.
+     */
+    public void setTimeout(long timeout) {
+        this.timeout = timeout;
+    }
+
+}
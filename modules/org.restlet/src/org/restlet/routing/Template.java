@@ -237,6 +237,9 @@ public class Template {
     /** True if the variables must be encoded when formatting the template. */
     private volatile boolean encodingVariables;
 
+    /** The pattern segments used for formatting, compiled lazily. */
+    private volatile String[] formatSegments;
+
     /** The logger to use. */
     private volatile Logger logger;
 
@@ -369,81 +372,48 @@ public class Template {
      * @return The formatted string.
      */
     public String format(Resolver<?> resolver) {
+        final String[] segments = getFormatSegments();
         final StringBuilder result = new StringBuilder();
-        StringBuilder varBuffer = null;
-        char next;
-        boolean inVariable = false;
-        final int patternLength = getPattern().length();
-        for (int i = 0; i < patternLength; i++) {
-            next = getPattern().charAt(i);
-
-            if (inVariable) {
-                if (Reference.isUnreserved(next)) {
-                    // Append to the variable name
-                    varBuffer.append(next);
-                } else if (next == '}') {
-                    // End of variable detected
-                    if (varBuffer.length() == 0) {
-                        getLogger().warning(
-                                "Empty pattern variables are not allowed : "
-                                        + this.regexPattern);
-                    } else {
-                        final String varName = varBuffer.toString();
-                        Object varValue = resolver.resolve(varName);
-
-                        Variable var = getVariables().get(varName);
-
-                        // Use the default values instead
-                        if (varValue == null) {
-                            if (var == null) {
-                                var = getDefaultVariable();
-                            }
 
-                            if (var != null) {
-                                varValue = var.getDefaultValue();
-                            }
-                        }
+        for (int i = 0; i < segments.length; i++) {
+            if ((i % 2) == 0) {
+                result.append(segments[i]);
+            } else {
+                final String varName = segments[i];
+                Object varValue = resolver.resolve(varName);
+                Variable var = this.variables.get(varName);
+
+                // Use the default values instead
+                if (varValue == null) {
+                    if (var == null) {
+                        var = getDefaultVariable();
+                    }
 
-                        String varValueString = (varValue == null) ? null
-                                : varValue.toString();
+                    if (var != null) {
+                        varValue = var.getDefaultValue();
+                    }
+                }
 
-                        if (this.encodingVariables) {
-                            // In case the values must be encoded.
-                            if (var != null) {
-                                result.append(var.encode(varValueString));
-                            } else {
-                                result.append(Reference.encode(varValueString));
-                            }
-                        } else {
-                            if ((var != null) && var.isEncodingOnFormat()) {
-                                result.append(Reference.encode(varValueString));
-                            } else {
-                                result.append(varValueString);
-                            }
-                        }
+                String varValueString = (varValue == null) ? null : varValue
+                        .toString();
 
-                        // Reset the variable name buffer
-                        varBuffer = new StringBuilder();
+                if (this.encodingVariables) {
+                    // In case the values must be encoded.
+                    if (var != null) {
+                        result.append(var.encode(varValueString));
+                    } else {
+                        result.append(Reference.encode(varValueString));
                     }
-                    inVariable = false;
-                } else {
-                    getLogger().warning(
-                            "An invalid character was detected inside a pattern variable : "
-                                    + this.regexPattern);
-                }
-            } else {
-                if (next == '{') {
-                    inVariable = true;
-                    varBuffer = new StringBuilder();
-                } else if (next == '}') {
-                    getLogger().warning(
-                            "An invalid character was detected inside a pattern variable : "
-                                    + this.regexPattern);
                 } else {
-                    result.append(next);
+                    if ((var != null) && var.isEncodingOnFormat()) {
+                        result.append(Reference.encode(varValueString));
+                    } else {
+                        result.append(varValueString);
+                    }
                 }
             }
         }
+
         return result.toString();
     }
 
@@ -456,6 +426,71 @@ public class Template {
         return this.defaultVariable;
     }
 
+    /**
+     * Compiles the pattern into the segments used for formatting, so that it
+     * is parsed only once. The segments alternate literal text and variable
+     * names, starting with literal text.
+     * 
+     * @return The segments used for formatting.
+     */
+    private String[] getFormatSegments() {
+        String[] result = this.formatSegments;
+
+        if (result == null) {
+            final List<String> segments = new ArrayList<String>();
+            StringBuilder literal = new StringBuilder();
+            StringBuilder varBuffer = null;
+            char next;
+            boolean inVariable = false;
+            final String pattern = getPattern();
+
+            for (int i = 0; i < pattern.length(); i++) {
+                next = pattern.charAt(i);
+
+                if (inVariable) {
+                    if (Reference.isUnreserved(next)) {
+                        // Append to the variable name
+                        varBuffer.append(next);
+                    } else if (next == '}') {
+                        // End of variable detected
+                        if (varBuffer.length() == 0) {
+                            getLogger().warning(
+                                    "Empty pattern variables are not allowed : "
+                                            + pattern);
+                        } else {
+                            segments.add(literal.toString());
+                            segments.add(varBuffer.toString());
+                            literal = new StringBuilder();
+                        }
+
+                        inVariable = false;
+                    } else {
+                        getLogger().warning(
+                                "An invalid character was detected inside a pattern variable : "
+                                        + pattern);
+                    }
+                } else {
+                    if (next == '{') {
+                        inVariable = true;
+                        varBuffer = new StringBuilder();
+                    } else if (next == '}') {
+                        getLogger().warning(
+                                "An invalid character was detected inside a pattern variable : "
+                                        + pattern);
+                    } else {
+                        literal.append(next);
+                    }
+                }
+            }
+
+            segments.add(literal.toString());
+            this.formatSegments = result = segments
+                    .toArray(new String[segments.size()]);
+        }
+
+        return result;
+    }
+
     /**
      * Returns the logger to use.
      * 
@@ -891,6 +926,7 @@ public class Template {
      */
     public void setPattern(String pattern) {
         this.pattern = pattern;
+        this.formatSegments = null;
         this.regexPattern = null;
     }
 
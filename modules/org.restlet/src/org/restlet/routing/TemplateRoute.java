@@ -45,6 +45,15 @@ import org.restlet.data.Status;
  * @author Jerome Louvel
  */
 public class TemplateRoute extends Route {
+
+    /**
+     * The name of the request attribute accumulating the patterns of the
+     * matched route templates, across nested routers. Only updated when
+     * already present, for example set to an empty string by the metrics
+     * filter.
+     */
+    public static final String ATTRIBUTE_TEMPLATE = "org.restlet.routing.template";
+
     /**
      * Indicates whether the query part should be taken into account when
      * matching a reference with the template.
@@ -141,6 +150,15 @@ public class TemplateRoute extends Route {
 
                 request.getResourceRef().setBaseRef(baseRef);
 
+                // Records the matched template, if requested
+                Object matchedTemplate = request.getAttributes().get(
+                        ATTRIBUTE_TEMPLATE);
+
+                if (matchedTemplate != null) {
+                    request.getAttributes().put(ATTRIBUTE_TEMPLATE,
+                            matchedTemplate + getTemplate().getPattern());
+                }
+
                 if (request.isLoggable()) {
                     if (getLogger().isLoggable(Level.FINE)) {
                         remainingPart = request.getResourceRef()
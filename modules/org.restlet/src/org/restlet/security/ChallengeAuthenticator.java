@@ -37,7 +37,10 @@ import org.restlet.data.Status;
 
 /**
  * Authenticator based on a challenge scheme. This is typically used to support
- * the HTTP BASIC and DIGEST challenge schemes.
+ * the HTTP BASIC and DIGEST challenge schemes.<br>
+ * <br>
+ * An optional {@link VerificationCache} can be set to avoid invoking a slow
+ * verifier and enroler for each request sent with the same credentials.
  * 
  * @see ChallengeScheme
  * @see ChallengeRequest
@@ -48,6 +51,12 @@ import org.restlet.data.Status;
  */
 public class ChallengeAuthenticator extends Authenticator {
 
+    /**
+     * The name of the request attribute holding the state of the verification
+     * cache lookup.
+     */
+    private static final String ATTRIBUTE_VERIFICATION = "org.restlet.security.verification";
+
     /** The authentication realm. */
     private volatile String realm;
 
@@ -60,6 +69,9 @@ public class ChallengeAuthenticator extends Authenticator {
     /** The expected challenge scheme. */
     private final ChallengeScheme scheme;
 
+    /** The optional cache of successful verifications. */
+    private volatile VerificationCache verificationCache;
+
     /** The credentials verifier. */
     private volatile Verifier verifier;
 
@@ -147,13 +159,31 @@ public class ChallengeAuthenticator extends Authenticator {
         boolean result = false;
         boolean loggable = request.isLoggable()
                 && getLogger().isLoggable(Level.FINE);
-
-        if (getVerifier() != null) {
+        VerificationCache cache = getVerificationCache();
+        String key = (cache == null) ? null : cache.getKey(request
+                .getChallengeResponse());
+
+        if ((key != null) && cache.restore(key, request.getClientInfo())) {
+            // Credentials previously verified
+            request.getAttributes().put(ATTRIBUTE_VERIFICATION, Boolean.TRUE);
+            result = true;
+
+            if (loggable) {
+                getLogger().fine(
+                        "Authentication succeeded. Cached credentials provided for identifier: "
+                                + request.getChallengeResponse()
+                                        .getIdentifier() + ".");
+            }
+        } else if (getVerifier() != null) {
             switch (getVerifier().verify(request, response)) {
             case Verifier.RESULT_VALID:
                 // Valid credentials provided
                 result = true;
 
+                if (key != null) {
+                    request.getAttributes().put(ATTRIBUTE_VERIFICATION, key);
+                }
+
                 if (loggable) {
                     ChallengeResponse challengeResponse = request
                             .getChallengeResponse();
@@ -229,6 +259,34 @@ public class ChallengeAuthenticator extends Authenticator {
         return result;
     }
 
+    /**
+     * Clears the existing challenge requests on the response and calls the
+     * enroler, unless the verification has been restored from the
+     * verification cache with the roles of the client. Caches successful
+     * verifications.
+     */
+    @Override
+    protected int authenticated(Request request, Response response) {
+        Object verification = request.getAttributes().remove(
+                ATTRIBUTE_VERIFICATION);
+
+        if (Boolean.TRUE.equals(verification)) {
+            request.getClientInfo().setAuthenticated(true);
+            response.getChallengeRequests().clear();
+            return CONTINUE;
+        }
+
+        int result = super.authenticated(request, response);
+        VerificationCache cache = getVerificationCache();
+
+        if ((cache != null) && (verification instanceof String)) {
+            cache.put((String) verification, request.getChallengeResponse()
+                    .getIdentifier(), request.getClientInfo());
+        }
+
+        return result;
+    }
+
     /**
      * Challenges the client by adding a challenge request to the response and
      * by setting the status to {@link Status#CLIENT_ERROR_UNAUTHORIZED}.
@@ -304,6 +362,15 @@ public class ChallengeAuthenticator extends Authenticator {
         return scheme;
     }
 
+    /**
+     * Returns the optional cache of successful verifications.
+     * 
+     * @return The cache of successful verifications or null.
+     */
+    public VerificationCache getVerificationCache() {
+        return verificationCache;
+    }
+
     /**
      * Returns the credentials verifier.
      * 
@@ -347,6 +414,16 @@ public class ChallengeAuthenticator extends Authenticator {
         this.rechallenging = rechallenging;
     }
 
+    /**
+     * Sets the optional cache of successful verifications.
+     * 
+     * @param verificationCache
+     *            The cache of successful verifications or null.
+     */
+    public void setVerificationCache(VerificationCache verificationCache) {
+        this.verificationCache = verificationCache;
+    }
+
     /**
      * Sets the credentials verifier.
      * 
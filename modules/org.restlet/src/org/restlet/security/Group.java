@@ -25,7 +25,9 @@
 package org.restlet.security;
 
 import java.util.List;
-import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Group that contains member groups and users.
@@ -52,6 +54,9 @@ public class Group {
     /** The display name. */
     private volatile String name;
 
+    /** The versions of the memory realms indexing the group. */
+    private final Set<AtomicLong> versions;
+
     /**
      * Default constructor. Note that roles are inherited by default.
      */
@@ -86,8 +91,9 @@ public class Group {
         this.name = name;
         this.description = description;
         this.inheritingRoles = inheritingRoles;
-        this.memberGroups = new CopyOnWriteArrayList<Group>();
-        this.memberUsers = new CopyOnWriteArrayList<User>();
+        this.versions = new CopyOnWriteArraySet<AtomicLong>();
+        this.memberGroups = new TrackedList<Group>(this.versions);
+        this.memberUsers = new TrackedList<User>(this.versions);
     }
 
     /**
@@ -121,6 +127,16 @@ public class Group {
         return this.name;
     }
 
+    /**
+     * Returns the versions of the memory realms indexing the group, incremented
+     * when it is modified.
+     * 
+     * @return The versions of the memory realms indexing the group.
+     */
+    Set<AtomicLong> getVersions() {
+        return this.versions;
+    }
+
     /**
      * Indicates if the roles of the parent group should be inherited. Those
      * roles indirectly cover the granted or denied permissions.
@@ -150,6 +166,7 @@ public class Group {
      */
     public void setInheritingRoles(boolean inheritingRoles) {
         this.inheritingRoles = inheritingRoles;
+        TrackedList.modified(this.versions);
     }
 
     /**
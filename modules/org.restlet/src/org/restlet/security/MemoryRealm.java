@@ -25,10 +25,15 @@
 package org.restlet.security;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.restlet.Application;
 import org.restlet.Request;
@@ -38,7 +43,21 @@ import org.restlet.engine.security.RoleMapping;
 
 /**
  * Security realm based on a memory model. The model is composed of root groups,
- * users and mapping to associated roles.
+ * users and mapping to associated roles.<br>
+ * <br>
+ * The users are indexed by identifier and their roles, including the ones
+ * inherited from their groups, are flattened into an immutable snapshot, so
+ * that verifying and enroling a user doesn't depend on the size of the model.
+ * The snapshot is rebuilt on the first lookup following a modification of the
+ * model, either via the lists of the realm and of the groups or via
+ * {@link User#setIdentifier(String)} and
+ * {@link Group#setInheritingRoles(boolean)}. Each realm has its own model
+ * version, incremented by the users and groups it indexed, so that modifying
+ * a realm doesn't invalidate the snapshots of the other realms. As a list can
+ * also be modified without notice, for example via the bulk operations added
+ * to the collections by recent Java versions, the snapshot also keeps the
+ * elements of the lists it has been built from and compares them by identity
+ * on each lookup.
  * 
  * @author Jerome Louvel
  */
@@ -50,23 +69,14 @@ public class MemoryRealm extends Realm {
     private class DefaultEnroler implements Enroler {
 
         public void enrole(ClientInfo clientInfo) {
-            User user = findUser(clientInfo.getUser().getIdentifier());
+            Snapshot snapshot = getSnapshot();
+            User user = snapshot.users.get(clientInfo.getUser()
+                    .getIdentifier());
 
             if (user != null) {
-                // Find all the inherited groups of this user
-                Set<Group> userGroups = findGroups(user);
-
-                // Add roles specific to this user
-                Set<Role> userRoles = findRoles(user);
-
-                for (Role role : userRoles) {
-                    clientInfo.getRoles().add(role);
-                }
-
-                // Add roles common to group members
-                Set<Role> groupRoles = findRoles(userGroups);
-
-                for (Role role : groupRoles) {
+                // Add roles specific to this user and common to the groups
+                // where the user is a member
+                for (Role role : snapshot.userRoles.get(user)) {
                     clientInfo.getRoles().add(role);
                 }
             }
@@ -111,24 +121,113 @@ public class MemoryRealm extends Realm {
         }
     }
 
+    /**
+     * Immutable snapshot of the indexes of the security model.
+     */
+    private static class Snapshot {
+
+        /** The elements of the lists read to build the snapshot. */
+        private final Map<List<?>, Object[]> contents;
+
+        /** The roles mapped to each user or group. */
+        private final Map<Object, Set<Role>> mappedRoles;
+
+        /** The flattened roles of each user, including their groups roles. */
+        private final Map<User, Set<Role>> userRoles;
+
+        /** The users per identifier. */
+        private final Map<String, User> users;
+
+        /** The version of the security model. */
+        private final long version;
+
+        /**
+         * Constructor.
+         * 
+         * @param version
+         *            The version of the security model.
+         * @param contents
+         *            The elements of the lists read to build the snapshot.
+         * @param users
+         *            The users per identifier.
+         * @param mappedRoles
+         *            The roles mapped to each user or group.
+         * @param userRoles
+         *            The flattened roles of each user.
+         */
+        private Snapshot(long version, Map<List<?>, Object[]> contents,
+                Map<String, User> users, Map<Object, Set<Role>> mappedRoles,
+                Map<User, Set<Role>> userRoles) {
+            this.contents = contents;
+            this.mappedRoles = mappedRoles;
+            this.userRoles = userRoles;
+            this.users = users;
+            this.version = version;
+        }
+
+        /**
+         * Indicates if the snapshot still reflects the security model, that is
+         * if its version is the current one and if the lists it has been built
+         * from still contain the same elements.
+         * 
+         * @param version
+         *            The current version of the security model.
+         * @return True if the snapshot is still valid.
+         */
+        private boolean isValid(long version) {
+            if (this.version != version) {
+                return false;
+            }
+
+            Object[] elements;
+            int index;
+
+            for (List<?> list : this.contents.keySet()) {
+                elements = this.contents.get(list);
+                index = 0;
+
+                for (Object element : list) {
+                    if ((index >= elements.length)
+                            || (elements[index++] != element)) {
+                        return false;
+                    }
+                }
+
+                if (index != elements.length) {
+                    return false;
+                }
+            }
+
+            return true;
+        }
+    }
+
     /** The modifiable list of role mappings. */
     private final List<RoleMapping> roleMappings;
 
     /** The modifiable list of root groups. */
     private final List<Group> rootGroups;
 
+    /** The current snapshot of the indexes. */
+    private volatile Snapshot snapshot;
+
     /** The modifiable list of users. */
     private final List<User> users;
 
+    /** The version of the security model, incremented when modified. */
+    private final AtomicLong version;
+
     /**
      * Constructor.
      */
     public MemoryRealm() {
         setVerifier(new DefaultVerifier());
         setEnroler(new DefaultEnroler());
-        this.rootGroups = new CopyOnWriteArrayList<Group>();
-        this.roleMappings = new CopyOnWriteArrayList<RoleMapping>();
-        this.users = new CopyOnWriteArrayList<User>();
+        this.version = new AtomicLong();
+        Set<AtomicLong> versions = Collections.singleton(this.version);
+        this.rootGroups = new TrackedList<Group>(versions);
+        this.roleMappings = new TrackedList<RoleMapping>(versions);
+        this.users = new TrackedList<User>(versions);
     }
 
     /**
@@ -169,9 +268,188 @@ public class MemoryRealm extends Realm {
             for (Group group : currentGroup.getMemberGroups()) {
                 addGroups(user, userGroups, group, stack, inheritOnly);
             }
+
+            stack.remove(stack.size() - 1);
         }
     }
 
+    /**
+     * Recursively indexes the groups where the users are members, including
+     * the inheritable ancestor groups.
+     * 
+     * @param usersGroups
+     *            The groups of each user to update.
+     * @param currentGroup
+     *            The current group to inspect.
+     * @param stack
+     *            The stack of ancestor groups.
+     * @param contents
+     *            The elements of the lists read to update.
+     */
+    private void addGroups(Map<User, Set<Group>> usersGroups,
+            Group currentGroup, List<Group> stack,
+            Map<List<?>, Object[]> contents) {
+        if ((currentGroup != null) && !stack.contains(currentGroup)) {
+            // Be notified of the next modifications before reading the group
+            currentGroup.getVersions().add(this.version);
+            stack.add(currentGroup);
+            List<User> memberUsers = read(currentGroup.getMemberUsers(),
+                    contents);
+
+            if (!memberUsers.isEmpty()) {
+                // Collect the group and its inheritable ancestors
+                List<Group> groups = new ArrayList<Group>();
+                groups.add(currentGroup);
+                boolean inherit = currentGroup.isInheritingRoles();
+                Group group;
+
+                for (int i = stack.size() - 2; inherit && (i >= 0); i--) {
+                    group = stack.get(i);
+                    groups.add(group);
+                    inherit = group.isInheritingRoles();
+                }
+
+                Set<Group> userGroups;
+
+                for (User user : memberUsers) {
+                    userGroups = usersGroups.get(user);
+
+                    if (userGroups == null) {
+                        userGroups = new HashSet<Group>();
+                        usersGroups.put(user, userGroups);
+                    }
+
+                    userGroups.addAll(groups);
+                }
+            }
+
+            for (Group group : read(currentGroup.getMemberGroups(), contents)) {
+                addGroups(usersGroups, group, stack, contents);
+            }
+
+            stack.remove(stack.size() - 1);
+        }
+    }
+
+    /**
+     * Adds the roles mapped to a given user or group, whatever their
+     * application.
+     * 
+     * @param roles
+     *            The set of roles to update.
+     * @param source
+     *            The user or group.
+     */
+    private void addRoles(Set<Role> roles, Object source) {
+        Set<Role> mappedRoles = (source == null) ? null
+                : getSnapshot().mappedRoles.get(source);
+
+        if (mappedRoles != null) {
+            roles.addAll(mappedRoles);
+        }
+    }
+
+    /**
+     * Adds the roles mapped to a given user or group, for a specific
+     * application.
+     * 
+     * @param roles
+     *            The set of roles to update.
+     * @param source
+     *            The user or group.
+     * @param application
+     *            The parent application.
+     */
+    private void addRoles(Set<Role> roles, Object source,
+            Application application) {
+        Set<Role> mappedRoles = (source == null) ? null
+                : getSnapshot().mappedRoles.get(source);
+
+        if (mappedRoles != null) {
+            for (Role role : mappedRoles) {
+                if (role.getApplication() == application) {
+                    roles.add(role);
+                }
+            }
+        }
+    }
+
+    /**
+     * Creates a snapshot of the indexes of the security model.
+     * 
+     * @param version
+     *            The version of the security model.
+     * @return The new snapshot.
+     */
+    private Snapshot createSnapshot(long version) {
+        Map<List<?>, Object[]> contents = new IdentityHashMap<List<?>,
+                Object[]>();
+
+        // Index the users by identifier, the first one winning
+        Map<String, User> users = new HashMap<String, User>();
+
+        for (User user : read(getUsers(), contents)) {
+            // Be notified of the next modifications before reading the user
+            user.getVersions().add(this.version);
+
+            if ((user.getIdentifier() != null)
+                    && !users.containsKey(user.getIdentifier())) {
+                users.put(user.getIdentifier(), user);
+            }
+        }
+
+        // Index the mapped roles by source
+        Map<Object, Set<Role>> mappedRoles = new HashMap<Object, Set<Role>>();
+        Set<Role> roles;
+
+        for (RoleMapping mapping : read(getRoleMappings(), contents)) {
+            roles = mappedRoles.get(mapping.getSource());
+
+            if (roles == null) {
+                roles = new HashSet<Role>();
+                mappedRoles.put(mapping.getSource(), roles);
+            }
+
+            roles.add(mapping.getTarget());
+        }
+
+        // Flatten the roles of each user
+        Map<User, Set<Group>> usersGroups = new HashMap<User, Set<Group>>();
+
+        for (Group group : read(getRootGroups(), contents)) {
+            addGroups(usersGroups, group, new ArrayList<Group>(), contents);
+        }
+
+        Map<User, Set<Role>> userRoles = new HashMap<User, Set<Role>>();
+        Set<Role> mapped;
+        Set<Group> userGroups;
+
+        for (User user : users.values()) {
+            roles = new HashSet<Role>();
+            mapped = mappedRoles.get(user);
+
+            if (mapped != null) {
+                roles.addAll(mapped);
+            }
+
+            userGroups = usersGroups.get(user);
+
+            if (userGroups != null) {
+                for (Group group : userGroups) {
+                    mapped = mappedRoles.get(group);
+
+                    if (mapped != null) {
+                        roles.addAll(mapped);
+                    }
+                }
+            }
+
+            userRoles.put(user, Collections.unmodifiableSet(roles));
+        }
+
+        return new Snapshot(version, contents, users, mappedRoles, userRoles);
+    }
+
     /**
      * Finds the set of groups where a given user is a member. Note that
      * inheritable ancestors groups are also returned.
@@ -225,18 +503,7 @@ public class MemoryRealm extends Realm {
         }
 
         Set<Role> result = new HashSet<Role>();
-        Object source;
-
-        for (RoleMapping mapping : getRoleMappings()) {
-            source = mapping.getSource();
-
-            if ((userGroup != null) && userGroup.equals(source)) {
-                if (mapping.getTarget().getApplication() == application) {
-                    result.add(mapping.getTarget());
-                }
-            }
-        }
-
+        addRoles(result, userGroup, application);
         return result;
     }
 
@@ -258,15 +525,10 @@ public class MemoryRealm extends Realm {
         }
 
         Set<Role> result = new HashSet<Role>();
-        Object source;
 
-        for (RoleMapping mapping : getRoleMappings()) {
-            source = mapping.getSource();
-
-            if ((userGroups != null) && userGroups.contains(source)) {
-                if (mapping.getTarget().getApplication() == application) {
-                    result.add(mapping.getTarget());
-                }
+        if (userGroups != null) {
+            for (Group userGroup : userGroups) {
+                addRoles(result, userGroup, application);
             }
         }
 
@@ -291,23 +553,12 @@ public class MemoryRealm extends Realm {
         }
 
         Set<Role> result = new HashSet<Role>();
-        Object source;
-
-        for (RoleMapping mapping : getRoleMappings()) {
-            source = mapping.getSource();
-
-            if ((user != null) && user.equals(source)) {
-                if (mapping.getTarget().getApplication() == application) {
-                    result.add(mapping.getTarget());
-                }
-            }
-        }
-
+        addRoles(result, user, application);
         return result;
     }
 
     /**
-     * Finds the roles mapped to given user group.
+     * Finds the roles mapped to given user group, whatever their application.
      * 
      * @param userGroup
      *            The user group.
@@ -315,21 +566,12 @@ public class MemoryRealm extends Realm {
      */
     public Set<Role> findRoles(Group userGroup) {
         Set<Role> result = new HashSet<Role>();
-        Object source;
-
-        for (RoleMapping mapping : getRoleMappings()) {
-            source = mapping.getSource();
-
-            if ((userGroup != null) && userGroup.equals(source)) {
-                result.add(mapping.getTarget());
-            }
-        }
-
+        addRoles(result, userGroup);
         return result;
     }
 
     /**
-     * Finds the roles mapped to given user groups.
+     * Finds the roles mapped to given user groups, whatever their application.
      * 
      * @param userGroups
      *            The user groups.
@@ -337,13 +579,10 @@ public class MemoryRealm extends Realm {
      */
     public Set<Role> findRoles(Set<Group> userGroups) {
         Set<Role> result = new HashSet<Role>();
-        Object source;
 
-        for (RoleMapping mapping : getRoleMappings()) {
-            source = mapping.getSource();
-
-            if ((userGroups != null) && userGroups.contains(source)) {
-                result.add(mapping.getTarget());
+        if (userGroups != null) {
+            for (Group userGroup : userGroups) {
+                addRoles(result, userGroup);
             }
         }
 
@@ -351,7 +590,7 @@ public class MemoryRealm extends Realm {
     }
 
     /**
-     * Finds the roles mapped to a given user.
+     * Finds the roles mapped to a given user, whatever their application.
      * 
      * @param user
      *            The user.
@@ -359,16 +598,7 @@ public class MemoryRealm extends Realm {
      */
     public Set<Role> findRoles(User user) {
         Set<Role> result = new HashSet<Role>();
-        Object source;
-
-        for (RoleMapping mapping : getRoleMappings()) {
-            source = mapping.getSource();
-
-            if ((user != null) && user.equals(source)) {
-                result.add(mapping.getTarget());
-            }
-        }
-
+        addRoles(result, user);
         return result;
     }
 
@@ -380,18 +610,7 @@ public class MemoryRealm extends Realm {
      * @return The matched user or null.
      */
     public User findUser(String userIdentifier) {
-        User result = null;
-        User user;
-
-        for (int i = 0; (result == null) && (i < getUsers().size()); i++) {
-            user = getUsers().get(i);
-
-            if (user.getIdentifier().equals(userIdentifier)) {
-                result = user;
-            }
-        }
-
-        return result;
+        return getSnapshot().users.get(userIdentifier);
     }
 
     /**
@@ -412,6 +631,30 @@ public class MemoryRealm extends Realm {
         return rootGroups;
     }
 
+    /**
+     * Returns the current snapshot of the indexes, rebuilding it if the
+     * security model has been modified.
+     * 
+     * @return The current snapshot of the indexes.
+     */
+    private Snapshot getSnapshot() {
+        Snapshot result = this.snapshot;
+        long version = this.version.get();
+
+        if ((result == null) || !result.isValid(version)) {
+            synchronized (this) {
+                result = this.snapshot;
+
+                if ((result == null) || !result.isValid(version)) {
+                    result = createSnapshot(version);
+                    this.snapshot = result;
+                }
+            }
+        }
+
+        return result;
+    }
+
     /**
      * Returns the modifiable list of users.
      * 
@@ -461,6 +704,24 @@ public class MemoryRealm extends Realm {
         getRoleMappings().add(new RoleMapping(user, role));
     }
 
+    /**
+     * Reads the elements of a list, keeping them so that the snapshot can
+     * later detect that the list has been modified.
+     * 
+     * @param list
+     *            The list to read.
+     * @param contents
+     *            The elements of the lists read to update.
+     * @return The elements of the list.
+     */
+    @SuppressWarnings("unchecked")
+    private static <E> List<E> read(List<E> list,
+            Map<List<?>, Object[]> contents) {
+        Object[] elements = list.toArray();
+        contents.put(list, elements);
+        return (List<E>) Arrays.asList(elements);
+    }
+
     /**
      * Sets the modifiable list of root groups. This method clears the current
      * list and adds all entries in the parameter list.
@@ -541,7 +802,7 @@ public class MemoryRealm extends Realm {
     private void unmap(Object source, Role role) {
         RoleMapping mapping;
 
-        for (int i = getRoleMappings().size(); i >= 0; i--) {
+        for (int i = getRoleMappings().size() - 1; i >= 0; i--) {
             mapping = getRoleMappings().get(i);
 
             if (mapping.getSource().equals(source)
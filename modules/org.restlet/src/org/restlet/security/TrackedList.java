@@ -0,0 +1,267 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or or EPL 1.0 (the "Licenses"). You can
+ * select the license that you prefer but you may not use this file except in
+ * compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+
+package org.restlet.security;
+
+import java.util.AbstractList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Copy-on-write list tracking the modifications of a memory security model,
+ * made of users, groups and role mappings. Each modification increments the
+ * versions of the {@link MemoryRealm} instances indexing the list, so that
+ * they can cheaply detect that their indexes must be rebuilt, whatever the
+ * list or group that has been modified. The versions are supplied by the owner
+ * of the list, either a realm or a group. The views returned by
+ * {@link #subList(int, int)} are tracked as well.
+ * 
+ * @author Jerome Louvel
+ */
+class TrackedList<E> extends CopyOnWriteArrayList<E> {
+
+    /**
+     * View of a portion of the list, tracking its modifications.
+     */
+    private class TrackedSubList extends AbstractList<E> {
+
+        /** The untracked view. */
+        private final List<E> list;
+
+        /**
+         * Constructor.
+         * 
+         * @param list
+         *            The untracked view.
+         */
+        private TrackedSubList(List<E> list) {
+            this.list = list;
+        }
+
+        @Override
+        public void add(int index, E element) {
+            try {
+                this.list.add(index, element);
+            } finally {
+                modified();
+            }
+        }
+
+        @Override
+        public void clear() {
+            try {
+                this.list.clear();
+            } finally {
+                modified();
+            }
+        }
+
+        @Override
+        public E get(int index) {
+            return this.list.get(index);
+        }
+
+        @Override
+        public E remove(int index) {
+            try {
+                return this.list.remove(index);
+            } finally {
+                modified();
+            }
+        }
+
+        @Override
+        public E set(int index, E element) {
+            try {
+                return this.list.set(index, element);
+            } finally {
+                modified();
+            }
+        }
+
+        @Override
+        public int size() {
+            return this.list.size();
+        }
+
+        @Override
+        public List<E> subList(int fromIndex, int toIndex) {
+            return new TrackedSubList(this.list.subList(fromIndex, toIndex));
+        }
+
+    }
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Increments the versions of the memory realms indexing a modified object.
+     * 
+     * @param versions
+     *            The versions of the memory realms.
+     */
+    static void modified(Set<AtomicLong> versions) {
+        for (AtomicLong version : versions) {
+            version.incrementAndGet();
+        }
+    }
+
+    /** The versions of the memory realms indexing the list. */
+    private final Set<AtomicLong> versions;
+
+    /**
+     * Constructor.
+     * 
+     * @param versions
+     *            The versions of the memory realms indexing the list, shared
+     *            with its owner.
+     */
+    TrackedList(Set<AtomicLong> versions) {
+        this.versions = versions;
+    }
+
+    @Override
+    public boolean add(E e) {
+        try {
+            return super.add(e);
+        } finally {
+            modified();
+        }
+    }
+
+    @Override
+    public void add(int index, E element) {
+        try {
+            super.add(index, element);
+        } finally {
+            modified();
+        }
+    }
+
+    @Override
+    public boolean addAll(Collection<? extends E> c) {
+        try {
+            return super.addAll(c);
+        } finally {
+            modified();
+        }
+    }
+
+    @Override
+    public boolean addAll(int index, Collection<? extends E> c) {
+        try {
+            return super.addAll(index, c);
+        } finally {
+            modified();
+        }
+    }
+
+    @Override
+    public int addAllAbsent(Collection<? extends E> c) {
+        try {
+            return super.addAllAbsent(c);
+        } finally {
+            modified();
+        }
+    }
+
+    @Override
+    public boolean addIfAbsent(E e) {
+        try {
+            return super.addIfAbsent(e);
+        } finally {
+            modified();
+        }
+    }
+
+    @Override
+    public void clear() {
+        try {
+            super.clear();
+        } finally {
+            modified();
+        }
+    }
+
+    @Override
+    public E remove(int index) {
+        try {
+            return super.remove(index);
+        } finally {
+            modified();
+        }
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        try {
+            return super.remove(o);
+        } finally {
+            modified();
+        }
+    }
+
+    @Override
+    public boolean removeAll(Collection<?> c) {
+        try {
+            return super.removeAll(c);
+        } finally {
+            modified();
+        }
+    }
+
+    @Override
+    public boolean retainAll(Collection<?> c) {
+        try {
+            return super.retainAll(c);
+        } finally {
+            modified();
+        }
+    }
+
+    /**
+     * Indicates that the list has been modified.
+     */
+    private void modified() {
+        modified(this.versions);
+    }
+
+    @Override
+    public E set(int index, E element) {
+        try {
+            return super.set(index, element);
+        } finally {
+            modified();
+        }
+    }
+
+    @Override
+    public List<E> subList(int fromIndex, int toIndex) {
+        return new TrackedSubList(super.subList(fromIndex, toIndex));
+    }
+
+}
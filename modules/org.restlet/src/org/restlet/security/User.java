@@ -25,6 +25,9 @@
 package org.restlet.security;
 
 import java.security.Principal;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * User part of a security realm. Note the same user can be member of several
@@ -51,6 +54,9 @@ public class User implements Principal {
     /** The secret. */
     private volatile char[] secret;
 
+    /** The versions of the memory realms indexing the user. */
+    private final Set<AtomicLong> versions;
+
     /**
      * Default constructor.
      */
@@ -101,6 +107,7 @@ public class User implements Principal {
         this.firstName = firstName;
         this.lastName = lastName;
         this.email = email;
+        this.versions = new CopyOnWriteArraySet<AtomicLong>();
     }
 
     /**
@@ -188,6 +195,16 @@ public class User implements Principal {
         return secret;
     }
 
+    /**
+     * Returns the versions of the memory realms indexing the user, incremented
+     * when it is modified.
+     * 
+     * @return The versions of the memory realms indexing the user.
+     */
+    Set<AtomicLong> getVersions() {
+        return this.versions;
+    }
+
     /**
      * Sets the email.
      * 
@@ -216,6 +233,7 @@ public class User implements Principal {
      */
     public void setIdentifier(String identifier) {
         this.identifier = identifier;
+        TrackedList.modified(this.versions);
     }
 
     /**
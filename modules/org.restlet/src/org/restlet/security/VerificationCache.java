@@ -0,0 +1,345 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or or EPL 1.0 (the "Licenses"). You can
+ * select the license that you prefer but you may not use this file except in
+ * compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+
+package org.restlet.security;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.Principal;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.restlet.data.ChallengeResponse;
+import org.restlet.data.ClientInfo;
+import org.restlet.engine.io.IoUtils;
+import org.restlet.engine.util.LruCache;
+
+/**
+ * Bounded cache of successful credential verifications, used by
+ * {@link ChallengeAuthenticator} to avoid invoking a slow {@link Verifier} and
+ * {@link Enroler}, such as ones backed by a directory server or a JAAS login
+ * module, for each request sent by the same user.<br>
+ * <br>
+ * The entries are keyed by a salted SHA-256 hash of the challenge scheme,
+ * identifier and secret, so that secrets are never kept in memory. Each entry
+ * holds the verified {@link User}, principals and roles of the client, and
+ * expires after a time to live. Only the challenge responses with a secret and
+ * without server nonce are cached, the secret of the other ones changing with
+ * each request.<br>
+ * <br>
+ * Entries must be invalidated when the credentials or the roles of a user
+ * change, with {@link #invalidate(String)} or {@link #invalidateAll()}.
+ * 
+ * @author Jerome Louvel
+ */
+public class VerificationCache {
+
+    /**
+     * Successful verification.
+     */
+    private static class Entry {
+
+        /** The expiration time in milliseconds. */
+        private final long expiration;
+
+        /** The user identifier. */
+        private final String identifier;
+
+        /** The principals of the client. */
+        private final List<Principal> principals;
+
+        /** The roles of the client. */
+        private final List<Role> roles;
+
+        /** The verified user. */
+        private final User user;
+
+        /**
+         * Constructor.
+         * 
+         * @param identifier
+         *            The user identifier.
+         * @param clientInfo
+         *            The verified client info.
+         * @param expiration
+         *            The expiration time in milliseconds.
+         */
+        private Entry(String identifier, ClientInfo clientInfo,
+                long expiration) {
+            this.expiration = expiration;
+            this.identifier = identifier;
+            this.principals = Collections
+                    .unmodifiableList(new ArrayList<Principal>(clientInfo
+                            .getPrincipals()));
+            this.roles = Collections.unmodifiableList(new ArrayList<Role>(
+                    clientInfo.getRoles()));
+            this.user = clientInfo.getUser();
+        }
+    }
+
+    /** The entries, per salted hash of the credentials. */
+    private final LruCache<String, Entry> entries;
+
+    /** The number of verifications served from the cache. */
+    private final AtomicLong hits;
+
+    /** The number of verifications not found in the cache. */
+    private final AtomicLong misses;
+
+    /** The random salt of the keys. */
+    private final byte[] salt;
+
+    /** The time to live of the entries in seconds. */
+    private volatile int timeToLive;
+
+    /**
+     * Constructor caching up to 1000 verifications for 5 minutes.
+     */
+    public VerificationCache() {
+        this(1000, 300);
+    }
+
+    /**
+     * Constructor.
+     * 
+     * @param maxSize
+     *            The maximum number of cached verifications.
+     * @param timeToLive
+     *            The time to live of the entries in seconds.
+     */
+    public VerificationCache(int maxSize, int timeToLive) {
+        this.entries = new LruCache<String, Entry>(maxSize);
+        this.hits = new AtomicLong();
+        this.misses = new AtomicLong();
+        this.salt = new byte[16];
+        new SecureRandom().nextBytes(this.salt);
+        this.timeToLive = timeToLive;
+    }
+
+    /**
+     * Returns the ratio of verifications served from the cache, between 0 and
+     * 1.
+     * 
+     * @return The ratio of verifications served from the cache.
+     */
+    public double getHitRatio() {
+        long hits = getHits();
+        long total = hits + getMisses();
+        return (total == 0) ? 0D : (double) hits / total;
+    }
+
+    /**
+     * Returns the number of verifications served from the cache.
+     * 
+     * @return The number of verifications served from the cache.
+     */
+    public long getHits() {
+        return this.hits.get();
+    }
+
+    /**
+     * Returns the cache key of a challenge response, or null if it can't be
+     * cached.
+     * 
+     * @param challengeResponse
+     *            The challenge response.
+     * @return The cache key or null.
+     */
+    public String getKey(ChallengeResponse challengeResponse) {
+        if ((challengeResponse == null)
+                || (challengeResponse.getIdentifier() == null)
+                || (challengeResponse.getSecret() == null)
+                || (challengeResponse.getServerNonce() != null)) {
+            return null;
+        }
+
+        try {
+            MessageDigest md = MessageDigest.getInstance("SHA-256");
+            Charset utf8 = Charset.forName("UTF-8");
+            md.update(this.salt);
+            md.update(String.valueOf(challengeResponse.getScheme()).getBytes(
+                    utf8));
+            md.update((byte) 0);
+            md.update(challengeResponse.getIdentifier().getBytes(utf8));
+            md.update((byte) 0);
+            ByteBuffer secret = utf8.encode(CharBuffer.wrap(challengeResponse
+                    .getSecret()));
+            md.update(secret);
+
+            // Clear the encoded secret
+            secret.clear();
+
+            while (secret.hasRemaining()) {
+                secret.put((byte) 0);
+            }
+
+            return IoUtils.toHexString(md.digest());
+        } catch (NoSuchAlgorithmException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Returns the maximum number of cached verifications.
+     * 
+     * @return The maximum number of cached verifications.
+     */
+    public long getMaxSize() {
+        return this.entries.getMaxWeight();
+    }
+
+    /**
+     * Returns the number of verifications not found in the cache.
+     * 
+     * @return The number of verifications not found in the cache.
+     */
+    public long getMisses() {
+        return this.misses.get();
+    }
+
+    /**
+     * Returns the time to live of the entries in seconds.
+     * 
+     * @return The time to live of the entries in seconds.
+     */
+    public int getTimeToLive() {
+        return timeToLive;
+    }
+
+    /**
+     * Removes the cached verifications of a given user.
+     * 
+     * @param identifier
+     *            The user identifier.
+     */
+    public void invalidate(String identifier) {
+        Entry entry;
+
+        for (String key : this.entries.keys()) {
+            entry = this.entries.get(key);
+
+            if ((entry != null) && entry.identifier.equals(identifier)) {
+                this.entries.remove(key);
+            }
+        }
+    }
+
+    /**
+     * Removes all the cached verifications.
+     */
+    public void invalidateAll() {
+        this.entries.clear();
+    }
+
+    /**
+     * Caches the verified user, principals and roles of a client.
+     * 
+     * @param key
+     *            The cache key returned by
+     *            {@link #getKey(ChallengeResponse)}.
+     * @param identifier
+     *            The user identifier.
+     * @param clientInfo
+     *            The verified client info.
+     */
+    public void put(String key, String identifier, ClientInfo clientInfo) {
+        if (getTimeToLive() > 0) {
+            this.entries.put(key, new Entry(identifier, clientInfo, System
+                    .currentTimeMillis() + (getTimeToLive() * 1000L)));
+        }
+    }
+
+    /**
+     * Restores the cached user, principals and roles into a client info.
+     * 
+     * @param key
+     *            The cache key returned by
+     *            {@link #getKey(ChallengeResponse)}.
+     * @param clientInfo
+     *            The client info to update.
+     * @return True if a fresh cached verification was found.
+     */
+    public boolean restore(String key, ClientInfo clientInfo) {
+        Entry entry = this.entries.get(key);
+
+        if ((entry != null)
+                && (entry.expiration <= System.currentTimeMillis())) {
+            this.entries.remove(key);
+            entry = null;
+        }
+
+        if (entry == null) {
+            this.misses.incrementAndGet();
+            return false;
+        }
+
+        this.hits.incrementAndGet();
+        clientInfo.setUser(entry.user);
+        clientInfo.getPrincipals().addAll(entry.principals);
+        clientInfo.getRoles().addAll(entry.roles);
+        return true;
+    }
+
+    /**
+     * Sets the maximum number of cached verifications.
+     * 
+     * @param maxSize
+     *            The maximum number of cached verifications.
+     */
+    public void setMaxSize(long maxSize) {
+        this.entries.setMaxWeight(maxSize);
+    }
+
+    /**
+     * Sets the time to live of the entries in seconds. Zero disables the
+     * cache.
+     * 
+     * @param timeToLive
+     *            The time to live of the entries in seconds.
+     */
+    public void setTimeToLive(int timeToLive) {
+        this.timeToLive = timeToLive;
+
+        if (timeToLive <= 0) {
+            invalidateAll();
+        }
+    }
+
+    /**
+     * Returns the number of cached verifications.
+     * 
+     * @return The number of cached verifications.
+     */
+    public int size() {
+        return this.entries.size();
+    }
+
+}
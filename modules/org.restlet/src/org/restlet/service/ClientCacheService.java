@@ -0,0 +1,183 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or or EPL 1.0 (the "Licenses"). You can
+ * select the license that you prefer but you may not use this file except in
+ * compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+package org.restlet.service;
+
+import java.io.File;
+
+import org.restlet.Context;
+import org.restlet.engine.application.ClientCacheFilter;
+import org.restlet.routing.Filter;
+
+/**
+ * Application service caching the responses to outgoing GET requests, for
+ * example those sent by a ClientResource. Responses are stored in memory or
+ * optionally in files of a directory, honoring the "Cache-Control" and "Vary"
+ * headers and revalidating stale responses with conditional requests. See
+ * {@link ClientCacheFilter} for details.
+ * 
+ * @author Jerome Louvel
+ */
+public class ClientCacheService extends Service {
+
+    /** The directory where the entities are stored, or null for memory. */
+    private volatile File directory;
+
+    /** The filter created for the outbound chain. */
+    private volatile ClientCacheFilter filter;
+
+    /** The maximum size of a stored entity. */
+    private volatile long maxEntrySize;
+
+    /** The maximum total size of the stored entities. */
+    private volatile long maxSize;
+
+    /**
+     * Constructor. Stores up to 10 MB of entities in memory, each entity being
+     * limited to 1 MB.
+     */
+    public ClientCacheService() {
+        this(true);
+    }
+
+    /**
+     * Constructor. Stores up to 10 MB of entities in memory, each entity being
+     * limited to 1 MB.
+     * 
+     * @param enabled
+     *            True if the service has been enabled.
+     */
+    public ClientCacheService(boolean enabled) {
+        super(enabled);
+        this.directory = null;
+        this.maxEntrySize = 1048576L;
+        this.maxSize = 10485760L;
+    }
+
+    @Override
+    public Filter createOutboundFilter(Context context) {
+        this.filter = new ClientCacheFilter(context, getMaxSize(),
+                getMaxEntrySize(), getDirectory());
+        return this.filter;
+    }
+
+    /**
+     * Returns the directory where the entities are stored, or null if they are
+     * stored in memory.
+     * 
+     * @return The directory where the entities are stored, or null.
+     */
+    public File getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Returns the filter created for the outbound chain, giving access to the
+     * cache statistics, or null if not created yet.
+     * 
+     * @return The filter created for the outbound chain or null.
+     */
+    public ClientCacheFilter getFilter() {
+        return filter;
+    }
+
+    /**
+     * Returns the ratio of requests served from the cache, between 0 and 1.
+     * 
+     * @return The ratio of requests served from the cache.
+     * @see ClientCacheFilter#getHitRatio()
+     */
+    public double getHitRatio() {
+        ClientCacheFilter filter = getFilter();
+        return (filter == null) ? 0D : filter.getHitRatio();
+    }
+
+    /**
+     * Returns the maximum size of a stored entity. Defaults to 1 MB.
+     * 
+     * @return The maximum size of a stored entity.
+     */
+    public long getMaxEntrySize() {
+        return maxEntrySize;
+    }
+
+    /**
+     * Returns the maximum total size of the stored entities. Defaults to 10
+     * MB.
+     * 
+     * @return The maximum total size of the stored entities.
+     */
+    public long getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Sets the directory where the entities are stored, or null to store them
+     * in memory.
+     * 
+     * @param directory
+     *            The directory where the entities are stored, or null.
+     */
+    public void setDirectory(File directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Sets the maximum size of a stored entity.
+     * 
+     * @param maxEntrySize
+     *            The maximum size of a stored entity.
+     */
+    public void setMaxEntrySize(long maxEntrySize) {
+        this.maxEntrySize = maxEntrySize;
+
+        if (getFilter() != null) {
+            getFilter().setMaxEntrySize(maxEntrySize);
+        }
+    }
+
+    /**
+     * Sets the maximum total size of the stored entities.
+     * 
+     * @param maxSize
+     *            The maximum total size of the stored entities.
+     */
+    public void setMaxSize(long maxSize) {
+        this.maxSize = maxSize;
+
+        if (getFilter() != null) {
+            getFilter().setMaxSize(maxSize);
+        }
+    }
+
+    @Override
+    public synchronized void stop() throws Exception {
+        if (getFilter() != null) {
+            getFilter().clear();
+        }
+
+        super.stop();
+    }
+
+}
@@ -24,6 +24,7 @@
 
 package org.restlet.service;
 
+import java.util.Collections;
 import java.util.Set;
 
 import org.restlet.Context;
@@ -33,7 +34,16 @@ import org.restlet.routing.Filter;
 
 /**
  * Application service that adds support of CORS. This service lets the target
- * resource specifies the allowed methods.
+ * resource specifies the allowed methods.<br>
+ * <br>
+ * The settings are compiled into an immutable policy by the created filter, the
+ * allowed origins being matched with hash lookups. They can include wildcard
+ * subdomain patterns such as "https://*.example.com". When
+ * {@link #isSkippingResourceForCorsOptions()} is true, the preflight requests
+ * are answered by the filter, and their checks can be cached with
+ * {@link #setPreflightCacheSize(int)}. The settings are copied into the filter
+ * when the service is started, so the getters return unmodifiable sets from
+ * then on.
  * 
  * Example:
  * 
@@ -71,6 +81,13 @@ public class CorsService extends Service {
     /** The value of 'Access-Control-Expose-Headers' response header. */
     private Set<String> exposedHeaders = null;
 
+    /**
+     * The maximum number of cached preflight checks, used when
+     * {@link #skippingResourceForCorsOptions} is true. Default is 0, disabling
+     * the cache.
+     */
+    private int preflightCacheSize = 0;
+
     /**
      * If true, the filter does not call the server resource for OPTIONS method
      * of CORS request and set Access-Control-Allow-Methods header with
@@ -102,12 +119,13 @@ public class CorsService extends Service {
                 .setAllowingAllRequestedHeaders(allowingAllRequestedHeaders)
                 .setAllowedHeaders(allowedHeaders)
                 .setExposedHeaders(exposedHeaders)
+                .setPreflightCacheSize(preflightCacheSize)
                 .setSkippingResourceForCorsOptions(skippingResourceForCorsOptions);
     }
 
     /**
-     * Returns the modifiable set of headers allowed by the actual request on
-     * the current resource.<br>
+     * Returns the set of headers allowed by the actual request on the current
+     * resource, modifiable until the service is started.<br>
      * Note that when used with HTTP connectors, this property maps to the
      * "Access-Control-Allow-Headers" header.
      * 
@@ -115,24 +133,25 @@ public class CorsService extends Service {
      *         resource.
      */
     public Set<String> getAllowedHeaders() {
-        return allowedHeaders;
+        return protect(allowedHeaders);
     }
 
     /**
      * Returns the URI an origin server allows for the requested resource. Use
-     * "*" as a wildcard character.<br>
+     * "*" as a wildcard character. The set is modifiable until the service is
+     * started.<br>
      * Note that when used with HTTP connectors, this property maps to the
      * "Access-Control-Allow-Origin" header.
      * 
      * @return The origin allowed by the requested resource.
      */
     public Set<String> getAllowedOrigins() {
-        return allowedOrigins;
+        return protect(allowedOrigins);
     }
 
     /**
-     * Returns a modifiable whitelist of headers an origin server allows for the
-     * requested resource.<br>
+     * Returns a whitelist of headers an origin server allows for the requested
+     * resource, modifiable until the service is started.<br>
      * Note that when used with HTTP connectors, this property maps to the
      * "Access-Control-Expose-Headers" header.
      * 
@@ -140,7 +159,19 @@ public class CorsService extends Service {
      *         resource.
      */
     public Set<String> getExposedHeaders() {
-        return exposedHeaders;
+        return protect(exposedHeaders);
+    }
+
+    /**
+     * Returns the maximum number of cached preflight checks, by origin,
+     * requested method and requested headers. Only used when
+     * {@link #isSkippingResourceForCorsOptions()} is true. Default is 0,
+     * disabling the cache.
+     * 
+     * @return The maximum number of cached preflight checks.
+     */
+    public int getPreflightCacheSize() {
+        return preflightCacheSize;
     }
 
     /**
@@ -158,7 +189,7 @@ public class CorsService extends Service {
      * If true, the filter does not call the server resource for OPTIONS method
      * of CORS request and set Access-Control-Allow-Methods header with
      * the default methods. Default is false.
-     *
+     * 
      * @return True if the filter does not call the server resource for
      * OPTIONS method of CORS request.
      */
@@ -176,6 +207,19 @@ public class CorsService extends Service {
         return allowedCredentials;
     }
 
+    /**
+     * Returns a set of settings, as an unmodifiable view once the service is
+     * started.
+     * 
+     * @param set
+     *            The set of settings.
+     * @return The set of settings or its unmodifiable view.
+     */
+    private Set<String> protect(Set<String> set) {
+        return ((set == null) || !isStarted()) ? set : Collections
+                .unmodifiableSet(set);
+    }
+
     /**
      * If true, copies the value of 'Access-Control-Request-Headers' request
      * header into the 'Access-Control-Allow-Headers' response header. If false,
@@ -231,9 +275,22 @@ public class CorsService extends Service {
         this.exposedHeaders = exposedHeaders;
     }
 
+    /**
+     * Sets the maximum number of cached preflight checks, by origin, requested
+     * method and requested headers. Only used when
+     * {@link #isSkippingResourceForCorsOptions()} is true. Set to 0 to disable
+     * the cache.
+     * 
+     * @param preflightCacheSize
+     *            The maximum number of cached preflight checks.
+     */
+    public void setPreflightCacheSize(int preflightCacheSize) {
+        this.preflightCacheSize = preflightCacheSize;
+    }
+
     /**
      * Sets the value of skipResourceForCorsOptions field.
-     *
+     * 
      * @param skipResourceForCorsOptions
      *          True if the filter does not call the server resource for
      *          OPTIONS method of CORS request.
@@ -27,17 +27,35 @@ package org.restlet.service;
 import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.zip.Deflater;
 
 import org.restlet.Context;
 import org.restlet.data.Encoding;
 import org.restlet.data.MediaType;
+import org.restlet.data.Reference;
+import org.restlet.data.Tag;
 import org.restlet.engine.application.Encoder;
+import org.restlet.engine.io.IoUtils;
+import org.restlet.engine.util.LruCache;
 import org.restlet.representation.Representation;
 import org.restlet.routing.Filter;
 
 /**
- * Application service automatically encoding or compressing request entities.
+ * Application service automatically encoding or compressing request entities.<br>
+ * <br>
+ * An optional bounded cache of encoded content can be enabled with the
+ * {@link #setCacheMaxSize(long)} method. When enabled, the representations
+ * having a strong entity tag, or a location and a modification date, are
+ * encoded once and their encoded bytes are then reused for the next responses,
+ * saving the CPU cost of compressing the same static content again.<br>
+ * <br>
+ * The compression level, strategy and buffer size can be tuned, the level
+ * being also adjustable per media type, for example to favor speed for large
+ * JSON documents and ratio for static scripts. Deflaters and inflaters are
+ * pooled and reused across calls.
  * 
  * @author Jerome Louvel
  */
@@ -83,11 +101,29 @@ public class EncoderService extends Service {
      */
     private final List<MediaType> acceptedMediaTypes;
 
+    /** The size of the compression buffer. */
+    private volatile int bufferSize;
+
+    /** The maximum size of a representation whose encoded content is cached. */
+    private volatile long cacheMaxEntrySize;
+
+    /** The default compression level. */
+    private volatile int compressionLevel;
+
+    /** The compression strategy. */
+    private volatile int compressionStrategy;
+
+    /** The cache of encoded content, weighted by size. */
+    private final LruCache<String, byte[]> encodedCache;
+
     /**
      * The media types that should be ignored.
      */
     private final List<MediaType> ignoredMediaTypes;
 
+    /** The compression levels specific to some media types. */
+    private final Map<MediaType, Integer> mediaTypeLevels;
+
     /**
      * The minimal size necessary for encoding.
      */
@@ -113,6 +149,17 @@ public class EncoderService extends Service {
                 getDefaultAcceptedMediaTypes());
         this.ignoredMediaTypes = new CopyOnWriteArrayList<MediaType>(
                 getDefaultIgnoredMediaTypes());
+        this.bufferSize = IoUtils.BUFFER_SIZE;
+        this.cacheMaxEntrySize = 1048576L;
+        this.compressionLevel = Deflater.DEFAULT_COMPRESSION;
+        this.compressionStrategy = Deflater.DEFAULT_STRATEGY;
+        this.mediaTypeLevels = new ConcurrentHashMap<MediaType, Integer>();
+        this.encodedCache = new LruCache<String, byte[]>(0L) {
+            @Override
+            protected long weigh(String key, byte[] value) {
+                return value.length;
+            }
+        };
     }
 
     /**
@@ -193,6 +240,158 @@ public class EncoderService extends Service {
         return this.acceptedMediaTypes;
     }
 
+    /**
+     * Returns the size of the compression buffer. Defaults to
+     * {@link IoUtils#BUFFER_SIZE}.
+     * 
+     * @return The size of the compression buffer.
+     */
+    public int getBufferSize() {
+        return this.bufferSize;
+    }
+
+    /**
+     * Returns the maximum size of a representation whose encoded content is
+     * cached. Defaults to 1 MB.
+     * 
+     * @return The maximum size of a representation whose encoded content is
+     *         cached.
+     */
+    public long getCacheMaxEntrySize() {
+        return this.cacheMaxEntrySize;
+    }
+
+    /**
+     * Returns the maximum total size of the cached encoded content. Defaults to
+     * 0, disabling the cache.
+     * 
+     * @return The maximum total size of the cached encoded content.
+     */
+    public long getCacheMaxSize() {
+        return this.encodedCache.getMaxWeight();
+    }
+
+    /**
+     * Returns the cache key of the encoded content of a representation, or
+     * null if its content can't be cached. The content must be non transient,
+     * so that it can be read again, have a known size and either a strong
+     * entity tag or a location and a modification date, so that it can be
+     * safely identified. As entity tags are only unique per resource, the key
+     * of a tagged content includes the resource reference, or the location of
+     * the representation when no resource reference is given. The key of an
+     * untagged content includes the own location of the representation, such
+     * as the one of a file, as the modification date and size only identify
+     * the content at this location. The key finally includes the media type,
+     * the languages, the character set and the encodings of the representation
+     * as well as the compression settings applied.
+     * 
+     * @param encoding
+     *            The target encoding.
+     * @param representation
+     *            The representation to encode.
+     * @param resourceRef
+     *            The reference of the resource that the representation belongs
+     *            to, or null.
+     * @return The cache key or null.
+     */
+    public String getCacheKey(Encoding encoding, Representation representation,
+            Reference resourceRef) {
+        if ((getCacheMaxSize() <= 0) || (representation == null)
+                || representation.isTransient()
+                || (representation.getSize() == Representation.UNKNOWN_SIZE)
+                || (representation.getSize() > getCacheMaxEntrySize())) {
+            return null;
+        }
+
+        Tag tag = representation.getTag();
+        Reference locationRef = representation.getLocationRef();
+        StringBuilder sb = new StringBuilder(encoding.getName()).append(' ');
+
+        if ((tag != null) && !tag.isWeak()) {
+            Reference identifier = (resourceRef != null) ? resourceRef
+                    : locationRef;
+
+            if (identifier == null) {
+                return null;
+            }
+
+            sb.append(identifier).append(' ').append(tag.format());
+        } else if ((locationRef != null)
+                && (representation.getModificationDate() != null)) {
+            sb.append(locationRef).append(' ')
+                    .append(representation.getModificationDate().getTime())
+                    .append('/').append(representation.getSize());
+        } else {
+            return null;
+        }
+
+        return sb.append(' ').append(representation.getMediaType())
+                .append(' ').append(representation.getLanguages())
+                .append(' ').append(representation.getCharacterSet())
+                .append(' ').append(representation.getEncodings())
+                .append(' ')
+                .append(getCompressionLevel(representation.getMediaType()))
+                .append('/').append(getCompressionStrategy()).toString();
+    }
+
+    /**
+     * Returns the default compression level, between 0 and 9. Defaults to
+     * {@link Deflater#DEFAULT_COMPRESSION}.
+     * 
+     * @return The default compression level.
+     */
+    public int getCompressionLevel() {
+        return this.compressionLevel;
+    }
+
+    /**
+     * Returns the compression level to apply to a given media type. The levels
+     * specific to media types are looked up first, an exact match being
+     * preferred to an including one, before falling back to the default
+     * compression level.
+     * 
+     * @param mediaType
+     *            The media type.
+     * @return The compression level.
+     */
+    public int getCompressionLevel(MediaType mediaType) {
+        Integer result = null;
+
+        if (mediaType != null && !getMediaTypeLevels().isEmpty()) {
+            result = getMediaTypeLevels().get(mediaType);
+
+            for (Iterator<Map.Entry<MediaType, Integer>> iter = getMediaTypeLevels()
+                    .entrySet().iterator(); (result == null) && iter.hasNext();) {
+                Map.Entry<MediaType, Integer> entry = iter.next();
+
+                if (entry.getKey().includes(mediaType)) {
+                    result = entry.getValue();
+                }
+            }
+        }
+
+        return (result == null) ? getCompressionLevel() : result;
+    }
+
+    /**
+     * Returns the compression strategy. Defaults to
+     * {@link Deflater#DEFAULT_STRATEGY}.
+     * 
+     * @return The compression strategy.
+     */
+    public int getCompressionStrategy() {
+        return this.compressionStrategy;
+    }
+
+    /**
+     * Returns the cache of encoded content, giving access to its statistics.
+     * 
+     * @return The cache of encoded content.
+     */
+    public LruCache<String, byte[]> getEncodedCache() {
+        return this.encodedCache;
+    }
+
     /**
      * Returns the media types that should be ignored.
      * 
@@ -202,6 +401,16 @@ public class EncoderService extends Service {
         return this.ignoredMediaTypes;
     }
 
+    /**
+     * Returns the modifiable map of compression levels specific to some media
+     * types, overriding the default compression level.
+     * 
+     * @return The compression levels specific to some media types.
+     */
+    public Map<MediaType, Integer> getMediaTypeLevels() {
+        return this.mediaTypeLevels;
+    }
+
     /**
      * Returns the minimum size a representation must have before compression is
      * done.
@@ -213,6 +422,65 @@ public class EncoderService extends Service {
         return this.mininumSize;
     }
 
+    /**
+     * Sets the size of the compression buffer.
+     * 
+     * @param bufferSize
+     *            The size of the compression buffer.
+     */
+    public void setBufferSize(int bufferSize) {
+        this.bufferSize = bufferSize;
+    }
+
+    /**
+     * Sets the maximum size of a representation whose encoded content is
+     * cached.
+     * 
+     * @param cacheMaxEntrySize
+     *            The maximum size of a representation whose encoded content is
+     *            cached.
+     */
+    public void setCacheMaxEntrySize(long cacheMaxEntrySize) {
+        this.cacheMaxEntrySize = cacheMaxEntrySize;
+    }
+
+    /**
+     * Sets the maximum total size of the cached encoded content. A size of 0
+     * disables the cache.
+     * 
+     * @param cacheMaxSize
+     *            The maximum total size of the cached encoded content.
+     */
+    public void setCacheMaxSize(long cacheMaxSize) {
+        this.encodedCache.setMaxWeight(cacheMaxSize);
+
+        if (cacheMaxSize <= 0) {
+            this.encodedCache.clear();
+        }
+    }
+
+    /**
+     * Sets the default compression level, between 0 and 9 or
+     * {@link Deflater#DEFAULT_COMPRESSION}.
+     * 
+     * @param compressionLevel
+     *            The default compression level.
+     */
+    public void setCompressionLevel(int compressionLevel) {
+        this.compressionLevel = compressionLevel;
+    }
+
+    /**
+     * Sets the compression strategy.
+     * 
+     * @param compressionStrategy
+     *            The compression strategy.
+     * @see Deflater#setStrategy(int)
+     */
+    public void setCompressionStrategy(int compressionStrategy) {
+        this.compressionStrategy = compressionStrategy;
+    }
+
     /**
      * Sets the minimum size a representation must have before compression is
      * done.
@@ -24,6 +24,7 @@
 
 package org.restlet.service;
 
+import java.io.File;
 import java.util.logging.Level;
 
 import org.restlet.Application;
@@ -34,6 +35,7 @@ import org.restlet.data.Method;
 import org.restlet.data.Reference;
 import org.restlet.data.Status;
 import org.restlet.engine.Engine;
+import org.restlet.engine.log.AccessLogWriter;
 import org.restlet.engine.log.LogFilter;
 import org.restlet.representation.Representation;
 import org.restlet.resource.ClientResource;
@@ -73,6 +75,12 @@ import org.restlet.routing.Template;
  * <br>
  * For custom access log format, see the syntax to use and the list of available
  * variable names in {@link org.restlet.routing.Template}. <br>
+ * <br>
+ * By default, the access log entries are written synchronously via the JDK's
+ * logger. When an access log file is set with {@link #setAccessLogFile(File)},
+ * they are instead appended to a bounded buffer and written by batches by a
+ * background thread, see {@link AccessLogWriter}. When the buffer is full,
+ * entries are dropped unless {@link #setAccessLogBlocking(boolean)} is set.<br>
  * 
  * @see <a href="http://wiki.restlet.org/docs_2.2/201-restlet.html">User Guide -
  *      Access logging</a>
@@ -82,6 +90,51 @@ import org.restlet.routing.Template;
  */
 public class LogService extends Service {
 
+    /**
+     * Formatted date and time of a given second, immutable to be safely
+     * shared across threads.
+     */
+    private static final class DateTime {
+
+        /** The formatted date and time, separated by a tabulation. */
+        private final String formatted;
+
+        /** The second since the epoch. */
+        private final long second;
+
+        /**
+         * Constructor.
+         * 
+         * @param time
+         *            The time in milliseconds.
+         */
+        private DateTime(long time) {
+            this.formatted = String.format("%tF\t%<tT", time);
+            this.second = time / 1000L;
+        }
+    }
+
+    /** The date and time of the last logged second. */
+    private static volatile DateTime lastDateTime = new DateTime(0L);
+
+    /** Indicates if the calls wait when the access log buffer is full. */
+    private volatile boolean accessLogBlocking;
+
+    /** The capacity of the access log buffer, in entries. */
+    private volatile int accessLogBufferSize;
+
+    /** The access log file written asynchronously, or null. */
+    private volatile File accessLogFile;
+
+    /** The maximum number of access log files kept. */
+    private volatile int accessLogFileCount;
+
+    /** The maximum size of an access log file before rotation. */
+    private volatile long accessLogMaxFileSize;
+
+    /** The asynchronous access log writer, or null. */
+    private volatile AccessLogWriter accessLogWriter;
+
     /** Indicates if the debugging mode is enabled. */
     private volatile boolean debugging;
 
@@ -118,6 +171,11 @@ public class LogService extends Service {
      */
     public LogService(boolean enabled) {
         super(enabled);
+        this.accessLogBlocking = false;
+        this.accessLogBufferSize = 8192;
+        this.accessLogFile = null;
+        this.accessLogFileCount = 5;
+        this.accessLogMaxFileSize = 0L;
         this.loggableTemplate = null;
         this.loggerName = null;
         this.responseLogFormat = null;
@@ -130,6 +188,56 @@ public class LogService extends Service {
         return new LogFilter(context, this);
     }
 
+    /**
+     * Returns the capacity of the access log buffer, in entries. Defaults to
+     * 8192.
+     * 
+     * @return The capacity of the access log buffer.
+     */
+    public int getAccessLogBufferSize() {
+        return accessLogBufferSize;
+    }
+
+    /**
+     * Returns the access log file written asynchronously, or null if the
+     * entries are written via the JDK's logger, the default.
+     * 
+     * @return The access log file or null.
+     */
+    public File getAccessLogFile() {
+        return accessLogFile;
+    }
+
+    /**
+     * Returns the maximum number of access log files kept, including the
+     * current one. Defaults to 5.
+     * 
+     * @return The maximum number of access log files kept.
+     */
+    public int getAccessLogFileCount() {
+        return accessLogFileCount;
+    }
+
+    /**
+     * Returns the maximum size of an access log file before rotation. Defaults
+     * to 0, disabling the rotation.
+     * 
+     * @return The maximum size of an access log file before rotation.
+     */
+    public long getAccessLogMaxFileSize() {
+        return accessLogMaxFileSize;
+    }
+
+    /**
+     * Returns the asynchronous access log writer, giving access to its
+     * statistics, or null if not started or no access log file is set.
+     * 
+     * @return The asynchronous access log writer or null.
+     */
+    public AccessLogWriter getAccessLogWriter() {
+        return accessLogWriter;
+    }
+
     /**
      * Format a log entry using the default IIS log format.
      * 
@@ -145,12 +253,14 @@ public class LogService extends Service {
         Request request = response.getRequest();
         long currentTime = System.currentTimeMillis();
 
-        // Append the date of the request
-        sb.append(String.format("%tF", currentTime));
-        sb.append('\t');
+        // Append the date and time of the request, formatted once per second
+        DateTime dateTime = lastDateTime;
+
+        if (dateTime.second != currentTime / 1000L) {
+            lastDateTime = dateTime = new DateTime(currentTime);
+        }
 
-        // Append the time of the request
-        sb.append(String.format("%tT", currentTime));
+        sb.append(dateTime.formatted);
         sb.append('\t');
 
         // Append the client IP address
@@ -329,6 +439,16 @@ public class LogService extends Service {
         return result;
     }
 
+    /**
+     * Indicates if the calls wait for room when the access log buffer is full,
+     * instead of dropping their entry. False by default.
+     * 
+     * @return True if the calls wait for room when the buffer is full.
+     */
+    public boolean isAccessLogBlocking() {
+        return accessLogBlocking;
+    }
+
     /**
      * Indicates if the debugging mode is enabled. False by default.
      * 
@@ -364,6 +484,61 @@ public class LogService extends Service {
                 .match(request.getResourceRef().getTargetRef().toString()) > 0;
     }
 
+    /**
+     * Indicates if the calls wait for room when the access log buffer is full,
+     * instead of dropping their entry.
+     * 
+     * @param accessLogBlocking
+     *            True if the calls wait for room when the buffer is full.
+     */
+    public void setAccessLogBlocking(boolean accessLogBlocking) {
+        this.accessLogBlocking = accessLogBlocking;
+    }
+
+    /**
+     * Sets the capacity of the access log buffer, in entries.
+     * 
+     * @param accessLogBufferSize
+     *            The capacity of the access log buffer.
+     */
+    public void setAccessLogBufferSize(int accessLogBufferSize) {
+        this.accessLogBufferSize = accessLogBufferSize;
+    }
+
+    /**
+     * Sets the access log file written asynchronously, or null to write the
+     * entries via the JDK's logger. Taken into account when the service is
+     * started.
+     * 
+     * @param accessLogFile
+     *            The access log file or null.
+     */
+    public void setAccessLogFile(File accessLogFile) {
+        this.accessLogFile = accessLogFile;
+    }
+
+    /**
+     * Sets the maximum number of access log files kept, including the current
+     * one.
+     * 
+     * @param accessLogFileCount
+     *            The maximum number of access log files kept.
+     */
+    public void setAccessLogFileCount(int accessLogFileCount) {
+        this.accessLogFileCount = accessLogFileCount;
+    }
+
+    /**
+     * Sets the maximum size of an access log file before rotation, or 0 to
+     * disable the rotation.
+     * 
+     * @param accessLogMaxFileSize
+     *            The maximum size of an access log file before rotation.
+     */
+    public void setAccessLogMaxFileSize(long accessLogMaxFileSize) {
+        this.accessLogMaxFileSize = accessLogMaxFileSize;
+    }
+
     /**
      * Indicates if the debugging mode is enabled.
      * 
@@ -455,7 +630,8 @@ public class LogService extends Service {
 
     /**
      * Starts the log service by attempting to read the log properties if the
-     * {@link #getLogPropertiesRef()} returns a non null URI reference.
+     * {@link #getLogPropertiesRef()} returns a non null URI reference. Also
+     * starts the asynchronous access log writer if an access log file is set.
      */
     @Override
     public synchronized void start() throws Exception {
@@ -474,5 +650,29 @@ public class LogService extends Service {
             }
         }
         // [enddef]
+
+        if ((getAccessLogFile() != null) && (this.accessLogWriter == null)) {
+            AccessLogWriter writer = new AccessLogWriter(getAccessLogFile(),
+                    getAccessLogBufferSize(), isAccessLogBlocking(),
+                    getAccessLogMaxFileSize(), getAccessLogFileCount());
+            writer.start();
+            this.accessLogWriter = writer;
+        }
+    }
+
+    /**
+     * Stops the log service, writing the buffered access log entries.
+     */
+    @Override
+    public synchronized void stop() throws Exception {
+        AccessLogWriter writer = this.accessLogWriter;
+
+        if (writer != null) {
+            this.accessLogWriter = null;
+            writer.stop();
+        }
+
+        super.stop();
     }
+
 }
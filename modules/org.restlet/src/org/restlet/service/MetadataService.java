@@ -25,7 +25,9 @@
 package org.restlet.service;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.CopyOnWriteArrayList;
 
 import org.restlet.data.CharacterSet;
@@ -57,6 +59,12 @@ public class MetadataService extends Service {
     /** The default media type for representations. */
     private volatile MediaType defaultMediaType;
 
+    /**
+     * The first metadata mapped to each extension name, rebuilt lazily after
+     * the mappings change.
+     */
+    private volatile Map<String, Metadata> extensionIndex;
+
     /** The list of mappings between extension names and metadata. */
     private final List<MetadataExtension> mappings;
 
@@ -366,7 +374,10 @@ public class MetadataService extends Service {
         ext(dm, "xml", MediaType.APPLICATION_XML);
 
         // Add all those mappings
-        this.mappings.addAll(dm);
+        synchronized (this.mappings) {
+            this.mappings.addAll(dm);
+            this.extensionIndex = null;
+        }
     }
 
     /**
@@ -395,12 +406,16 @@ public class MetadataService extends Service {
      */
     public void addExtension(String extension, Metadata metadata,
             boolean preferred) {
-        if (preferred) {
-            // Add the mapping at the beginning of the list
-            this.mappings.add(0, new MetadataExtension(extension, metadata));
-        } else {
-            // Add the mapping at the end of the list
-            this.mappings.add(new MetadataExtension(extension, metadata));
+        synchronized (this.mappings) {
+            if (preferred) {
+                // Add the mapping at the beginning of the list
+                this.mappings.add(0, new MetadataExtension(extension, metadata));
+            } else {
+                // Add the mapping at the end of the list
+                this.mappings.add(new MetadataExtension(extension, metadata));
+            }
+
+            this.extensionIndex = null;
         }
     }
 
@@ -408,7 +423,10 @@ public class MetadataService extends Service {
      * clears the mappings for all extensions.
      */
     public void clearExtensions() {
-        this.mappings.clear();
+        synchronized (this.mappings) {
+            this.mappings.clear();
+            this.extensionIndex = null;
+        }
     }
 
     /**
@@ -755,6 +773,36 @@ public class MetadataService extends Service {
         return null;
     }
 
+    /**
+     * Returns the first metadata mapped to each extension name. The index is
+     * rebuilt after the mappings change.
+     * 
+     * @return The first metadata mapped to each extension name.
+     */
+    private Map<String, Metadata> getExtensionIndex() {
+        Map<String, Metadata> result = this.extensionIndex;
+
+        if (result == null) {
+            synchronized (this.mappings) {
+                result = this.extensionIndex;
+
+                if (result == null) {
+                    result = new HashMap<String, Metadata>();
+
+                    for (MetadataExtension mapping : this.mappings) {
+                        if (!result.containsKey(mapping.getName())) {
+                            result.put(mapping.getName(), mapping.getMetadata());
+                        }
+                    }
+
+                    this.extensionIndex = result;
+                }
+            }
+        }
+
+        return result;
+    }
+
     /**
      * Returns the language associated to this extension. It returns null if the
      * extension was not declared of it is corresponds to another type of
@@ -814,16 +862,7 @@ public class MetadataService extends Service {
      * @return The metadata associated to this extension.
      */
     public Metadata getMetadata(String extension) {
-        if (extension != null) {
-            // Look for the first registered convenient mapping.
-            for (final MetadataExtension metadataExtension : this.mappings) {
-                if (extension.equals(metadataExtension.getName())) {
-                    return metadataExtension.getMetadata();
-                }
-            }
-        }
-
-        return null;
+        return (extension == null) ? null : getExtensionIndex().get(extension);
     }
 
     // [ifndef gwt] method
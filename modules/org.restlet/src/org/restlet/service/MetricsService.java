@@ -0,0 +1,192 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or or EPL 1.0 (the "Licenses"). You can
+ * select the license that you prefer but you may not use this file except in
+ * compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+
+package org.restlet.service;
+
+import java.util.List;
+
+import org.restlet.Context;
+import org.restlet.Restlet;
+import org.restlet.Server;
+import org.restlet.engine.application.Metrics;
+import org.restlet.engine.application.MetricsFilter;
+import org.restlet.engine.application.MetricsRestlet;
+import org.restlet.routing.Filter;
+
+/**
+ * Application service recording metrics about the handled calls: latency
+ * histograms per route template and method, counts of responses per status
+ * code, number of requests being handled and entity bytes exchanged.<br>
+ * <br>
+ * The metrics can be exposed as a resource, in JSON or in the Prometheus text
+ * format, by attaching the Restlet returned by
+ * {@link #createRestlet(Context)}, for example:
+ * 
+ * <pre>
+ * router.attach(&quot;/metrics&quot;, getMetricsService().createRestlet(getContext()));
+ * </pre>
+ * 
+ * They can also be registered as an MXBean with {@link #setJmxEnabled(boolean)}.
+ * The thread pools of the server connectors added to {@link #getServers()} are
+ * also monitored, when their helper exposes them.
+ * 
+ * @author Jerome Louvel
+ */
+public class MetricsService extends Service {
+
+    /** Indicates if the metrics are registered as an MXBean. */
+    private volatile boolean jmxEnabled;
+
+    /** The recorded metrics. */
+    private final Metrics metrics;
+
+    // [ifndef gae,android] member
+    /** The name of the registered MXBean. */
+    private volatile javax.management.ObjectName objectName;
+
+    /**
+     * Constructor.
+     */
+    public MetricsService() {
+        this(true);
+    }
+
+    /**
+     * Constructor.
+     * 
+     * @param enabled
+     *            True if the service has been enabled.
+     */
+    public MetricsService(boolean enabled) {
+        super(enabled);
+        this.jmxEnabled = false;
+        this.metrics = new Metrics();
+    }
+
+    @Override
+    public Filter createInboundFilter(Context context) {
+        return new MetricsFilter(context, getMetrics());
+    }
+
+    /**
+     * Creates a Restlet exposing the metrics, in JSON or in the Prometheus
+     * text format.
+     * 
+     * @param context
+     *            The context.
+     * @return The Restlet exposing the metrics.
+     */
+    public Restlet createRestlet(Context context) {
+        return new MetricsRestlet(context, getMetrics());
+    }
+
+    /**
+     * Returns the recorded metrics.
+     * 
+     * @return The recorded metrics.
+     */
+    public Metrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Returns the modifiable list of server connectors whose thread pool is
+     * monitored, such as the ones of the parent component.
+     * 
+     * @return The server connectors whose thread pool is monitored.
+     */
+    public List<Server> getServers() {
+        return getMetrics().getServers();
+    }
+
+    /**
+     * Indicates if the metrics are registered as an MXBean when the service is
+     * started. False by default.
+     * 
+     * @return True if the metrics are registered as an MXBean.
+     */
+    public boolean isJmxEnabled() {
+        return jmxEnabled;
+    }
+
+    // [ifndef gae,android] method
+    /**
+     * Registers the metrics as an MXBean named
+     * "org.restlet:type=Metrics,id=&lt;hash&gt;".
+     * 
+     * @throws Exception
+     */
+    private void registerMBean() throws Exception {
+        this.objectName = new javax.management.ObjectName(
+                "org.restlet:type=Metrics,id="
+                        + Integer.toHexString(System.identityHashCode(this)));
+        java.lang.management.ManagementFactory.getPlatformMBeanServer()
+                .registerMBean(getMetrics(), this.objectName);
+    }
+
+    /**
+     * Indicates if the metrics are registered as an MXBean when the service is
+     * started.
+     * 
+     * @param jmxEnabled
+     *            True if the metrics are registered as an MXBean.
+     */
+    public void setJmxEnabled(boolean jmxEnabled) {
+        this.jmxEnabled = jmxEnabled;
+    }
+
+    @Override
+    public synchronized void start() throws Exception {
+        super.start();
+        // [ifndef gae,android]
+        if (isJmxEnabled() && (this.objectName == null)) {
+            registerMBean();
+        }
+        // [enddef]
+    }
+
+    @Override
+    public synchronized void stop() throws Exception {
+        // [ifndef gae,android]
+        if (this.objectName != null) {
+            unregisterMBean();
+        }
+        // [enddef]
+        super.stop();
+    }
+
+    // [ifndef gae,android] method
+    /**
+     * Unregisters the MXBean of the metrics.
+     * 
+     * @throws Exception
+     */
+    private void unregisterMBean() throws Exception {
+        java.lang.management.ManagementFactory.getPlatformMBeanServer()
+                .unregisterMBean(this.objectName);
+        this.objectName = null;
+    }
+
+}
@@ -33,17 +33,24 @@ import org.restlet.routing.Filter;
  * allows resources to not care of requested ranges and return full
  * representations that will then be transparently wrapped in partial
  * representations by this service, allowing the client to benefit from partial
- * downloads.
+ * downloads.<br>
+ * <br>
+ * As each range of a "multipart/byteranges" entity has its own overhead,
+ * requests for more ranges than {@link #getMaxRanges()} are answered with the
+ * full representation.
  * 
  * @author Jerome Louvel
  */
 public class RangeService extends Service {
 
+    /** The maximum number of ranges served in a single response. */
+    private volatile int maxRanges;
+
     /**
      * Constructor.
      */
     public RangeService() {
-        super();
+        this(true);
     }
 
     /**
@@ -54,6 +61,7 @@ public class RangeService extends Service {
      */
     public RangeService(boolean enabled) {
         super(enabled);
+        this.maxRanges = 16;
     }
 
     @Override
@@ -61,4 +69,25 @@ public class RangeService extends Service {
         return new RangeFilter(context);
     }
 
+    /**
+     * Returns the maximum number of ranges served in a single response.
+     * Requests for more ranges are answered with the full representation.
+     * Defaults to 16.
+     * 
+     * @return The maximum number of ranges served in a single response.
+     */
+    public int getMaxRanges() {
+        return maxRanges;
+    }
+
+    /**
+     * Sets the maximum number of ranges served in a single response.
+     * 
+     * @param maxRanges
+     *            The maximum number of ranges served in a single response.
+     */
+    public void setMaxRanges(int maxRanges) {
+        this.maxRanges = maxRanges;
+    }
+
 }
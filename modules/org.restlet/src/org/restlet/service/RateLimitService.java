@@ -0,0 +1,310 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or or EPL 1.0 (the "Licenses"). You can
+ * select the license that you prefer but you may not use this file except in
+ * compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+package org.restlet.service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.restlet.Context;
+import org.restlet.engine.application.RateLimitFilter;
+import org.restlet.engine.application.RateLimiter;
+import org.restlet.engine.application.RateLimiter.Scope;
+import org.restlet.routing.Filter;
+
+/**
+ * Application service admitting the incoming calls according to rate and
+ * concurrency limits. The rates are enforced with token buckets, one per
+ * client address, per challenge identifier or per route, sharded to limit the
+ * contention and evicted once idle. The calls exceeding a rate are rejected
+ * with a "429 Too Many Requests" status and a "Retry-After" header, the entity
+ * being generated by the {@link StatusService}.<br>
+ * <br>
+ * The concurrency limit caps the number of calls handled at the same time. The
+ * calls above it wait in a fair queue, and are rejected with a
+ * "503 Service Unavailable" status when the queue is full or when their
+ * timeout expires.<br>
+ * <br>
+ * Note that the challenge identifiers are the ones claimed by the clients, as
+ * the authentication happens later. As the route templates are only known once
+ * a router matched them, the limit per route is enforced by the filters
+ * returned by {@link #createRouteFilter(Context)}, to attach behind a router.
+ * To limit the rate of a given set of resources only, create a
+ * {@link RateLimitFilter} with another instance of this service and attach it
+ * in front of them. The service is disabled by default.
+ * 
+ * Example:
+ * 
+ * <pre>
+ * RateLimitService rateLimitService = new RateLimitService();
+ * rateLimitService.setClientAddressLimit(10, 20);
+ * rateLimitService.setMaxConcurrentRequests(200);
+ * rateLimitService.setRouteLimit(100, 100);
+ * 
+ * Filter routeFilter = rateLimitService.createRouteFilter(getContext());
+ * routeFilter.setNext(ItemServerResource.class);
+ * router.attach(&quot;/items/{id}&quot;, routeFilter);
+ * </pre>
+ * 
+ * @author Jerome Louvel
+ */
+public class RateLimitService extends Service {
+
+    /** The limiter per client address. */
+    private volatile RateLimiter clientAddressLimiter;
+
+    /** The limiter per challenge identifier. */
+    private volatile RateLimiter identifierLimiter;
+
+    /** The maximum number of concurrent calls, 0 for no limit. */
+    private volatile int maxConcurrentRequests;
+
+    /** The maximum number of calls waiting for a concurrency permit. */
+    private volatile int maxQueuedRequests;
+
+    /** The maximum time to wait for a concurrency permit, in milliseconds. */
+    private volatile long queueTimeout;
+
+    /** The limiter per route. */
+    private volatile RateLimiter routeLimiter;
+
+    /**
+     * Constructor.
+     */
+    public RateLimitService() {
+        this(true);
+    }
+
+    /**
+     * Constructor.
+     * 
+     * @param enabled
+     *            True if the service has been enabled.
+     */
+    public RateLimitService(boolean enabled) {
+        super(enabled);
+        this.clientAddressLimiter = null;
+        this.identifierLimiter = null;
+        this.maxConcurrentRequests = 0;
+        this.maxQueuedRequests = 100;
+        this.queueTimeout = 1000L;
+        this.routeLimiter = null;
+    }
+
+    @Override
+    public Filter createInboundFilter(Context context) {
+        return new RateLimitFilter(context, this);
+    }
+
+    /**
+     * Creates a filter enforcing the limit per route, to attach behind a
+     * router, in front of the routed resources. The template matched by the
+     * router identifies the route. The service must be enabled in the
+     * application, so that the routers record the matched templates.
+     * 
+     * @param context
+     *            The context.
+     * @return The new filter enforcing the limit per route.
+     */
+    public Filter createRouteFilter(Context context) {
+        return new RateLimitFilter(context, this, true);
+    }
+
+    /**
+     * Returns the limiter per client address, or null.
+     * 
+     * @return The limiter per client address, or null.
+     */
+    public RateLimiter getClientAddressLimiter() {
+        return clientAddressLimiter;
+    }
+
+    /**
+     * Returns the limiter per challenge identifier, or null.
+     * 
+     * @return The limiter per challenge identifier, or null.
+     */
+    public RateLimiter getIdentifierLimiter() {
+        return identifierLimiter;
+    }
+
+    /**
+     * Returns the maximum number of concurrent calls. Default value is 0,
+     * meaning no limit.
+     * 
+     * @return The maximum number of concurrent calls.
+     */
+    public int getMaxConcurrentRequests() {
+        return maxConcurrentRequests;
+    }
+
+    /**
+     * Returns the maximum number of calls waiting for a concurrency permit.
+     * Default value is 100.
+     * 
+     * @return The maximum number of calls waiting for a concurrency permit.
+     */
+    public int getMaxQueuedRequests() {
+        return maxQueuedRequests;
+    }
+
+    /**
+     * Returns the maximum time to wait for a concurrency permit, in
+     * milliseconds. Default value is 1000.
+     * 
+     * @return The maximum time to wait for a concurrency permit.
+     */
+    public long getQueueTimeout() {
+        return queueTimeout;
+    }
+
+    /**
+     * Returns the configured rate limiters.
+     * 
+     * @return The configured rate limiters.
+     */
+    public List<RateLimiter> getRateLimiters() {
+        List<RateLimiter> result = new ArrayList<RateLimiter>(3);
+        RateLimiter limiter = getClientAddressLimiter();
+
+        if (limiter != null) {
+            result.add(limiter);
+        }
+
+        limiter = getIdentifierLimiter();
+
+        if (limiter != null) {
+            result.add(limiter);
+        }
+
+        limiter = getRouteLimiter();
+
+        if (limiter != null) {
+            result.add(limiter);
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns the limiter per route, or null.
+     * 
+     * @return The limiter per route, or null.
+     */
+    public RateLimiter getRouteLimiter() {
+        return routeLimiter;
+    }
+
+    /**
+     * Creates a limiter or returns null if the rate is not positive.
+     * 
+     * @param scope
+     *            The scope of the limiter.
+     * @param rate
+     *            The number of calls admitted per second.
+     * @param burst
+     *            The number of calls admitted in a burst.
+     * @return The new limiter or null.
+     */
+    private RateLimiter newLimiter(Scope scope, double rate, int burst) {
+        return (rate > 0) ? new RateLimiter(scope, rate, Math.max(1, burst))
+                : null;
+    }
+
+    /**
+     * Sets the rate limit per client address. The address is the upstream one,
+     * as reported by the connector.
+     * 
+     * @param rate
+     *            The number of calls admitted per second, 0 to remove the
+     *            limit.
+     * @param burst
+     *            The number of calls admitted in a burst.
+     */
+    public void setClientAddressLimit(double rate, int burst) {
+        this.clientAddressLimiter = newLimiter(Scope.CLIENT_ADDRESS, rate,
+                burst);
+    }
+
+    /**
+     * Sets the rate limit per challenge identifier. The calls without
+     * challenge response are not limited.
+     * 
+     * @param rate
+     *            The number of calls admitted per second, 0 to remove the
+     *            limit.
+     * @param burst
+     *            The number of calls admitted in a burst.
+     */
+    public void setIdentifierLimit(double rate, int burst) {
+        this.identifierLimiter = newLimiter(Scope.IDENTIFIER, rate, burst);
+    }
+
+    /**
+     * Sets the maximum number of concurrent calls. Must be set before the
+     * filter is created.
+     * 
+     * @param maxConcurrentRequests
+     *            The maximum number of concurrent calls, 0 for no limit.
+     */
+    public void setMaxConcurrentRequests(int maxConcurrentRequests) {
+        this.maxConcurrentRequests = maxConcurrentRequests;
+    }
+
+    /**
+     * Sets the maximum number of calls waiting for a concurrency permit.
+     * 
+     * @param maxQueuedRequests
+     *            The maximum number of calls waiting for a concurrency permit.
+     */
+    public void setMaxQueuedRequests(int maxQueuedRequests) {
+        this.maxQueuedRequests = maxQueuedRequests;
+    }
+
+    /**
+     * Sets the maximum time to wait for a concurrency permit, in milliseconds.
+     * 
+     * @param queueTimeout
+     *            The maximum time to wait for a concurrency permit.
+     */
+    public void setQueueTimeout(long queueTimeout) {
+        this.queueTimeout = queueTimeout;
+    }
+
+    /**
+     * Sets the rate limit per route. The route is identified by the URI
+     * template it matched, the limit being enforced by the filters returned by
+     * {@link #createRouteFilter(Context)}.
+     * 
+     * @param rate
+     *            The number of calls admitted per second, 0 to remove the
+     *            limit.
+     * @param burst
+     *            The number of calls admitted in a burst.
+     */
+    public void setRouteLimit(double rate, int burst) {
+        this.routeLimiter = newLimiter(Scope.ROUTE, rate, burst);
+    }
+
+}
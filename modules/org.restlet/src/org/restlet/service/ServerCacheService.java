@@ -0,0 +1,251 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or or EPL 1.0 (the "Licenses"). You can
+ * select the license that you prefer but you may not use this file except in
+ * compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+package org.restlet.service;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.concurrent.CopyOnWriteArraySet;
+
+import org.restlet.Context;
+import org.restlet.Response;
+import org.restlet.engine.application.ServerCacheFilter;
+import org.restlet.routing.Filter;
+
+/**
+ * Application service caching the fully serialized responses to incoming GET
+ * requests, so that expensive resources aren't invoked again while their
+ * representations are fresh. The "Cache-Control" and "Vary" headers set by the
+ * resources are honored, each negotiated variant being stored separately, and
+ * conditional requests are answered directly. See {@link ServerCacheFilter}
+ * for details.<br>
+ * <br>
+ * Resources can attach cache tags to their responses with the
+ * {@link #addCacheTags(Response, String...)} method, so that the application
+ * can later invalidate all the related responses with
+ * {@link #invalidateTag(String)}.
+ * 
+ * @author Jerome Louvel
+ */
+public class ServerCacheService extends Service {
+
+    /** The name of the response attribute holding the cache tags. */
+    public static final String ATTRIBUTE_TAGS = "org.restlet.cache.tags";
+
+    /**
+     * Attaches cache tags to a response.
+     * 
+     * @param response
+     *            The response.
+     * @param tags
+     *            The cache tags.
+     */
+    @SuppressWarnings("unchecked")
+    public static void addCacheTags(Response response, String... tags) {
+        Collection<String> current = (Collection<String>) response
+                .getAttributes().get(ATTRIBUTE_TAGS);
+
+        if (current == null) {
+            current = new CopyOnWriteArraySet<String>();
+            response.getAttributes().put(ATTRIBUTE_TAGS, current);
+        }
+
+        current.addAll(Arrays.asList(tags));
+    }
+
+    /** The default time to live in seconds. */
+    private volatile int defaultTimeToLive;
+
+    /** The filter created for the inbound chain. */
+    private volatile ServerCacheFilter filter;
+
+    /** The maximum size of a stored entity. */
+    private volatile long maxEntrySize;
+
+    /** The maximum total size of the stored entities. */
+    private volatile long maxSize;
+
+    /**
+     * Constructor. Stores up to 10 MB of entities, each entity being limited to
+     * 1 MB, without default time to live.
+     */
+    public ServerCacheService() {
+        this(true);
+    }
+
+    /**
+     * Constructor. Stores up to 10 MB of entities, each entity being limited to
+     * 1 MB, without default time to live.
+     * 
+     * @param enabled
+     *            True if the service has been enabled.
+     */
+    public ServerCacheService(boolean enabled) {
+        super(enabled);
+        this.defaultTimeToLive = 0;
+        this.maxEntrySize = 1048576L;
+        this.maxSize = 10485760L;
+    }
+
+    @Override
+    public Filter createInboundFilter(Context context) {
+        this.filter = new ServerCacheFilter(context, getMaxSize(),
+                getMaxEntrySize(), getDefaultTimeToLive());
+        return this.filter;
+    }
+
+    /**
+     * Returns the default time to live in seconds, used for responses without
+     * explicit freshness information. Responses aren't stored if zero, the
+     * default.
+     * 
+     * @return The default time to live in seconds.
+     */
+    public int getDefaultTimeToLive() {
+        return defaultTimeToLive;
+    }
+
+    /**
+     * Returns the filter created for the inbound chain, giving access to the
+     * cache statistics, or null if not created yet.
+     * 
+     * @return The filter created for the inbound chain or null.
+     */
+    public ServerCacheFilter getFilter() {
+        return filter;
+    }
+
+    /**
+     * Returns the ratio of requests served from the cache, between 0 and 1.
+     * 
+     * @return The ratio of requests served from the cache.
+     * @see ServerCacheFilter#getHitRatio()
+     */
+    public double getHitRatio() {
+        ServerCacheFilter filter = getFilter();
+        return (filter == null) ? 0D : filter.getHitRatio();
+    }
+
+    /**
+     * Returns the maximum size of a stored entity. Defaults to 1 MB.
+     * 
+     * @return The maximum size of a stored entity.
+     */
+    public long getMaxEntrySize() {
+        return maxEntrySize;
+    }
+
+    /**
+     * Returns the maximum total size of the stored entities. Defaults to 10
+     * MB.
+     * 
+     * @return The maximum total size of the stored entities.
+     */
+    public long getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Removes the stored responses of a resource, whatever their variant.
+     * 
+     * @param uri
+     *            The resource URI.
+     */
+    public void invalidate(String uri) {
+        if (getFilter() != null) {
+            getFilter().invalidate(uri);
+        }
+    }
+
+    /**
+     * Removes all the stored responses.
+     */
+    public void invalidateAll() {
+        if (getFilter() != null) {
+            getFilter().clear();
+        }
+    }
+
+    /**
+     * Removes the stored responses having a given cache tag.
+     * 
+     * @param tag
+     *            The cache tag.
+     */
+    public void invalidateTag(String tag) {
+        if (getFilter() != null) {
+            getFilter().invalidateTag(tag);
+        }
+    }
+
+    /**
+     * Sets the default time to live in seconds, used for responses without
+     * explicit freshness information. Responses aren't stored if zero.
+     * 
+     * @param defaultTimeToLive
+     *            The default time to live in seconds.
+     */
+    public void setDefaultTimeToLive(int defaultTimeToLive) {
+        this.defaultTimeToLive = defaultTimeToLive;
+
+        if (getFilter() != null) {
+            getFilter().setDefaultTimeToLive(defaultTimeToLive);
+        }
+    }
+
+    /**
+     * Sets the maximum size of a stored entity.
+     * 
+     * @param maxEntrySize
+     *            The maximum size of a stored entity.
+     */
+    public void setMaxEntrySize(long maxEntrySize) {
+        this.maxEntrySize = maxEntrySize;
+
+        if (getFilter() != null) {
+            getFilter().setMaxEntrySize(maxEntrySize);
+        }
+    }
+
+    /**
+     * Sets the maximum total size of the stored entities.
+     * 
+     * @param maxSize
+     *            The maximum total size of the stored entities.
+     */
+    public void setMaxSize(long maxSize) {
+        this.maxSize = maxSize;
+
+        if (getFilter() != null) {
+            getFilter().setMaxSize(maxSize);
+        }
+    }
+
+    @Override
+    public synchronized void stop() throws Exception {
+        invalidateAll();
+        super.stop();
+    }
+
+}
@@ -26,6 +26,7 @@ package org.restlet.service;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
 import java.util.logging.Level;
 
 import org.restlet.Application;
@@ -63,7 +64,13 @@ import org.restlet.resource.ResourceException;
  * <br>
  * In case the response's entity has already been set, the status service does
  * not generate an error representation. You can turn off this default behavior
- * by calling the {@link #setOverwriting(boolean)} method.
+ * by calling the {@link #setOverwriting(boolean)} method.<br>
+ * <br>
+ * The default status representations are rendered once per status and
+ * negotiated variant, then served from a bounded cache of byte arrays, see
+ * {@link #setRepresentationCacheSize(int)}. For the status classes listed in
+ * {@link #getNoEntityStatusClasses()}, such as 4 for the client errors, no
+ * representation is generated at all.
  * 
  * @see <a href="http://wiki.restlet.org/docs_2.2/202-restlet.html">User
  *      Guide</a>
@@ -71,6 +78,44 @@ import org.restlet.resource.ResourceException;
  */
 public class StatusService extends Service {
 
+    // [ifndef gwt] member
+    /**
+     * Status representation rendered into a byte array, shared by the
+     * responses of the same status and variant.
+     */
+    private static final class RenderedStatus {
+
+        /** The rendered content. */
+        final byte[] content;
+
+        /** The metadata of the rendered content. */
+        final Variant variant;
+
+        RenderedStatus(byte[] content, Variant variant) {
+            this.content = content;
+            this.variant = variant;
+        }
+
+        /**
+         * Returns a new representation of the rendered content.
+         * 
+         * @return A new representation of the rendered content.
+         */
+        Representation toRepresentation() {
+            Representation result = new org.restlet.representation.ByteArrayRepresentation(
+                    this.content, this.variant.getMediaType(),
+                    this.content.length);
+            result.setCharacterSet(this.variant.getCharacterSet());
+            result.getLanguages().addAll(this.variant.getLanguages());
+            result.getEncodings().addAll(this.variant.getEncodings());
+            return result;
+        }
+    }
+
+    // [ifndef gwt] member
+    /** The maximum size of a cached status representation. */
+    private static final int MAX_CACHED_SIZE = 65536;
+
     // [ifndef gwt] member
     /** The service used to select the preferred variant. */
     private volatile ConnegService connegService;
@@ -85,6 +130,10 @@ public class StatusService extends Service {
     /** The home URI to propose in case of error. */
     private volatile Reference homeRef;
 
+    // [ifndef gwt] member
+    /** The status classes whose responses have no generated entity. */
+    private final Set<Integer> noEntityStatusClasses;
+
     // [ifndef gwt] member
     /** The service used to select the preferred variant. */
     private volatile MetadataService metadataService;
@@ -92,6 +141,14 @@ public class StatusService extends Service {
     /** True if an existing entity should be overwritten. */
     private volatile boolean overwriting;
 
+    // [ifndef gwt] member
+    /** The cache of rendered status representations, or null. */
+    private volatile org.restlet.engine.util.LruCache<String, RenderedStatus> representationCache;
+
+    // [ifndef gwt] member
+    /** The maximum number of cached status representations. */
+    private volatile int representationCacheSize;
+
     /**
      * Constructor. By default, it creates the necessary services.
      */
@@ -137,7 +194,10 @@ public class StatusService extends Service {
         this.connegService = connegService;
         this.contactEmail = null;
         this.homeRef = new Reference("/");
+        this.noEntityStatusClasses = new java.util.concurrent.CopyOnWriteArraySet<Integer>();
         this.overwriting = false;
+        this.representationCache = null;
+        this.representationCacheSize = 100;
     }
 
     // [ifndef gwt] method
@@ -197,6 +257,18 @@ public class StatusService extends Service {
         return metadataService;
     }
 
+    // [ifndef gwt] method
+    /**
+     * Returns the modifiable set of status classes whose responses have no
+     * generated entity. A status class is the status code divided by 100, for
+     * example 4 for the client errors. Empty by default.
+     * 
+     * @return The status classes whose responses have no generated entity.
+     */
+    public Set<Integer> getNoEntityStatusClasses() {
+        return noEntityStatusClasses;
+    }
+
     /**
      * Returns a representation for the given status. In order to customize the
      * default representation, this method can be overridden. It returns null by
@@ -265,8 +337,14 @@ public class StatusService extends Service {
 
                 Variant variant = connegService.getPreferredVariant(variants,
                         request, metadataService);
-                result = converterService.toRepresentation(
-                        representationObject, variant);
+
+                if (representationObject instanceof StatusInfo) {
+                    result = toCachedRepresentation(
+                            (StatusInfo) representationObject, variant);
+                } else {
+                    result = converterService.toRepresentation(
+                            representationObject, variant);
+                }
             } catch (Exception e) {
                 Context.getCurrentLogger().log(
                         Level.WARNING,
@@ -279,6 +357,43 @@ public class StatusService extends Service {
         return result;
     }
 
+    // [ifndef gwt] method
+    /**
+     * Returns the cache of rendered status representations, creating it if
+     * needed.
+     * 
+     * @return The cache of rendered status representations or null if
+     *         disabled.
+     */
+    private org.restlet.engine.util.LruCache<String, RenderedStatus> getRepresentationCache() {
+        org.restlet.engine.util.LruCache<String, RenderedStatus> result = this.representationCache;
+
+        if ((result == null) && (getRepresentationCacheSize() > 0)) {
+            synchronized (this) {
+                result = this.representationCache;
+
+                if (result == null) {
+                    result = new org.restlet.engine.util.LruCache<String, RenderedStatus>(
+                            getRepresentationCacheSize());
+                    this.representationCache = result;
+                }
+            }
+        }
+
+        return result;
+    }
+
+    // [ifndef gwt] method
+    /**
+     * Returns the maximum number of cached status representations. Default
+     * value is 100.
+     * 
+     * @return The maximum number of cached status representations.
+     */
+    public int getRepresentationCacheSize() {
+        return representationCacheSize;
+    }
+
     /**
      * Returns a status for a given exception or error. By default it unwraps
      * the status of {@link ResourceException}. For other exceptions or errors,
@@ -426,6 +541,79 @@ public class StatusService extends Service {
         this.overwriting = overwriting;
     }
 
+    // [ifndef gwt] method
+    /**
+     * Sets the maximum number of cached status representations. The cache is
+     * cleared.
+     * 
+     * @param representationCacheSize
+     *            The maximum number of cached status representations, 0 to
+     *            disable the cache.
+     */
+    public synchronized void setRepresentationCacheSize(
+            int representationCacheSize) {
+        this.representationCacheSize = representationCacheSize;
+        this.representationCache = null;
+    }
+
+    // [ifndef gwt] method
+    /**
+     * Converts a status info into a representation of the given variant. The
+     * rendered content is cached per status and variant, and each call
+     * returns a new representation wrapping it.
+     * 
+     * @param statusInfo
+     *            The status info to convert.
+     * @param variant
+     *            The target variant.
+     * @return The representation of the status info.
+     * @throws java.io.IOException
+     */
+    private Representation toCachedRepresentation(StatusInfo statusInfo,
+            Variant variant) throws java.io.IOException {
+        Representation result = null;
+        org.restlet.engine.util.LruCache<String, RenderedStatus> cache = getRepresentationCache();
+
+        if ((cache == null) || (variant == null)) {
+            result = getConverterService().toRepresentation(statusInfo, variant);
+        } else {
+            String key = statusInfo.getCode() + "|"
+                    + statusInfo.getReasonPhrase() + "|"
+                    + statusInfo.getDescription() + "|" + statusInfo.getUri()
+                    + "|" + statusInfo.getContactEmail() + "|"
+                    + statusInfo.getHomeRef() + "|" + variant;
+            RenderedStatus rendered = cache.get(key);
+
+            if (rendered == null) {
+                result = getConverterService().toRepresentation(statusInfo,
+                        variant);
+
+                if ((result != null) && result.isAvailable()
+                        && (result.getSize() <= MAX_CACHED_SIZE)) {
+                    java.io.ByteArrayOutputStream out = new java.io.ByteArrayOutputStream();
+                    result.write(out);
+                    result.release();
+
+                    Variant metadata = new Variant(result.getMediaType());
+                    metadata.setCharacterSet(result.getCharacterSet());
+                    metadata.getLanguages().addAll(result.getLanguages());
+                    metadata.getEncodings().addAll(result.getEncodings());
+                    rendered = new RenderedStatus(out.toByteArray(), metadata);
+
+                    if (rendered.content.length <= MAX_CACHED_SIZE) {
+                        cache.put(key, rendered);
+                    }
+                }
+            }
+
+            if (rendered != null) {
+                result = rendered.toRepresentation();
+            }
+        }
+
+        return result;
+    }
+
     /**
      * Returns a representation for the given status. In order to customize the
      * default representation, this method can be overridden. It returns a
@@ -0,0 +1,228 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or or EPL 1.0 (the "Licenses"). You can
+ * select the license that you prefer but you may not use this file except in
+ * compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+
+package org.restlet.service;
+
+import org.restlet.Context;
+import org.restlet.Request;
+import org.restlet.data.ClientInfo;
+import org.restlet.data.Digest;
+import org.restlet.data.Tag;
+import org.restlet.engine.application.TagFilter;
+import org.restlet.engine.util.LruCache;
+import org.restlet.routing.Filter;
+
+/**
+ * Application service generating strong entity tags for the dynamic response
+ * entities lacking one, so that conditional requests can be answered with
+ * "304 Not Modified" responses. The digest of the entity is computed while it
+ * is written once into a buffer, see {@link TagFilter} for details.<br>
+ * <br>
+ * The service also caches the entity tags of the representations returned by
+ * server resources declaring a version of their state with
+ * {@link org.restlet.resource.ServerResource#getVersion()}. As long as the
+ * version doesn't change, conditional GET requests are then answered from the
+ * cached tags without generating the representations again.
+ * 
+ * @author Jerome Louvel
+ */
+public class TagService extends Service {
+
+    /** The name of the request attribute holding the key of the cached tag. */
+    public static final String ATTRIBUTE_KEY = "org.restlet.tag.key";
+
+    /** The digest algorithm. */
+    private volatile String algorithm;
+
+    /** The maximum size of a buffered entity. */
+    private volatile long maxBufferSize;
+
+    /** The cache of entity tags, per resource version. */
+    private final LruCache<String, Tag> tagCache;
+
+    /**
+     * Constructor. Buffers entities up to 64 KB and caches up to 1000 tags.
+     */
+    public TagService() {
+        this(true);
+    }
+
+    /**
+     * Constructor. Buffers entities up to 64 KB and caches up to 1000 tags.
+     * 
+     * @param enabled
+     *            True if the service has been enabled.
+     */
+    public TagService(boolean enabled) {
+        super(enabled);
+        this.algorithm = Digest.ALGORITHM_MD5;
+        this.maxBufferSize = 65536L;
+        this.tagCache = new LruCache<String, Tag>(1000L);
+    }
+
+    @Override
+    public Filter createInboundFilter(Context context) {
+        return new TagFilter(context, this);
+    }
+
+    /**
+     * Returns the digest algorithm used to generate the tags. Defaults to
+     * {@link Digest#ALGORITHM_MD5}.
+     * 
+     * @return The digest algorithm.
+     */
+    public String getAlgorithm() {
+        return algorithm;
+    }
+
+    /**
+     * Returns the maximum number of cached tags. Defaults to 1000.
+     * 
+     * @return The maximum number of cached tags.
+     */
+    public long getCacheMaxSize() {
+        return this.tagCache.getMaxWeight();
+    }
+
+    /**
+     * Returns the maximum size of the entities buffered to generate a tag.
+     * Larger entities aren't tagged, those of unknown size being spilled into
+     * a temporary file while buffered. Defaults to 64 KB.
+     * 
+     * @return The maximum size of a buffered entity.
+     */
+    public long getMaxBufferSize() {
+        return maxBufferSize;
+    }
+
+    /**
+     * Returns the cached tag of a resource version, or null.
+     * 
+     * @param key
+     *            The key returned by {@link #getTagKey(Request, String, boolean)}.
+     * @return The cached tag or null.
+     */
+    public Tag getTag(String key) {
+        return this.tagCache.get(key);
+    }
+
+    /**
+     * Returns the cache of entity tags.
+     * 
+     * @return The cache of entity tags.
+     */
+    public LruCache<String, Tag> getTagCache() {
+        return this.tagCache;
+    }
+
+    /**
+     * Returns the key of the tag cached for a given request and resource
+     * version. As a negotiated resource returns the same variant for the same
+     * client preferences, those are part of the key.
+     * 
+     * @param request
+     *            The request.
+     * @param version
+     *            The resource version.
+     * @param negotiated
+     *            True if the resource negotiates its variants.
+     * @return The key of the cached tag.
+     */
+    public String getTagKey(Request request, String version, boolean negotiated) {
+        StringBuilder sb = new StringBuilder(version).append(' ').append(
+                request.getResourceRef().toString(true, false));
+
+        if (negotiated) {
+            ClientInfo clientInfo = request.getClientInfo();
+            sb.append(' ').append(clientInfo.getAcceptedMediaTypes());
+            sb.append(' ').append(clientInfo.getAcceptedLanguages());
+            sb.append(' ').append(clientInfo.getAcceptedCharacterSets());
+            sb.append(' ').append(clientInfo.getAcceptedEncodings());
+        }
+
+        return sb.toString();
+    }
+
+    /**
+     * Removes all the cached tags.
+     */
+    public void invalidateAll() {
+        this.tagCache.clear();
+    }
+
+    /**
+     * Caches the tag of a resource version.
+     * 
+     * @param key
+     *            The key returned by {@link #getTagKey(Request, String, boolean)}.
+     * @param tag
+     *            The tag to cache.
+     */
+    public void putTag(String key, Tag tag) {
+        this.tagCache.put(key, tag);
+    }
+
+    /**
+     * Sets the digest algorithm used to generate the tags.
+     * 
+     * @param algorithm
+     *            The digest algorithm.
+     */
+    public void setAlgorithm(String algorithm) {
+        this.algorithm = algorithm;
+    }
+
+    /**
+     * Sets the maximum number of cached tags. Zero disables the cache.
+     * 
+     * @param cacheMaxSize
+     *            The maximum number of cached tags.
+     */
+    public void setCacheMaxSize(long cacheMaxSize) {
+        this.tagCache.setMaxWeight(cacheMaxSize);
+
+        if (cacheMaxSize <= 0) {
+            this.tagCache.clear();
+        }
+    }
+
+    /**
+     * Sets the maximum size of the entities buffered to generate a tag. Zero
+     * disables the generation.
+     * 
+     * @param maxBufferSize
+     *            The maximum size of a buffered entity.
+     */
+    public void setMaxBufferSize(long maxBufferSize) {
+        this.maxBufferSize = maxBufferSize;
+    }
+
+    @Override
+    public synchronized void stop() throws Exception {
+        invalidateAll();
+        super.stop();
+    }
+
+}